@@ -34,6 +34,7 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * push future task to executor and send redirect immediately.
@@ -107,7 +108,16 @@ public class BackgroundJobReportContentGenerator extends ParameterContentGenerat
     if ( reportComponent.validate() ) {
       final UUID reservedId = getReservedId();
 
-      final UUID uuid = executor.addTask( asyncExec, userSession, reservedId );
+      final UUID uuid;
+      try {
+        uuid = executor.addTask( asyncExec, userSession, reservedId );
+      } catch ( final RejectedExecutionException e ) {
+        handler.getStagingContent().cleanContent();
+        audit.audit( userSession.getId(), userSession.getName(), path, getObjectName(), getClass().getName(),
+          MessageTypes.FAILED, instanceId, "", 0, this );
+        sendTooManyRequestsResponse();
+        return;
+      }
       sendSuccessRedirect( uuid );
     } else {
       // register failed parameters execution attempt
@@ -144,6 +154,12 @@ public class BackgroundJobReportContentGenerator extends ParameterContentGenerat
     httpResponse.setStatus( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
   }
 
+  protected void sendTooManyRequestsResponse() throws IOException {
+    final HttpServletResponse httpResponse = getServletResponse();
+    httpResponse.setHeader( "Retry-After", String.valueOf( JobManager.RETRY_AFTER_SECONDS ) );
+    httpResponse.setStatus( JobManager.SC_TOO_MANY_REQUESTS );
+  }
+
   protected void sendSuccessRedirect( final UUID uuid ) throws IOException {
     final HttpServletResponse httpResponse = getServletResponse();
     final HttpServletRequest servletRequest = getServletRequest();
@@ -14,16 +14,25 @@
 package org.pentaho.reporting.platform.plugin;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.reporting.engine.classic.core.cache.DataCacheFactory;
+import org.pentaho.reporting.platform.plugin.cache.CacheUsage;
 import org.pentaho.reporting.platform.plugin.cache.IPluginCacheManager;
 import org.pentaho.reporting.platform.plugin.cache.IReportContentCache;
+import org.pentaho.reporting.platform.plugin.cache.IUsageTrackingCache;
 
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
 
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
 @Path( "/reporting/api/cache" )
 public class CacheManagerEndpoint {
 
@@ -48,4 +57,29 @@ public class CacheManagerEndpoint {
     }
   }
 
+  /**
+   * @return usage of the report content cache, 404 if the configured cache doesn't track it, 403 if the user is not an
+   * administrator
+   */
+  @GET @Path( "usage" )
+  @Produces( APPLICATION_JSON )
+  public Response usage() {
+    try {
+      if ( !SecurityHelper.getInstance().isPentahoAdministrator( PentahoSessionHolder.getSession() ) ) {
+        return Response.status( Response.Status.FORBIDDEN ).build();
+      }
+      final IPluginCacheManager iPluginCacheManager = PentahoSystem.get( IPluginCacheManager.class );
+      final IReportContentCache cache = iPluginCacheManager.getCache();
+      final CacheUsage cacheUsage =
+        cache instanceof IUsageTrackingCache ? ( (IUsageTrackingCache) cache ).getUsage() : null;
+      if ( cacheUsage == null ) {
+        return Response.status( Response.Status.NOT_FOUND ).build();
+      }
+      final ObjectMapper mapper = new ObjectMapper();
+      return Response.ok( mapper.writeValueAsString( cacheUsage ) ).build();
+    } catch ( final Exception e ) {
+      return Response.serverError().build();
+    }
+  }
+
 }
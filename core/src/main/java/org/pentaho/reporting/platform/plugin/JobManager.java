@@ -22,6 +22,7 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.RepositoryPathEncoder;
 import org.pentaho.platform.util.StringUtil;
@@ -30,13 +31,18 @@ import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
 import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
 import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.platform.plugin.async.AsyncJobMonitor;
 import org.pentaho.reporting.platform.plugin.async.IJobIdGenerator;
 import org.pentaho.reporting.platform.plugin.async.IPentahoAsyncExecutor;
 import org.pentaho.reporting.platform.plugin.async.ISchedulingDirectoryStrategy;
+import org.pentaho.reporting.platform.plugin.async.PentahoAsyncExecutor;
+import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
+import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -44,15 +50,27 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
@@ -70,7 +88,43 @@ public class JobManager {
   private static final String ERROR_GENERATING_REPORT = "Error generating report";
   private static final String UNABLE_TO_SERIALIZE_TO_JSON = "Unable to serialize to json : ";
   private static final String UNCKNOWN_MEDIA_TYPE = "Can't determine JAX-RS media type for: ";
+
+  /**
+   * Too Many Requests (RFC 6585), sent when the executor queue has no room for a job
+   */
+  public static final int SC_TOO_MANY_REQUESTS = 429;
+  /**
+   * Seconds a client should wait before submitting a rejected job again
+   */
+  public static final int RETRY_AFTER_SECONDS = 5;
+  /**
+   * Status attribute holding the position of a job waiting to be started
+   */
+  public static final String QUEUE_POSITION = "queuePosition";
+  /**
+   * Status attribute identifying the returned status, sent back by the client to wait for the next change
+   */
+  public static final String STATUS_TOKEN = "statusToken";
+  /**
+   * Longest time a waiting status request goes without looking at the state, changes of the state are not always
+   * notified
+   */
+  private static final long STATUS_CHECK_MILLISECONDS = 1000;
+  /**
+   * Most jobs a single batch status request may ask for
+   */
+  public static final int MAX_BATCH_STATUS = 100;
+  public static final String RANGE = "Range";
+  public static final String IF_RANGE = "If-Range";
+  public static final String ACCEPT_RANGES = "Accept-Ranges";
+  public static final String CONTENT_RANGE = "Content-Range";
+  private static final String BYTES = "bytes";
+  /**
+   * Requested range that can't be served
+   */
+  private static final long[] UNSATISFIABLE_RANGE = new long[ 0 ];
   private final Config config;
+  private final Semaphore statusWaiters;
 
   public JobManager() {
     this( true, 500, 1500, false );
@@ -83,11 +137,24 @@ public class JobManager {
 
   public JobManager( final boolean isSupportAsync, final long pollingIntervalMilliseconds,
                      final long dialogThresholdMillisecond, final boolean promptForLocation ) {
+    this( isSupportAsync, pollingIntervalMilliseconds, dialogThresholdMillisecond, promptForLocation, 0, 0 );
+  }
+
+  /**
+   * @param statusWaitMilliseconds longest time a status request waits for a change, 0 disables waiting
+   * @param maxStatusWaiters       status requests allowed to wait at once, others are answered at once. Each waiting
+   *                               request holds a thread of the servlet container, so keep it well below its pool.
+   */
+  public JobManager( final boolean isSupportAsync, final long pollingIntervalMilliseconds,
+                     final long dialogThresholdMillisecond, final boolean promptForLocation,
+                     final long statusWaitMilliseconds, final int maxStatusWaiters ) {
     if ( !isSupportAsync ) {
       logger.info( ASYNC_DISABLED );
     }
+    final boolean statusWait = statusWaitMilliseconds > 0 && maxStatusWaiters > 0;
     this.config = new Config( isSupportAsync, pollingIntervalMilliseconds, dialogThresholdMillisecond,
-      promptForLocation );
+      promptForLocation, statusWait ? statusWaitMilliseconds : 0 );
+    this.statusWaiters = new Semaphore( statusWait ? maxStatusWaiters : 0 );
   }
 
   @GET
@@ -97,28 +164,68 @@ public class JobManager {
     return getJson( config );
   }
 
+  /**
+   * Queue length, thread usage, job counters, wait and run time histograms per output type and staging disk usage of
+   * the async executor. Available to administrators only.
+   */
+  @GET
+  @Path( "metrics" )
+  @Produces( APPLICATION_JSON )
+  public Response getMetrics() {
+    if ( !SecurityHelper.getInstance().isPentahoAdministrator( PentahoSessionHolder.getSession() ) ) {
+      return Response.status( Response.Status.FORBIDDEN ).build();
+    }
+    final IPentahoAsyncExecutor<?> executor = getExecutor();
+    if ( !( executor instanceof PentahoAsyncExecutor ) ) {
+      return get404();
+    }
+    return getJson( new AsyncJobMonitor( (PentahoAsyncExecutor<?>) executor ).getSnapshot() );
+  }
+
+  public Response getPDFContent( final String job_id ) throws IOException {
+    return getPDFContent( job_id, null, null );
+  }
+
   @GET
   @Path( "{job_id}/content" )
-  public Response getPDFContent( @PathParam( "job_id" ) final String job_id ) throws IOException {
+  public Response getPDFContent( @PathParam( "job_id" ) final String job_id,
+                                 @HeaderParam( RANGE ) final String range,
+                                 @HeaderParam( IF_RANGE ) final String ifRange ) throws IOException {
     logger.debug( "Chrome pdf viewer workaround. See BACKLOG-7598 for details" );
 
-    return this.getContent( job_id );
+    return this.getContent( job_id, range, ifRange );
   }
 
+  public Response getContent( final String jobId ) throws IOException {
+    return getContent( jobId, null, null );
+  }
+
+  /**
+   * Content staged in a file is sent with its length and a single byte range can be requested, so an interrupted
+   * download can be resumed.
+   *
+   * @param jobId   job id
+   * @param range   requested byte range, sent in full if missing or not supported
+   * @param ifRange entity tag the range is requested for, sent in full if the content has changed
+   * @return content of the finished job
+   */
   @SuppressWarnings( "unchecked" )
   @POST
   @Path( "{job_id}/content" )
-  public Response getContent( @PathParam( "job_id" ) final String jobId )
+  public Response getContent( @PathParam( "job_id" ) final String jobId,
+                              @HeaderParam( RANGE ) final String range,
+                              @HeaderParam( IF_RANGE ) final String ifRange )
     throws IOException {
 
     try {
       final ExecutionContext context = getContext( jobId );
-      final Future<IFixedSizeStreamingContent> future = context.getFuture();
       final IAsyncReportState state = context.getReportState();
 
       if ( !AsyncExecutionStatus.FINISHED.equals( state.getStatus() ) ) {
         return Response.status( Response.Status.ACCEPTED ).build();
       }
+      //a job of another node has a future once its content is stored
+      final Future<IFixedSizeStreamingContent> future = context.getFuture();
 
       final IFixedSizeStreamingContent input;
       try {
@@ -128,8 +235,6 @@ public class JobManager {
         return Response.serverError().build();
       }
 
-      final StreamingOutput stream = new StreamingOutputWrapper( input.getStream() );
-
       MediaType mediaType;
       Response.ResponseBuilder response;
 
@@ -141,7 +246,14 @@ public class JobManager {
         mediaType = MediaType.APPLICATION_OCTET_STREAM_TYPE;
       }
 
-      response = Response.ok( stream, mediaType );
+      final File file = input instanceof AsyncJobFileStagingHandler.FixedSizeStagingContent
+        ? ( (AsyncJobFileStagingHandler.FixedSizeStagingContent) input ).getFile() : null;
+      if ( file != null && file.isFile() ) {
+        response = createFileResponse( file, mediaType, range, ifRange );
+      } else {
+        final StreamingOutput stream = new StreamingOutputWrapper( input.getStream() );
+        response = Response.ok( stream, mediaType );
+      }
 
       response = noCache( response );
       response = calculateContentDisposition( response, state );
@@ -161,12 +273,143 @@ public class JobManager {
       final ExecutionContext context = getContext( jobId );
       final IAsyncReportState responseJson = context.getReportState();
 
+      final int queuePosition = context.getQueuePosition();
+      if ( queuePosition > 0 ) {
+        // the position is not part of the report state
+        @SuppressWarnings( "unchecked" )
+        final Map<String, Object> json = new ObjectMapper().convertValue( responseJson, Map.class );
+        json.put( QUEUE_POSITION, queuePosition );
+        return getJson( json );
+      }
+
       return getJson( responseJson );
     } catch ( final ContextFailedException e ) {
       return get404();
     }
   }
 
+  /**
+   * Status of several jobs at once, for pages showing many reports.
+   *
+   * @param body JSON array of job ids
+   * @return JSON object with the status of every known job by its id, unknown jobs are left out
+   */
+  @POST
+  @Path( "status" )
+  @Consumes( APPLICATION_JSON )
+  @Produces( APPLICATION_JSON )
+  public Response getStatuses( final String body ) {
+    final List<?> jobIds;
+    try {
+      jobIds = new ObjectMapper().readValue( body, List.class );
+    } catch ( final Exception e ) {
+      logger.debug( "Can't read the job ids: ", e );
+      return Response.status( Response.Status.BAD_REQUEST ).build();
+    }
+    if ( jobIds == null || jobIds.size() > MAX_BATCH_STATUS ) {
+      return Response.status( Response.Status.BAD_REQUEST ).build();
+    }
+
+    final List<UUID> uuids = new ArrayList<>( jobIds.size() );
+    for ( final Object jobId : jobIds ) {
+      try {
+        uuids.add( UUID.fromString( String.valueOf( jobId ) ) );
+      } catch ( final IllegalArgumentException e ) {
+        // can't be a job
+      }
+    }
+
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final IPentahoAsyncExecutor<?> executor = getExecutor();
+    final ObjectMapper mapper = new ObjectMapper();
+    final Map<String, Object> json = new LinkedHashMap<>();
+    for ( final Map.Entry<UUID, ? extends IAsyncReportState> entry : executor.getReportStates( uuids, session )
+      .entrySet() ) {
+      final int queuePosition = executor.getQueuePosition( entry.getKey(), session );
+      if ( queuePosition > 0 ) {
+        @SuppressWarnings( "unchecked" )
+        final Map<String, Object> state = mapper.convertValue( entry.getValue(), Map.class );
+        state.put( QUEUE_POSITION, queuePosition );
+        json.put( entry.getKey().toString(), state );
+      } else {
+        json.put( entry.getKey().toString(), entry.getValue() );
+      }
+    }
+    return getJson( json );
+  }
+
+  /**
+   * Long-poll variant of {@link #getStatus(String)}. Answers as soon as the status, the page or the queue position
+   * differs from the one identified by the statusToken of the previous response, or when the wait time is over. A
+   * changed progress ends the wait once the polling interval has passed, row progress alone does not end it.
+   *
+   * @param jobId job id
+   * @param since status token the client has seen, without a token the status is returned at once
+   * @return status with a status token
+   */
+  @GET
+  @Path( "{job_id}/status/wait" )
+  @Produces( APPLICATION_JSON )
+  public Response waitForStatus( @PathParam( "job_id" ) final String jobId, @QueryParam( "since" ) final String since ) {
+    try {
+      final ExecutionContext context = getContext( jobId );
+      final long deadline = System.currentTimeMillis() + config.getStatusWaitMilliseconds();
+      final boolean wait = since != null && config.getStatusWaitMilliseconds() > 0 && statusWaiters.tryAcquire();
+      try {
+        final long progressDue = System.currentTimeMillis() + config.getPollingIntervalMilliseconds();
+        long version = context.awaitStatusChange( -1, 0 );
+        while ( true ) {
+          final IAsyncReportState state = context.getReportState();
+          final int queuePosition = context.getQueuePosition();
+          final Map<String, Object> json = getStatusJson( state, queuePosition );
+          final String token = getStatusToken( state, queuePosition );
+          final long now = System.currentTimeMillis();
+          long timeout = Math.min( deadline - now, STATUS_CHECK_MILLISECONDS );
+          if ( !token.equals( since ) && wait ) {
+            // the bar moves at the pace of a polling client, not at every progress update
+            timeout = isProgressOnly( token, since ) ? Math.min( timeout, progressDue - now ) : 0;
+          }
+          if ( !wait || timeout <= 0 ) {
+            json.put( STATUS_TOKEN, token );
+            return getJson( json );
+          }
+          version = context.awaitStatusChange( version, timeout );
+        }
+      } finally {
+        if ( wait ) {
+          statusWaiters.release();
+        }
+      }
+    } catch ( final ContextFailedException e ) {
+      return get404();
+    } catch ( final InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return getStatus( jobId );
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private Map<String, Object> getStatusJson( final IAsyncReportState state, final int queuePosition ) {
+    final Map<String, Object> json = new ObjectMapper().convertValue( state, Map.class );
+    if ( queuePosition > 0 ) {
+      json.put( QUEUE_POSITION, queuePosition );
+    }
+    return json;
+  }
+
+  /**
+   * The progress goes first, the rest of the token identifies the milestones of the job.
+   */
+  private static String getStatusToken( final IAsyncReportState state, final int queuePosition ) {
+    return state.getProgress() + ":" + state.getStatus() + ":" + state.getPage() + ":" + state.getTotalPages() + ":"
+      + state.getGeneratedPage() + ":" + queuePosition;
+  }
+
+  private static boolean isProgressOnly( final String token, final String since ) {
+    final int separator = since.indexOf( ':' );
+    return separator >= 0 && token.substring( token.indexOf( ':' ) ).equals( since.substring( separator ) );
+  }
+
   private Response getJson( final Object responseJson ) {
     final ObjectMapper mapper = new ObjectMapper();
     try {
@@ -199,7 +442,18 @@ public class JobManager {
     } catch ( final ContextFailedException e ) {
       return get404();
     } catch ( final FutureNotFoundException e ) {
-      return Response.ok().build();
+      //a job run by another node can't be canceled from here
+      return isRunning( jobId ) ? Response.status( Response.Status.CONFLICT ).build() : Response.ok().build();
+    }
+  }
+
+  private boolean isRunning( final String jobId ) {
+    try {
+      final AsyncExecutionStatus status = getContext( jobId ).getReportState().getStatus();
+      return !AsyncExecutionStatus.FINISHED.equals( status ) && !AsyncExecutionStatus.FAILED.equals( status )
+        && !AsyncExecutionStatus.CANCELED.equals( status );
+    } catch ( final ContextFailedException e ) {
+      return false;
     }
   }
 
@@ -243,6 +497,8 @@ public class JobManager {
       return Response.ok().build();
     } catch ( final ContextFailedException e ) {
       return get404();
+    } catch ( final RejectedExecutionException e ) {
+      return getTooManyRequests();
     }
   }
 
@@ -282,6 +538,8 @@ public class JobManager {
       return getJson( Collections.singletonMap( "uuid", context.jobId ) );
     } catch ( final ContextFailedException e ) {
       return get404();
+    } catch ( final RejectedExecutionException e ) {
+      return getTooManyRequests();
     }
   }
 
@@ -309,6 +567,10 @@ public class JobManager {
     return Response.status( Response.Status.NOT_FOUND ).build();
   }
 
+  protected final Response getTooManyRequests() {
+    return Response.status( SC_TOO_MANY_REQUESTS ).header( "Retry-After", RETRY_AFTER_SECONDS ).build();
+  }
+
   /**
    * In-place implementation to support streaming responses. By default - even InputStream passed - streaming is not
    * occurs.
@@ -332,6 +594,118 @@ public class JobManager {
     }
   }
 
+  /**
+   * The length is taken from the file, the staging stream may have been flushed after the content was created.
+   */
+  protected static Response.ResponseBuilder createFileResponse( final File file, final MediaType mediaType,
+                                                                final String range, final String ifRange ) {
+    final long length = file.length();
+    final String entityTag = "\"" + Long.toHexString( file.lastModified() ) + '-' + Long.toHexString( length ) + "\"";
+    long[] byteRange = null;
+    if ( range != null && ( ifRange == null || ifRange.equals( entityTag ) ) ) {
+      byteRange = parseRange( range, length );
+    }
+
+    final Response.ResponseBuilder response;
+    if ( byteRange == null ) {
+      response = Response.ok( new FileChannelOutput( file, 0, length ), mediaType )
+        .header( HttpHeaders.CONTENT_LENGTH, length );
+    } else if ( byteRange == UNSATISFIABLE_RANGE ) {
+      response = Response.status( Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE )
+        .header( CONTENT_RANGE, BYTES + " */" + length );
+    } else {
+      final long count = byteRange[ 1 ] - byteRange[ 0 ] + 1;
+      response = Response.status( Response.Status.PARTIAL_CONTENT )
+        .entity( new FileChannelOutput( file, byteRange[ 0 ], count ) )
+        .type( mediaType )
+        .header( HttpHeaders.CONTENT_LENGTH, count )
+        .header( CONTENT_RANGE, BYTES + ' ' + byteRange[ 0 ] + '-' + byteRange[ 1 ] + '/' + length );
+    }
+    return response.header( ACCEPT_RANGES, BYTES ).header( HttpHeaders.ETAG, entityTag );
+  }
+
+  /**
+   * Only a single range is supported, a request for several ranges is answered with the whole content.
+   *
+   * @param range  value of the Range header
+   * @param length length of the content
+   * @return first and last byte of the range, {@link #UNSATISFIABLE_RANGE} if the range is out of the content, null
+   * to send the whole content
+   */
+  static long[] parseRange( final String range, final long length ) {
+    final String value = range.trim();
+    if ( !value.startsWith( BYTES + '=' ) || value.indexOf( ',' ) >= 0 ) {
+      return null;
+    }
+    final String spec = value.substring( BYTES.length() + 1 ).trim();
+    final int dash = spec.indexOf( '-' );
+    if ( dash < 0 ) {
+      return null;
+    }
+    try {
+      final String first = spec.substring( 0, dash ).trim();
+      final String last = spec.substring( dash + 1 ).trim();
+      final long start;
+      final long end;
+      if ( first.isEmpty() ) {
+        // suffix range, the last bytes of the content
+        final long suffix = Long.parseLong( last );
+        if ( suffix <= 0 ) {
+          return UNSATISFIABLE_RANGE;
+        }
+        start = Math.max( 0, length - suffix );
+        end = length - 1;
+      } else {
+        start = Long.parseLong( first );
+        end = last.isEmpty() ? length - 1 : Math.min( Long.parseLong( last ), length - 1 );
+        if ( end < start ) {
+          return start >= length ? UNSATISFIABLE_RANGE : null;
+        }
+      }
+      if ( start < 0 || start >= length ) {
+        return UNSATISFIABLE_RANGE;
+      }
+      return new long[] { start, end };
+    } catch ( final NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * Sends a part of a file. The target is the servlet output stream wrapped in a channel, so {@link
+   * FileChannel#transferTo} still copies the bytes through a heap buffer, it saves no copy over a plain stream copy.
+   */
+  protected static final class FileChannelOutput implements StreamingOutput {
+
+    private final File file;
+    private final long start;
+    private final long count;
+
+    public FileChannelOutput( final File file, final long start, final long count ) {
+      this.file = file;
+      this.start = start;
+      this.count = count;
+    }
+
+    @Override public void write( final OutputStream outputStream ) throws IOException, WebApplicationException {
+      try ( final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+        final WritableByteChannel target = Channels.newChannel( outputStream );
+        final long end = start + count;
+        long position = start;
+        while ( position < end ) {
+          final long transferred = channel.transferTo( position, end - position, target );
+          if ( transferred <= 0 ) {
+            throw new IOException( "Staged content is shorter than expected: " + file.getName() );
+          }
+          position += transferred;
+        }
+        outputStream.flush();
+      } finally {
+        IOUtils.closeQuietly( outputStream );
+      }
+    }
+  }
+
   protected static Response.ResponseBuilder noCache( final Response.ResponseBuilder response ) {
     // no cache
     final CacheControl cacheControl = new CacheControl();
@@ -401,14 +775,17 @@ public class JobManager {
     private final long pollingIntervalMilliseconds;
     private final long dialogThresholdMilliseconds;
     private final boolean promptForLocation;
+    private final long statusWaitMilliseconds;
 
 
     private Config( final boolean isSupportAsync, final long pollingIntervalMilliseconds,
-                    final long dialogThresholdMilliseconds, final boolean promptForLocation ) {
+                    final long dialogThresholdMilliseconds, final boolean promptForLocation,
+                    final long statusWaitMilliseconds ) {
       this.isSupportAsync = isSupportAsync;
       this.pollingIntervalMilliseconds = pollingIntervalMilliseconds;
       this.dialogThresholdMilliseconds = dialogThresholdMilliseconds;
       this.promptForLocation = promptForLocation;
+      this.statusWaitMilliseconds = statusWaitMilliseconds;
     }
 
 
@@ -428,6 +805,11 @@ public class JobManager {
       return promptForLocation;
     }
 
+    //0 if the client has to poll the status
+    public long getStatusWaitMilliseconds() {
+      return statusWaitMilliseconds;
+    }
+
     //Location can be changed at any time depending on ISchedulingDirectoryStrategy implementation
     public String getDefaultOutputPath() {
       return getLocation();
@@ -492,6 +874,14 @@ public class JobManager {
       return reportState;
     }
 
+    public int getQueuePosition() {
+      return getReportExecutor().getQueuePosition( uuid, session );
+    }
+
+    public long awaitStatusChange( final long knownVersion, final long timeoutMillis ) throws InterruptedException {
+      return getReportExecutor().awaitStatusChange( uuid, session, knownVersion, timeoutMillis );
+    }
+
     public void requestPage( final int page ) throws ContextFailedException {
       //Check if there is a task
       getReportState();
@@ -13,11 +13,18 @@
 
 package org.pentaho.reporting.platform.plugin;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IPluginLifecycleListener;
 import org.pentaho.platform.api.engine.PluginLifecycleException;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.platform.plugin.async.AsyncJobMonitor;
+import org.pentaho.reporting.platform.plugin.async.PentahoAsyncExecutor;
 
 public class LifecycleListener implements IPluginLifecycleListener {
 
+  private static final Log logger = LogFactory.getLog( LifecycleListener.class );
+
   public void init() throws PluginLifecycleException {
     // load reporting plugin
     final ReportingSystemStartupListener startupListener = new ReportingSystemStartupListener();
@@ -25,9 +32,21 @@ public class LifecycleListener implements IPluginLifecycleListener {
   }
 
   public void loaded() throws PluginLifecycleException {
+    // publish the executor metrics and queue the scheduled reports interrupted by the last shutdown again
+    try {
+      final PentahoAsyncExecutor<?> executor =
+        PentahoSystem.get( PentahoAsyncExecutor.class, PentahoAsyncExecutor.BEAN_NAME, null );
+      if ( executor != null ) {
+        new AsyncJobMonitor( executor ).register();
+        executor.recoverJobs();
+      }
+    } catch ( final RuntimeException e ) {
+      logger.error( "Can't recover scheduled reports: ", e );
+    }
   }
 
   public void unLoaded() throws PluginLifecycleException {
+    AsyncJobMonitor.unregister();
   }
 
 }
@@ -16,6 +16,7 @@ package org.pentaho.reporting.platform.plugin;
 import java.net.URL;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,6 +41,8 @@ public class PentahoReportEnvironment extends DefaultReportEnvironment {
   private HashMap<String, String> cache;
   private String clText;
   private String repositoryPath;
+  //shared with clones, so derived reports report back to the original environment
+  private final AtomicBoolean userDependent = new AtomicBoolean();
 
   @Deprecated
   public PentahoReportEnvironment( final Configuration configuration ) {
@@ -74,6 +77,10 @@ public class PentahoReportEnvironment extends DefaultReportEnvironment {
       return clText;
     }
 
+    if ( isUserDependentProperty( key ) ) {
+      userDependent.set( true );
+    }
+
     if ( cache == null ) {
       cache = new HashMap<String, String>();
     }
@@ -207,6 +214,19 @@ public class PentahoReportEnvironment extends DefaultReportEnvironment {
     return String.valueOf( environmentProperty );
   }
 
+  /**
+   * @return true if the report asked for a property that differs between users
+   */
+  public boolean isUserDependent() {
+    return userDependent.get();
+  }
+
+  static boolean isUserDependentProperty( final String key ) {
+    return "username".equals( key ) //$NON-NLS-1$
+      || "roles".equals( key ) //$NON-NLS-1$
+      || key.startsWith( "session:" ); //$NON-NLS-1$
+  }
+
   private String getBaseServerURL( final String fullyQualifiedServerUrl ) {
     try {
       final URL url = new URL( fullyQualifiedServerUrl );
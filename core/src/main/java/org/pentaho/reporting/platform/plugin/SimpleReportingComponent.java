@@ -23,6 +23,7 @@ import org.pentaho.platform.api.engine.IPluginManager;
 import org.pentaho.platform.api.engine.IStreamingPojo;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
 import org.pentaho.reporting.engine.classic.core.ReportInterruptedException;
@@ -48,6 +49,8 @@ import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
 import org.pentaho.reporting.platform.plugin.cache.NullReportCache;
 import org.pentaho.reporting.platform.plugin.cache.ReportCache;
 import org.pentaho.reporting.platform.plugin.cache.ReportCacheKey;
+import org.pentaho.reporting.platform.plugin.datasources.CancelableDataFactory;
+import org.pentaho.reporting.platform.plugin.datasources.QueryCancellation;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
 import org.pentaho.reporting.platform.plugin.output.FastExportReportOutputHandlerFactory;
 import org.pentaho.reporting.platform.plugin.output.ReportOutputHandler;
@@ -135,6 +138,7 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
   private int acceptedPage;
   private int pageCount;
   private boolean dashboardMode;
+  private volatile QueryCancellation queryCancellation;
   /*
    * These fields are for enabling printing
    */
@@ -314,6 +318,19 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
   public void setSession( final IPentahoSession session ) {
   }
 
+  public QueryCancellation getQueryCancellation() {
+    return queryCancellation;
+  }
+
+  /**
+   * Makes the queries of the next executions cancelable
+   *
+   * @param queryCancellation cancellation to register the running data factories with, null to disable
+   */
+  public void setQueryCancellation( final QueryCancellation queryCancellation ) {
+    this.queryCancellation = queryCancellation;
+  }
+
   public boolean isDashboardMode() {
     return dashboardMode;
   }
@@ -916,6 +933,11 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
         .setConfigProperty( "org.pentaho.reporting.engine.classic.core.YieldRate", String.valueOf( yieldRate ) );
     }
 
+    final QueryCancellation cancellation = queryCancellation;
+    final DataFactory originalDataFactory = report.getDataFactory();
+    if ( cancellation != null ) {
+      report.setDataFactory( CancelableDataFactory.wrap( originalDataFactory, cancellation ) );
+    }
     try {
       final DefaultParameterContext parameterContext = new DefaultParameterContext( report );
       // open parameter context
@@ -969,6 +991,10 @@ public class SimpleReportingComponent implements IStreamingPojo, IAcceptsRuntime
       if ( e instanceof ReportProcessingException ) {
         throw e;
       }
+    } finally {
+      if ( cancellation != null ) {
+        report.setDataFactory( originalDataFactory );
+      }
     }
     // lets not pretend we were successfull, if the export type was not a valid one.
     return false;
@@ -12,7 +12,10 @@
 
 package org.pentaho.reporting.platform.plugin.async;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -29,6 +32,7 @@ import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
 import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
 import org.pentaho.reporting.platform.plugin.AuditWrapper;
 import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+import org.pentaho.reporting.platform.plugin.datasources.QueryCancellation;
 import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
@@ -48,7 +52,10 @@ public abstract class AbstractAsyncReportExecution<TReportState extends IAsyncRe
   private static final Log log = LogFactory.getLog( AbstractAsyncReportExecution.class );
 
   private AuditWrapper audit;
-  
+
+  private final QueryCancellation queryCancellation = new QueryCancellation();
+  private volatile Thread executionThread;
+
   protected final MDCUtil mdcUtil = new MDCUtil();
 
   public AbstractAsyncReportExecution( final String url,
@@ -87,6 +94,7 @@ public abstract class AbstractAsyncReportExecution<TReportState extends IAsyncRe
     this.auditId = auditId;
     this.safeSession = safeSession;
     this.audit = audit;
+    reportComponent.setQueryCancellation( queryCancellation );
   }
 
   public void notifyTaskQueued( final UUID id, final List<? extends ReportProgressListener> callbackListeners ) {
@@ -95,7 +103,12 @@ public abstract class AbstractAsyncReportExecution<TReportState extends IAsyncRe
     if ( listener != null ) {
       throw new IllegalStateException( "This instance has already been scheduled." );
     }
-    this.listener = createListener( id, callbackListeners );
+    final List<ReportProgressListener> listeners = new ArrayList<>();
+    if ( callbackListeners != null ) {
+      listeners.addAll( callbackListeners );
+    }
+    listeners.add( new CancellationListener( queryCancellation ) );
+    this.listener = createListener( id, listeners );
   }
 
   protected AsyncReportStatusListener getListener() {
@@ -139,12 +152,47 @@ public abstract class AbstractAsyncReportExecution<TReportState extends IAsyncRe
   protected void cancel() {
     String userName = safeSession == null ? "Unknown" : safeSession.getName();
     log.info( "Report execution canceled: " + url + " , requested by : " + userName );
+    queryCancellation.cancel();
     closeFile();
     if ( listener != null ) {
       listener.cancel();
     }
   }
 
+  protected QueryCancellation getQueryCancellation() {
+    return queryCancellation;
+  }
+
+  /**
+   * Marks the current thread as the one executing the report, call {@link #executionFinished()} in a finally block.
+   */
+  protected void executionStarted() {
+    executionThread = Thread.currentThread();
+  }
+
+  protected void executionFinished() {
+    executionThread = null;
+  }
+
+  /**
+   * @return true while a thread is executing the report
+   */
+  public boolean isExecuting() {
+    return executionThread != null;
+  }
+
+  /**
+   * Cancels the running queries again and interrupts the executing thread. Used when a canceled report does not
+   * stop in time.
+   */
+  void interruptExecution() {
+    queryCancellation.cancel();
+    final Thread thread = executionThread;
+    if ( thread != null ) {
+      thread.interrupt();
+    }
+  }
+
   @Override
   public void requestPage( final int page ) {
     listener.setRequestedPage( page );
@@ -175,6 +223,11 @@ public abstract class AbstractAsyncReportExecution<TReportState extends IAsyncRe
     }
   }
 
+  @Override public boolean redirectOutput( final OutputStream target ) throws IOException {
+    handler.redirect( target );
+    return true;
+  }
+
   public static final IFixedSizeStreamingContent NULL = new NullSizeStreamingContent();
 
   public static final class NullSizeStreamingContent implements IFixedSizeStreamingContent {
@@ -0,0 +1,31 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+/**
+ * Admission classes of the {@link AdmissionQueue}, in the order they are served.
+ */
+public enum AdmissionClass {
+  /**
+   * Paginated viewer requests, the user waits for the first page
+   */
+  INTERACTIVE_FIRST_PAGE,
+  /**
+   * Non paginated viewer requests, the user waits for the whole report
+   */
+  INTERACTIVE_FULL,
+  /**
+   * Exports and reports that are (pre-)scheduled to run in background
+   */
+  BACKGROUND
+}
@@ -0,0 +1,691 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Work queue of the {@link PentahoAsyncExecutor} thread pool.
+ * <p>
+ * Tasks are kept per {@link AdmissionClass} and served in the order of the classes, so viewer requests don't wait
+ * behind exports. Each class holds a limited number of tasks, a task that does not fit is refused and the thread pool
+ * rejects it. Within a class the users are served round robin, so one user can't occupy the pool with a batch of
+ * reports. To keep background work moving under steady interactive load, the lowest waiting class is served after
+ * {@code starvationLimit} tasks were taken from higher classes.
+ * <p>
+ * With a {@link ConcurrencyBudget} a task is only handed to a thread while its user, report and data sources have
+ * room in the budget, the budget is given back by {@link #finished(Ticket)}.
+ * <p>
+ * The pool only hands over the runnable, the class and the owner are passed along with {@link #admit}. Runnables
+ * offered outside of it (internal callbacks) are kept apart: they run before any waiting task, are never refused and
+ * don't count towards the limits of the classes.
+ */
+public class AdmissionQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+  public static final int DEFAULT_STARVATION_LIMIT = 8;
+
+  private static final String INTERNAL = "";
+  private static final AdmissionClass[] CLASSES = AdmissionClass.values();
+
+  private static final ThreadLocal<Ticket> TICKET = new ThreadLocal<>();
+
+  private final int[] limits;
+  private final int starvationLimit;
+  private final ConcurrencyBudget budget;
+  private final List<Map<String, ArrayDeque<Entry>>> queues;
+  //runnables offered without a ticket
+  private final ArrayDeque<Runnable> internal = new ArrayDeque<>();
+  private final int[] sizes;
+  private int count;
+  private int skipped;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  /**
+   * Unbounded queue
+   */
+  public AdmissionQueue() {
+    this( Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE );
+  }
+
+  /**
+   * @param firstPageLimit   maximum of waiting {@link AdmissionClass#INTERACTIVE_FIRST_PAGE} tasks
+   * @param interactiveLimit maximum of waiting {@link AdmissionClass#INTERACTIVE_FULL} tasks
+   * @param backgroundLimit  maximum of waiting {@link AdmissionClass#BACKGROUND} tasks
+   */
+  public AdmissionQueue( final int firstPageLimit, final int interactiveLimit, final int backgroundLimit ) {
+    this( firstPageLimit, interactiveLimit, backgroundLimit, DEFAULT_STARVATION_LIMIT, null );
+  }
+
+  /**
+   * @param firstPageLimit   maximum of waiting {@link AdmissionClass#INTERACTIVE_FIRST_PAGE} tasks
+   * @param interactiveLimit maximum of waiting {@link AdmissionClass#INTERACTIVE_FULL} tasks
+   * @param backgroundLimit  maximum of waiting {@link AdmissionClass#BACKGROUND} tasks
+   * @param budget           limits of the running tasks
+   */
+  public AdmissionQueue( final int firstPageLimit, final int interactiveLimit, final int backgroundLimit,
+                         final ConcurrencyBudget budget ) {
+    this( firstPageLimit, interactiveLimit, backgroundLimit, DEFAULT_STARVATION_LIMIT, budget );
+  }
+
+  /**
+   * @param firstPageLimit   maximum of waiting {@link AdmissionClass#INTERACTIVE_FIRST_PAGE} tasks
+   * @param interactiveLimit maximum of waiting {@link AdmissionClass#INTERACTIVE_FULL} tasks
+   * @param backgroundLimit  maximum of waiting {@link AdmissionClass#BACKGROUND} tasks
+   * @param starvationLimit  tasks taken from higher classes before the lowest waiting class is served, 0 to serve
+   *                         the classes strictly in order
+   */
+  public AdmissionQueue( final int firstPageLimit, final int interactiveLimit, final int backgroundLimit,
+                         final int starvationLimit ) {
+    this( firstPageLimit, interactiveLimit, backgroundLimit, starvationLimit, null );
+  }
+
+  /**
+   * @param firstPageLimit   maximum of waiting {@link AdmissionClass#INTERACTIVE_FIRST_PAGE} tasks
+   * @param interactiveLimit maximum of waiting {@link AdmissionClass#INTERACTIVE_FULL} tasks
+   * @param backgroundLimit  maximum of waiting {@link AdmissionClass#BACKGROUND} tasks
+   * @param starvationLimit  tasks taken from higher classes before the lowest waiting class is served, 0 to serve
+   *                         the classes strictly in order
+   * @param budget           limits of the running tasks, null for none
+   */
+  public AdmissionQueue( final int firstPageLimit, final int interactiveLimit, final int backgroundLimit,
+                         final int starvationLimit, final ConcurrencyBudget budget ) {
+    if ( firstPageLimit < 0 || interactiveLimit < 0 || backgroundLimit < 0 || starvationLimit < 0 ) {
+      throw new IllegalArgumentException( "Limits must not be negative" );
+    }
+    this.limits = new int[] { firstPageLimit, interactiveLimit, backgroundLimit };
+    this.starvationLimit = starvationLimit;
+    this.budget = budget;
+    this.sizes = new int[ CLASSES.length ];
+    this.queues = new ArrayList<>( CLASSES.length );
+    for ( int i = 0; i < CLASSES.length; i++ ) {
+      queues.add( new LinkedHashMap<>() );
+    }
+  }
+
+  /**
+   * Runs the submission of a task, the runnable offered by the pool while doing so is queued with the given class and
+   * user.
+   *
+   * @param admissionClass class of the task
+   * @param user           owner of the task
+   * @param submit         submits the task to the pool that uses this queue
+   * @return result of the submission
+   */
+  public <T> T admit( final AdmissionClass admissionClass, final String user, final Supplier<T> submit ) {
+    return admit( new Ticket( admissionClass, user, null, Collections.<String>emptySet() ), submit );
+  }
+
+  /**
+   * Runs the submission of a task, the runnable offered by the pool while doing so is queued with the ticket. Once
+   * the task is done, the ticket must be passed to {@link #finished(Ticket)}.
+   *
+   * @param ticket describes the task
+   * @param submit submits the task to the pool that uses this queue
+   * @return result of the submission
+   */
+  public <T> T admit( final Ticket ticket, final Supplier<T> submit ) {
+    ArgumentNullException.validate( "ticket", ticket );
+    final Ticket previous = TICKET.get();
+    TICKET.set( ticket );
+    try {
+      return submit.get();
+    } finally {
+      if ( previous == null ) {
+        TICKET.remove();
+      } else {
+        TICKET.set( previous );
+      }
+    }
+  }
+
+  /**
+   * Gives back the budget of a started task or drops a task that is still waiting.
+   *
+   * @param ticket ticket the task was admitted with
+   */
+  public void finished( final Ticket ticket ) {
+    lock.lock();
+    try {
+      if ( ticket.state == Ticket.RUNNING ) {
+        if ( budget != null ) {
+          budget.finish( ticket.user, ticket.reportPath, ticket.dataSources );
+        }
+        notEmpty.signalAll();
+      } else if ( ticket.state == Ticket.WAITING ) {
+        removeEntry( ticket );
+      }
+      ticket.state = Ticket.DONE;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Position of a waiting task, assuming the tasks ahead of it are served in turn and within their budget.
+   *
+   * @param ticket ticket the task was admitted with
+   * @return 1 for the next task to run, 0 if the task is not waiting
+   */
+  public int getPosition( final Ticket ticket ) {
+    lock.lock();
+    try {
+      if ( ticket.state != Ticket.WAITING ) {
+        return 0;
+      }
+      final int index = ticket.admissionClass.ordinal();
+      final ArrayDeque<Entry> own = queues.get( index ).get( ticket.user );
+      if ( own == null ) {
+        return 0;
+      }
+      int round = 0;
+      for ( final Entry entry : own ) {
+        if ( entry.ticket == ticket ) {
+          break;
+        }
+        round += 1;
+      }
+      if ( round == own.size() ) {
+        return 0;
+      }
+
+      int ahead = 0;
+      for ( int i = 0; i < index; i++ ) {
+        ahead += sizes[ i ];
+      }
+      // all users get "round" turns, users served before the owner get one more
+      boolean before = true;
+      for ( final Map.Entry<String, ArrayDeque<Entry>> user : queues.get( index ).entrySet() ) {
+        if ( user.getValue() == own ) {
+          before = false;
+          ahead += round;
+          continue;
+        }
+        ahead += Math.min( user.getValue().size(), before ? round + 1 : round );
+      }
+      return ahead + 1;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public ConcurrencyBudget getBudget() {
+    return budget;
+  }
+
+  public int getLimit( final AdmissionClass admissionClass ) {
+    return limits[ admissionClass.ordinal() ];
+  }
+
+  /**
+   * @return count of waiting tasks of the class
+   */
+  public int size( final AdmissionClass admissionClass ) {
+    lock.lock();
+    try {
+      return sizes[ admissionClass.ordinal() ];
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public boolean offer( final Runnable runnable ) {
+    ArgumentNullException.validate( "runnable", runnable );
+    final Ticket ticket = takeTicket();
+    lock.lock();
+    try {
+      return enqueue( ticket, runnable );
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public void put( final Runnable runnable ) throws InterruptedException {
+    ArgumentNullException.validate( "runnable", runnable );
+    final Ticket ticket = takeTicket();
+    lock.lockInterruptibly();
+    try {
+      while ( !enqueue( ticket, runnable ) ) {
+        notFull.await();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public boolean offer( final Runnable runnable, final long timeout, final TimeUnit unit )
+    throws InterruptedException {
+    ArgumentNullException.validate( "runnable", runnable );
+    final Ticket ticket = takeTicket();
+    long nanos = unit.toNanos( timeout );
+    lock.lockInterruptibly();
+    try {
+      while ( !enqueue( ticket, runnable ) ) {
+        if ( nanos <= 0 ) {
+          return false;
+        }
+        nanos = notFull.awaitNanos( nanos );
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return next task within the budget, null if there is none
+   */
+  @Override public Runnable poll() {
+    lock.lock();
+    try {
+      return dequeue();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public Runnable take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Runnable runnable;
+      while ( ( runnable = dequeue() ) == null ) {
+        notEmpty.await();
+      }
+      return runnable;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public Runnable poll( final long timeout, final TimeUnit unit ) throws InterruptedException {
+    long nanos = unit.toNanos( timeout );
+    lock.lockInterruptibly();
+    try {
+      Runnable runnable;
+      while ( ( runnable = dequeue() ) == null ) {
+        if ( nanos <= 0 ) {
+          return null;
+        }
+        nanos = notEmpty.awaitNanos( nanos );
+      }
+      return runnable;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public Runnable peek() {
+    lock.lock();
+    try {
+      if ( !internal.isEmpty() ) {
+        return internal.peekFirst();
+      }
+      for ( final Map<String, ArrayDeque<Entry>> queue : queues ) {
+        if ( !queue.isEmpty() ) {
+          return queue.values().iterator().next().peekFirst().runnable;
+        }
+      }
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public int remainingCapacity() {
+    lock.lock();
+    try {
+      long remaining = 0;
+      for ( int i = 0; i < limits.length; i++ ) {
+        remaining += limits[ i ] - sizes[ i ];
+      }
+      return (int) Math.min( Integer.MAX_VALUE, remaining );
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override public boolean remove( final Object o ) {
+    if ( o == null ) {
+      return false;
+    }
+    lock.lock();
+    try {
+      if ( internal.remove( o ) ) {
+        count -= 1;
+        return true;
+      }
+      for ( int i = 0; i < queues.size(); i++ ) {
+        final Iterator<ArrayDeque<Entry>> users = queues.get( i ).values().iterator();
+        while ( users.hasNext() ) {
+          final ArrayDeque<Entry> entries = users.next();
+          final Iterator<Entry> it = entries.iterator();
+          while ( it.hasNext() ) {
+            if ( it.next().runnable.equals( o ) ) {
+              it.remove();
+              if ( entries.isEmpty() ) {
+                users.remove();
+              }
+              removed( i );
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drains the waiting tasks regardless of the budget.
+   */
+  @Override public int drainTo( final Collection<? super Runnable> c ) {
+    return drainTo( c, Integer.MAX_VALUE );
+  }
+
+  /**
+   * Drains the waiting tasks regardless of the budget.
+   */
+  @Override public int drainTo( final Collection<? super Runnable> c, final int maxElements ) {
+    ArgumentNullException.validate( "c", c );
+    if ( c == this ) {
+      throw new IllegalArgumentException();
+    }
+    lock.lock();
+    try {
+      int drained = 0;
+      while ( !internal.isEmpty() && drained < maxElements ) {
+        c.add( internal.pollFirst() );
+        count -= 1;
+        drained += 1;
+      }
+      for ( int i = 0; i < queues.size() && drained < maxElements; i++ ) {
+        final Iterator<ArrayDeque<Entry>> users = queues.get( i ).values().iterator();
+        while ( users.hasNext() && drained < maxElements ) {
+          final ArrayDeque<Entry> entries = users.next();
+          while ( !entries.isEmpty() && drained < maxElements ) {
+            final Entry entry = entries.pollFirst();
+            entry.ticket.state = Ticket.DONE;
+            c.add( entry.runnable );
+            removed( i );
+            drained += 1;
+          }
+          if ( entries.isEmpty() ) {
+            users.remove();
+          }
+        }
+      }
+      return drained;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Iterates over a snapshot of the queue in the order of the classes.
+   */
+  @Override public Iterator<Runnable> iterator() {
+    final List<Runnable> snapshot = new ArrayList<>();
+    lock.lock();
+    try {
+      snapshot.addAll( internal );
+      for ( final Map<String, ArrayDeque<Entry>> queue : queues ) {
+        for ( final ArrayDeque<Entry> entries : queue.values() ) {
+          for ( final Entry entry : entries ) {
+            snapshot.add( entry.runnable );
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return new Iterator<Runnable>() {
+      private final Iterator<Runnable> parent = snapshot.iterator();
+      private Runnable last;
+
+      @Override public boolean hasNext() {
+        return parent.hasNext();
+      }
+
+      @Override public Runnable next() {
+        last = parent.next();
+        return last;
+      }
+
+      @Override public void remove() {
+        if ( last == null ) {
+          throw new IllegalStateException();
+        }
+        AdmissionQueue.this.remove( last );
+        last = null;
+      }
+    };
+  }
+
+  private static Ticket takeTicket() {
+    final Ticket ticket = TICKET.get();
+    if ( ticket == null ) {
+      return null;
+    }
+    // one ticket admits one runnable
+    TICKET.remove();
+    return ticket;
+  }
+
+  private boolean enqueue( final Ticket ticket, final Runnable runnable ) {
+    if ( ticket == null ) {
+      internal.addLast( runnable );
+      count += 1;
+      notEmpty.signal();
+      return true;
+    }
+    final int index = ticket.admissionClass.ordinal();
+    if ( ticket.state != Ticket.NEW || sizes[ index ] >= limits[ index ] ) {
+      return false;
+    }
+    ticket.state = Ticket.WAITING;
+    queues.get( index ).computeIfAbsent( ticket.user, k -> new ArrayDeque<>() )
+      .addLast( new Entry( runnable, ticket ) );
+    sizes[ index ] += 1;
+    count += 1;
+    notEmpty.signal();
+    return true;
+  }
+
+  private Runnable dequeue() {
+    if ( !internal.isEmpty() ) {
+      // internal work is short and often completes a task that is already running
+      count -= 1;
+      return internal.pollFirst();
+    }
+    int first = -1;
+    int last = -1;
+    for ( int i = 0; i < sizes.length; i++ ) {
+      if ( sizes[ i ] > 0 ) {
+        if ( first < 0 ) {
+          first = i;
+        }
+        last = i;
+      }
+    }
+    if ( first < 0 ) {
+      return null;
+    }
+
+    Entry entry = null;
+    int served = -1;
+    if ( first != last && starvationLimit > 0 && skipped >= starvationLimit ) {
+      entry = dequeue( last );
+      served = last;
+    }
+    for ( int i = first; entry == null && i <= last; i++ ) {
+      entry = dequeue( i );
+      served = i;
+    }
+    if ( entry == null ) {
+      return null;
+    }
+    skipped = served == last ? 0 : skipped + 1;
+
+    entry.ticket.state = Ticket.RUNNING;
+    entry.ticket.startedAt = System.currentTimeMillis();
+    if ( budget != null ) {
+      budget.start( entry.ticket.user, entry.ticket.reportPath, entry.ticket.dataSources );
+    }
+    return entry.runnable;
+  }
+
+  /**
+   * Takes the first task of the class within the budget and sends its user to the end of the line.
+   */
+  private Entry dequeue( final int index ) {
+    final Map<String, ArrayDeque<Entry>> queue = queues.get( index );
+    for ( final Map.Entry<String, ArrayDeque<Entry>> user : queue.entrySet() ) {
+      final ArrayDeque<Entry> entries = user.getValue();
+      final Iterator<Entry> it = entries.iterator();
+      while ( it.hasNext() ) {
+        final Entry entry = it.next();
+        if ( isWithinBudget( entry.ticket ) ) {
+          it.remove();
+          queue.remove( user.getKey() );
+          if ( !entries.isEmpty() ) {
+            queue.put( user.getKey(), entries );
+          }
+          removed( index );
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  private boolean isWithinBudget( final Ticket ticket ) {
+    return budget == null || budget.canStart( ticket.user, ticket.reportPath, ticket.dataSources );
+  }
+
+  private void removeEntry( final Ticket ticket ) {
+    final int index = ticket.admissionClass.ordinal();
+    final Map<String, ArrayDeque<Entry>> queue = queues.get( index );
+    final ArrayDeque<Entry> entries = queue.get( ticket.user );
+    if ( entries == null ) {
+      return;
+    }
+    final Iterator<Entry> it = entries.iterator();
+    while ( it.hasNext() ) {
+      if ( it.next().ticket == ticket ) {
+        it.remove();
+        if ( entries.isEmpty() ) {
+          queue.remove( ticket.user );
+        }
+        removed( index );
+        return;
+      }
+    }
+  }
+
+  private void removed( final int index ) {
+    sizes[ index ] -= 1;
+    count -= 1;
+    notFull.signalAll();
+  }
+
+  private static final class Entry {
+    private final Runnable runnable;
+    private final Ticket ticket;
+
+    private Entry( final Runnable runnable, final Ticket ticket ) {
+      this.runnable = runnable;
+      this.ticket = ticket;
+    }
+  }
+
+  /**
+   * Describes a task for the queue. A ticket admits one task.
+   */
+  public static final class Ticket {
+    private static final int NEW = 0;
+    private static final int WAITING = 1;
+    private static final int RUNNING = 2;
+    private static final int DONE = 3;
+
+    private final AdmissionClass admissionClass;
+    private final String user;
+    private final String reportPath;
+    private final Collection<String> dataSources;
+    private final long createdAt = System.currentTimeMillis();
+    // guarded by the queue lock
+    private int state = NEW;
+    private volatile long startedAt;
+
+    /**
+     * @param admissionClass class of the task
+     * @param user           owner of the task
+     * @param reportPath     path of the report, may be null
+     * @param dataSources    data sources used by the report
+     */
+    public Ticket( final AdmissionClass admissionClass, final String user, final String reportPath,
+                   final Collection<String> dataSources ) {
+      ArgumentNullException.validate( "admissionClass", admissionClass );
+      ArgumentNullException.validate( "dataSources", dataSources );
+      this.admissionClass = admissionClass;
+      this.user = user == null ? INTERNAL : user;
+      this.reportPath = reportPath;
+      this.dataSources = dataSources;
+    }
+
+    public AdmissionClass getAdmissionClass() {
+      return admissionClass;
+    }
+
+    /**
+     * @return time the ticket was created
+     */
+    public long getCreatedAt() {
+      return createdAt;
+    }
+
+    /**
+     * @return time the task was handed to a thread, 0 if it did not start yet
+     */
+    public long getStartedAt() {
+      return startedAt;
+    }
+  }
+}
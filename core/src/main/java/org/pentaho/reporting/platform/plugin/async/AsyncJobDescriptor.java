@@ -0,0 +1,196 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Durable description of a scheduled async job, written to the {@link AsyncJobJournal} so the job can be queued again
+ * after a restart. Holds what is needed to set up the report component again and the progress of the last checkpoint.
+ */
+public class AsyncJobDescriptor implements Serializable {
+
+  private static final long serialVersionUID = 20161108L;
+
+  private final UUID id;
+  private final String user;
+  private final String auditId;
+  private final String reportPath;
+  private final Serializable reportFileId;
+  private final String outputType;
+  private final String defaultOutputTarget;
+  private final boolean forceDefaultOutputTarget;
+  private final boolean forceUnlockPreferredOutput;
+  private final boolean paginateOutput;
+  private final HashMap<String, Serializable> inputs;
+  private int attempts;
+
+  private String status;
+  private int progress;
+  private int row;
+  private int totalRows;
+  private int page;
+  private int totalPages;
+  private String activity;
+  private long checkpointTime;
+
+  /**
+   * @param id              id of the job
+   * @param user            owner of the job
+   * @param auditId         audit id of the execution
+   * @param reportPath      path of the report
+   * @param reportComponent component of the job, its inputs that are not serializable are left out
+   */
+  public AsyncJobDescriptor( final UUID id, final String user, final String auditId, final String reportPath,
+                             final SimpleReportingComponent reportComponent ) {
+    ArgumentNullException.validate( "id", id );
+    ArgumentNullException.validate( "user", user );
+    ArgumentNullException.validate( "reportPath", reportPath );
+    ArgumentNullException.validate( "reportComponent", reportComponent );
+    this.id = id;
+    this.user = user;
+    this.auditId = auditId;
+    this.reportPath = reportPath;
+    this.reportFileId = reportComponent.getReportFileId();
+    this.outputType = reportComponent.getOutputType();
+    this.defaultOutputTarget = reportComponent.getDefaultOutputTarget();
+    this.forceDefaultOutputTarget = reportComponent.isForceDefaultOutputTarget();
+    this.forceUnlockPreferredOutput = reportComponent.isForceUnlockPreferredOutput();
+    this.paginateOutput = reportComponent.isPaginateOutput();
+    this.inputs = new HashMap<>();
+    for ( final Map.Entry<String, Object> input : reportComponent.getInputs().entrySet() ) {
+      if ( input.getValue() instanceof Serializable ) {
+        inputs.put( input.getKey(), (Serializable) input.getValue() );
+      }
+    }
+  }
+
+  /**
+   * @return report component set up like the one of the job, without output stream
+   */
+  public SimpleReportingComponent createReportComponent() {
+    final SimpleReportingComponent reportComponent = new SimpleReportingComponent();
+    reportComponent.setReportFileId( reportFileId );
+    reportComponent.setPaginateOutput( paginateOutput );
+    reportComponent.setForceDefaultOutputTarget( forceDefaultOutputTarget );
+    if ( defaultOutputTarget != null ) {
+      reportComponent.setDefaultOutputTarget( defaultOutputTarget );
+    }
+    reportComponent.setForceUnlockPreferredOutput( forceUnlockPreferredOutput );
+    reportComponent.setInputs( new HashMap<String, Object>( inputs ) );
+    if ( outputType != null ) {
+      reportComponent.setOutputType( outputType );
+    }
+    return reportComponent;
+  }
+
+  /**
+   * Records the progress of the job
+   *
+   * @param state current state of the job
+   */
+  public synchronized void checkpoint( final IAsyncReportState state ) {
+    if ( state != null ) {
+      this.status = state.getStatus() == null ? null : state.getStatus().name();
+      this.progress = state.getProgress();
+      this.row = state.getRow();
+      this.totalRows = state.getTotalRows();
+      this.page = state.getPage();
+      this.totalPages = state.getTotalPages();
+      this.activity = state.getActivity();
+    }
+    this.checkpointTime = System.currentTimeMillis();
+  }
+
+  private synchronized void writeObject( final ObjectOutputStream out ) throws IOException {
+    // a checkpoint may be recorded meanwhile
+    out.defaultWriteObject();
+  }
+
+  public UUID getId() {
+    return id;
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public String getAuditId() {
+    return auditId;
+  }
+
+  public String getReportPath() {
+    return reportPath;
+  }
+
+  public Map<String, Serializable> getInputs() {
+    return Collections.unmodifiableMap( inputs );
+  }
+
+  /**
+   * @return times the job was queued again after a restart
+   */
+  public synchronized int getAttempts() {
+    return attempts;
+  }
+
+  synchronized void setAttempts( final int attempts ) {
+    this.attempts = attempts;
+  }
+
+  public synchronized String getStatus() {
+    return status;
+  }
+
+  public synchronized int getProgress() {
+    return progress;
+  }
+
+  public synchronized int getRow() {
+    return row;
+  }
+
+  public synchronized int getTotalRows() {
+    return totalRows;
+  }
+
+  public synchronized int getPage() {
+    return page;
+  }
+
+  public synchronized int getTotalPages() {
+    return totalPages;
+  }
+
+  public synchronized String getActivity() {
+    return activity;
+  }
+
+  /**
+   * @return time of the last checkpoint, 0 if there was none
+   */
+  public synchronized long getCheckpointTime() {
+    return checkpointTime;
+  }
+}
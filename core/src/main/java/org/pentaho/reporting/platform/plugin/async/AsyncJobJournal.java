@@ -0,0 +1,152 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps the descriptors of the scheduled async jobs in a directory, one file per job. The directory is outside of the
+ * async staging directory, which is removed on shutdown.
+ */
+public class AsyncJobJournal {
+
+  public static final String DEFAULT_JOURNAL_DIR = "system/tmp/asyncjournal";
+  private static final String POSTFIX = ".job";
+
+  private static final Log log = LogFactory.getLog( AsyncJobJournal.class );
+
+  private final String solutionPath;
+  private File directory;
+
+  /**
+   * Journal in {@link #DEFAULT_JOURNAL_DIR}
+   */
+  public AsyncJobJournal() {
+    this( DEFAULT_JOURNAL_DIR );
+  }
+
+  /**
+   * @param solutionPath journal directory, relative to the solution
+   */
+  public AsyncJobJournal( final String solutionPath ) {
+    ArgumentNullException.validate( "solutionPath", solutionPath );
+    this.solutionPath = solutionPath;
+  }
+
+  /**
+   * @param directory journal directory
+   */
+  public AsyncJobJournal( final File directory ) {
+    ArgumentNullException.validate( "directory", directory );
+    this.solutionPath = null;
+    this.directory = directory;
+  }
+
+  /**
+   * @return journal directory, null while the solution is not available
+   */
+  synchronized File getDirectory() {
+    if ( directory == null ) {
+      final IApplicationContext context = PentahoSystem.getApplicationContext();
+      final String path = context == null ? null : context.getSolutionPath( solutionPath );
+      if ( path != null ) {
+        directory = new File( path );
+      }
+    }
+    return directory;
+  }
+
+  /**
+   * Writes the descriptor, replacing the previous one of the job.
+   *
+   * @param descriptor job to write
+   * @return true if written
+   */
+  public boolean write( final AsyncJobDescriptor descriptor ) {
+    final File dir = getDirectory();
+    if ( dir == null || !dir.isDirectory() && !dir.mkdirs() ) {
+      log.warn( "Can't create async job journal, job is not recoverable: " + descriptor.getReportPath() );
+      return false;
+    }
+    final File file = new File( dir, descriptor.getId() + POSTFIX );
+    final File tmp = new File( dir, descriptor.getId() + POSTFIX + ".tmp" );
+    try {
+      try ( final FileOutputStream fout = new FileOutputStream( tmp );
+            final ObjectOutputStream oos = new ObjectOutputStream( fout ) ) {
+        oos.writeObject( descriptor );
+      }
+      // readers see either the previous or the new checkpoint
+      Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE );
+      return true;
+    } catch ( final IOException e ) {
+      log.error( "Can't write async job journal: ", e );
+      tmp.delete();
+      return false;
+    }
+  }
+
+  /**
+   * @param id job to remove
+   */
+  public void remove( final UUID id ) {
+    final File dir = getDirectory();
+    if ( dir != null ) {
+      final File file = new File( dir, id + POSTFIX );
+      if ( file.exists() && !file.delete() ) {
+        log.warn( "Can't remove job from async job journal: " + file );
+      }
+    }
+  }
+
+  /**
+   * Unreadable entries, for instance written by an incompatible version or holding classes a job descriptor is not
+   * made of, are removed.
+   *
+   * @return descriptors of the journal
+   */
+  public List<AsyncJobDescriptor> load() {
+    final List<AsyncJobDescriptor> descriptors = new ArrayList<>();
+    final File dir = getDirectory();
+    final File[] files = dir == null ? null : dir.listFiles( ( d, name ) -> name.endsWith( POSTFIX ) );
+    if ( files == null ) {
+      return descriptors;
+    }
+    for ( final File file : files ) {
+      try ( final FileInputStream fin = new FileInputStream( file );
+            final AsyncJobObjectInputStream ois = new AsyncJobObjectInputStream( fin ) ) {
+        descriptors.add( (AsyncJobDescriptor) ois.readObject() );
+      } catch ( final IOException | ClassNotFoundException | ClassCastException e ) {
+        log.warn( "Can't read async job journal entry, removing it: " + file.getName(), e );
+        file.delete();
+      }
+    }
+    return descriptors;
+  }
+}
@@ -0,0 +1,179 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the jobs of the {@link PentahoAsyncExecutor} by outcome and records the time they waited for a thread and
+ * ran, per output type.
+ */
+public class AsyncJobMetrics {
+
+  /**
+   * Upper bounds (ms) of the histogram buckets, the last bucket takes all longer times
+   */
+  public static final long[] BUCKETS = { 100, 500, 1000, 5000, 10000, 30000, 60000, 300000, 900000 };
+
+  private static final String UNKNOWN_TYPE = "unknown";
+  private static final String OVERFLOW_BUCKET = "+Inf";
+
+  public enum Outcome {
+    COMPLETED, FAILED, CANCELLED
+  }
+
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder cancelled = new LongAdder();
+  private final ConcurrentMap<String, Histogram> waitTimes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> runTimes = new ConcurrentHashMap<>();
+
+  public void submitted() {
+    submitted.increment();
+  }
+
+  public void rejected() {
+    rejected.increment();
+  }
+
+  /**
+   * @param outputType mime type of the job
+   * @param outcome    how the job ended
+   * @param createdAt  time the job was submitted
+   * @param startedAt  time the job got a thread, 0 if it never started
+   * @param finishedAt time the job ended
+   */
+  public void finished( final String outputType, final Outcome outcome, final long createdAt, final long startedAt,
+                        final long finishedAt ) {
+    switch ( outcome ) {
+      case COMPLETED:
+        completed.increment();
+        break;
+      case FAILED:
+        failed.increment();
+        break;
+      default:
+        cancelled.increment();
+        break;
+    }
+    if ( startedAt <= 0 ) {
+      return;
+    }
+    final String type = outputType == null ? UNKNOWN_TYPE : outputType;
+    waitTimes.computeIfAbsent( type, key -> new Histogram() ).record( startedAt - createdAt );
+    runTimes.computeIfAbsent( type, key -> new Histogram() ).record( finishedAt - startedAt );
+  }
+
+  public long getSubmitted() {
+    return submitted.sum();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  public long getCompleted() {
+    return completed.sum();
+  }
+
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  public long getCancelled() {
+    return cancelled.sum();
+  }
+
+  /**
+   * @return time the jobs waited for a thread by output type
+   */
+  public Map<String, Histogram> getWaitTimes() {
+    return Collections.unmodifiableMap( new TreeMap<>( waitTimes ) );
+  }
+
+  /**
+   * @return time the jobs ran by output type
+   */
+  public Map<String, Histogram> getRunTimes() {
+    return Collections.unmodifiableMap( new TreeMap<>( runTimes ) );
+  }
+
+  /**
+   * Time histogram with the fixed {@link #BUCKETS}
+   */
+  public static final class Histogram {
+    private final LongAdder[] counts = new LongAdder[ BUCKETS.length + 1 ];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator( Math::max, 0 );
+
+    private Histogram() {
+      for ( int i = 0; i < counts.length; i++ ) {
+        counts[ i ] = new LongAdder();
+      }
+    }
+
+    void record( final long time ) {
+      final long millis = Math.max( 0, time );
+      int bucket = 0;
+      while ( bucket < BUCKETS.length && millis > BUCKETS[ bucket ] ) {
+        bucket++;
+      }
+      counts[ bucket ].increment();
+      total.add( millis );
+      max.accumulate( millis );
+    }
+
+    public long getCount() {
+      long count = 0;
+      for ( final LongAdder adder : counts ) {
+        count += adder.sum();
+      }
+      return count;
+    }
+
+    public long getTotalTime() {
+      return total.sum();
+    }
+
+    public long getMaxTime() {
+      return max.get();
+    }
+
+    public long getMeanTime() {
+      final long count = getCount();
+      return count == 0 ? 0 : getTotalTime() / count;
+    }
+
+    /**
+     * @return count of times up to the bucket bound (ms), "+Inf" for the longer ones
+     */
+    public Map<String, Long> getBuckets() {
+      final Map<String, Long> buckets = new LinkedHashMap<>();
+      for ( int i = 0; i < BUCKETS.length; i++ ) {
+        buckets.put( String.valueOf( BUCKETS[ i ] ), counts[ i ].sum() );
+      }
+      buckets.put( OVERFLOW_BUCKET, counts[ BUCKETS.length ].sum() );
+      return buckets;
+    }
+  }
+}
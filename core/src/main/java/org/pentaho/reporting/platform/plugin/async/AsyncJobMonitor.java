@@ -0,0 +1,182 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports queue length, thread usage, job counters and time histograms of the {@link PentahoAsyncExecutor}, both as a
+ * JMX bean and as a map for the REST api.
+ */
+public class AsyncJobMonitor implements AsyncJobMonitorMXBean {
+
+  public static final String OBJECT_NAME = "org.pentaho.reporting.platform.plugin:type=AsyncJobMonitor";
+
+  private static final Log log = LogFactory.getLog( AsyncJobMonitor.class );
+
+  private final PentahoAsyncExecutor<?> executor;
+
+  public AsyncJobMonitor( final PentahoAsyncExecutor<?> executor ) {
+    ArgumentNullException.validate( "executor", executor );
+    this.executor = executor;
+  }
+
+  /**
+   * Registers the monitor with the platform MBean server, replacing the monitor of a previous executor.
+   *
+   * @return true if the monitor is registered
+   */
+  public boolean register() {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = new ObjectName( OBJECT_NAME );
+      if ( server.isRegistered( name ) ) {
+        server.unregisterMBean( name );
+      }
+      server.registerMBean( this, name );
+      return true;
+    } catch ( final JMException | RuntimeException e ) {
+      log.warn( "Can't register async job monitor: ", e );
+      return false;
+    }
+  }
+
+  /**
+   * Removes the monitor registered last from the platform MBean server.
+   */
+  public static void unregister() {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = new ObjectName( OBJECT_NAME );
+      if ( server.isRegistered( name ) ) {
+        server.unregisterMBean( name );
+      }
+    } catch ( final JMException | RuntimeException e ) {
+      log.debug( "Can't unregister async job monitor: ", e );
+    }
+  }
+
+  @Override public int getPoolSize() {
+    return executor.getPoolSize();
+  }
+
+  @Override public int getActiveThreads() {
+    return executor.getActiveThreadCount();
+  }
+
+  @Override public int getQueueLength() {
+    return executor.getQueueLength();
+  }
+
+  @Override public long getSubmittedJobs() {
+    return executor.getJobMetrics().getSubmitted();
+  }
+
+  @Override public long getRejectedJobs() {
+    return executor.getJobMetrics().getRejected();
+  }
+
+  @Override public long getCompletedJobs() {
+    return executor.getJobMetrics().getCompleted();
+  }
+
+  @Override public long getFailedJobs() {
+    return executor.getJobMetrics().getFailed();
+  }
+
+  @Override public long getCancelledJobs() {
+    return executor.getJobMetrics().getCancelled();
+  }
+
+  @Override public long getStagingDiskUsage() {
+    return AsyncJobFileStagingHandler.getStagingDiskUsage();
+  }
+
+  @Override public Map<String, Map<String, Long>> getWaitTimeHistograms() {
+    return getBuckets( executor.getJobMetrics().getWaitTimes() );
+  }
+
+  @Override public Map<String, Map<String, Long>> getRunTimeHistograms() {
+    return getBuckets( executor.getJobMetrics().getRunTimes() );
+  }
+
+  @Override public Map<String, Long> getMeanWaitTimes() {
+    return getMeans( executor.getJobMetrics().getWaitTimes() );
+  }
+
+  @Override public Map<String, Long> getMeanRunTimes() {
+    return getMeans( executor.getJobMetrics().getRunTimes() );
+  }
+
+  /**
+   * @return all values of the monitor, histograms include count, mean and maximum time
+   */
+  public Map<String, Object> getSnapshot() {
+    final AsyncJobMetrics metrics = executor.getJobMetrics();
+    final Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put( "poolSize", getPoolSize() );
+    snapshot.put( "activeThreads", getActiveThreads() );
+    snapshot.put( "queueLength", getQueueLength() );
+    snapshot.put( "submitted", metrics.getSubmitted() );
+    snapshot.put( "rejected", metrics.getRejected() );
+    snapshot.put( "completed", metrics.getCompleted() );
+    snapshot.put( "failed", metrics.getFailed() );
+    snapshot.put( "cancelled", metrics.getCancelled() );
+    snapshot.put( "stagingDiskUsage", getStagingDiskUsage() );
+    snapshot.put( "waitTime", getHistograms( metrics.getWaitTimes() ) );
+    snapshot.put( "runTime", getHistograms( metrics.getRunTimes() ) );
+    return snapshot;
+  }
+
+  private static Map<String, Map<String, Object>> getHistograms(
+    final Map<String, AsyncJobMetrics.Histogram> histograms ) {
+    final Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+    for ( final Map.Entry<String, AsyncJobMetrics.Histogram> entry : histograms.entrySet() ) {
+      final AsyncJobMetrics.Histogram histogram = entry.getValue();
+      final Map<String, Object> json = new LinkedHashMap<>();
+      json.put( "count", histogram.getCount() );
+      json.put( "mean", histogram.getMeanTime() );
+      json.put( "max", histogram.getMaxTime() );
+      json.put( "buckets", histogram.getBuckets() );
+      result.put( entry.getKey(), json );
+    }
+    return result;
+  }
+
+  private static Map<String, Map<String, Long>> getBuckets( final Map<String, AsyncJobMetrics.Histogram> histograms ) {
+    final Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+    for ( final Map.Entry<String, AsyncJobMetrics.Histogram> entry : histograms.entrySet() ) {
+      result.put( entry.getKey(), entry.getValue().getBuckets() );
+    }
+    return result;
+  }
+
+  private static Map<String, Long> getMeans( final Map<String, AsyncJobMetrics.Histogram> histograms ) {
+    final Map<String, Long> result = new LinkedHashMap<>();
+    for ( final Map.Entry<String, AsyncJobMetrics.Histogram> entry : histograms.entrySet() ) {
+      result.put( entry.getKey(), entry.getValue().getMeanTime() );
+    }
+    return result;
+  }
+}
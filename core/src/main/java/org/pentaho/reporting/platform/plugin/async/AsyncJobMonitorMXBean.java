@@ -0,0 +1,49 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link PentahoAsyncExecutor}. Times are in milliseconds, histograms map the upper bound of a bucket
+ * to the count of jobs in it.
+ */
+public interface AsyncJobMonitorMXBean {
+
+  int getPoolSize();
+
+  int getActiveThreads();
+
+  int getQueueLength();
+
+  long getSubmittedJobs();
+
+  long getRejectedJobs();
+
+  long getCompletedJobs();
+
+  long getFailedJobs();
+
+  long getCancelledJobs();
+
+  long getStagingDiskUsage();
+
+  Map<String, Map<String, Long>> getWaitTimeHistograms();
+
+  Map<String, Map<String, Long>> getRunTimeHistograms();
+
+  Map<String, Long> getMeanWaitTimes();
+
+  Map<String, Long> getMeanRunTimes();
+}
@@ -0,0 +1,41 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads the job descriptors and job records persisted by the async executor. Only the classes they are made of and
+ * the usual parameter value types are accepted, so a tampered journal or job store file can't make the server load
+ * arbitrary classes. Other classes fail with an {@link java.io.InvalidClassException}.
+ */
+class AsyncJobObjectInputStream extends ObjectInputStream {
+
+  static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+    "maxdepth=20;"
+      + "org.pentaho.reporting.platform.plugin.async.AsyncJobDescriptor;"
+      + "org.pentaho.reporting.platform.plugin.async.AsyncJobRecord;"
+      + "org.pentaho.reporting.platform.plugin.async.AsyncJobRecord$State;"
+      + "org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;"
+      + "java.lang.*;java.util.*;java.math.*;java.time.*;"
+      + "java.sql.Date;java.sql.Time;java.sql.Timestamp;"
+      + "!*" );
+
+  AsyncJobObjectInputStream( final InputStream in ) throws IOException {
+    super( in );
+    setObjectInputFilter( FILTER );
+  }
+}
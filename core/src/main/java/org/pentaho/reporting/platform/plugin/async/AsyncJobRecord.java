@@ -0,0 +1,168 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
+import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * State of an async job as published to the {@link IAsyncJobStore}, together with the owner of the job and the node
+ * running it.
+ */
+public class AsyncJobRecord implements Serializable {
+
+  private static final long serialVersionUID = 20161215L;
+
+  private final String user;
+  private final String nodeId;
+  private final long updatedAt;
+  private final State state;
+
+  /**
+   * @param user   owner of the job
+   * @param nodeId node running the job, null while it is queued for any node
+   * @param state  current state of the job, copied
+   */
+  public AsyncJobRecord( final String user, final String nodeId, final IAsyncReportState state ) {
+    ArgumentNullException.validate( "user", user );
+    ArgumentNullException.validate( "state", state );
+    ArgumentNullException.validate( "uuid", state.getUuid() );
+    this.user = user;
+    this.nodeId = nodeId;
+    this.updatedAt = System.currentTimeMillis();
+    this.state = new State( state );
+  }
+
+  public UUID getId() {
+    return state.getUuid();
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * @return time the record was created
+   */
+  public long getUpdatedAt() {
+    return updatedAt;
+  }
+
+  public IAsyncReportState getState() {
+    return state;
+  }
+
+  /**
+   * @param user user asking for the job
+   * @return true if the job belongs to the user
+   */
+  public boolean isOwner( final String user ) {
+    return this.user.equals( user );
+  }
+
+  private static final class State implements IAsyncReportState, Serializable {
+
+    private static final long serialVersionUID = 20161215L;
+
+    private final UUID uuid;
+    private final String path;
+    private final AsyncExecutionStatus status;
+    private final int progress;
+    private final int page;
+    private final int totalPages;
+    private final int generatedPage;
+    private final int row;
+    private final int totalRows;
+    private final String activity;
+    private final String mimeType;
+    private final String errorMessage;
+    private final boolean isQueryLimitReached;
+
+    private State( final IAsyncReportState state ) {
+      this.uuid = state.getUuid();
+      this.path = state.getPath();
+      this.status = state.getStatus();
+      this.progress = state.getProgress();
+      this.page = state.getPage();
+      this.totalPages = state.getTotalPages();
+      this.generatedPage = state.getGeneratedPage();
+      this.row = state.getRow();
+      this.totalRows = state.getTotalRows();
+      this.activity = state.getActivity();
+      this.mimeType = state.getMimeType();
+      this.errorMessage = state.getErrorMessage();
+      this.isQueryLimitReached = state.getIsQueryLimitReached();
+    }
+
+    @Override public String getPath() {
+      return path;
+    }
+
+    @Override public UUID getUuid() {
+      return uuid;
+    }
+
+    @Override public AsyncExecutionStatus getStatus() {
+      return status;
+    }
+
+    @Override public int getProgress() {
+      return progress;
+    }
+
+    @Override public int getPage() {
+      return page;
+    }
+
+    @Override public int getTotalPages() {
+      return totalPages;
+    }
+
+    @Override public int getGeneratedPage() {
+      return generatedPage;
+    }
+
+    @Override public int getRow() {
+      return row;
+    }
+
+    @Override public int getTotalRows() {
+      return totalRows;
+    }
+
+    @Override public String getActivity() {
+      return activity;
+    }
+
+    @Override public String getMimeType() {
+      return mimeType;
+    }
+
+    @Override public String getErrorMessage() {
+      return errorMessage;
+    }
+
+    @Override public boolean getIsQueryLimitReached() {
+      return isQueryLimitReached;
+    }
+  }
+}
@@ -23,22 +23,32 @@ class AutoScheduleListener implements ReportProgressListener {
 
   private boolean scheduled = false;
   private int threshold;
+  private boolean expectedSlow;
   private UUID id;
   private IPentahoSession session;
   private IPentahoAsyncExecutor pentahoAsyncExecutor;
 
   protected AutoScheduleListener( final UUID id, final IPentahoSession session, final int threshold,
                                   final IPentahoAsyncExecutor pentahoAsyncExecutor ) {
+    this( id, session, threshold, false, pentahoAsyncExecutor );
+  }
+
+  /**
+   * @param expectedSlow the report is expected to exceed the time budget and is pre-scheduled as soon as it starts
+   */
+  protected AutoScheduleListener( final UUID id, final IPentahoSession session, final int threshold,
+                                  final boolean expectedSlow, final IPentahoAsyncExecutor pentahoAsyncExecutor ) {
     this.id = id;
     this.threshold = threshold;
+    this.expectedSlow = expectedSlow;
     this.session = session;
 
     this.pentahoAsyncExecutor = pentahoAsyncExecutor;
   }
 
   private synchronized void autoSchedule( final ReportProgressEvent reportProgressEvent ) {
-    if ( !scheduled && threshold > 0 && reportProgressEvent != null
-      && reportProgressEvent.getMaximumRow() > threshold ) {
+    if ( !scheduled && ( expectedSlow || threshold > 0 && reportProgressEvent != null
+      && reportProgressEvent.getMaximumRow() > threshold ) ) {
       //Auto scheduling always needs confirmation
       pentahoAsyncExecutor.preSchedule( id, session );
       scheduled = true;
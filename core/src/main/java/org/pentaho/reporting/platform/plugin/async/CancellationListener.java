@@ -0,0 +1,48 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
+import org.pentaho.reporting.platform.plugin.datasources.QueryCancellation;
+
+/**
+ * Interrupts the processing thread on every progress event once the execution is canceled, so the report processor
+ * stops at the next yield point even if the interrupt sent with the cancel was swallowed.
+ */
+class CancellationListener implements ReportProgressListener {
+
+  private final QueryCancellation cancellation;
+
+  CancellationListener( final QueryCancellation cancellation ) {
+    this.cancellation = cancellation;
+  }
+
+  private void checkCanceled() {
+    if ( cancellation.isCanceled() ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override public void reportProcessingStarted( final ReportProgressEvent reportProgressEvent ) {
+    checkCanceled();
+  }
+
+  @Override public void reportProcessingUpdate( final ReportProgressEvent reportProgressEvent ) {
+    checkCanceled();
+  }
+
+  @Override public void reportProcessingFinished( final ReportProgressEvent reportProgressEvent ) {
+    // nothing left to stop
+  }
+}
@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits the reports running at the same time per user, per report path and per data source. A limit of 0 or less
+ * means unlimited. The budget is not thread safe, it is guarded by the {@link AdmissionQueue} it belongs to.
+ */
+public class ConcurrencyBudget {
+
+  private final int maxPerUser;
+  private final int maxPerReport;
+  private final int maxPerDataSource;
+
+  private final Map<String, Integer> users = new HashMap<>();
+  private final Map<String, Integer> reports = new HashMap<>();
+  private final Map<String, Integer> dataSources = new HashMap<>();
+
+  /**
+   * @param maxPerUser       maximum of running reports of a user
+   * @param maxPerReport     maximum of running reports with the same path
+   * @param maxPerDataSource maximum of running reports using the same data source
+   */
+  public ConcurrencyBudget( final int maxPerUser, final int maxPerReport, final int maxPerDataSource ) {
+    this.maxPerUser = maxPerUser;
+    this.maxPerReport = maxPerReport;
+    this.maxPerDataSource = maxPerDataSource;
+  }
+
+  public int getMaxPerUser() {
+    return maxPerUser;
+  }
+
+  public int getMaxPerReport() {
+    return maxPerReport;
+  }
+
+  public int getMaxPerDataSource() {
+    return maxPerDataSource;
+  }
+
+  /**
+   * @return true if the data sources of the reports are taken into account
+   */
+  public boolean isDataSourceLimited() {
+    return maxPerDataSource > 0;
+  }
+
+  boolean canStart( final String user, final String report, final Collection<String> usedDataSources ) {
+    if ( !hasRoom( users, user, maxPerUser ) || !hasRoom( reports, report, maxPerReport ) ) {
+      return false;
+    }
+    for ( final String dataSource : usedDataSources ) {
+      if ( !hasRoom( dataSources, dataSource, maxPerDataSource ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void start( final String user, final String report, final Collection<String> usedDataSources ) {
+    add( users, user, 1 );
+    add( reports, report, 1 );
+    for ( final String dataSource : usedDataSources ) {
+      add( dataSources, dataSource, 1 );
+    }
+  }
+
+  void finish( final String user, final String report, final Collection<String> usedDataSources ) {
+    add( users, user, -1 );
+    add( reports, report, -1 );
+    for ( final String dataSource : usedDataSources ) {
+      add( dataSources, dataSource, -1 );
+    }
+  }
+
+  int getRunning( final String user ) {
+    final Integer running = users.get( user );
+    return running == null ? 0 : running;
+  }
+
+  private static boolean hasRoom( final Map<String, Integer> running, final String key, final int max ) {
+    if ( max <= 0 || key == null ) {
+      return true;
+    }
+    final Integer count = running.get( key );
+    return count == null || count < max;
+  }
+
+  private static void add( final Map<String, Integer> running, final String key, final int delta ) {
+    if ( key == null ) {
+      return;
+    }
+    final int count = running.getOrDefault( key, 0 ) + delta;
+    if ( count <= 0 ) {
+      running.remove( key );
+    } else {
+      running.put( key, count );
+    }
+  }
+}
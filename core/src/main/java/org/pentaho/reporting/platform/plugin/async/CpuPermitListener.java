@@ -0,0 +1,96 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Holds a CPU permit while the report is processed. The queries have already run when processing starts, so a task
+ * waiting for its data does not take a permit from the tasks doing layout.
+ */
+class CpuPermitListener implements ReportProgressListener {
+
+  private final Semaphore cpuPermits;
+  private boolean held;
+  private boolean closed;
+
+  CpuPermitListener( final Semaphore cpuPermits ) {
+    this.cpuPermits = cpuPermits;
+  }
+
+  synchronized boolean isHeld() {
+    return held;
+  }
+
+  private void acquire() {
+    synchronized ( this ) {
+      if ( held || closed ) {
+        return;
+      }
+    }
+    try {
+      cpuPermits.acquire();
+    } catch ( final InterruptedException e ) {
+      // canceled while waiting, the report processor will notice it
+      Thread.currentThread().interrupt();
+      return;
+    }
+    synchronized ( this ) {
+      if ( !closed ) {
+        held = true;
+        return;
+      }
+    }
+    // the task is already done
+    cpuPermits.release();
+  }
+
+  /**
+   * Gives the permit back, can be called any number of times
+   */
+  void release() {
+    synchronized ( this ) {
+      if ( !held ) {
+        return;
+      }
+      held = false;
+    }
+    cpuPermits.release();
+  }
+
+  /**
+   * Called when the task is done, the permit is released and won't be taken again
+   */
+  void close() {
+    synchronized ( this ) {
+      closed = true;
+    }
+    release();
+  }
+
+  @Override public void reportProcessingStarted( final ReportProgressEvent reportProgressEvent ) {
+    acquire();
+  }
+
+  @Override public void reportProcessingUpdate( final ReportProgressEvent reportProgressEvent ) {
+    // processing may have been started before the listener was registered
+    acquire();
+  }
+
+  @Override public void reportProcessingFinished( final ReportProgressEvent reportProgressEvent ) {
+    release();
+  }
+}
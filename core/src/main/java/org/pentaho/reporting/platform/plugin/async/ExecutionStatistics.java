@@ -0,0 +1,194 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Execution statistics of the reports run by the {@link PentahoAsyncExecutor}, used to predict the time of a report
+ * before it starts.
+ * <p>
+ * Runs are kept per report path, output type and parameter fingerprint, recent runs weigh more than older ones. A
+ * report that did not run with the same parameters yet is estimated from all its runs with the same output type. The
+ * number of entries is limited, the least recently used ones are dropped.
+ */
+public class ExecutionStatistics {
+
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  /**
+   * Weight of the latest run in the estimate
+   */
+  private static final double WEIGHT = 0.3;
+
+  /**
+   * Inputs that don't change the data of a report
+   */
+  private static final Set<String> IGNORED_INPUTS = new HashSet<>( Arrays.asList(
+    SimpleReportingComponent.ACCEPTED_PAGE,
+    SimpleReportingComponent.REPORTHTML_CONTENTHANDLER_PATTERN,
+    SimpleReportingComponent.REPORTGENERATE_YIELDRATE,
+    SimpleReportingComponent.REPORTLOAD_RESURL,
+    "renderMode" ) ); //$NON-NLS-1$
+
+  private final Map<String, Estimate> estimates;
+
+  public ExecutionStatistics() {
+    this( DEFAULT_CAPACITY );
+  }
+
+  /**
+   * @param capacity maximum of kept estimates
+   */
+  public ExecutionStatistics( final int capacity ) {
+    if ( capacity <= 0 ) {
+      throw new IllegalArgumentException( "Capacity must be positive" );
+    }
+    this.estimates = new LinkedHashMap<String, Estimate>( 16, 0.75f, true ) {
+      @Override protected boolean removeEldestEntry( final Map.Entry<String, Estimate> eldest ) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Records a finished run.
+   *
+   * @param reportPath  path of the report
+   * @param outputType  output type of the run
+   * @param fingerprint parameter fingerprint of the run, see {@link #fingerprint(Map)}
+   * @param duration    processing time in milliseconds
+   * @param rows        rows processed
+   * @param pages       pages generated
+   */
+  public synchronized void record( final String reportPath, final String outputType, final String fingerprint,
+                                   final long duration, final int rows, final int pages ) {
+    update( key( reportPath, outputType, fingerprint ), duration, rows, pages );
+    if ( fingerprint != null ) {
+      update( key( reportPath, outputType, null ), duration, rows, pages );
+    }
+  }
+
+  private void update( final String key, final long duration, final int rows, final int pages ) {
+    final Estimate estimate = estimates.get( key );
+    estimates.put( key, estimate == null ? new Estimate( duration, rows, pages, 1 )
+      : estimate.add( duration, rows, pages ) );
+  }
+
+  /**
+   * @param reportPath  path of the report
+   * @param outputType  output type of the run
+   * @param fingerprint parameter fingerprint of the run, see {@link #fingerprint(Map)}
+   * @return estimate of the run, null if the report did not run with this output type yet
+   */
+  public synchronized Estimate getEstimate( final String reportPath, final String outputType,
+                                            final String fingerprint ) {
+    final Estimate estimate = estimates.get( key( reportPath, outputType, fingerprint ) );
+    if ( estimate != null || fingerprint == null ) {
+      return estimate;
+    }
+    return estimates.get( key( reportPath, outputType, null ) );
+  }
+
+  public synchronized int size() {
+    return estimates.size();
+  }
+
+  public synchronized void clear() {
+    estimates.clear();
+  }
+
+  private static String key( final String reportPath, final String outputType, final String fingerprint ) {
+    return reportPath + '\n' + outputType + '\n' + ( fingerprint == null ? "*" : fingerprint );
+  }
+
+  /**
+   * Inputs that only control the rendering of the output, like the accepted page, are left out.
+   *
+   * @param inputs inputs of the report component
+   * @return fingerprint of the parameter values
+   */
+  public static String fingerprint( final Map<String, Object> inputs ) {
+    final StringBuilder b = new StringBuilder();
+    if ( inputs != null ) {
+      for ( final Map.Entry<String, Object> entry : new TreeMap<>( inputs ).entrySet() ) {
+        if ( IGNORED_INPUTS.contains( entry.getKey() ) ) {
+          continue;
+        }
+        b.append( entry.getKey() ).append( '=' );
+        final Object value = entry.getValue();
+        if ( value instanceof Object[] ) {
+          b.append( Arrays.deepToString( (Object[]) value ) );
+        } else {
+          b.append( value );
+        }
+        b.append( '\n' );
+      }
+    }
+    return Integer.toHexString( b.toString().hashCode() );
+  }
+
+  /**
+   * Expected processing time, rows and pages of a run
+   */
+  public static final class Estimate {
+    private final long duration;
+    private final int rows;
+    private final int pages;
+    private final int samples;
+
+    Estimate( final long duration, final int rows, final int pages, final int samples ) {
+      this.duration = duration;
+      this.rows = rows;
+      this.pages = pages;
+      this.samples = samples;
+    }
+
+    private Estimate add( final long duration, final int rows, final int pages ) {
+      return new Estimate( Math.round( this.duration + WEIGHT * ( duration - this.duration ) ),
+        (int) Math.round( this.rows + WEIGHT * ( rows - this.rows ) ),
+        (int) Math.round( this.pages + WEIGHT * ( pages - this.pages ) ),
+        samples == Integer.MAX_VALUE ? samples : samples + 1 );
+    }
+
+    /**
+     * @return expected processing time in milliseconds
+     */
+    public long getDuration() {
+      return duration;
+    }
+
+    public int getRows() {
+      return rows;
+    }
+
+    public int getPages() {
+      return pages;
+    }
+
+    /**
+     * @return number of runs the estimate is based on
+     */
+    public int getSamples() {
+      return samples;
+    }
+  }
+}
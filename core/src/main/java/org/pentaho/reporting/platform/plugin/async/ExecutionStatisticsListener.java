@@ -0,0 +1,68 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Records the execution time, rows and pages of a report to the {@link ExecutionStatistics} once the report is
+ * processed. The time is measured from the start of the task, so it includes the queries that run before the report
+ * processing starts. Failed and canceled reports don't finish processing and are not recorded.
+ */
+class ExecutionStatisticsListener implements ReportProgressListener {
+
+  private final ExecutionStatistics statistics;
+  private final String reportPath;
+  private final String outputType;
+  private final String fingerprint;
+  private final LongSupplier taskStarted;
+  private long started;
+  private boolean recorded;
+
+  /**
+   * @param taskStarted time the task was taken from the queue, 0 if unknown. The processing start is used then.
+   */
+  ExecutionStatisticsListener( final ExecutionStatistics statistics, final String reportPath,
+                               final String outputType, final String fingerprint, final LongSupplier taskStarted ) {
+    this.statistics = statistics;
+    this.reportPath = reportPath;
+    this.outputType = outputType;
+    this.fingerprint = fingerprint;
+    this.taskStarted = taskStarted;
+  }
+
+  @Override public synchronized void reportProcessingStarted( final ReportProgressEvent event ) {
+    if ( started == 0 ) {
+      started = System.currentTimeMillis();
+    }
+  }
+
+  @Override public void reportProcessingUpdate( final ReportProgressEvent event ) {
+
+  }
+
+  @Override public synchronized void reportProcessingFinished( final ReportProgressEvent event ) {
+    if ( started == 0 || recorded || event == null ) {
+      return;
+    }
+    recorded = true;
+    final long taskStartedAt = taskStarted.getAsLong();
+    final long start = taskStartedAt > 0 && taskStartedAt < started ? taskStartedAt : started;
+    statistics.record( reportPath, outputType, fingerprint, System.currentTimeMillis() - start,
+      event.getMaximumRow(), event.getPage() );
+  }
+}
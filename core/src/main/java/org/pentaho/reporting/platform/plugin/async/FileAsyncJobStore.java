@@ -0,0 +1,216 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
+import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
+import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Job store in a directory shared by the nodes, for instance on a network file system. Files are written to a
+ * temporary name and moved in place, so readers never see a partial file, and a queued job is claimed by moving it to
+ * the directory of the node, which succeeds for one node only. A job claimed by a node that stops is lost like the jobs
+ * running on it.
+ */
+public class FileAsyncJobStore implements IAsyncJobStore {
+
+  private static final String JOBS_DIR = "jobs";
+  private static final String CONTENT_DIR = "content";
+  private static final String QUEUE_DIR = "queue";
+  private static final String CLAIMED_DIR = "claimed";
+  private static final String STATE_POSTFIX = ".state";
+  private static final String JOB_POSTFIX = ".job";
+  private static final String TMP_POSTFIX = ".tmp";
+
+  private static final Log log = LogFactory.getLog( FileAsyncJobStore.class );
+
+  private final File directory;
+
+  /**
+   * @param directory store directory, created if missing
+   */
+  public FileAsyncJobStore( final File directory ) {
+    ArgumentNullException.validate( "directory", directory );
+    this.directory = directory;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override public void publish( final AsyncJobRecord record ) throws IOException {
+    write( new File( getDir( JOBS_DIR ), record.getId() + STATE_POSTFIX ), record );
+  }
+
+  @Override public AsyncJobRecord get( final UUID id ) {
+    final Object record = read( new File( new File( directory, JOBS_DIR ), id + STATE_POSTFIX ) );
+    return record instanceof AsyncJobRecord ? (AsyncJobRecord) record : null;
+  }
+
+  @Override public void remove( final UUID id ) {
+    delete( new File( new File( directory, JOBS_DIR ), id + STATE_POSTFIX ) );
+    delete( new File( new File( directory, CONTENT_DIR ), id.toString() ) );
+    delete( new File( new File( directory, QUEUE_DIR ), id + JOB_POSTFIX ) );
+  }
+
+  @Override public void expire( final long updatedBefore ) {
+    final File[] files = new File( directory, JOBS_DIR ).listFiles( ( d, name ) -> name.endsWith( STATE_POSTFIX ) );
+    if ( files == null ) {
+      return;
+    }
+    for ( final File file : files ) {
+      final Object record = read( file );
+      if ( record instanceof AsyncJobRecord && isEnded( (AsyncJobRecord) record )
+        && ( (AsyncJobRecord) record ).getUpdatedAt() < updatedBefore ) {
+        log.debug( "Removing expired async job from the job store: " + file.getName() );
+        remove( ( (AsyncJobRecord) record ).getId() );
+      }
+    }
+  }
+
+  private static boolean isEnded( final AsyncJobRecord record ) {
+    final IAsyncReportState state = record.getState();
+    if ( state == null ) {
+      return false;
+    }
+    final AsyncExecutionStatus status = state.getStatus();
+    return AsyncExecutionStatus.FINISHED.equals( status ) || AsyncExecutionStatus.FAILED.equals( status )
+      || AsyncExecutionStatus.CANCELED.equals( status );
+  }
+
+  @Override public void storeContent( final UUID id, final IFixedSizeStreamingContent content ) throws IOException {
+    final File dir = getDir( CONTENT_DIR );
+    final File tmp = new File( dir, id + "." + UUID.randomUUID() + TMP_POSTFIX );
+    try ( final InputStream in = content.getStream() ) {
+      if ( in == null ) {
+        throw new IOException( "Content of the job is not available: " + id );
+      }
+      Files.copy( in, tmp.toPath() );
+      Files.move( tmp.toPath(), new File( dir, id.toString() ).toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE );
+    } finally {
+      delete( tmp );
+    }
+  }
+
+  @Override public IFixedSizeStreamingContent getContent( final UUID id ) {
+    final File file = new File( new File( directory, CONTENT_DIR ), id.toString() );
+    return file.isFile() ? new AsyncJobFileStagingHandler.FixedSizeStagingContent( file ) : null;
+  }
+
+  @Override public void dispatch( final AsyncJobDescriptor descriptor ) throws IOException {
+    write( new File( getDir( QUEUE_DIR ), descriptor.getId() + JOB_POSTFIX ), descriptor );
+  }
+
+  @Override public AsyncJobDescriptor claim( final String nodeId ) {
+    ArgumentNullException.validate( "nodeId", nodeId );
+    final File[] files = new File( directory, QUEUE_DIR ).listFiles( ( d, name ) -> name.endsWith( JOB_POSTFIX ) );
+    if ( files == null || files.length == 0 ) {
+      return null;
+    }
+    Arrays.sort( files, Comparator.comparingLong( File::lastModified ) );
+    final File claimedDir = new File( new File( directory, CLAIMED_DIR ), nodeId.replaceAll( "[^\\w.-]", "_" ) );
+    if ( !claimedDir.isDirectory() && !claimedDir.mkdirs() ) {
+      log.warn( "Can't create directory of the claimed async jobs: " + claimedDir );
+      return null;
+    }
+    for ( final File file : files ) {
+      final File claimed = new File( claimedDir, file.getName() );
+      try {
+        Files.move( file.toPath(), claimed.toPath(), StandardCopyOption.ATOMIC_MOVE );
+      } catch ( final NoSuchFileException e ) {
+        // claimed by another node
+        continue;
+      } catch ( final IOException e ) {
+        log.warn( "Can't claim queued async job: " + file.getName(), e );
+        continue;
+      }
+      final Object descriptor = read( claimed );
+      delete( claimed );
+      if ( descriptor instanceof AsyncJobDescriptor ) {
+        return (AsyncJobDescriptor) descriptor;
+      }
+    }
+    return null;
+  }
+
+  private File getDir( final String name ) throws IOException {
+    final File dir = new File( directory, name );
+    if ( !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory() ) {
+      throw new IOException( "Can't create async job store directory: " + dir );
+    }
+    return dir;
+  }
+
+  private static void write( final File file, final Serializable value ) throws IOException {
+    final File tmp = new File( file.getParentFile(), file.getName() + "." + UUID.randomUUID() + TMP_POSTFIX );
+    try {
+      try ( final FileOutputStream fout = new FileOutputStream( tmp );
+            final ObjectOutputStream oos = new ObjectOutputStream( fout ) ) {
+        oos.writeObject( value );
+      }
+      Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    } finally {
+      delete( tmp );
+    }
+  }
+
+  /**
+   * Unreadable files, for instance written by an incompatible version or holding classes a job record or descriptor
+   * is not made of, are removed.
+   *
+   * @return object of the file, null if missing or unreadable
+   */
+  private static Object read( final File file ) {
+    if ( !file.isFile() ) {
+      return null;
+    }
+    try ( final FileInputStream fin = new FileInputStream( file );
+          final AsyncJobObjectInputStream ois = new AsyncJobObjectInputStream( fin ) ) {
+      return ois.readObject();
+    } catch ( final FileNotFoundException e ) {
+      // removed meanwhile
+      return null;
+    } catch ( final IOException | ClassNotFoundException e ) {
+      log.warn( "Can't read async job store entry, removing it: " + file.getName(), e );
+      delete( file );
+      return null;
+    }
+  }
+
+  private static void delete( final File file ) {
+    if ( file.exists() && !file.delete() ) {
+      log.debug( "Can't delete async job store file: " + file );
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Store shared by the nodes of a cluster, so an async job can be submitted on one node, run on any node with free
+ * capacity and be queried from any node. Holds the last published state of the jobs, the content of the finished jobs
+ * and the queue of the jobs waiting for a node.
+ */
+public interface IAsyncJobStore {
+
+  /**
+   * Saves the state of a job, replacing the previous one
+   *
+   * @param record state of the job
+   * @throws IOException if the state can't be saved
+   */
+  void publish( AsyncJobRecord record ) throws IOException;
+
+  /**
+   * @param id job id
+   * @return last published state of the job, null if unknown
+   */
+  AsyncJobRecord get( UUID id );
+
+  /**
+   * Removes the state, the content and the queue entry of a job
+   *
+   * @param id job id
+   */
+  void remove( UUID id );
+
+  /**
+   * Removes the finished, failed and canceled jobs whose state was not published since the given time. Queued and
+   * running jobs are kept however long they take.
+   *
+   * @param updatedBefore time in milliseconds
+   */
+  void expire( long updatedBefore );
+
+  /**
+   * Saves the content of a finished job, the content is read from its stream
+   *
+   * @param id      job id
+   * @param content content of the job
+   * @throws IOException if the content can't be saved
+   */
+  void storeContent( UUID id, IFixedSizeStreamingContent content ) throws IOException;
+
+  /**
+   * @param id job id
+   * @return saved content of the job, null if there is none
+   */
+  IFixedSizeStreamingContent getContent( UUID id );
+
+  /**
+   * Queues a job to be run by the next node that has free capacity
+   *
+   * @param descriptor job to run
+   * @throws IOException if the job can't be queued
+   */
+  void dispatch( AsyncJobDescriptor descriptor ) throws IOException;
+
+  /**
+   * Takes the oldest queued job, each job is handed to one node only
+   *
+   * @param nodeId node that runs the job
+   * @return job to run, null if the queue is empty
+   */
+  AsyncJobDescriptor claim( String nodeId );
+}
@@ -17,6 +17,8 @@ import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
 import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -54,4 +56,16 @@ public interface IAsyncReportExecution<V extends IAsyncReportState> extends Call
   boolean schedule();
 
   boolean preSchedule();
+
+  /**
+   * Writes the generated content to the given stream instead of staging it, used to store scheduled reports without
+   * copying them afterwards.
+   *
+   * @param target stream to write the content to, stays open when the task is done
+   * @return false if the task can't redirect its output
+   * @throws IOException if the content generated so far can't be sent to the target
+   */
+  default boolean redirectOutput( final OutputStream target ) throws IOException {
+    return false;
+  }
 }
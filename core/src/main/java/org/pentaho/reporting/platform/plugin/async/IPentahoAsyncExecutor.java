@@ -19,6 +19,9 @@ import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Future;
 
@@ -34,6 +37,43 @@ public interface IPentahoAsyncExecutor<TReportState extends IAsyncReportState> {
 
   TReportState getReportState( UUID id, IPentahoSession session );
 
+  /**
+   * @return states of the known tasks in the order of the ids, unknown tasks are left out
+   */
+  default Map<UUID, TReportState> getReportStates( final Collection<UUID> ids, final IPentahoSession session ) {
+    final Map<UUID, TReportState> states = new LinkedHashMap<>();
+    for ( final UUID id : ids ) {
+      final TReportState state = getReportState( id, session );
+      if ( state != null ) {
+        states.put( id, state );
+      }
+    }
+    return states;
+  }
+
+  /**
+   * @return position of a task waiting to be started, 0 if the task is not waiting or the position is unknown
+   */
+  default int getQueuePosition( UUID id, IPentahoSession session ) {
+    return 0;
+  }
+
+  /**
+   * Waits until the state of a task changes. Executors that can't tell when the state changes wait for the timeout.
+   *
+   * @param knownVersion  version returned by the previous call, the call returns at once if it is outdated
+   * @param timeoutMillis maximum time to wait
+   * @return version of the task's state
+   * @throws InterruptedException if interrupted while waiting
+   */
+  default long awaitStatusChange( UUID id, IPentahoSession session, long knownVersion, long timeoutMillis )
+    throws InterruptedException {
+    if ( timeoutMillis > 0 ) {
+      Thread.sleep( timeoutMillis );
+    }
+    return 0;
+  }
+
   void requestPage( UUID id, IPentahoSession session, int page );
 
   boolean schedule( UUID uuid, IPentahoSession session );
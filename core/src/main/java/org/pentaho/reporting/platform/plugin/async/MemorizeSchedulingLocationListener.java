@@ -14,6 +14,7 @@
 package org.pentaho.reporting.platform.plugin.async;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -24,14 +25,18 @@ public class MemorizeSchedulingLocationListener {
 
   private ReentrantLock lock = new ReentrantLock();
 
-  private ConcurrentHashMap<PentahoAsyncExecutor.CompositeKey, Serializable> locationMap = new ConcurrentHashMap<>();
+  // by session id, so that a logout only touches the files of its session
+  private ConcurrentHashMap<String, Map<PentahoAsyncExecutor.CompositeKey, Serializable>> locationMap =
+    new ConcurrentHashMap<>();
 
   public void recordOutputFile( final PentahoAsyncExecutor.CompositeKey key, final Serializable fileId ) {
-    locationMap.put( key, fileId );
+    locationMap.computeIfAbsent( getSessionId( key ), sessionId -> new ConcurrentHashMap<>() ).put( key, fileId );
   }
 
   public Serializable lookupOutputFile( final PentahoAsyncExecutor.CompositeKey key ) {
-    return locationMap.get( key );
+    final Map<PentahoAsyncExecutor.CompositeKey, Serializable> sessionLocations =
+      locationMap.get( getSessionId( key ) );
+    return sessionLocations == null ? null : sessionLocations.get( key );
   }
 
   public void shutdown() {
@@ -39,7 +44,12 @@ public class MemorizeSchedulingLocationListener {
   }
 
   public void onLogout( final String sessionId ) {
-    this.locationMap.keySet().removeIf( k -> k.isSameSession( sessionId ) );
+    this.locationMap.remove( sessionId == null ? "" : sessionId );
+  }
+
+  private static String getSessionId( final PentahoAsyncExecutor.CompositeKey key ) {
+    final String sessionId = key.getSessionId();
+    return sessionId == null ? "" : sessionId;
   }
 
   public void lock() {
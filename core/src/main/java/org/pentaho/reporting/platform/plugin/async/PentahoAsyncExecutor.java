@@ -13,32 +13,50 @@
 
 package org.pentaho.reporting.platform.plugin.async;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.ILogoutListener;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.util.StringUtil;
+import org.pentaho.platform.util.UUIDUtil;
+import org.pentaho.reporting.engine.classic.core.CompoundDataFactory;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
 import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
 import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.engine.classic.core.metadata.DataFactoryMetaData;
 import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
 import org.pentaho.reporting.libraries.base.util.StringUtils;
+import org.pentaho.reporting.platform.plugin.AuditWrapper;
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
 import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
@@ -46,20 +64,68 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
   implements ILogoutListener, IPentahoAsyncExecutor<TReportState> {
 
   public static final String BEAN_NAME = "IPentahoAsyncExecutor";
 
+  /**
+   * Time a canceled report gets to stop before it is interrupted again and the pool gets a thread to replace it
+   */
+  public static final long DEFAULT_CANCEL_GRACE_PERIOD = 5000L;
+  /**
+   * How often finished jobs are checked for expiry
+   */
+  public static final long EXPIRY_SWEEP_INTERVAL = 60000L;
+  /**
+   * How often the progress of the journaled jobs is written
+   */
+  public static final long CHECKPOINT_INTERVAL = 30000L;
+  /**
+   * Restarts a journaled job is queued again after, a job that keeps taking the server down is dropped
+   */
+  public static final int DEFAULT_MAX_RECOVERY_ATTEMPTS = 3;
+  /**
+   * Time in milliseconds between the publications of the changed job states to the job store
+   */
+  public static final long JOB_STORE_SYNC_INTERVAL = 1000L;
+
   private static final Log log = LogFactory.getLog( PentahoAsyncExecutor.class );
 
   private Map<CompositeKey, ListenableFuture<IFixedSizeStreamingContent>> futures = new ConcurrentHashMap<>();
   private Map<CompositeKey, IAsyncReportExecution<TReportState>> tasks = new ConcurrentHashMap<>();
+  private Map<CompositeKey, AdmissionQueue.Ticket> tickets = new ConcurrentHashMap<>();
+  private Map<CompositeKey, StatusChangeNotifier> statusNotifiers = new ConcurrentHashMap<>();
+  private final SessionKeyIndex sessionKeys = new SessionKeyIndex();
+  private Map<CompositeKey, Long> finishedAt = new ConcurrentHashMap<>();
+  private volatile long finishedJobTimeToLive;
+  private Map<CompositeKey, AsyncJobDescriptor> journaled = new ConcurrentHashMap<>();
+  private volatile AsyncJobJournal jobJournal;
+  private volatile int maxRecoveryAttempts = DEFAULT_MAX_RECOVERY_ATTEMPTS;
+  private volatile boolean shuttingDown;
+  private volatile IAsyncJobStore jobStore;
+  private volatile String nodeId = UUIDUtil.getUUIDAsString();
+  private Map<CompositeKey, Long> publishedVersions = new ConcurrentHashMap<>();
+  private final Set<CompositeKey> claimed = ConcurrentHashMap.newKeySet();
+  private final Object publishLock = new Object();
 
   private ListeningExecutorService executorService;
+  private final ThreadPoolExecutor pool;
+  private final int capacity;
+  //threads added for canceled reports that are still running, guarded by this
+  private int compensationThreads;
+  private final ScheduledExecutorService maintenance;
+  private volatile long cancelGracePeriod = DEFAULT_CANCEL_GRACE_PERIOD;
+  private final AdmissionQueue admissionQueue;
+  private final Semaphore cpuPermits;
 
   private final int autoSchedulerThreshold;
+  private final ExecutionStatistics statistics = new ExecutionStatistics();
+  private final AsyncJobMetrics metrics = new AsyncJobMetrics();
+  private volatile long interactiveTimeBudget;
+  private volatile boolean streamScheduledOutput;
   private final MemorizeSchedulingLocationListener schedulingLocationListener;
   private Map<CompositeKey, ISchedulingListener> writeToJcrListeners;
 
@@ -68,24 +134,111 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
    * @param autoSchedulerThreshold quantity of rows after which reports are automatically scheduled
    */
   public PentahoAsyncExecutor( final int capacity, final int autoSchedulerThreshold ) {
+    this( capacity, autoSchedulerThreshold, new AdmissionQueue() );
+  }
+
+  /**
+   * @param capacity               thread pool capacity
+   * @param autoSchedulerThreshold quantity of rows after which reports are automatically scheduled
+   * @param admissionQueue         queue of the tasks waiting for a thread, tasks it refuses are rejected
+   */
+  public PentahoAsyncExecutor( final int capacity, final int autoSchedulerThreshold,
+                               final AdmissionQueue admissionQueue ) {
+    this( capacity, autoSchedulerThreshold, admissionQueue, false );
+  }
+
+  /**
+   * In virtual thread mode the workers of the pool are virtual threads. The pool still executes at most capacity
+   * reports at once and queues the others, so the mode only helps together with a capacity well above the number of
+   * processors: most reports wait for their data and a waiting virtual thread is cheap. The layout of the reports is
+   * limited to the number of processors. Virtual threads need Java 21, on older runtimes platform threads are used
+   * with the same limits.
+   *
+   * @param capacity               thread pool capacity
+   * @param autoSchedulerThreshold quantity of rows after which reports are automatically scheduled
+   * @param admissionQueue         queue of the tasks waiting for a thread, tasks it refuses are rejected
+   * @param virtualThreads         run the reports on virtual threads
+   */
+  public PentahoAsyncExecutor( final int capacity, final int autoSchedulerThreshold,
+                               final AdmissionQueue admissionQueue, final boolean virtualThreads ) {
+    ArgumentNullException.validate( "admissionQueue", admissionQueue );
     this.autoSchedulerThreshold = autoSchedulerThreshold;
-    log.info( "Initialized reporting async execution fixed thread pool with capacity: " + capacity );
-    executorService =
-      new DelegatedListenableExecutor( new ThreadPoolExecutor( capacity, capacity, 0L, TimeUnit.MILLISECONDS,
-        new LinkedBlockingQueue<>(), new ThreadFactory() {
-          @Override
-          public Thread newThread( Runnable r ) {
-            Thread thread = Executors.defaultThreadFactory().newThread( r );
-            thread.setDaemon( true );
-            thread.setName( "PentahoAsyncExecutor Thread Pool" );
-            return thread;
-          }
-        } ) );
+    this.admissionQueue = admissionQueue;
+    this.capacity = capacity;
+
+    if ( virtualThreads ) {
+      final int processors = Runtime.getRuntime().availableProcessors();
+      this.cpuPermits = new Semaphore( processors, true );
+      ThreadFactory threadFactory = createVirtualThreadFactory();
+      if ( threadFactory == null ) {
+        log.warn( "Virtual threads are not supported by this Java runtime, using platform threads." );
+        threadFactory = createPlatformThreadFactory();
+      }
+      log.info( "Initialized reporting async execution virtual thread pool with capacity: " + capacity
+        + ", layout concurrency: " + processors );
+      if ( capacity <= processors ) {
+        log.warn( "Virtual threads run at most " + capacity + " reports at once, raise the capacity above the CPU "
+          + "core quantity to run more reports concurrently." );
+      }
+      pool = new ThreadPoolExecutor( capacity, capacity, 0L, TimeUnit.MILLISECONDS, admissionQueue, threadFactory );
+    } else {
+      this.cpuPermits = null;
+      log.info( "Initialized reporting async execution fixed thread pool with capacity: " + capacity );
+      pool = new ThreadPoolExecutor( capacity, capacity, 0L, TimeUnit.MILLISECONDS, admissionQueue,
+        createPlatformThreadFactory() );
+    }
+    // a task given to a new thread directly would bypass the budget of the admission queue
+    pool.prestartAllCoreThreads();
+    executorService = new DelegatedListenableExecutor( pool );
+    maintenance = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+      @Override
+      public Thread newThread( final Runnable r ) {
+        final Thread thread = Executors.defaultThreadFactory().newThread( r );
+        thread.setDaemon( true );
+        thread.setName( "PentahoAsyncExecutor Maintenance" );
+        return thread;
+      }
+    } );
+    maintenance.scheduleWithFixedDelay( this::expireFinishedJobs, EXPIRY_SWEEP_INTERVAL, EXPIRY_SWEEP_INTERVAL,
+      TimeUnit.MILLISECONDS );
+    maintenance.scheduleWithFixedDelay( this::checkpointJobs, CHECKPOINT_INTERVAL, CHECKPOINT_INTERVAL,
+      TimeUnit.MILLISECONDS );
+    maintenance.scheduleWithFixedDelay( this::syncJobStore, JOB_STORE_SYNC_INTERVAL, JOB_STORE_SYNC_INTERVAL,
+      TimeUnit.MILLISECONDS );
     PentahoSystem.addLogoutListener( this );
     this.writeToJcrListeners = new ConcurrentHashMap<>();
     this.schedulingLocationListener = new MemorizeSchedulingLocationListener();
   }
 
+  private static ThreadFactory createPlatformThreadFactory() {
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable r ) {
+        Thread thread = Executors.defaultThreadFactory().newThread( r );
+        thread.setDaemon( true );
+        thread.setName( "PentahoAsyncExecutor Thread Pool" );
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Looked up reflectively, the plugin is still built for runtimes without virtual threads.
+   *
+   * @return virtual thread factory or null if not supported
+   */
+  static ThreadFactory createVirtualThreadFactory() {
+    try {
+      final Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+      Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+      builder = builderClass.getMethod( "name", String.class, long.class )
+        .invoke( builder, "PentahoAsyncExecutor Virtual Thread ", 0L );
+      return (ThreadFactory) builderClass.getMethod( "factory" ).invoke( builder );
+    } catch ( final ReflectiveOperationException | RuntimeException e ) {
+      log.debug( "Virtual threads are not available: ", e );
+      return null;
+    }
+  }
 
   @Deprecated
   public PentahoAsyncExecutor( final int capacity ) {
@@ -101,21 +254,31 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
 
     private String sessionId;
     private String uuid;
+    private String user;
 
     // default visibility for testing purpose
     CompositeKey( final IPentahoSession session, final UUID id ) {
       this.uuid = id.toString();
       this.sessionId = session.getId();
+      this.user = session.getName();
     }
 
     public boolean isSameSession( final String sessionId ) {
       return StringUtils.equals( sessionId, this.sessionId );
     }
 
-    private String getSessionId() {
+    String getSessionId() {
       return sessionId;
     }
 
+    UUID getId() {
+      return UUID.fromString( uuid );
+    }
+
+    String getUser() {
+      return user;
+    }
+
     @Override public boolean equals( final Object o ) {
       if ( this == o ) {
         return true;
@@ -136,37 +299,487 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
     return addTask( task, session, UUID.randomUUID() );
   }
 
+  /**
+   * A task the admission queue refuses is handed to the job store, if there is one, to be run by another node.
+   *
+   * @throws RejectedExecutionException if the admission queue is full for the class of the task
+   */
   @Override
   public UUID addTask( final IAsyncReportExecution<TReportState> task, final IPentahoSession session, final UUID id ) {
-    final CompositeKey key = new CompositeKey( session, id );
+    final String fingerprint = getParameterFingerprint( task );
+    AdmissionClass admissionClass = classify( task );
+    final boolean expectedSlow = admissionClass != AdmissionClass.BACKGROUND && isExpectedSlow( task, fingerprint );
+    if ( expectedSlow ) {
+      log.info( "Report is expected to exceed the interactive time budget, running it in background: "
+        + task.getReportPath() );
+      admissionClass = AdmissionClass.BACKGROUND;
+    }
+    try {
+      return addTask( task, session, id, admissionClass, fingerprint, expectedSlow );
+    } catch ( final RejectedExecutionException e ) {
+      if ( dispatch( task, session, id ) ) {
+        return id;
+      }
+      throw e;
+    }
+  }
 
-    task.notifyTaskQueued( id,
-      Collections.singletonList( new AutoScheduleListener( id, session, autoSchedulerThreshold, this ) ) );
+  private UUID addTask( final IAsyncReportExecution<TReportState> task, final IPentahoSession session, final UUID id,
+                        final AdmissionClass admissionClass, final String fingerprint, final boolean expectedSlow ) {
+    final CompositeKey key = new CompositeKey( session, id );
+    final AdmissionQueue.Ticket ticket =
+      new AdmissionQueue.Ticket( admissionClass, session.getName(), task.getReportPath(), getDataSources( task ) );
+
+    final StatusChangeNotifier statusNotifier = new StatusChangeNotifier();
+    final List<ReportProgressListener> callbackListeners = new ArrayList<>( 4 );
+    callbackListeners.add( new AutoScheduleListener( id, session, autoSchedulerThreshold, expectedSlow, this ) );
+    callbackListeners.add( statusNotifier );
+    if ( fingerprint != null ) {
+      callbackListeners.add(
+        new ExecutionStatisticsListener( statistics, task.getReportPath(), task.getMimeType(), fingerprint,
+          ticket::getStartedAt ) );
+    }
+    final CpuPermitListener cpuPermitListener = cpuPermits == null ? null : new CpuPermitListener( cpuPermits );
+    if ( cpuPermitListener != null ) {
+      callbackListeners.add( cpuPermitListener );
+    }
+    task.notifyTaskQueued( id, callbackListeners );
 
-    log.debug( "register async execution for task: " + task.toString() );
+    log.debug( "register async execution for task: " + task.toString() + ", class: " + admissionClass );
 
-    final ListenableFuture<IFixedSizeStreamingContent> result = executorService.submit( task );
+    final String outputType = task.getMimeType();
+    final ListenableFuture<IFixedSizeStreamingContent> result;
+    try {
+      result = admissionQueue.admit( ticket, () -> executorService.submit( task ) );
+    } catch ( final RejectedExecutionException e ) {
+      log.warn( "Rejected async execution, " + admissionClass + " queue is full: " + task.getReportPath() );
+      metrics.rejected();
+      throw e;
+    }
+    metrics.submitted();
+    tickets.put( key, ticket );
+    statusNotifiers.put( key, statusNotifier );
+    result.addListener( () -> {
+      tickets.remove( key );
+      admissionQueue.finished( ticket );
+      metrics.finished( outputType, getOutcome( task, result ), ticket.getCreatedAt(), ticket.getStartedAt(),
+        System.currentTimeMillis() );
+      statusNotifier.changed();
+      finishedAt.put( key, System.currentTimeMillis() );
+      storeFinished( key, task, result );
+    }, MoreExecutors.directExecutor() );
+    if ( cpuPermitListener != null ) {
+      // failed and canceled reports don't finish processing
+      result.addListener( cpuPermitListener::close, MoreExecutors.directExecutor() );
+    }
+    if ( task instanceof AbstractAsyncReportExecution ) {
+      final AbstractAsyncReportExecution<?> execution = (AbstractAsyncReportExecution<?>) task;
+      result.addListener( () -> {
+        if ( result.isCancelled() ) {
+          watchCanceled( execution );
+        }
+      }, MoreExecutors.directExecutor() );
+    }
     futures.put( key, result );
     tasks.put( key, task );
+    sessionKeys.add( key );
     return id;
   }
 
+  /**
+   * A canceled report should stop at its next query or yield point. If it is still running after the grace period,
+   * its queries are canceled and its thread interrupted again until it stops. Threads can't be killed, so the pool gets
+   * an additional thread meanwhile and the capacity stays available to the other reports. At most capacity threads are
+   * added, reports that ignore the cancellation beyond that keep their thread from the pool.
+   *
+   * @param execution canceled task
+   */
+  void watchCanceled( final AbstractAsyncReportExecution<?> execution ) {
+    if ( !execution.isExecuting() ) {
+      return;
+    }
+    final Runnable check = new Runnable() {
+      private boolean stuck;
+      private boolean compensated;
+
+      @Override public void run() {
+        if ( !execution.isExecuting() ) {
+          if ( compensated ) {
+            removeCompensationThread();
+          }
+          return;
+        }
+        if ( !stuck ) {
+          log.warn( "Canceled report is still running after " + cancelGracePeriod + " ms, interrupting it again: "
+            + execution.getReportPath() );
+          stuck = true;
+          compensated = addCompensationThread();
+          if ( !compensated ) {
+            log.warn( "Thread pool already got " + capacity + " additional threads for canceled reports, the thread "
+              + "of " + execution.getReportPath() + " is not replaced until one of them stops." );
+          }
+        } else if ( !compensated ) {
+          compensated = addCompensationThread();
+        }
+        execution.interruptExecution();
+        scheduleCancelCheck( this );
+      }
+    };
+    scheduleCancelCheck( check );
+  }
+
+  private void scheduleCancelCheck( final Runnable check ) {
+    try {
+      maintenance.schedule( check, cancelGracePeriod, TimeUnit.MILLISECONDS );
+    } catch ( final RejectedExecutionException e ) {
+      log.debug( "Executor is shut down, canceled report is not watched." );
+    }
+  }
+
+  /**
+   * @return false if the pool already got capacity additional threads
+   */
+  private synchronized boolean addCompensationThread() {
+    if ( compensationThreads >= capacity ) {
+      return false;
+    }
+    compensationThreads++;
+    pool.setMaximumPoolSize( pool.getMaximumPoolSize() + 1 );
+    pool.setCorePoolSize( pool.getCorePoolSize() + 1 );
+    pool.prestartAllCoreThreads();
+    return true;
+  }
+
+  private synchronized void removeCompensationThread() {
+    compensationThreads--;
+    pool.setCorePoolSize( pool.getCorePoolSize() - 1 );
+    pool.setMaximumPoolSize( pool.getMaximumPoolSize() - 1 );
+  }
+
+  public long getCancelGracePeriod() {
+    return cancelGracePeriod;
+  }
+
+  /**
+   * @param cancelGracePeriod time in milliseconds a canceled report gets to stop before it is interrupted again
+   */
+  public void setCancelGracePeriod( final long cancelGracePeriod ) {
+    this.cancelGracePeriod = cancelGracePeriod;
+  }
+
+  int getPoolSize() {
+    return pool.getCorePoolSize();
+  }
+
+  /**
+   * @return count of the tasks waiting for a thread
+   */
+  public int getQueueLength() {
+    return admissionQueue.size();
+  }
+
+  /**
+   * @return count of the threads running a task
+   */
+  public int getActiveThreadCount() {
+    return pool.getActiveCount();
+  }
+
+  public AsyncJobMetrics getJobMetrics() {
+    return metrics;
+  }
+
+  private static AsyncJobMetrics.Outcome getOutcome( final IAsyncReportExecution<?> task,
+                                                     final Future<IFixedSizeStreamingContent> result ) {
+    if ( result.isCancelled() ) {
+      return AsyncJobMetrics.Outcome.CANCELLED;
+    }
+    try {
+      if ( result.get() != AbstractAsyncReportExecution.NULL ) {
+        return AsyncJobMetrics.Outcome.COMPLETED;
+      }
+    } catch ( final InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return AsyncJobMetrics.Outcome.FAILED;
+    } catch ( final ExecutionException | CancellationException e ) {
+      return AsyncJobMetrics.Outcome.FAILED;
+    }
+    // reports interrupted by a cancel end like failed ones
+    final IAsyncReportState state = task.getState();
+    return state != null && AsyncExecutionStatus.CANCELED.equals( state.getStatus() )
+      ? AsyncJobMetrics.Outcome.CANCELLED : AsyncJobMetrics.Outcome.FAILED;
+  }
+
+  /**
+   * @param task        task to submit
+   * @param fingerprint parameter fingerprint of the task
+   * @return true if the recorded runs of the report exceed the interactive time budget
+   */
+  boolean isExpectedSlow( final IAsyncReportExecution<TReportState> task, final String fingerprint ) {
+    final long budget = interactiveTimeBudget;
+    if ( budget <= 0 || fingerprint == null ) {
+      return false;
+    }
+    final ExecutionStatistics.Estimate estimate =
+      statistics.getEstimate( task.getReportPath(), task.getMimeType(), fingerprint );
+    return estimate != null && estimate.getDuration() > budget;
+  }
+
+  /**
+   * @param task task to submit
+   * @return fingerprint of the report parameters, null if the task does not run a report component
+   */
+  protected String getParameterFingerprint( final IAsyncReportExecution<TReportState> task ) {
+    if ( !( task instanceof AbstractAsyncReportExecution ) ) {
+      return null;
+    }
+    return ExecutionStatistics.fingerprint( ( (AbstractAsyncReportExecution) task ).reportComponent.getInputs() );
+  }
+
+  public ExecutionStatistics getExecutionStatistics() {
+    return statistics;
+  }
+
+  public long getInteractiveTimeBudget() {
+    return interactiveTimeBudget;
+  }
+
+  /**
+   * @param interactiveTimeBudget time in milliseconds a viewer report is expected to take at most. Reports whose
+   *                              recorded runs took longer are queued as background work and pre-scheduled as soon
+   *                              as they start, 0 to disable the prediction
+   */
+  public void setInteractiveTimeBudget( final long interactiveTimeBudget ) {
+    this.interactiveTimeBudget = interactiveTimeBudget;
+  }
+
+  public boolean isStreamScheduledOutput() {
+    return streamScheduledOutput;
+  }
+
+  /**
+   * @param streamScheduledOutput true to write scheduled reports straight to their file in the repository instead of
+   *                              copying the staged content once the report is done
+   */
+  public void setStreamScheduledOutput( final boolean streamScheduledOutput ) {
+    this.streamScheduledOutput = streamScheduledOutput;
+  }
+
+  /**
+   * Paginated HTML is what the viewer waits for page by page, other HTML is displayed at once and anything else is an
+   * export.
+   *
+   * @param task task to submit
+   * @return admission class of the task
+   */
+  protected AdmissionClass classify( final IAsyncReportExecution<TReportState> task ) {
+    if ( !"text/html".equals( task.getMimeType() ) ) {
+      return AdmissionClass.BACKGROUND;
+    }
+    if ( task instanceof AbstractAsyncReportExecution
+      && ( (AbstractAsyncReportExecution) task ).reportComponent.isPaginateOutput() ) {
+      return AdmissionClass.INTERACTIVE_FIRST_PAGE;
+    }
+    return AdmissionClass.INTERACTIVE_FULL;
+  }
+
+  /**
+   * Data sources of the report, only looked up when the admission queue limits them.
+   *
+   * @param task task to submit
+   * @return names of the data sources, never null
+   */
+  protected Set<String> getDataSources( final IAsyncReportExecution<TReportState> task ) {
+    final ConcurrencyBudget budget = admissionQueue.getBudget();
+    if ( budget == null || !budget.isDataSourceLimited() || !( task instanceof AbstractAsyncReportExecution ) ) {
+      return Collections.emptySet();
+    }
+    try {
+      final MasterReport report = ( (AbstractAsyncReportExecution) task ).reportComponent.getReport();
+      if ( report == null ) {
+        return Collections.emptySet();
+      }
+      final Set<String> dataSources = new HashSet<>();
+      collectDataSources( report.getDataFactory(), dataSources );
+      return dataSources;
+    } catch ( final Exception e ) {
+      log.debug( "Can't determine the data sources of the report: " + task.getReportPath(), e );
+      return Collections.emptySet();
+    }
+  }
+
+  private static void collectDataSources( final DataFactory dataFactory, final Set<String> dataSources ) {
+    if ( dataFactory == null ) {
+      return;
+    }
+    if ( dataFactory instanceof CompoundDataFactory ) {
+      final CompoundDataFactory compound = (CompoundDataFactory) dataFactory;
+      for ( int i = 0; i < compound.size(); i++ ) {
+        collectDataSources( compound.get( i ), dataSources );
+      }
+      return;
+    }
+    final DataFactoryMetaData metaData = dataFactory.getMetaData();
+    final String connection = metaData.getDisplayConnectionName( dataFactory );
+    if ( !StringUtils.isEmpty( connection ) ) {
+      dataSources.add( metaData.getName() + ":" + connection );
+    }
+  }
+
+  /**
+   * @return position of a task waiting for a thread, 0 if the task is not waiting
+   */
+  @Override public int getQueuePosition( final UUID id, final IPentahoSession session ) {
+    validateParams( id, session );
+    final AdmissionQueue.Ticket ticket = tickets.get( new CompositeKey( session, id ) );
+    return ticket == null ? 0 : admissionQueue.getPosition( ticket );
+  }
+
+  @Override public long awaitStatusChange( final UUID id, final IPentahoSession session, final long knownVersion,
+                                          final long timeoutMillis ) throws InterruptedException {
+    validateParams( id, session );
+    final StatusChangeNotifier notifier = statusNotifiers.get( new CompositeKey( session, id ) );
+    if ( notifier == null ) {
+      return IPentahoAsyncExecutor.super.awaitStatusChange( id, session, knownVersion, timeoutMillis );
+    }
+    return notifier.await( knownVersion, timeoutMillis );
+  }
+
+  private void statusChanged( final CompositeKey key ) {
+    final StatusChangeNotifier notifier = statusNotifiers.get( key );
+    if ( notifier != null ) {
+      notifier.changed();
+    }
+  }
+
+  public AdmissionQueue getAdmissionQueue() {
+    return admissionQueue;
+  }
+
+  /**
+   * A job of the user run by another node is looked up in the job store. It has a future once it finished and its
+   * content is stored, meanwhile there is none: this node can neither complete nor cancel it.
+   */
   @Override public Future<IFixedSizeStreamingContent> getFuture( final UUID id, final IPentahoSession session ) {
     validateParams( id, session );
-    return futures.get( new CompositeKey( session, id ) );
+    final Future<IFixedSizeStreamingContent> future = futures.get( new CompositeKey( session, id ) );
+    if ( future != null ) {
+      return future;
+    }
+    final IAsyncJobStore store = jobStore;
+    final AsyncJobRecord record = getStoredJob( store, id, session );
+    if ( record == null ) {
+      return null;
+    }
+    if ( AsyncExecutionStatus.FINISHED.equals( record.getState().getStatus() ) ) {
+      final IFixedSizeStreamingContent content = store.getContent( id );
+      return content == null ? null : Futures.immediateFuture( content );
+    }
+    return null;
   }
 
   @Override public void cleanFuture( final UUID id, final IPentahoSession session ) {
     final CompositeKey key = new CompositeKey( session, id );
+    final Future<IFixedSizeStreamingContent> future = futures.remove( key );
+    final IAsyncReportExecution<TReportState> task = tasks.remove( key );
+    statusNotifiers.remove( key );
+    sessionKeys.remove( key );
+    finishedAt.remove( key );
+    publishedVersions.remove( key );
+    final IAsyncJobStore store = jobStore;
+    if ( store != null && ( future != null || task != null || getStoredJob( store, id, session ) != null ) ) {
+      store.remove( id );
+    }
+  }
+
+  public long getFinishedJobTimeToLive() {
+    return finishedJobTimeToLive;
+  }
+
+  /**
+   * @param finishedJobTimeToLive time in milliseconds a job is kept after it ended, 0 keeps it until the client cleans
+   *                              it up or the session ends
+   */
+  public void setFinishedJobTimeToLive( final long finishedJobTimeToLive ) {
+    this.finishedJobTimeToLive = finishedJobTimeToLive;
+  }
+
+  /**
+   * Releases the jobs that ended longer than the time to live ago, together with their staged content. Scheduled jobs
+   * are kept while their content is written to the repository.
+   */
+  void expireFinishedJobs() {
+    final long timeToLive = finishedJobTimeToLive;
+    if ( timeToLive <= 0 ) {
+      return;
+    }
+    final long endedBefore = System.currentTimeMillis() - timeToLive;
+    try {
+      final IAsyncJobStore store = jobStore;
+      if ( store != null ) {
+        store.expire( endedBefore );
+      }
+      for ( final Map.Entry<CompositeKey, Long> entry : finishedAt.entrySet() ) {
+        if ( entry.getValue() > endedBefore ) {
+          continue;
+        }
+        final CompositeKey key = entry.getKey();
+        final IAsyncReportExecution<TReportState> task = tasks.get( key );
+        final ListenableFuture<IFixedSizeStreamingContent> future = futures.get( key );
+        if ( task != null && future != null && task.getState() != null
+          && AsyncExecutionStatus.SCHEDULED.equals( task.getState().getStatus() ) ) {
+          continue;
+        }
+        expire( key, future );
+      }
+    } catch ( final RuntimeException e ) {
+      // don't stop the sweeps
+      log.error( "Can't expire finished jobs: ", e );
+    }
+  }
+
+  private void expire( final CompositeKey key, final ListenableFuture<IFixedSizeStreamingContent> future ) {
+    log.debug( "Expiring finished async execution of session: " + key.getSessionId() );
+    release( key, future );
+    final IAsyncJobStore store = jobStore;
+    if ( store != null ) {
+      store.remove( key.getId() );
+    }
+  }
+
+  /**
+   * Forgets a finished job and removes its staged content
+   */
+  private void release( final CompositeKey key, final ListenableFuture<IFixedSizeStreamingContent> future ) {
     futures.remove( key );
     tasks.remove( key );
+    statusNotifiers.remove( key );
+    sessionKeys.remove( key );
+    writeToJcrListeners.remove( key );
+    finishedAt.remove( key );
+    publishedVersions.remove( key );
+    if ( future != null && !future.isCancelled() ) {
+      try {
+        final IFixedSizeStreamingContent content = future.get();
+        if ( content != null ) {
+          content.cleanContent();
+        }
+      } catch ( final InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      } catch ( final ExecutionException | CancellationException e ) {
+        // failed tasks clean up their content
+      }
+    }
+    AsyncJobFileStagingHandler.cleanSession( key.getSessionId() );
   }
 
   @Override public void requestPage( final UUID id, final IPentahoSession session, final int page ) {
     validateParams( id, session );
-    final IAsyncReportExecution<TReportState> runningTask = tasks.get( new CompositeKey( session, id ) );
+    final CompositeKey key = new CompositeKey( session, id );
+    final IAsyncReportExecution<TReportState> runningTask = tasks.get( key );
     if ( runningTask != null ) {
       runningTask.requestPage( page );
+      statusChanged( key );
     }
   }
 
@@ -175,7 +788,9 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
     final CompositeKey compositeKey = new CompositeKey( session, uuid );
     final IAsyncReportExecution<? extends TReportState> runningTask = tasks.get( compositeKey );
     if ( runningTask != null ) {
-      return runningTask.preSchedule();
+      final boolean preScheduled = runningTask.preSchedule();
+      statusChanged( compositeKey );
+      return preScheduled;
     }
     return false;
   }
@@ -195,8 +810,12 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
         (IAsyncReportExecution<TReportState>) new PentahoAsyncReportExecution( (PentahoAsyncReportExecution) runningTask,
           new AsyncJobFileStagingHandler( session ) );
 
-      return addTask( recalcTask, session );
+      // recalculation is only requested to schedule the report
+      return addTask( recalcTask, session, UUID.randomUUID(), AdmissionClass.BACKGROUND,
+        getParameterFingerprint( recalcTask ), false );
 
+    } catch ( final RejectedExecutionException e ) {
+      throw e;
     } catch ( final Exception e ) {
       log.error( "Can't recalculate task: ", e );
     }
@@ -217,19 +836,401 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
       throw new IllegalStateException( "We must have a task and a future at this point." );
     }
 
-    final String userId = session.getName();
-    final String sessionId = session.getId();
+    return scheduleTask( compositeKey, id, runningTask, future, session.getName(), session.getId(), 0 );
+  }
 
+  private boolean scheduleTask( final CompositeKey compositeKey, final UUID id,
+                                final IAsyncReportExecution<TReportState> runningTask,
+                                final ListenableFuture<IFixedSizeStreamingContent> future, final String userId,
+                                final String sessionId, final int recoveryAttempts ) {
     if ( !StringUtils.isEmpty( userId ) ) {
       if ( runningTask.schedule() ) {
+        statusChanged( compositeKey );
+        journal( compositeKey, id, runningTask, userId, recoveryAttempts );
+        final WriteToJcrTask target = streamScheduledOutput ? openSchedulingTarget( runningTask, userId ) : null;
         Futures.addCallback( future,
-          new TriggerScheduledContentWritingHandler( userId, sessionId, runningTask, compositeKey ), executorService );
+          new TriggerScheduledContentWritingHandler( userId, sessionId, runningTask, compositeKey, target ),
+          executorService );
         return true;
       }
     }
     return false;
   }
 
+  /**
+   * Creates the file of the scheduled report and sends the report output straight to it.
+   *
+   * @return task storing the content, null if the staged content has to be copied once the report is done
+   */
+  private WriteToJcrTask openSchedulingTarget( final IAsyncReportExecution<TReportState> runningTask,
+                                               final String userId ) {
+    final WriteToJcrTask target = getSchedulingTarget( runningTask );
+    try {
+      if ( Boolean.TRUE.equals( SecurityHelper.getInstance()
+        .runAsUser( userId, () -> runningTask.redirectOutput( target.openTarget() ) ) ) ) {
+        return target;
+      }
+    } catch ( final Exception e ) {
+      log.warn( "Can't write scheduled report to the repository directly, content is copied when done: ", e );
+    }
+    discardSchedulingTarget( target, userId );
+    return null;
+  }
+
+  private void discardSchedulingTarget( final WriteToJcrTask target, final String userId ) {
+    try {
+      SecurityHelper.getInstance().runAsUser( userId, () -> {
+        target.discard();
+        return null;
+      } );
+    } catch ( final Exception e ) {
+      log.debug( "Can't remove scheduling target: ", e );
+    }
+  }
+
+  public AsyncJobJournal getJobJournal() {
+    return jobJournal;
+  }
+
+  /**
+   * @param jobJournal journal of the scheduled jobs, which are queued again by {@link #recoverJobs()} after a restart.
+   *                   Null to not journal them.
+   */
+  public void setJobJournal( final AsyncJobJournal jobJournal ) {
+    this.jobJournal = jobJournal;
+  }
+
+  public int getMaxRecoveryAttempts() {
+    return maxRecoveryAttempts;
+  }
+
+  /**
+   * @param maxRecoveryAttempts restarts a journaled job is queued again after
+   */
+  public void setMaxRecoveryAttempts( final int maxRecoveryAttempts ) {
+    this.maxRecoveryAttempts = maxRecoveryAttempts;
+  }
+
+  private void journal( final CompositeKey key, final UUID id, final IAsyncReportExecution<TReportState> task,
+                        final String user, final int recoveryAttempts ) {
+    final AsyncJobJournal journal = jobJournal;
+    if ( journal == null || !( task instanceof AbstractAsyncReportExecution ) ) {
+      return;
+    }
+    final AbstractAsyncReportExecution<?> execution = (AbstractAsyncReportExecution<?>) task;
+    final AsyncJobDescriptor descriptor =
+      new AsyncJobDescriptor( id, user, execution.auditId, task.getReportPath(), execution.reportComponent );
+    descriptor.setAttempts( recoveryAttempts );
+    descriptor.checkpoint( task.getState() );
+    if ( journal.write( descriptor ) ) {
+      journaled.put( key, descriptor );
+    }
+  }
+
+  private void removeFromJournal( final CompositeKey key ) {
+    final AsyncJobDescriptor descriptor = journaled.remove( key );
+    final AsyncJobJournal journal = jobJournal;
+    if ( descriptor != null && journal != null ) {
+      journal.remove( descriptor.getId() );
+    }
+  }
+
+  /**
+   * Writes the progress of the journaled jobs.
+   */
+  void checkpointJobs() {
+    final AsyncJobJournal journal = jobJournal;
+    if ( journal == null ) {
+      return;
+    }
+    try {
+      for ( final Map.Entry<CompositeKey, AsyncJobDescriptor> entry : journaled.entrySet() ) {
+        final IAsyncReportExecution<TReportState> task = tasks.get( entry.getKey() );
+        // the task is released on logout, its last progress is kept
+        entry.getValue().checkpoint( task == null ? null : task.getState() );
+        journal.write( entry.getValue() );
+      }
+    } catch ( final RuntimeException e ) {
+      // don't stop the checkpoints
+      log.error( "Can't checkpoint scheduled jobs: ", e );
+    }
+  }
+
+  /**
+   * Queues the scheduled jobs of the journal again that did not finish before the last shutdown. The reporting engine
+   * can't continue a report where it stopped, the jobs are run from the start and their output is written to the
+   * repository like it would have been. Jobs that were queued again {@link #getMaxRecoveryAttempts()} times are
+   * dropped.
+   *
+   * @return number of queued jobs
+   */
+  public int recoverJobs() {
+    final AsyncJobJournal journal = jobJournal;
+    if ( journal == null ) {
+      return 0;
+    }
+    int recovered = 0;
+    for ( final AsyncJobDescriptor descriptor : journal.load() ) {
+      if ( isJournaled( descriptor.getId() ) ) {
+        continue;
+      }
+      if ( descriptor.getAttempts() >= maxRecoveryAttempts ) {
+        log.warn( "Scheduled report was interrupted by " + descriptor.getAttempts() + " restarts, dropping it: "
+          + descriptor.getReportPath() );
+        journal.remove( descriptor.getId() );
+        continue;
+      }
+      try {
+        if ( recover( descriptor ) ) {
+          log.info( "Queued scheduled report interrupted by a restart again: " + descriptor.getReportPath() );
+          recovered++;
+        } else {
+          journal.remove( descriptor.getId() );
+        }
+      } catch ( final Exception e ) {
+        log.error( "Can't queue scheduled report again: " + descriptor.getReportPath(), e );
+        journal.remove( descriptor.getId() );
+      }
+    }
+    return recovered;
+  }
+
+  private boolean isJournaled( final UUID id ) {
+    for ( final AsyncJobDescriptor descriptor : journaled.values() ) {
+      if ( descriptor.getId().equals( id ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean recover( final AsyncJobDescriptor descriptor ) throws Exception {
+    // the session of the job has ended with the restart
+    final IPentahoSession session = new StandaloneSession( descriptor.getUser(), UUIDUtil.getUUIDAsString() );
+    final SimpleReportingComponent reportComponent = descriptor.createReportComponent();
+    final AsyncJobFileStagingHandler handler = new AsyncJobFileStagingHandler( session );
+    reportComponent.setOutputStream( handler.getStagingOutputStream() );
+    final IAsyncReportExecution<TReportState> task =
+      createRecoveredTask( descriptor, reportComponent, handler, session );
+
+    final UUID id = descriptor.getId();
+    try {
+      addTask( task, session, id, AdmissionClass.BACKGROUND, getParameterFingerprint( task ), false );
+    } catch ( final RejectedExecutionException e ) {
+      handler.getStagingContent().cleanContent();
+      throw e;
+    }
+    final CompositeKey key = new CompositeKey( session, id );
+    return scheduleTask( key, id, task, futures.get( key ), session.getName(), session.getId(),
+      descriptor.getAttempts() + 1 );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  protected IAsyncReportExecution<TReportState> createRecoveredTask( final AsyncJobDescriptor descriptor,
+                                                                     final SimpleReportingComponent reportComponent,
+                                                                     final AsyncJobFileStagingHandler handler,
+                                                                     final IPentahoSession session ) {
+    final String auditId = descriptor.getAuditId() == null ? UUIDUtil.getUUIDAsString() : descriptor.getAuditId();
+    return (IAsyncReportExecution<TReportState>) new PentahoAsyncReportExecution( descriptor.getReportPath(),
+      reportComponent, handler, session, auditId, new AuditWrapper() );
+  }
+
+  public IAsyncJobStore getJobStore() {
+    return jobStore;
+  }
+
+  /**
+   * @param jobStore store shared by the nodes of a cluster, the jobs are published to it so they can be queried from
+   *                 any node, and jobs refused by a full admission queue are run by a node with free capacity. Null
+   *                 to keep the jobs on the node they were submitted to.
+   */
+  public void setJobStore( final IAsyncJobStore jobStore ) {
+    this.jobStore = jobStore;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * @param nodeId name of this node in the job store, a random id by default
+   */
+  public void setNodeId( final String nodeId ) {
+    ArgumentNullException.validate( "nodeId", nodeId );
+    this.nodeId = nodeId;
+  }
+
+  private static AsyncJobRecord getStoredJob( final IAsyncJobStore store, final UUID id,
+                                              final IPentahoSession session ) {
+    if ( store == null ) {
+      return null;
+    }
+    final AsyncJobRecord record = store.get( id );
+    return record != null && record.isOwner( session.getName() ) ? record : null;
+  }
+
+  /**
+   * Queues a task refused by the admission queue in the job store, the task is set up again by the node that claims
+   * it.
+   *
+   * @return true if the task was queued
+   */
+  private boolean dispatch( final IAsyncReportExecution<TReportState> task, final IPentahoSession session,
+                            final UUID id ) {
+    final IAsyncJobStore store = jobStore;
+    if ( store == null || shuttingDown || !( task instanceof AbstractAsyncReportExecution ) ) {
+      return false;
+    }
+    final AbstractAsyncReportExecution<?> execution = (AbstractAsyncReportExecution<?>) task;
+    try {
+      store.dispatch(
+        new AsyncJobDescriptor( id, session.getName(), execution.auditId, task.getReportPath(),
+          execution.reportComponent ) );
+      final TReportState state = task.getState();
+      if ( state != null ) {
+        store.publish( new AsyncJobRecord( session.getName(), null, state ) );
+      }
+    } catch ( final IOException | RuntimeException e ) {
+      log.error( "Can't queue async execution in the job store: " + task.getReportPath(), e );
+      store.remove( id );
+      return false;
+    }
+    log.info( "Admission queue is full, queued async execution for another node: " + task.getReportPath() );
+    try {
+      execution.handler.getStagingContent().cleanContent();
+    } catch ( final IOException e ) {
+      log.debug( "Can't remove staged content of dispatched async execution: ", e );
+    }
+    return true;
+  }
+
+  /**
+   * Publishes the final state of a job together with its content. A job claimed from the job store is released once
+   * its content is stored, it is fetched from the store.
+   */
+  private void storeFinished( final CompositeKey key, final IAsyncReportExecution<TReportState> task,
+                              final ListenableFuture<IFixedSizeStreamingContent> result ) {
+    final IAsyncJobStore store = jobStore;
+    if ( store == null ) {
+      return;
+    }
+    final TReportState state = task.getState();
+    if ( state != null && AsyncExecutionStatus.SCHEDULED.equals( state.getStatus() ) ) {
+      // written to the repository, the job is kept until then
+      claimed.remove( key );
+      publish( store, key, task );
+      return;
+    }
+    boolean stored = true;
+    try {
+      if ( state != null && AsyncExecutionStatus.FINISHED.equals( state.getStatus() ) ) {
+        final IFixedSizeStreamingContent content = result.get();
+        if ( content != null && content != AbstractAsyncReportExecution.NULL ) {
+          store.storeContent( key.getId(), content );
+        }
+      }
+    } catch ( final Exception e ) {
+      log.error( "Can't store the content of async execution in the job store: " + task.getReportPath(), e );
+      stored = false;
+    }
+    publish( store, key, task );
+    if ( stored && claimed.remove( key ) ) {
+      release( key, result );
+    }
+  }
+
+  private void publish( final IAsyncJobStore store, final CompositeKey key,
+                        final IAsyncReportExecution<TReportState> task ) {
+    final StatusChangeNotifier notifier = statusNotifiers.get( key );
+    final TReportState state = task.getState();
+    if ( notifier == null || state == null || key.getUser() == null ) {
+      return;
+    }
+    // a sweep must not publish an older state over the final one
+    synchronized ( publishLock ) {
+      final long version = notifier.getVersion();
+      try {
+        store.publish( new AsyncJobRecord( key.getUser(), nodeId, state ) );
+        publishedVersions.put( key, version );
+      } catch ( final IOException e ) {
+        log.warn( "Can't publish the state of async execution to the job store: " + task.getReportPath(), e );
+      }
+    }
+  }
+
+  /**
+   * Publishes the states changed since the last sweep to the job store and claims queued jobs while threads are idle.
+   */
+  void syncJobStore() {
+    final IAsyncJobStore store = jobStore;
+    if ( store == null || shuttingDown ) {
+      return;
+    }
+    try {
+      for ( final Map.Entry<CompositeKey, StatusChangeNotifier> entry : statusNotifiers.entrySet() ) {
+        final Long published = publishedVersions.get( entry.getKey() );
+        final IAsyncReportExecution<TReportState> task = tasks.get( entry.getKey() );
+        if ( task != null && ( published == null || published != entry.getValue().getVersion() ) ) {
+          publish( store, entry.getKey(), task );
+        }
+      }
+      claimJobs( store );
+    } catch ( final RuntimeException e ) {
+      // don't stop the sweeps
+      log.error( "Can't synchronize with the async job store: ", e );
+    }
+  }
+
+  private void claimJobs( final IAsyncJobStore store ) {
+    final int idle = pool.getCorePoolSize() - pool.getActiveCount() - admissionQueue.size();
+    for ( int i = 0; i < idle; i++ ) {
+      final AsyncJobDescriptor descriptor = store.claim( nodeId );
+      if ( descriptor == null ) {
+        return;
+      }
+      try {
+        runClaimed( descriptor );
+        log.debug( "Claimed async execution from the job store: " + descriptor.getReportPath() );
+      } catch ( final RejectedExecutionException e ) {
+        try {
+          store.dispatch( descriptor );
+        } catch ( final IOException ex ) {
+          log.error( "Can't queue async execution in the job store again: " + descriptor.getReportPath(), ex );
+          store.remove( descriptor.getId() );
+        }
+        return;
+      } catch ( final Exception e ) {
+        log.error( "Can't run async execution claimed from the job store: " + descriptor.getReportPath(), e );
+        store.remove( descriptor.getId() );
+      }
+    }
+  }
+
+  private void runClaimed( final AsyncJobDescriptor descriptor ) throws Exception {
+    // the job is polled by its owner on other nodes
+    final IPentahoSession session = new StandaloneSession( descriptor.getUser(), UUIDUtil.getUUIDAsString() );
+    final SimpleReportingComponent reportComponent = descriptor.createReportComponent();
+    final AsyncJobFileStagingHandler handler = new AsyncJobFileStagingHandler( session );
+    reportComponent.setOutputStream( handler.getStagingOutputStream() );
+    final IAsyncReportExecution<TReportState> task =
+      createRecoveredTask( descriptor, reportComponent, handler, session );
+
+    final CompositeKey key = new CompositeKey( session, descriptor.getId() );
+    claimed.add( key );
+    try {
+      addTask( task, session, descriptor.getId(), classify( task ), getParameterFingerprint( task ), false );
+    } catch ( final RejectedExecutionException e ) {
+      claimed.remove( key );
+      handler.getStagingContent().cleanContent();
+      throw e;
+    }
+    final ListenableFuture<IFixedSizeStreamingContent> future = futures.get( key );
+    if ( future != null && !claimed.contains( key ) ) {
+      // finished before it was registered
+      release( key, future );
+    }
+  }
+
   @Override
   public void updateSchedulingLocation( final UUID id, final IPentahoSession session, final Serializable folderId,
                                         final String newName ) {
@@ -269,11 +1270,19 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
     return new UpdateSchedulingLocationListener( folderId, newName );
   }
 
+  /**
+   * A job of the user run by another node is looked up in the job store.
+   */
+  @SuppressWarnings( "unchecked" )
   @Override public TReportState getReportState( final UUID id, final IPentahoSession session ) {
     validateParams( id, session );
     // link to running task
     final IAsyncReportExecution<TReportState> runningTask = tasks.get( new CompositeKey( session, id ) );
-    return runningTask == null ? null : runningTask.getState();
+    if ( runningTask != null ) {
+      return runningTask.getState();
+    }
+    final AsyncJobRecord record = getStoredJob( jobStore, id, session );
+    return record == null ? null : (TReportState) record.getState();
   }
 
   protected void validateParams( final UUID id, final IPentahoSession session ) {
@@ -288,27 +1297,34 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
       log.debug( "killing async report execution cache for user: " + session.getName() );
     }
 
-    for ( final Map.Entry<CompositeKey, ListenableFuture<IFixedSizeStreamingContent>> entry : futures.entrySet() ) {
-      if ( ObjectUtils.equals( entry.getKey().getSessionId(), session.getId() ) ) {
-
-        final IAsyncReportExecution<TReportState> task = tasks.get( entry.getKey() );
-
-        final ListenableFuture<IFixedSizeStreamingContent> value = entry.getValue();
-
-        if ( task != null && task.getState() != null && AsyncExecutionStatus.SCHEDULED
-          .equals( task.getState().getStatus() ) ) {
-          //After the session end nobody can poll status, we can remove task
-          //Keep future to have content in place
-          tasks.remove( entry.getKey() );
-          continue;
-        }
+    for ( final CompositeKey key : sessionKeys.removeSession( session.getId() ) ) {
+      final IAsyncReportExecution<TReportState> task = tasks.get( key );
+
+      if ( task != null && task.getState() != null && AsyncExecutionStatus.SCHEDULED
+        .equals( task.getState().getStatus() ) ) {
+        //After the session end nobody can poll status, we can remove task
+        //Keep future to have content in place
+        tasks.remove( key );
+        statusNotifiers.remove( key );
+        finishedAt.remove( key );
+        continue;
+      }
 
-        // attempt to cancel running task
+      // attempt to cancel running task
+      final ListenableFuture<IFixedSizeStreamingContent> value = futures.get( key );
+      if ( value != null ) {
         value.cancel( true );
+      }
 
-        // remove all links to release GC
-        futures.remove( entry.getKey() );
-        tasks.remove( entry.getKey() );
+      // remove all links to release GC
+      futures.remove( key );
+      tasks.remove( key );
+      statusNotifiers.remove( key );
+      finishedAt.remove( key );
+      publishedVersions.remove( key );
+      final IAsyncJobStore store = jobStore;
+      if ( store != null ) {
+        store.remove( key.getId() );
       }
     }
 
@@ -327,6 +1343,8 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
 
   @Override
   public void shutdown() {
+    // scheduled jobs stay in the journal to be queued again on startup
+    shuttingDown = true;
     // attempt to stop all
     for ( final Future<IFixedSizeStreamingContent> entry : futures.values() ) {
       entry.cancel( true );
@@ -334,8 +1352,16 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
     // forget all
     this.futures.clear();
     this.tasks.clear();
+    this.tickets.clear();
+    this.statusNotifiers.clear();
+    this.sessionKeys.clear();
+    this.finishedAt.clear();
+    this.journaled.clear();
+    this.publishedVersions.clear();
+    this.claimed.clear();
     this.writeToJcrListeners.clear();
     this.executorService.shutdown();
+    this.maintenance.shutdownNow();
     try {
       this.schedulingLocationListener.lock();
       this.schedulingLocationListener.shutdown();
@@ -352,6 +1378,11 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
     return new WriteToJcrTask( runningTask, result.getStream() );
   }
 
+  protected WriteToJcrTask getSchedulingTarget( final IAsyncReportExecution<? extends IAsyncReportState>
+                                                  runningTask ) {
+    return new WriteToJcrTask( runningTask );
+  }
+
   /**
    * This class is responsible for writing the content first to a pre-computed location (as specified by the
    * ISchedulingDirectoryStrategy implementation, and then optionally moves the content to a location specified by the
@@ -362,18 +1393,39 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
     private final CompositeKey compositeKey;
     private final String user;
     private final String sessionId;
+    private final WriteToJcrTask target;
 
     TriggerScheduledContentWritingHandler( final String user, final String sessionId,
                                            final IAsyncReportExecution<TReportState> runningTask,
                                            final CompositeKey compositeKey ) {
+      this( user, sessionId, runningTask, compositeKey, null );
+    }
+
+    /**
+     * @param target task storing the content the report writes to the repository directly, null to copy the staged
+     *               content
+     */
+    TriggerScheduledContentWritingHandler( final String user, final String sessionId,
+                                           final IAsyncReportExecution<TReportState> runningTask,
+                                           final CompositeKey compositeKey, final WriteToJcrTask target ) {
       this.user = user;
       this.sessionId = sessionId;
       this.runningTask = runningTask;
       this.compositeKey = compositeKey;
+      this.target = target;
     }
 
     protected IFixedSizeStreamingContent notifyListeners( final IFixedSizeStreamingContent result ) throws Exception {
-      final Serializable writtenTo = getWriteToJcrTask( result, runningTask ).call();
+      final Serializable writtenTo;
+      if ( target == null ) {
+        writtenTo = getWriteToJcrTask( result, runningTask ).call();
+      } else if ( result == AbstractAsyncReportExecution.NULL ) {
+        // the report failed, nothing to keep
+        target.discard();
+        writtenTo = null;
+      } else {
+        writtenTo = target.call();
+      }
       if ( writtenTo == null ) {
         log.debug( "Unable to move scheduled content, due to error while creating content in default location." );
         return null;
@@ -412,6 +1464,10 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
         //We need to keep task because status polling may still occur ( or it already has been removed on logout )
         //Also we can try to remove directory
         futures.remove( compositeKey );
+        // a report failing while the server shuts down is run again on startup
+        if ( !shuttingDown || result != AbstractAsyncReportExecution.NULL ) {
+          removeFromJournal( compositeKey );
+        }
         result.cleanContent();
         AsyncJobFileStagingHandler.cleanSession( sessionId );
       }
@@ -419,7 +1475,13 @@ public class PentahoAsyncExecutor<TReportState extends IAsyncReportState>
 
     @Override public void onFailure( final Throwable t ) {
       log.error( "Can't execute callback. Parent task failed: ", t );
+      if ( target != null ) {
+        discardSchedulingTarget( target, user );
+      }
       futures.remove( compositeKey );
+      if ( !shuttingDown ) {
+        removeFromJournal( compositeKey );
+      }
       AsyncJobFileStagingHandler.cleanSession( sessionId );
     }
   }
@@ -87,6 +87,7 @@ public class PentahoAsyncReportExecution extends AbstractAsyncReportExecution<IA
 
     return SecurityHelper.getInstance().runAsUser( safeSession.getName(), new Callable<IFixedSizeStreamingContent>() {
       @Override public IFixedSizeStreamingContent call() throws Exception {
+        executionStarted();
         try {
           listener.setStatus( AsyncExecutionStatus.WORKING );
 
@@ -145,6 +146,7 @@ public class PentahoAsyncReportExecution extends AbstractAsyncReportExecution<IA
 
           ReportListenerThreadHolder.clear();
           PentahoSessionHolder.removeSession();
+          executionFinished();
         }
       }
     } );
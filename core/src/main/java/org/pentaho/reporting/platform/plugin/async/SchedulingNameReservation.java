@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.libraries.repository.ContentEntity;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique names for scheduled output files. The names taken in a folder are listed once and cached, a name is
+ * reserved by adding it to the cached set, so concurrent writers never wait for each other. The cache of a folder is
+ * listed again after {@link #getCacheTime()} to pick up files removed or created elsewhere.
+ */
+public class SchedulingNameReservation {
+
+  public static final long DEFAULT_CACHE_TIME = 60000;
+
+  private static final Log log = LogFactory.getLog( SchedulingNameReservation.class );
+  private static final String FORMAT = "%s(%d)%s";
+
+  private final ConcurrentMap<String, FolderNames> folders = new ConcurrentHashMap<>();
+  private volatile long cacheTime = DEFAULT_CACHE_TIME;
+
+  /**
+   * Reserves a name that is neither used in the folder nor reserved by another writer.
+   *
+   * @param location   folder of the file
+   * @param folderPath repository path of the folder
+   * @param name       name without extension
+   * @param extension  extension including the dot
+   * @return name like "name.ext" or "name(n).ext", reserved until {@link #release(String, String)} is called
+   */
+  public String reserve( final ContentLocation location, final String folderPath, final String name,
+                         final String extension ) {
+    final FolderNames names = getFolderNames( location, folderPath );
+    final String targetName = name + extension;
+    if ( names.reserve( targetName ) ) {
+      return targetName;
+    }
+    // continue after the last copy handed out instead of probing every name again
+    final AtomicInteger copies = names.copies.computeIfAbsent( targetName, key -> new AtomicInteger( 1 ) );
+    while ( true ) {
+      final String copyName = String.format( FORMAT, name, copies.getAndIncrement(), extension );
+      if ( names.reserve( copyName ) ) {
+        return copyName;
+      }
+    }
+  }
+
+  /**
+   * Ends the reservation once the file was created, or its creation failed. The name stays taken until the folder is
+   * listed again.
+   *
+   * @param folderPath repository path of the folder
+   * @param name       reserved name
+   */
+  public void release( final String folderPath, final String name ) {
+    final FolderNames names = folders.get( folderPath );
+    if ( names != null ) {
+      names.pending.remove( name );
+    }
+  }
+
+  /**
+   * Forgets the cached names of all folders.
+   */
+  public void clear() {
+    folders.clear();
+  }
+
+  public long getCacheTime() {
+    return cacheTime;
+  }
+
+  /**
+   * @param cacheTime time in milliseconds the names of a folder are cached
+   */
+  public void setCacheTime( final long cacheTime ) {
+    this.cacheTime = cacheTime;
+  }
+
+  private FolderNames getFolderNames( final ContentLocation location, final String folderPath ) {
+    final long now = System.currentTimeMillis();
+    final FolderNames names = folders.get( folderPath );
+    if ( names != null && now - names.listedAt < cacheTime ) {
+      return names;
+    }
+    return folders.compute( folderPath, ( key, current ) -> {
+      if ( current != null && now - current.listedAt < cacheTime ) {
+        // listed by another writer meanwhile
+        return current;
+      }
+      return list( location, current, now );
+    } );
+  }
+
+  private static FolderNames list( final ContentLocation location, final FolderNames current, final long now ) {
+    // names reserved but not created yet are not listed, but must not be handed out again
+    final FolderNames names =
+      new FolderNames( now, current == null ? ConcurrentHashMap.newKeySet() : current.pending );
+    names.taken.addAll( names.pending );
+    try {
+      for ( final ContentEntity entity : location.listContents() ) {
+        names.taken.add( entity.getName() );
+      }
+    } catch ( final Exception e ) {
+      // the writer checks the reserved name before creating the file
+      log.debug( "Can't list scheduling directory, names are checked one by one: ", e );
+    }
+    return names;
+  }
+
+  private static final class FolderNames {
+    private final long listedAt;
+    private final Set<String> taken = ConcurrentHashMap.newKeySet();
+    private final Set<String> pending;
+    private final ConcurrentMap<String, AtomicInteger> copies = new ConcurrentHashMap<>();
+
+    private FolderNames( final long listedAt, final Set<String> pending ) {
+      this.listedAt = listedAt;
+      this.pending = pending;
+    }
+
+    private boolean reserve( final String name ) {
+      // the pending set is shared with the next listing of the folder, so it decides between concurrent writers
+      return taken.add( name ) && pending.add( name );
+    }
+  }
+}
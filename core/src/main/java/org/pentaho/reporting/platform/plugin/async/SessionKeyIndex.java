@@ -0,0 +1,63 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keys of the executor's jobs by session id, so a logout only touches the jobs of its session.
+ */
+class SessionKeyIndex {
+
+  private final ConcurrentHashMap<String, Set<PentahoAsyncExecutor.CompositeKey>> keys = new ConcurrentHashMap<>();
+
+  void add( final PentahoAsyncExecutor.CompositeKey key ) {
+    keys.compute( indexKey( key.getSessionId() ), ( sessionId, sessionKeys ) -> {
+      final Set<PentahoAsyncExecutor.CompositeKey> result =
+        sessionKeys == null ? ConcurrentHashMap.newKeySet() : sessionKeys;
+      result.add( key );
+      return result;
+    } );
+  }
+
+  void remove( final PentahoAsyncExecutor.CompositeKey key ) {
+    keys.computeIfPresent( indexKey( key.getSessionId() ), ( sessionId, sessionKeys ) -> {
+      sessionKeys.remove( key );
+      return sessionKeys.isEmpty() ? null : sessionKeys;
+    } );
+  }
+
+  /**
+   * @return keys of the session, they are no longer indexed
+   */
+  Set<PentahoAsyncExecutor.CompositeKey> removeSession( final String sessionId ) {
+    final Set<PentahoAsyncExecutor.CompositeKey> sessionKeys = keys.remove( indexKey( sessionId ) );
+    return sessionKeys == null ? Collections.emptySet() : sessionKeys;
+  }
+
+  Set<PentahoAsyncExecutor.CompositeKey> getKeys( final String sessionId ) {
+    final Set<PentahoAsyncExecutor.CompositeKey> sessionKeys = keys.get( indexKey( sessionId ) );
+    return sessionKeys == null ? Collections.emptySet() : Collections.unmodifiableSet( sessionKeys );
+  }
+
+  void clear() {
+    keys.clear();
+  }
+
+  // the map does not take null keys
+  private static String indexKey( final String sessionId ) {
+    return sessionId == null ? "" : sessionId;
+  }
+}
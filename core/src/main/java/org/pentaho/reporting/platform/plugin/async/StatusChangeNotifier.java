@@ -0,0 +1,64 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
+
+/**
+ * Counts the changes of a task's state, so status requests can wait for the next change instead of polling.
+ */
+class StatusChangeNotifier implements ReportProgressListener {
+
+  private long version;
+
+  synchronized long getVersion() {
+    return version;
+  }
+
+  /**
+   * Wakes up the requests waiting for a change
+   */
+  synchronized void changed() {
+    version++;
+    notifyAll();
+  }
+
+  /**
+   * @param knownVersion  version the caller has seen
+   * @param timeoutMillis maximum time to wait
+   * @return current version, equals the known version if the timeout elapsed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  synchronized long await( final long knownVersion, final long timeoutMillis ) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining = timeoutMillis;
+    while ( version == knownVersion && remaining > 0 ) {
+      wait( remaining );
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return version;
+  }
+
+  @Override public void reportProcessingStarted( final ReportProgressEvent reportProgressEvent ) {
+    changed();
+  }
+
+  @Override public void reportProcessingUpdate( final ReportProgressEvent reportProgressEvent ) {
+    changed();
+  }
+
+  @Override public void reportProcessingFinished( final ReportProgressEvent reportProgressEvent ) {
+    changed();
+  }
+}
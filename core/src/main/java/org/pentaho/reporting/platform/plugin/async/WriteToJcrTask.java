@@ -21,6 +21,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.StringUtil;
 import org.pentaho.platform.util.web.MimeHelper;
 import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.libraries.repository.ContentCreationException;
 import org.pentaho.reporting.libraries.repository.ContentLocation;
 import org.pentaho.reporting.platform.plugin.repository.ReportContentRepository;
 import java.io.IOException;
@@ -29,19 +30,38 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.concurrent.Callable;
 
+/**
+ * Stores the content of a scheduled report in the scheduling directory of the user. The content is either copied from
+ * the given stream once the report is done, or written by the report itself to the stream returned by {@link
+ * #openTarget()} and stored when the task is called.
+ */
 public class WriteToJcrTask implements Callable<Serializable> {
   private static final String CANT_CREATE_FILE_IN_JCR = "Can't create file in JCR";
   private static Log log = LogFactory.getLog( WriteToJcrTask.class );
 
 
-  private static final String FORMAT = "%s(%d)%s";
   private static final String TXT = ".txt";
   private static final String DEFAULT_NAME = "content";
   private static final String CANT_PERSIST_MSG = "Cant't persist report: ";
+
+  private static final int MAX_CONFLICTS = 10;
+
+  private static final SchedulingNameReservation nameReservation = new SchedulingNameReservation();
+
   private final IAsyncReportExecution<? extends IAsyncReportState> parentTask;
   private final InputStream inputStream;
+  private Target target;
 
 
+  /**
+   * Creates a task storing the content written to the stream returned by {@link #openTarget()}
+   *
+   * @param parentTask scheduled report
+   */
+  public WriteToJcrTask( final IAsyncReportExecution<? extends IAsyncReportState> parentTask ) {
+    this( parentTask, null );
+  }
+
   public WriteToJcrTask(
     final IAsyncReportExecution<? extends IAsyncReportState> parentTask,
     final InputStream inputStream ) {
@@ -52,71 +72,152 @@ public class WriteToJcrTask implements Callable<Serializable> {
 
 
   @Override public Serializable call() throws Exception {
+    if ( inputStream == null ) {
+      return storeTarget();
+    }
 
     try {
 
-      final IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
+      final Target copyTarget = createTarget();
 
+      try {
+        IOUtils.copy( inputStream, copyTarget.outputStream );
+        copyTarget.outputStream.flush();
+        return copyTarget.getFileId();
+      } finally {
+        IOUtils.closeQuietly( copyTarget.outputStream );
+      }
 
-      final org.pentaho.reporting.libraries.base.util.IOUtils utils = org.pentaho.reporting.libraries
-        .base.util.IOUtils.getInstance();
+    } catch ( final Exception e ) {
+      log.error( CANT_PERSIST_MSG, e );
+    } finally {
+      IOUtils.closeQuietly( inputStream );
+    }
 
+    return null;
+  }
 
-      final ISchedulingDirectoryStrategy directoryStrategy = PentahoSystem.get( ISchedulingDirectoryStrategy.class );
+  /**
+   * Creates the file in the scheduling directory, the content written to the returned stream is stored when the task
+   * is called.
+   *
+   * @return stream of the target file
+   * @throws Exception if the file can't be created
+   */
+  public synchronized OutputStream openTarget() throws Exception {
+    if ( target == null ) {
+      target = createTarget();
+    }
+    return target.outputStream;
+  }
 
-      final RepositoryFile outputFolder = directoryStrategy.getSchedulingDir( repo );
+  /**
+   * Removes the file created by {@link #openTarget()} without storing the content, used when the report fails.
+   */
+  public synchronized void discard() {
+    if ( target == null ) {
+      return;
+    }
+    try {
+      final IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
+      final RepositoryFile file = repo.getFile( target.path );
+      if ( file != null ) {
+        repo.deleteFile( file.getId(), true, null );
+      }
+    } catch ( final Exception e ) {
+      log.debug( "Can't remove the unused scheduling target: " + target.path, e );
+    }
+    target = null;
+  }
 
-      final ReportContentRepository repository = getReportContentRepository( outputFolder );
-      final ContentLocation dataLocation = repository.getRoot();
+  private synchronized Serializable storeTarget() {
+    if ( target == null ) {
+      log.error( CANT_PERSIST_MSG + "no target was opened for " + parentTask );
+      return null;
+    }
+    try {
+      // the repository stream writes the content on close
+      target.outputStream.close();
+      return target.getFileId();
+    } catch ( final Exception e ) {
+      log.error( CANT_PERSIST_MSG, e );
+      return null;
+    }
+  }
 
+  private Target createTarget() throws Exception {
+    final IUnifiedRepository repo = PentahoSystem.get( IUnifiedRepository.class );
 
-      final IAsyncReportState state = parentTask.getState();
 
-      final String extension = MimeHelper.getExtension( state.getMimeType() );
-      final String targetExt = extension != null ? extension : TXT;
-      final String fullPath = state.getPath();
-      String cleanFileName = utils.stripFileExtension( utils.getFileName( fullPath ) );
-      if ( StringUtil.isEmpty( cleanFileName ) ) {
-        cleanFileName = DEFAULT_NAME;
-      }
+    final org.pentaho.reporting.libraries.base.util.IOUtils utils = org.pentaho.reporting.libraries
+      .base.util.IOUtils.getInstance();
 
-      String targetName = cleanFileName + targetExt;
 
-      int copy = 1;
+    final ISchedulingDirectoryStrategy directoryStrategy = PentahoSystem.get( ISchedulingDirectoryStrategy.class );
 
-      final OutputStream outputStream;
+    final RepositoryFile outputFolder = directoryStrategy.getSchedulingDir( repo );
 
-      synchronized ( FORMAT ) {
-        while ( dataLocation.exists( targetName ) ) {
-          targetName = String.format( FORMAT, cleanFileName, copy, targetExt );
-          copy++;
-        }
-        outputStream = dataLocation.createItem( targetName ).getOutputStream();
-      }
+    final ReportContentRepository repository = getReportContentRepository( outputFolder );
+    final ContentLocation dataLocation = repository.getRoot();
 
-      if ( outputStream != null ) {
-        try {
-          IOUtils.copy( inputStream, outputStream );
-          outputStream.flush();
-          final RepositoryFile targetFile = repo.getFile( outputFolder.getPath() + "/" + targetName );
-          return targetFile.getId();
-        } finally {
-          IOUtils.closeQuietly( outputStream );
+
+    final IAsyncReportState state = parentTask.getState();
+
+    final String extension = MimeHelper.getExtension( state.getMimeType() );
+    final String targetExt = extension != null ? extension : TXT;
+    final String fullPath = state.getPath();
+    String cleanFileName = utils.stripFileExtension( utils.getFileName( fullPath ) );
+    if ( StringUtil.isEmpty( cleanFileName ) ) {
+      cleanFileName = DEFAULT_NAME;
+    }
+
+    final SchedulingNameReservation names = getNameReservation();
+    final String folderPath = outputFolder.getPath();
+    for ( int conflicts = 0; conflicts < MAX_CONFLICTS; conflicts++ ) {
+      final String targetName = names.reserve( dataLocation, folderPath, cleanFileName, targetExt );
+      try {
+        // the cached names miss files created since the folder was listed
+        if ( dataLocation.exists( targetName ) ) {
+          continue;
+        }
+        final OutputStream outputStream = dataLocation.createItem( targetName ).getOutputStream();
+        if ( outputStream == null ) {
+          throw new IOException( CANT_CREATE_FILE_IN_JCR );
         }
-      } else {
-        throw new IOException( CANT_CREATE_FILE_IN_JCR );
+        return new Target( repo, folderPath + "/" + targetName, outputStream );
+      } catch ( final ContentCreationException e ) {
+        log.debug( "Can't create " + targetName + ", trying the next name: ", e );
+      } finally {
+        names.release( folderPath, targetName );
       }
-
-    } catch ( final Exception e ) {
-      log.error( CANT_PERSIST_MSG, e );
-    } finally {
-      IOUtils.closeQuietly( inputStream );
     }
+    throw new IOException( CANT_CREATE_FILE_IN_JCR + ": no free name for " + cleanFileName + targetExt );
+  }
 
-    return null;
+  /**
+   * @return names reserved by the scheduled reports of this server
+   */
+  protected SchedulingNameReservation getNameReservation() {
+    return nameReservation;
   }
 
   protected ReportContentRepository getReportContentRepository( final RepositoryFile outputFolder ) {
     return new ReportContentRepository( outputFolder );
   }
+
+  private static final class Target {
+    private final IUnifiedRepository repo;
+    private final String path;
+    private final OutputStream outputStream;
+
+    private Target( final IUnifiedRepository repo, final String path, final OutputStream outputStream ) {
+      this.repo = repo;
+      this.path = path;
+      this.outputStream = outputStream;
+    }
+
+    private Serializable getFileId() {
+      return repo.getFile( path ).getId();
+    }
+  }
 }
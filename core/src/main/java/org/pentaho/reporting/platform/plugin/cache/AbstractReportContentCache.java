@@ -13,7 +13,12 @@
 package org.pentaho.reporting.platform.plugin.cache;
 
 
+import org.pentaho.platform.util.StringUtil;
+import org.pentaho.reporting.libraries.xmlns.parser.Base64;
+
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +28,8 @@ import java.util.Map;
  */
 public abstract class AbstractReportContentCache implements IReportContentCache {
 
+  public static final String ANONYMOUS = "anonymous";
+
   public AbstractReportContentCache() {
   }
 
@@ -42,6 +49,11 @@ public abstract class AbstractReportContentCache implements IReportContentCache
     return getBackend().write( computeKey( key ), value, metaData );
   }
 
+  @Override
+  public boolean append( final String key, final IReportContent value, final Map<String, Serializable> metaData ) {
+    return getBackend().append( computeKey( key ), value, metaData );
+  }
+
   @Override
   public IReportContent get( final String key ) {
     return (IReportContent) getBackend().read( computeKey( key ) );
@@ -60,4 +72,24 @@ public abstract class AbstractReportContentCache implements IReportContentCache
   }
 
   protected abstract List<String> computeKey( final String key );
+
+  /**
+   * Don't use username explicitly - compute hash
+   *
+   * @param userName user name
+   * @return key segment for the user
+   */
+  protected static String createUserKey( final String userName ) {
+    if ( StringUtil.isEmpty( userName ) ) {
+      return ANONYMOUS;
+    }
+    try {
+      final MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+      md.update( userName.getBytes() );
+      final byte[] digest = md.digest();
+      return new String( Base64.encode( digest ) );
+    } catch ( final NoSuchAlgorithmException e ) {
+      throw new Error( e );
+    }
+  }
 }
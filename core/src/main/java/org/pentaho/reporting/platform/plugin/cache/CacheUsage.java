@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Snapshot of the cache usage, sizes are in bytes
+ */
+@JsonPropertyOrder( alphabetic = true ) //stable response structure
+public class CacheUsage {
+
+  private final long entries;
+  private final long usedBytes;
+  private final long maxBytes;
+  private final long userEntries;
+  private final long userBytes;
+  private final long maxBytesPerUser;
+
+  public CacheUsage( final long entries, final long usedBytes, final long maxBytes, final long userEntries,
+                     final long userBytes, final long maxBytesPerUser ) {
+    this.entries = entries;
+    this.usedBytes = usedBytes;
+    this.maxBytes = maxBytes;
+    this.userEntries = userEntries;
+    this.userBytes = userBytes;
+    this.maxBytesPerUser = maxBytesPerUser;
+  }
+
+  public long getEntries() {
+    return entries;
+  }
+
+  public long getUsedBytes() {
+    return usedBytes;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getUserEntries() {
+    return userEntries;
+  }
+
+  public long getUserBytes() {
+    return userBytes;
+  }
+
+  public long getMaxBytesPerUser() {
+    return maxBytesPerUser;
+  }
+
+  @Override public String toString() {
+    return "CacheUsage{"
+      + "entries=" + entries
+      + ", usedBytes=" + usedBytes
+      + ", maxBytes=" + maxBytes
+      + ", userEntries=" + userEntries
+      + ", userBytes=" + userBytes
+      + ", maxBytesPerUser=" + maxBytesPerUser
+      + '}';
+  }
+}
@@ -16,20 +16,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
-import org.pentaho.platform.util.StringUtil;
-import org.pentaho.reporting.libraries.xmlns.parser.Base64;
 
 import java.io.Serializable;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Eviction strategy that kills old cache when accessed
+ * Eviction strategy that kills old cache. Entry timestamps are kept in an in-memory index, so an access only checks
+ * the entry itself, and expired entries are removed by a background janitor. The index is rebuilt from the stored
+ * metadata by the first janitor run.
  */
 public class DeleteOldOnAccessCache extends AbstractReportContentCache {
 
@@ -37,8 +41,14 @@ public class DeleteOldOnAccessCache extends AbstractReportContentCache {
   private static final String SEGMENT = "long_term";
   public static final String TIMESTAMP = "timestamp";
   public static final int MILLIS_IN_DAY = 86400000;
-  public static final String ANONYMOUS = "anonymous";
-  private long millisToLive;
+  public static final long DEFAULT_CLEANUP_INTERVAL_MILLIS = 10 * 60 * 1000;
+  private volatile long millisToLive;
+  private long cleanupIntervalMillis = DEFAULT_CLEANUP_INTERVAL_MILLIS;
+
+  private final ExpiryIndex index = new ExpiryIndex();
+  private volatile boolean indexed;
+  private volatile ScheduledExecutorService janitor;
+  private boolean stopped;
 
 
   public DeleteOldOnAccessCache( final ICacheBackend backend ) {
@@ -57,14 +67,26 @@ public class DeleteOldOnAccessCache extends AbstractReportContentCache {
     this.millisToLive = millisToLive;
   }
 
+  /**
+   * @param cleanupIntervalMinutes how often the janitor looks for expired entries
+   */
+  public void setCleanupIntervalMinutes( final long cleanupIntervalMinutes ) {
+    this.cleanupIntervalMillis = TimeUnit.MINUTES.toMillis( cleanupIntervalMinutes );
+  }
+
+  /*for testing purposes*/
+  protected void setCleanupIntervalMillis( final long cleanupIntervalMillis ) {
+    this.cleanupIntervalMillis = cleanupIntervalMillis;
+  }
+
   @Override protected List<String> computeKey( final String key ) {
     final IPentahoSession session = PentahoSessionHolder.getSession();
     //Don't use username explicitly - compute hash
-    return Collections.unmodifiableList( Arrays.asList( SEGMENT, createKey( session.getName() ), key ) );
+    return Collections.unmodifiableList( Arrays.asList( SEGMENT, createUserKey( session.getName() ), key ) );
   }
 
   /**
-   * Cleans old entries Saves value with timestamp
+   * Saves value with timestamp
    *
    * @param key   key
    * @param value value
@@ -75,7 +97,7 @@ public class DeleteOldOnAccessCache extends AbstractReportContentCache {
   }
 
   /**
-   * Cleans old entries Saves value with timestamp
+   * Saves value with timestamp
    *
    * @param key   key
    * @param value value
@@ -83,20 +105,49 @@ public class DeleteOldOnAccessCache extends AbstractReportContentCache {
    * @return success
    */
   @Override public boolean put( final String key, final IReportContent value,  Map<String, Serializable> metaData ) {
-    cleanUp();
+    startJanitor();
 
-    metaData.put( TIMESTAMP, System.currentTimeMillis() );
-    getBackend().write( computeKey( key ), value, metaData );
+    final long timestamp = System.currentTimeMillis();
+    final List<String> cacheKey = computeKey( key );
+    metaData.put( TIMESTAMP, timestamp );
+    if ( getBackend().write( cacheKey, value, metaData ) ) {
+      index.put( FileSystemCacheBackend.normalizeKey( cacheKey ), timestamp );
+    }
     return false;
   }
 
+  /**
+   * Appends pages, the entry lives from the time of the last append
+   *
+   * @param key      key
+   * @param value    new pages
+   * @param metaData metaData
+   * @return success
+   */
+  @Override public boolean append( final String key, final IReportContent value,
+                                   final Map<String, Serializable> metaData ) {
+    startJanitor();
+
+    final long timestamp = System.currentTimeMillis();
+    final List<String> cacheKey = computeKey( key );
+    metaData.put( TIMESTAMP, timestamp );
+    final boolean result = getBackend().append( cacheKey, value, metaData );
+    if ( result ) {
+      index.put( FileSystemCacheBackend.normalizeKey( cacheKey ), timestamp );
+    }
+    return result;
+  }
+
 
   /**
    * @param key key
    * @return ReportContent
    */
   @Override public IReportContent get( final String key ) {
-    cleanUp();
+    startJanitor();
+    if ( purgeIfExpired( computeKey( key ) ) ) {
+      return null;
+    }
     return super.get( key );
   }
 
@@ -105,7 +156,10 @@ public class DeleteOldOnAccessCache extends AbstractReportContentCache {
    * @return Map<String, Serializable>
    */
   @Override public Map<String, Serializable> getMetaData( String key ) {
-    cleanUp();
+    startJanitor();
+    if ( purgeIfExpired( computeKey( key ) ) ) {
+      return null;
+    }
     return super.getMetaData( key );
   }
 
@@ -118,46 +172,145 @@ public class DeleteOldOnAccessCache extends AbstractReportContentCache {
 
   @Override public void cleanupCurrentSession() {
     final IPentahoSession session = PentahoSessionHolder.getSession();
-    final List<String> key = Collections.unmodifiableList( Arrays.asList( SEGMENT, createKey( session.getName() ) ) );
+    final List<String> key = Collections.unmodifiableList( Arrays.asList( SEGMENT, createUserKey( session.getName() ) ) );
     final ICacheBackend backend = getBackend();
     backend.purgeSegment( key, ( k, m ) -> true );
+    index.removePrefix( FileSystemCacheBackend.normalizeKey( key ) );
+  }
+
+  /**
+   * Checks a single entry, the stored metadata is only read when the entry is not indexed yet.
+   *
+   * @param key cache key
+   * @return true if the entry was expired
+   */
+  private boolean purgeIfExpired( final List<String> key ) {
+    final List<String> indexKey = FileSystemCacheBackend.normalizeKey( key );
+    Long timestamp = index.get( indexKey );
+    if ( timestamp == null ) {
+      timestamp = getTimestamp( getBackend().readMetaData( key ) );
+      if ( timestamp == null ) {
+        return false;
+      }
+      index.put( indexKey, timestamp );
+    }
+    if ( System.currentTimeMillis() - timestamp > millisToLive ) {
+      logger.debug( "Purged long-term cache: " + key );
+      index.remove( indexKey );
+      getBackend().purge( key );
+      return true;
+    }
+    return false;
+  }
+
+  private void startJanitor() {
+    if ( janitor == null ) {
+      synchronized ( index ) {
+        if ( janitor == null && !stopped ) {
+          janitor = createJanitor();
+        }
+      }
+    }
+  }
+
+  private ScheduledExecutorService createJanitor() {
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor( r -> {
+      final Thread thread = Executors.defaultThreadFactory().newThread( r );
+      thread.setDaemon( true );
+      thread.setName( "DeleteOldOnAccessCache janitor" );
+      return thread;
+    } );
+    executor.scheduleWithFixedDelay( () -> {
+      try {
+        cleanUp();
+      } catch ( final Exception e ) {
+        logger.error( "Cache eviction failed: ", e );
+      }
+    }, 0, cleanupIntervalMillis, TimeUnit.MILLISECONDS );
+    return executor;
+  }
+
+  /**
+   * Stops the janitor, eviction still happens on access and on {@link #cleanup()}
+   */
+  public void shutdown() {
+    synchronized ( index ) {
+      stopped = true;
+      if ( janitor != null ) {
+        janitor.shutdownNow();
+      }
+    }
   }
 
   private void cleanUp() {
     logger.debug( "Starting periodical cache eviction" );
-    final long currentTimeMillis = System.currentTimeMillis();
-    final ICacheBackend backend = getBackend();
+    if ( !indexed ) {
+      rebuildIndex();
+    }
+    final long threshold = System.currentTimeMillis() - millisToLive;
+    final Set<List<String>> expired = index.pollExpired( threshold );
 
-    backend.purgeSegment( Collections.singletonList( SEGMENT ),
-      new BiPredicate<List<String>, Map<String, Serializable>>() {
-        @Override public boolean test( final List<String> key, final Map<String, Serializable> md ) {
-          final Object o = md.get( TIMESTAMP );
-          if ( o instanceof Long ) {
-            final long timestamp = (Long) o;
-            if ( currentTimeMillis - timestamp > millisToLive ) {
-              logger.debug( "Purged long-term cache: " + key );
-              return true;
-            }
-          }
+    //entries are checked again under the segment lock, so an entry rewritten in the meantime survives
+    final Map<List<String>, Set<List<String>>> byParent = new HashMap<>();
+    for ( final List<String> key : expired ) {
+      final List<String> parent = key.subList( 0, key.size() - 1 );
+      Set<List<String>> keys = byParent.get( parent );
+      if ( keys == null ) {
+        keys = new HashSet<>();
+        byParent.put( parent, keys );
+      }
+      keys.add( key );
+    }
+    for ( final Map.Entry<List<String>, Set<List<String>>> entry : byParent.entrySet() ) {
+      final Set<List<String>> keys = entry.getValue();
+      getBackend().purgeSegment( new ArrayList<>( entry.getKey() ), ( k, md ) -> {
+        if ( !keys.contains( FileSystemCacheBackend.normalizeKey( k ) ) ) {
           return false;
         }
+        final Long timestamp = getTimestamp( md );
+        if ( timestamp != null && timestamp >= threshold ) {
+          index.put( FileSystemCacheBackend.normalizeKey( k ), timestamp );
+          return false;
+        }
+        logger.debug( "Purged long-term cache: " + k );
+        return true;
       } );
+    }
 
     logger.debug( "Finished periodical cache eviction" );
   }
 
-
-  private String createKey( final String key ) {
-    if ( StringUtil.isEmpty( key ) ) {
-      return ANONYMOUS;
+  /**
+   * Reads timestamps of all stored entries, expired entries are purged on the way.
+   */
+  private synchronized void rebuildIndex() {
+    if ( indexed ) {
+      return;
     }
-    try {
-      final MessageDigest md = MessageDigest.getInstance( "SHA-256" );
-      md.update( key.getBytes() );
-      final byte[] digest = md.digest();
-      return new String( Base64.encode( digest ) );
-    } catch ( final NoSuchAlgorithmException e ) {
-      throw new Error( e );
+    final long currentTimeMillis = System.currentTimeMillis();
+    getBackend().purgeSegment( Collections.singletonList( SEGMENT ),
+      new BiPredicate<List<String>, Map<String, Serializable>>() {
+        @Override public boolean test( final List<String> key, final Map<String, Serializable> md ) {
+          final Long timestamp = getTimestamp( md );
+          if ( timestamp == null ) {
+            return false;
+          }
+          if ( currentTimeMillis - timestamp > millisToLive ) {
+            logger.debug( "Purged long-term cache: " + key );
+            return true;
+          }
+          index.put( FileSystemCacheBackend.normalizeKey( key ), timestamp );
+          return false;
+        }
+      } );
+    indexed = true;
+  }
+
+  private static Long getTimestamp( final Map<String, Serializable> md ) {
+    if ( md == null ) {
+      return null;
     }
+    final Object o = md.get( TIMESTAMP );
+    return o instanceof Long ? (Long) o : null;
   }
 }
@@ -0,0 +1,114 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory index of cache entry timestamps ordered by age. Rewritten entries leave their old queue element behind,
+ * such elements are skipped when polled and dropped when the queue is compacted.
+ */
+class ExpiryIndex {
+
+  private final Map<List<String>, Long> timestamps = new HashMap<>();
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+  /**
+   * Registers the entry, an older timestamp never replaces a newer one
+   *
+   * @param key       normalized key
+   * @param timestamp creation time
+   */
+  synchronized void put( final List<String> key, final long timestamp ) {
+    final Long current = timestamps.get( key );
+    if ( current != null && current >= timestamp ) {
+      return;
+    }
+    timestamps.put( key, timestamp );
+    queue.add( new Entry( key, timestamp ) );
+    if ( queue.size() > 2 * timestamps.size() + 16 ) {
+      compact();
+    }
+  }
+
+  synchronized Long get( final List<String> key ) {
+    return timestamps.get( key );
+  }
+
+  synchronized void remove( final List<String> key ) {
+    timestamps.remove( key );
+  }
+
+  synchronized void removePrefix( final List<String> prefix ) {
+    final Iterator<List<String>> iterator = timestamps.keySet().iterator();
+    while ( iterator.hasNext() ) {
+      final List<String> key = iterator.next();
+      if ( key.size() >= prefix.size() && key.subList( 0, prefix.size() ).equals( prefix ) ) {
+        iterator.remove();
+      }
+    }
+  }
+
+  synchronized int size() {
+    return timestamps.size();
+  }
+
+  /**
+   * Removes and returns the entries created before the threshold
+   *
+   * @param threshold oldest creation time that is still valid
+   * @return expired keys
+   */
+  synchronized Set<List<String>> pollExpired( final long threshold ) {
+    final Set<List<String>> result = new HashSet<>();
+    while ( !queue.isEmpty() && queue.peek().timestamp < threshold ) {
+      final Entry entry = queue.poll();
+      final Long current = timestamps.get( entry.key );
+      if ( current != null && current == entry.timestamp ) {
+        timestamps.remove( entry.key );
+        result.add( entry.key );
+      }
+    }
+    return result;
+  }
+
+  private void compact() {
+    final List<Entry> entries = new ArrayList<>( timestamps.size() );
+    for ( final Map.Entry<List<String>, Long> entry : timestamps.entrySet() ) {
+      entries.add( new Entry( entry.getKey(), entry.getValue() ) );
+    }
+    queue.clear();
+    queue.addAll( entries );
+  }
+
+  private static final class Entry implements Comparable<Entry> {
+    private final List<String> key;
+    private final long timestamp;
+
+    private Entry( final List<String> key, final long timestamp ) {
+      this.key = key;
+      this.timestamp = timestamp;
+    }
+
+    @Override public int compareTo( final Entry o ) {
+      return Long.compare( timestamp, o.timestamp );
+    }
+  }
+}
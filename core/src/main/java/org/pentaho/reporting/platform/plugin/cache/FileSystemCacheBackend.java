@@ -28,13 +28,12 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Default interface for cache backend
@@ -44,17 +43,14 @@ public class FileSystemCacheBackend implements ICacheBackend {
   private static final Log logger = LogFactory.getLog( FileSystemCacheBackend.class );
   public static final String REPLACEMENT = "_";
   public static final String SLASHES = "[/\\\\]+";
-  public static final String EXT = "\\.metadata|\\.data";
+  public static final String EXT = "\\.metadata|\\.data|\\.pages";
   public static final String DATA = ".data";
+  public static final String PAGES = ".pages";
   public static final String METADATA = ".metadata";
-  private final Map<List<String>, ReentrantReadWriteLock> syncMap;
+  private final KeyLockManager lockManager = new KeyLockManager();
 
   private String cachePath;
 
-  public FileSystemCacheBackend() {
-    syncMap = new HashMap<>();
-  }
-
   public void setCachePath( final String cachePath ) {
     this.cachePath = getSystemTmp() + cachePath;
   }
@@ -63,11 +59,21 @@ public class FileSystemCacheBackend implements ICacheBackend {
   public boolean write( final List<String> key, final Serializable value,
                         final Map<String, Serializable> metaData ) {
     final List<String> cleanKey = sanitizeKeySegments( key );
-    final List<Lock> locks = lockForWrite( cleanKey );
+    final List<KeyLockManager.Handle> locks = lockForWrite( cleanKey );
     try {
       final String filePath = cachePath + StringUtils.join( cleanKey, File.separator );
-      if ( writeFile( value, filePath + DATA ) ) {
-        return false;
+      if ( value instanceof IReportContent ) {
+        if ( writePages( (IReportContent) value, filePath ) ) {
+          return false;
+        }
+      } else {
+        if ( writeFile( value, filePath + DATA ) ) {
+          return false;
+        }
+        final File pages = new File( filePath + PAGES );
+        if ( pages.exists() ) {
+          pages.delete();
+        }
       }
 
       final HashMap<String, Serializable> writeableMetaData = new HashMap<>();
@@ -83,6 +89,37 @@ public class FileSystemCacheBackend implements ICacheBackend {
     }
   }
 
+  @Override
+  public boolean append( final List<String> key, final IReportContent value,
+                         final Map<String, Serializable> metaData ) {
+    final List<String> cleanKey = sanitizeKeySegments( key );
+    final List<KeyLockManager.Handle> locks = lockForWrite( cleanKey );
+    try {
+      final String filePath = cachePath + StringUtils.join( cleanKey, File.separator );
+      final File data = new File( filePath + DATA );
+      if ( data.exists() ) {
+        //content serialized by the previous versions can't be appended to
+        final Serializable stored = read( key );
+        data.delete();
+        if ( stored instanceof IReportContent ) {
+          PageSegmentFile.write( new File( filePath + PAGES ), (IReportContent) stored );
+        }
+      }
+      PageSegmentFile.append( new File( filePath + PAGES ), value );
+
+      final HashMap<String, Serializable> writeableMetaData = new HashMap<>();
+      if ( metaData != null ) {
+        writeableMetaData.putAll( metaData );
+      }
+      return !writeFile( writeableMetaData, filePath + METADATA );
+    } catch ( final IOException e ) {
+      logger.error( "Can't write cache: ", e );
+      return false;
+    } finally {
+      unlock( locks );
+    }
+  }
+
   private boolean writeFile( Serializable value, String filePath ) {
     final File file = new File( filePath );
     try {
@@ -103,15 +140,43 @@ public class FileSystemCacheBackend implements ICacheBackend {
     return false;
   }
 
+  /**
+   * Report content is stored as a page segment, so single pages can be read without loading the whole report.
+   */
+  private boolean writePages( final IReportContent value, final String filePath ) {
+    try {
+      PageSegmentFile.write( new File( filePath + PAGES ), value );
+      //remove serialized content written by the previous versions
+      final File data = new File( filePath + DATA );
+      if ( data.exists() ) {
+        data.delete();
+      }
+    } catch ( final IOException e ) {
+      logger.error( "Can't write cache: ", e );
+      return true;
+    }
+    return false;
+  }
+
 
   @Override
   public Serializable read( final List<String> key ) {
     Object result = null;
     final List<String> cleanKey = sanitizeKeySegments( key );
-    final List<Lock> locks = lockForRead( cleanKey );
+    final List<KeyLockManager.Handle> locks = lockForRead( cleanKey );
     try {
-      final String filePath = cachePath + StringUtils.join( cleanKey, File.separator ) + DATA;
-      final File f = new File( filePath );
+      final String basePath = cachePath + StringUtils.join( cleanKey, File.separator );
+      final File pages = new File( basePath + PAGES );
+      if ( pages.exists() ) {
+        try {
+          return PageSegmentFile.open( pages );
+        } catch ( final IOException e ) {
+          logger.debug( "Can't read cache: ", e );
+          return null;
+        }
+      }
+
+      final File f = new File( basePath + DATA );
       if ( !f.exists() ) {
         return null;
       }
@@ -137,7 +202,7 @@ public class FileSystemCacheBackend implements ICacheBackend {
       noExtCleanKey.add( cleanSegment.replaceAll( EXT, "" ) );
     }
 
-    final List<Lock> locks = lockForRead( noExtCleanKey );
+    final List<KeyLockManager.Handle> locks = lockForRead( noExtCleanKey );
     try {
       final String filePath = cachePath + StringUtils.join( noExtCleanKey, File.separator ) + METADATA;
       final File f = new File( filePath );
@@ -167,25 +232,28 @@ public class FileSystemCacheBackend implements ICacheBackend {
    *
    * @param locks
    */
-  private void unlock( final List<Lock> locks ) {
+  private void unlock( final List<KeyLockManager.Handle> locks ) {
     for ( int i = locks.size() - 1; i >= 0; i-- ) {
-      final Lock lock = locks.get( i );
-      lock.unlock();
+      locks.get( i ).release();
     }
   }
 
-  private List<Lock> lockForRead( List<String> key ) {
-    List<Lock> retval;
-    if ( !key.isEmpty() ) {
-      final List<String> parent = key.subList( 0, key.size() - 1 );
-      retval = lockForRead( parent );
-    } else {
-      retval = new ArrayList<>();
+  /**
+   * Acquires read locks for the key and all of its parents, starting from the root.
+   *
+   * @param key
+   * @return
+   */
+  private List<KeyLockManager.Handle> lockForRead( final List<String> key ) {
+    final List<KeyLockManager.Handle> retval = new ArrayList<>( key.size() + 1 );
+    try {
+      for ( int i = 0; i <= key.size(); i++ ) {
+        retval.add( lockManager.lockForRead( key.subList( 0, i ) ) );
+      }
+    } catch ( final RuntimeException e ) {
+      unlock( retval );
+      throw e;
     }
-
-    final Lock lock = getLock( key ).readLock();
-    lock.lock();
-    retval.add( lock );
     return retval;
   }
 
@@ -196,40 +264,26 @@ public class FileSystemCacheBackend implements ICacheBackend {
    * @param key
    * @return
    */
-  private List<Lock> lockForWrite( final List<String> key ) {
-    final List<Lock> retval;
+  private List<KeyLockManager.Handle> lockForWrite( final List<String> key ) {
+    final List<KeyLockManager.Handle> retval;
     if ( CollectionUtils.isNotEmpty( key ) ) {
-      final List<String> parent = key.subList( 0, key.size() - 1 );
-      retval = lockForRead( parent );
+      retval = lockForRead( key.subList( 0, key.size() - 1 ) );
     } else {
-      retval = new ArrayList<>();
+      retval = new ArrayList<>( 1 );
     }
-
-    final Lock lock = getLock( key ).writeLock();
-    lock.lock();
-    retval.add( lock );
-    return retval;
-  }
-
-  /**
-   * Returns an object for read/write synchronization
-   *
-   * @param key compound key
-   * @return lock object
-   */
-  private synchronized ReentrantReadWriteLock getLock( final List<String> key ) {
-    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock( true );
-    if ( !syncMap.containsKey( key ) ) {
-      syncMap.put( key, lock );
-      return lock;
+    try {
+      retval.add( lockManager.lockForWrite( key ) );
+    } catch ( final RuntimeException e ) {
+      unlock( retval );
+      throw e;
     }
-    return syncMap.get( key );
+    return retval;
   }
 
   public void purgeSegment( final List<String> key,
                             final BiPredicate<List<String>, Map<String, Serializable>> p ) {
     final List<String> cleanKey = sanitizeKeySegments( key );
-    final List<Lock> locks = lockForWrite( cleanKey );
+    final List<KeyLockManager.Handle> locks = lockForWrite( cleanKey );
     try {
       for ( String name : listKeys( cleanKey ) ) {
         ArrayList<String> entryKey = new ArrayList<>( cleanKey );
@@ -252,17 +306,17 @@ public class FileSystemCacheBackend implements ICacheBackend {
   @Override
   public boolean purge( final List<String> key ) {
     final List<String> cleanKey = sanitizeKeySegments( key );
-    final List<Lock> locks = lockForWrite( cleanKey );
+    final List<KeyLockManager.Handle> locks = lockForWrite( cleanKey );
     try {
       final String fileName = cachePath + StringUtils.join( cleanKey, File.separator );
 
-      if ( fileName.endsWith( DATA ) ) {
+      if ( fileName.endsWith( DATA ) || fileName.endsWith( PAGES ) ) {
         final File data = new File( fileName );
         if ( !data.exists() ) {
           return true;
         }
-        final File meta = new File( fileName.replace( DATA, METADATA ) );
-        return data.delete() && meta.delete();
+        final String entryName = fileName.substring( 0, fileName.lastIndexOf( '.' ) );
+        return deleteEntry( entryName );
       }
 
       final File file = new File( fileName );
@@ -281,23 +335,39 @@ public class FileSystemCacheBackend implements ICacheBackend {
 
 
       final File data = new File( fileName + DATA );
+      final File pages = new File( fileName + PAGES );
 
-      if ( !file.exists() && !data.exists() ) {
+      if ( !file.exists() && !data.exists() && !pages.exists() ) {
         return true;
       }
 
-      final File metadata = new File( fileName + METADATA );
-      return data.delete() && metadata.delete();
+      return deleteEntry( fileName );
 
     } catch ( final Exception e ) {
       logger.debug( "Can't delete cache: ", e );
       return false;
     } finally {
       unlock( locks );
-      syncMap.remove( cleanKey );
     }
   }
 
+  /**
+   * Removes every file of a single cache entry
+   *
+   * @param fileName entry path without extension
+   * @return if all files were removed
+   */
+  private boolean deleteEntry( final String fileName ) {
+    boolean result = true;
+    for ( final String ext : new String[] { DATA, PAGES, METADATA } ) {
+      final File file = new File( fileName + ext );
+      if ( file.exists() && !file.delete() ) {
+        result = false;
+      }
+    }
+    return result;
+  }
+
   private Set<String> listKeys( final List<String> unsafeKey ) {
     final List<String> sanitized = sanitizeKeySegments( unsafeKey );
     final Set<String> resultSet = new HashSet<>();
@@ -306,7 +376,7 @@ public class FileSystemCacheBackend implements ICacheBackend {
     if ( fList != null ) {
       for ( final File file : fList ) {
         final String name = file.getName();
-        if ( file.isFile() && name.endsWith( DATA ) ) {
+        if ( file.isFile() && ( name.endsWith( DATA ) || name.endsWith( PAGES ) ) ) {
           resultSet.add( IOUtils.getInstance().getFileName( name ) );
         }
       }
@@ -340,6 +410,21 @@ public class FileSystemCacheBackend implements ICacheBackend {
     return s;
   }
 
+  /**
+   * Brings the key to the form used for files, without the extension, so keys reported by purgeSegment match the
+   * ones used for reads and writes.
+   *
+   * @param key compound key
+   * @return unmodifiable normalized key
+   */
+  static List<String> normalizeKey( final List<String> key ) {
+    final List<String> result = new ArrayList<>();
+    for ( final String segment : sanitizeKeySegments( key ) ) {
+      result.add( segment.replaceAll( EXT, "" ) );
+    }
+    return Collections.unmodifiableList( result );
+  }
+
   private static List<String> sanitizeKeySegments( final List<String> key ) {
     final List<String> clean = new ArrayList<>();
     if ( key != null ) {
@@ -351,13 +436,7 @@ public class FileSystemCacheBackend implements ICacheBackend {
   }
 
   @VisibleForTesting
-  void setSyncMap( Map<List<String>, ReentrantReadWriteLock> newMap ) {
-    this.syncMap.clear();
-    this.syncMap.putAll( newMap );
-  }
-
-  @VisibleForTesting
-  Map<List<String>, ReentrantReadWriteLock> getSyncMap() {
-    return this.syncMap;
+  KeyLockManager getLockManager() {
+    return lockManager;
   }
 }
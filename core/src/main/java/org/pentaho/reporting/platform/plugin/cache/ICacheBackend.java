@@ -30,6 +30,23 @@ public interface ICacheBackend {
    */
   boolean write( List<String> key, Serializable value, Map<String, Serializable> metaData );
 
+  /**
+   * Adds pages to stored report content, pages that are already stored are kept. Writes the value if nothing is
+   * stored yet. The default implementation reads the stored content and writes it back with the new pages.
+   *
+   * @param key      path
+   * @param value    new pages, the page count is the new page count of the content
+   * @param metaData metadata that replaces the stored one
+   * @return if operation succeed
+   */
+  default boolean append( final List<String> key, final IReportContent value,
+                          final Map<String, Serializable> metaData ) {
+    final Serializable stored = read( key );
+    final IReportContent content =
+      stored instanceof IReportContent ? ReportContentImpl.merge( (IReportContent) stored, value ) : value;
+    return write( key, content, metaData );
+  }
+
   /**
    * Retrive object from storage
    *
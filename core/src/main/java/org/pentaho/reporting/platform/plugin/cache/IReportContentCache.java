@@ -21,6 +21,19 @@ public interface IReportContentCache {
 
   boolean put( String key, IReportContent value, Map<String, Serializable> metaData );
 
+  /**
+   * Adds newly produced pages to the content stored for the key, used to persist a report while it is generated. The
+   * default implementation reads the stored content and puts it back with the new pages.
+   *
+   * @param key      key
+   * @param value    new pages, the page count is the new page count of the content
+   * @param metaData metadata
+   * @return success
+   */
+  default boolean append( final String key, final IReportContent value, final Map<String, Serializable> metaData ) {
+    return put( key, ReportContentImpl.merge( get( key ), value ), metaData );
+  }
+
   IReportContent get( String key );
 
   Map<String, Serializable> getMetaData( String key );
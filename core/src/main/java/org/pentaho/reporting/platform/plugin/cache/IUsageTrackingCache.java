@@ -0,0 +1,24 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+/**
+ * Report content cache that knows how much space its entries take
+ */
+public interface IUsageTrackingCache extends IReportContentCache {
+
+  /**
+   * @return usage of the whole cache and of the current user
+   */
+  CacheUsage getUsage();
+}
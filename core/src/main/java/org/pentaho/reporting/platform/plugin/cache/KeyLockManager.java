@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read/write locks per compound key. A lock exists only while somebody holds or waits for it, so the number of
+ * entries is bounded by the number of concurrent callers and not by the number of keys ever used. Lookups don't
+ * go through a global monitor, only the hash bin of the key is locked while the reference count changes.
+ */
+class KeyLockManager {
+
+  private final ConcurrentHashMap<List<String>, KeyLock> locks = new ConcurrentHashMap<>();
+
+  /**
+   * Acquires a shared lock for the key
+   *
+   * @param key compound key
+   * @return held lock, must be released with {@link Handle#release()}
+   */
+  Handle lockForRead( final List<String> key ) {
+    return lock( key, false );
+  }
+
+  /**
+   * Acquires an exclusive lock for the key
+   *
+   * @param key compound key
+   * @return held lock, must be released with {@link Handle#release()}
+   */
+  Handle lockForWrite( final List<String> key ) {
+    return lock( key, true );
+  }
+
+  /**
+   * @return number of keys that are currently locked or waited for
+   */
+  int size() {
+    return locks.size();
+  }
+
+  boolean isLocked( final List<String> key ) {
+    return locks.containsKey( key );
+  }
+
+  private Handle lock( final List<String> key, final boolean write ) {
+    final List<String> immutableKey = Collections.unmodifiableList( new ArrayList<>( key ) );
+    final KeyLock keyLock = locks.compute( immutableKey, ( k, current ) -> {
+      final KeyLock result = current == null ? new KeyLock() : current;
+      result.references++;
+      return result;
+    } );
+
+    final Lock lock = write ? keyLock.writeLock() : keyLock.readLock();
+    try {
+      lock.lock();
+    } catch ( final RuntimeException | Error e ) {
+      dereference( immutableKey );
+      throw e;
+    }
+    return new Handle( immutableKey, lock );
+  }
+
+  private void dereference( final List<String> key ) {
+    locks.computeIfPresent( key, ( k, current ) -> --current.references == 0 ? null : current );
+  }
+
+  /**
+   * Reference counts are only changed inside the map's compute methods, which are atomic per key.
+   */
+  private static final class KeyLock extends ReentrantReadWriteLock {
+    private int references;
+  }
+
+  final class Handle {
+    private final List<String> key;
+    private final Lock lock;
+
+    private Handle( final List<String> key, final Lock lock ) {
+      this.key = key;
+      this.lock = lock;
+    }
+
+    void release() {
+      lock.unlock();
+      dereference( key );
+    }
+  }
+}
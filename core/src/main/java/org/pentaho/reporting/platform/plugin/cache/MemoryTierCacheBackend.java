@@ -0,0 +1,474 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.libraries.base.util.ArgumentNullException;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process tier in front of another cache backend. Keeps recently used report pages in direct buffers, bounded by
+ * the total size in bytes, and evicts least recently used entries. Misses fall through to the delegate, writes go to
+ * the delegate first and then refresh the tier.
+ */
+public class MemoryTierCacheBackend implements ICacheBackend {
+
+  private static final Log logger = LogFactory.getLog( MemoryTierCacheBackend.class );
+
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  /**
+   * Approximate heap cost of a single slot, charged on top of the page size
+   */
+  static final int SLOT_OVERHEAD = 128;
+  private static final int CONTENT = -1;
+  private static final int METADATA = -2;
+  private static final int STRIPES = 256;
+
+  private final Object lock = new Object();
+  private final LinkedHashMap<SlotKey, Slot> slots = new LinkedHashMap<>( 256, 0.75f, true );
+  private final Map<List<String>, Set<SlotKey>> slotsByKey = new HashMap<>();
+  private final long[] generations = new long[ STRIPES ];
+  private long usedBytes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  private ICacheBackend delegate;
+  private long maxBytes = DEFAULT_MAX_BYTES;
+
+  public MemoryTierCacheBackend() {
+  }
+
+  public MemoryTierCacheBackend( final ICacheBackend delegate, final long maxBytes ) {
+    this.delegate = delegate;
+    this.maxBytes = maxBytes;
+  }
+
+  public ICacheBackend getDelegate() {
+    return delegate;
+  }
+
+  public void setDelegate( final ICacheBackend delegate ) {
+    this.delegate = delegate;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes( final long maxBytes ) {
+    synchronized ( lock ) {
+      this.maxBytes = maxBytes;
+      evict();
+    }
+  }
+
+  public long getUsedBytes() {
+    synchronized ( lock ) {
+      return usedBytes;
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Writes to the delegate and refreshes the tier with the new value. Pages are written through only until a quarter
+   * of the tier is filled, so a single huge report can't flush the whole working set.
+   */
+  @Override
+  public boolean write( final List<String> key, final Serializable value, final Map<String, Serializable> metaData ) {
+    ArgumentNullException.validate( "delegate", delegate );
+    final boolean result = delegate.write( key, value, metaData );
+    final List<String> slotKey = FileSystemCacheBackend.normalizeKey( key );
+
+    final Map<Integer, ByteBuffer> pages = new HashMap<>();
+    if ( result && value instanceof IReportContent ) {
+      final IReportContent content = (IReportContent) value;
+      final long budget = maxBytes / 4;
+      long size = 0;
+      for ( int page = 0, found = 0;
+            page < content.getPageCount() && found < content.getStoredPageCount(); page++ ) {
+        final byte[] data = content.getPageData( page );
+        if ( data == null ) {
+          continue;
+        }
+        found++;
+        size += data.length + SLOT_OVERHEAD;
+        if ( size > budget ) {
+          break;
+        }
+        pages.put( page, toBuffer( data ) );
+      }
+    }
+
+    synchronized ( lock ) {
+      invalidate( slotKey );
+      if ( result && value instanceof IReportContent ) {
+        final IReportContent content = (IReportContent) value;
+        store( new SlotKey( slotKey, CONTENT ),
+          new Slot( content.getPageCount(), content.getStoredPageCount() ) );
+        store( new SlotKey( slotKey, METADATA ), new Slot( copy( metaData ) ) );
+        for ( final Map.Entry<Integer, ByteBuffer> entry : pages.entrySet() ) {
+          store( new SlotKey( slotKey, entry.getKey() ), new Slot( entry.getValue() ) );
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Appends to the delegate. The tier drops what it knows about the entry, pages are picked up again when read.
+   */
+  @Override
+  public boolean append( final List<String> key, final IReportContent value,
+                         final Map<String, Serializable> metaData ) {
+    ArgumentNullException.validate( "delegate", delegate );
+    final boolean result = delegate.append( key, value, metaData );
+    synchronized ( lock ) {
+      invalidate( FileSystemCacheBackend.normalizeKey( key ) );
+    }
+    return result;
+  }
+
+  @Override
+  public Serializable read( final List<String> key ) {
+    ArgumentNullException.validate( "delegate", delegate );
+    final List<String> slotKey = FileSystemCacheBackend.normalizeKey( key );
+    final long generation;
+    synchronized ( lock ) {
+      generation = generation( slotKey );
+      final Slot slot = slots.get( new SlotKey( slotKey, CONTENT ) );
+      if ( slot != null ) {
+        hits.incrementAndGet();
+        return new TieredReportContent( this, key, slotKey, generation, slot.pageCount, slot.storedPageCount, null );
+      }
+    }
+    misses.incrementAndGet();
+
+    final Serializable value = delegate.read( key );
+    if ( !( value instanceof IReportContent ) ) {
+      return value;
+    }
+    final IReportContent content = (IReportContent) value;
+    synchronized ( lock ) {
+      if ( generation == generation( slotKey ) ) {
+        store( new SlotKey( slotKey, CONTENT ), new Slot( content.getPageCount(), content.getStoredPageCount() ) );
+      }
+    }
+    return new TieredReportContent( this, key, slotKey, generation, content.getPageCount(),
+      content.getStoredPageCount(), content );
+  }
+
+  @Override
+  public Map<String, Serializable> readMetaData( final List<String> key ) {
+    ArgumentNullException.validate( "delegate", delegate );
+    final List<String> slotKey = FileSystemCacheBackend.normalizeKey( key );
+    final long generation;
+    synchronized ( lock ) {
+      generation = generation( slotKey );
+      final Slot slot = slots.get( new SlotKey( slotKey, METADATA ) );
+      if ( slot != null ) {
+        hits.incrementAndGet();
+        return copy( slot.metaData );
+      }
+    }
+    misses.incrementAndGet();
+
+    final Map<String, Serializable> metaData = delegate.readMetaData( key );
+    if ( metaData != null ) {
+      synchronized ( lock ) {
+        if ( generation == generation( slotKey ) ) {
+          store( new SlotKey( slotKey, METADATA ), new Slot( copy( metaData ) ) );
+        }
+      }
+    }
+    return metaData;
+  }
+
+  @Override
+  public boolean purge( final List<String> key ) {
+    ArgumentNullException.validate( "delegate", delegate );
+    final boolean result = delegate.purge( key );
+    synchronized ( lock ) {
+      invalidatePrefix( FileSystemCacheBackend.normalizeKey( key ) );
+    }
+    return result;
+  }
+
+  @Override
+  public void purgeSegment( final List<String> key, final BiPredicate<List<String>, Map<String, Serializable>> p ) {
+    ArgumentNullException.validate( "delegate", delegate );
+    final List<List<String>> purged = Collections.synchronizedList( new ArrayList<List<String>>() );
+    delegate.purgeSegment( key, new BiPredicate<List<String>, Map<String, Serializable>>() {
+      @Override public boolean test( final List<String> entryKey, final Map<String, Serializable> metaData ) {
+        final boolean result = p.test( entryKey, metaData );
+        if ( result ) {
+          purged.add( FileSystemCacheBackend.normalizeKey( entryKey ) );
+        }
+        return result;
+      }
+    } );
+    synchronized ( lock ) {
+      for ( final List<String> entryKey : purged ) {
+        invalidate( entryKey );
+      }
+    }
+  }
+
+  byte[] getPage( final List<String> slotKey, final int page ) {
+    final ByteBuffer buffer;
+    synchronized ( lock ) {
+      final Slot slot = slots.get( new SlotKey( slotKey, page ) );
+      if ( slot == null ) {
+        return null;
+      }
+      buffer = slot.page.duplicate();
+    }
+    final byte[] data = new byte[ buffer.remaining() ];
+    buffer.get( data );
+    return data;
+  }
+
+  void putPage( final List<String> slotKey, final long generation, final int page, final byte[] data ) {
+    if ( data.length + SLOT_OVERHEAD > maxBytes ) {
+      return;
+    }
+    final ByteBuffer buffer = toBuffer( data );
+    synchronized ( lock ) {
+      // the entry was rewritten or purged while the page was read from the delegate
+      if ( generation == generation( slotKey ) ) {
+        store( new SlotKey( slotKey, page ), new Slot( buffer ) );
+      }
+    }
+  }
+
+  private void store( final SlotKey slotKey, final Slot slot ) {
+    final Slot old = slots.put( slotKey, slot );
+    if ( old != null ) {
+      usedBytes -= old.weight;
+    }
+    usedBytes += slot.weight;
+    Set<SlotKey> keySlots = slotsByKey.get( slotKey.key );
+    if ( keySlots == null ) {
+      keySlots = new HashSet<>();
+      slotsByKey.put( slotKey.key, keySlots );
+    }
+    keySlots.add( slotKey );
+    evict();
+  }
+
+  private void evict() {
+    final Iterator<Map.Entry<SlotKey, Slot>> iterator = slots.entrySet().iterator();
+    while ( usedBytes > maxBytes && iterator.hasNext() ) {
+      final Map.Entry<SlotKey, Slot> eldest = iterator.next();
+      iterator.remove();
+      usedBytes -= eldest.getValue().weight;
+      unindex( eldest.getKey() );
+      evictions.incrementAndGet();
+    }
+  }
+
+  private void unindex( final SlotKey slotKey ) {
+    final Set<SlotKey> keySlots = slotsByKey.get( slotKey.key );
+    if ( keySlots != null ) {
+      keySlots.remove( slotKey );
+      if ( keySlots.isEmpty() ) {
+        slotsByKey.remove( slotKey.key );
+      }
+    }
+  }
+
+  private void invalidate( final List<String> key ) {
+    generations[ stripe( key ) ]++;
+    final Set<SlotKey> keySlots = slotsByKey.remove( key );
+    if ( keySlots != null ) {
+      for ( final SlotKey slotKey : keySlots ) {
+        final Slot slot = slots.remove( slotKey );
+        if ( slot != null ) {
+          usedBytes -= slot.weight;
+        }
+      }
+    }
+  }
+
+  private void invalidatePrefix( final List<String> prefix ) {
+    for ( int i = 0; i < generations.length; i++ ) {
+      generations[ i ]++;
+    }
+    for ( final List<String> key : new ArrayList<>( slotsByKey.keySet() ) ) {
+      if ( key.size() >= prefix.size() && key.subList( 0, prefix.size() ).equals( prefix ) ) {
+        invalidate( key );
+      }
+    }
+  }
+
+  private long generation( final List<String> key ) {
+    return generations[ stripe( key ) ];
+  }
+
+  private static int stripe( final List<String> key ) {
+    return ( key.hashCode() & 0x7fffffff ) % STRIPES;
+  }
+
+  private static ByteBuffer toBuffer( final byte[] data ) {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect( data.length );
+    buffer.put( data );
+    buffer.flip();
+    return buffer;
+  }
+
+  private static Map<String, Serializable> copy( final Map<String, Serializable> metaData ) {
+    return metaData == null ? new HashMap<String, Serializable>() : new HashMap<>( metaData );
+  }
+
+  private static final class SlotKey {
+    private final List<String> key;
+    private final int page;
+
+    private SlotKey( final List<String> key, final int page ) {
+      this.key = key;
+      this.page = page;
+    }
+
+    @Override public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( o == null || getClass() != o.getClass() ) {
+        return false;
+      }
+      final SlotKey that = (SlotKey) o;
+      return page == that.page && key.equals( that.key );
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash( key, page );
+    }
+  }
+
+  private static final class Slot {
+    private final long weight;
+    private int pageCount;
+    private int storedPageCount;
+    private Map<String, Serializable> metaData;
+    private ByteBuffer page;
+
+    private Slot( final int pageCount, final int storedPageCount ) {
+      this.pageCount = pageCount;
+      this.storedPageCount = storedPageCount;
+      this.weight = SLOT_OVERHEAD;
+    }
+
+    private Slot( final Map<String, Serializable> metaData ) {
+      this.metaData = metaData;
+      this.weight = SLOT_OVERHEAD * ( 1 + metaData.size() );
+    }
+
+    private Slot( final ByteBuffer page ) {
+      this.page = page;
+      this.weight = SLOT_OVERHEAD + page.capacity();
+    }
+  }
+
+  /**
+   * Content served from the tier. The delegate is only asked for the content when a page is missing in memory. The
+   * page reads are part of the lookup of the content and are not counted as hits or misses. The content is serialized
+   * with its pages, as it is bound to the tier.
+   */
+  private static final class TieredReportContent implements IReportContent {
+    private final transient MemoryTierCacheBackend tier;
+    private final List<String> key;
+    private final List<String> slotKey;
+    private final long generation;
+    private final int pageCount;
+    private final int storedPageCount;
+    private transient IReportContent source;
+
+    private TieredReportContent( final MemoryTierCacheBackend tier, final List<String> key,
+                                 final List<String> slotKey, final long generation, final int pageCount,
+                                 final int storedPageCount, final IReportContent source ) {
+      this.tier = tier;
+      this.key = key;
+      this.slotKey = slotKey;
+      this.generation = generation;
+      this.pageCount = pageCount;
+      this.storedPageCount = storedPageCount;
+      this.source = source;
+    }
+
+    @Override public int getPageCount() {
+      return pageCount;
+    }
+
+    @Override public int getStoredPageCount() {
+      return storedPageCount;
+    }
+
+    @Override public byte[] getPageData( final int page ) {
+      byte[] data = tier.getPage( slotKey, page );
+      if ( data != null ) {
+        return data;
+      }
+      if ( source == null ) {
+        final Serializable value = tier.getDelegate().read( key );
+        if ( !( value instanceof IReportContent ) ) {
+          logger.debug( "Cached content is gone: " + slotKey );
+          return null;
+        }
+        source = (IReportContent) value;
+      }
+      data = source.getPageData( page );
+      if ( data != null ) {
+        tier.putPage( slotKey, generation, page, data );
+      }
+      return data;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+      final HashMap<Integer, byte[]> pages = new HashMap<>();
+      for ( int page = 0; page < pageCount; page++ ) {
+        final byte[] data = getPageData( page );
+        if ( data != null ) {
+          pages.put( page, data );
+        }
+      }
+      return new ReportContentImpl( pageCount, pages );
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * On-disk layout for cached report pages.
+ * <p>
+ * A segment file is append-only and looks like:
+ * <pre>
+ *   header : int magic, int version, long segmentId
+ *   blobs  : page bytes, one after another
+ *   index  : int pageCount, int entryCount, entryCount * ( int page, long offset, int length )
+ *   footer : long indexOffset, int magic
+ * </pre>
+ * Readers only load the index and fetch page blobs by offset, so a single page can be served without touching the
+ * rest of the report. Blobs are never overwritten, a full rewrite always creates a new file with a new segment id.
+ * An append copies the blobs to a new file with the same segment id, so the offsets of the stored pages stay valid.
+ * Files are always written aside and moved in place, readers never see a partially written segment.
+ */
+public final class PageSegmentFile {
+
+  static final int MAGIC = 0x50525047; // "PRPG"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+  static final int FOOTER_SIZE = 12;
+  private static final int INDEX_ENTRY_SIZE = 16;
+  private static final String TMP = ".tmp";
+
+  private static final Random random = new SecureRandom();
+
+  private PageSegmentFile() {
+  }
+
+  /**
+   * Writes all stored pages of the content to a fresh segment file. The file is written aside and moved in place, so
+   * concurrent readers see either the old or the new segment, never a partial one.
+   *
+   * @param target  segment file
+   * @param content report content
+   * @return content backed by the written segment
+   * @throws IOException if the file can't be written
+   */
+  public static PageSegmentReportContent write( final File target, final IReportContent content ) throws IOException {
+    final File parent = target.getParentFile();
+    if ( parent != null ) {
+      parent.mkdirs();
+    }
+    final File tmp = new File( target.getPath() + TMP );
+    final long segmentId = random.nextLong();
+    final int pageCount = content.getPageCount();
+    final int storedPageCount = content.getStoredPageCount();
+
+    final int[] pages = new int[ storedPageCount ];
+    final long[] offsets = new long[ storedPageCount ];
+    final int[] lengths = new int[ storedPageCount ];
+    int entries = 0;
+
+    try ( final DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ) {
+      out.writeInt( MAGIC );
+      out.writeInt( VERSION );
+      out.writeLong( segmentId );
+      long position = HEADER_SIZE;
+      for ( int page = 0; page < pageCount && entries < storedPageCount; page++ ) {
+        final byte[] data = readPageData( content, page );
+        if ( data == null ) {
+          continue;
+        }
+        out.write( data );
+        pages[ entries ] = page;
+        offsets[ entries ] = position;
+        lengths[ entries ] = data.length;
+        position += data.length;
+        entries++;
+      }
+      writeIndex( out, pageCount, entries, pages, offsets, lengths );
+      out.writeLong( position );
+      out.writeInt( MAGIC );
+    } catch ( final IOException e ) {
+      tmp.delete();
+      throw e;
+    }
+
+    move( tmp, target );
+    return new PageSegmentReportContent( target, segmentId, pageCount,
+      trim( pages, entries ), trim( offsets, entries ), trim( lengths, entries ) );
+  }
+
+  /**
+   * Appends the pages that are not stored yet to an existing segment. The stored blobs are copied to a new file by the
+   * file system without reading them, the new blobs, the merged index and the footer follow, then the file is moved in
+   * place like in {@link #write(File, IReportContent)}. Stored blobs keep their offsets and the segment id, so content
+   * opened before stays readable. Callers must hold an exclusive lock on the entry. A missing or unreadable segment is
+   * replaced by a fresh one.
+   *
+   * @param target segment file
+   * @param content new pages, its page count becomes the page count of the segment
+   * @return content backed by the segment
+   * @throws IOException if the file can't be written
+   */
+  public static PageSegmentReportContent append( final File target, final IReportContent content )
+    throws IOException {
+    final PageSegmentReportContent current;
+    try {
+      current = target.exists() ? open( target ) : null;
+    } catch ( final IOException e ) {
+      return write( target, content );
+    }
+    if ( current == null ) {
+      return write( target, content );
+    }
+
+    final int[] oldPages = current.getPages();
+    final long[] oldOffsets = current.getOffsets();
+    final int[] oldLengths = current.getLengths();
+    final int pageCount = Math.max( content.getPageCount(), current.getPageCount() );
+    final int capacity = oldPages.length + content.getStoredPageCount();
+    final int[] pages = new int[ capacity ];
+    final long[] offsets = new long[ capacity ];
+    final int[] lengths = new int[ capacity ];
+    System.arraycopy( oldPages, 0, pages, 0, oldPages.length );
+    System.arraycopy( oldOffsets, 0, offsets, 0, oldPages.length );
+    System.arraycopy( oldLengths, 0, lengths, 0, oldPages.length );
+    int entries = oldPages.length;
+    boolean sorted = true;
+
+    final File tmp = new File( target.getPath() + TMP );
+    try ( final FileChannel source = FileChannel.open( target.toPath(), StandardOpenOption.READ );
+          final FileChannel channel = FileChannel.open( tmp.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) ) {
+      final long indexOffset = readIndexOffset( source, target );
+      copyFully( source, channel, indexOffset );
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      final DataOutputStream out = new DataOutputStream( buffer );
+      long position = indexOffset;
+      for ( int page = 0, found = 0;
+            page < content.getPageCount() && found < content.getStoredPageCount(); page++ ) {
+        final byte[] data = readPageData( content, page );
+        if ( data == null ) {
+          continue;
+        }
+        found++;
+        if ( Arrays.binarySearch( oldPages, page ) >= 0 ) {
+          continue;
+        }
+        writeFully( channel, ByteBuffer.wrap( data ), position );
+        if ( entries > 0 && pages[ entries - 1 ] > page ) {
+          sorted = false;
+        }
+        pages[ entries ] = page;
+        offsets[ entries ] = position;
+        lengths[ entries ] = data.length;
+        position += data.length;
+        entries++;
+      }
+      if ( !sorted ) {
+        sortByPage( pages, offsets, lengths, entries );
+      }
+      writeIndex( out, pageCount, entries, pages, offsets, lengths );
+      out.writeLong( position );
+      out.writeInt( MAGIC );
+      out.flush();
+      writeFully( channel, ByteBuffer.wrap( buffer.toByteArray() ), position );
+    } catch ( final IOException e ) {
+      tmp.delete();
+      throw e;
+    }
+    move( tmp, target );
+    return new PageSegmentReportContent( target, current.getSegmentId(), pageCount,
+      trim( pages, entries ), trim( offsets, entries ), trim( lengths, entries ) );
+  }
+
+  /**
+   * Reads the index of a segment file.
+   *
+   * @param file segment file
+   * @return content backed by the segment
+   * @throws IOException if the file is missing or corrupted
+   */
+  public static PageSegmentReportContent open( final File file ) throws IOException {
+    try ( final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+      final long size = channel.size();
+      if ( size < HEADER_SIZE + FOOTER_SIZE ) {
+        throw new IOException( "Segment file is truncated: " + file );
+      }
+      final ByteBuffer header = readFully( channel, 0, HEADER_SIZE );
+      if ( header.getInt() != MAGIC || header.getInt() != VERSION ) {
+        throw new IOException( "Not a page segment file: " + file );
+      }
+      final long segmentId = header.getLong();
+
+      final ByteBuffer footer = readFully( channel, size - FOOTER_SIZE, FOOTER_SIZE );
+      final long indexOffset = footer.getLong();
+      if ( footer.getInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > size - FOOTER_SIZE ) {
+        throw new IOException( "Segment index is corrupted: " + file );
+      }
+
+      final ByteBuffer index = readFully( channel, indexOffset, (int) ( size - FOOTER_SIZE - indexOffset ) );
+      final int pageCount = index.getInt();
+      final int entries = index.getInt();
+      if ( entries < 0 || index.remaining() < entries * INDEX_ENTRY_SIZE ) {
+        throw new IOException( "Segment index is corrupted: " + file );
+      }
+      final int[] pages = new int[ entries ];
+      final long[] offsets = new long[ entries ];
+      final int[] lengths = new int[ entries ];
+      for ( int i = 0; i < entries; i++ ) {
+        pages[ i ] = index.getInt();
+        offsets[ i ] = index.getLong();
+        lengths[ i ] = index.getInt();
+      }
+      return new PageSegmentReportContent( file, segmentId, pageCount, pages, offsets, lengths );
+    }
+  }
+
+  /**
+   * Reads a single page blob, verifying that the file still belongs to the expected segment.
+   *
+   * @return page bytes or null if the segment was replaced or removed
+   */
+  static byte[] readPage( final File file, final long segmentId, final long offset, final int length )
+    throws IOException {
+    if ( !file.exists() ) {
+      return null;
+    }
+    try ( final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+      final ByteBuffer header = readFully( channel, 0, HEADER_SIZE );
+      if ( header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != segmentId ) {
+        return null;
+      }
+      final ByteBuffer page = readFully( channel, offset, length );
+      return page.array();
+    }
+  }
+
+  /**
+   * Content backed by a segment, like the spool of a running report, must not be cached without the pages it lost
+   */
+  private static byte[] readPageData( final IReportContent content, final int page ) throws IOException {
+    if ( content instanceof PageSegmentReportContent ) {
+      return ( (PageSegmentReportContent) content ).readPageData( page );
+    }
+    return content.getPageData( page );
+  }
+
+  private static long readIndexOffset( final FileChannel channel, final File file ) throws IOException {
+    final ByteBuffer footer = readFully( channel, channel.size() - FOOTER_SIZE, FOOTER_SIZE );
+    final long indexOffset = footer.getLong();
+    if ( footer.getInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > channel.size() - FOOTER_SIZE ) {
+      throw new IOException( "Segment index is corrupted: " + file );
+    }
+    return indexOffset;
+  }
+
+  private static void copyFully( final FileChannel source, final FileChannel target, final long length )
+    throws IOException {
+    long pos = 0;
+    while ( pos < length ) {
+      final long copied = source.transferTo( pos, length - pos, target );
+      if ( copied <= 0 ) {
+        throw new EOFException( "Unexpected end of segment file" );
+      }
+      pos += copied;
+    }
+  }
+
+  private static void writeFully( final FileChannel channel, final ByteBuffer buffer, final long position )
+    throws IOException {
+    long pos = position;
+    while ( buffer.hasRemaining() ) {
+      pos += channel.write( buffer, pos );
+    }
+  }
+
+  /**
+   * Pages normally arrive in order, this is only needed when a gap was filled
+   */
+  private static void sortByPage( final int[] pages, final long[] offsets, final int[] lengths, final int entries ) {
+    final Integer[] order = new Integer[ entries ];
+    for ( int i = 0; i < entries; i++ ) {
+      order[ i ] = i;
+    }
+    Arrays.sort( order, ( a, b ) -> Integer.compare( pages[ a ], pages[ b ] ) );
+    final int[] sortedPages = new int[ entries ];
+    final long[] sortedOffsets = new long[ entries ];
+    final int[] sortedLengths = new int[ entries ];
+    for ( int i = 0; i < entries; i++ ) {
+      sortedPages[ i ] = pages[ order[ i ] ];
+      sortedOffsets[ i ] = offsets[ order[ i ] ];
+      sortedLengths[ i ] = lengths[ order[ i ] ];
+    }
+    System.arraycopy( sortedPages, 0, pages, 0, entries );
+    System.arraycopy( sortedOffsets, 0, offsets, 0, entries );
+    System.arraycopy( sortedLengths, 0, lengths, 0, entries );
+  }
+
+  static void writeIndex( final DataOutputStream out, final int pageCount, final int entries, final int[] pages,
+                          final long[] offsets, final int[] lengths ) throws IOException {
+    out.writeInt( pageCount );
+    out.writeInt( entries );
+    for ( int i = 0; i < entries; i++ ) {
+      out.writeInt( pages[ i ] );
+      out.writeLong( offsets[ i ] );
+      out.writeInt( lengths[ i ] );
+    }
+  }
+
+  static ByteBuffer readFully( final FileChannel channel, final long position, final int length )
+    throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate( length );
+    long pos = position;
+    while ( buffer.hasRemaining() ) {
+      final int read = channel.read( buffer, pos );
+      if ( read < 0 ) {
+        throw new EOFException( "Unexpected end of segment file" );
+      }
+      pos += read;
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void move( final File source, final File target ) throws IOException {
+    try {
+      Files.move( source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE );
+    } catch ( final AtomicMoveNotSupportedException e ) {
+      Files.move( source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+  }
+
+  private static int[] trim( final int[] array, final int length ) {
+    if ( array.length == length ) {
+      return array;
+    }
+    final int[] result = new int[ length ];
+    System.arraycopy( array, 0, result, 0, length );
+    return result;
+  }
+
+  private static long[] trim( final long[] array, final int length ) {
+    if ( array.length == length ) {
+      return array;
+    }
+    final long[] result = new long[ length ];
+    System.arraycopy( array, 0, result, 0, length );
+    return result;
+  }
+}
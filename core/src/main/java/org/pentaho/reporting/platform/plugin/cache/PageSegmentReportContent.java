@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Report content backed by a page segment file. Only the page index is kept in memory, page data is read from disk on
+ * demand.
+ */
+public class PageSegmentReportContent implements IReportContent {
+
+  private static final Log logger = LogFactory.getLog( PageSegmentReportContent.class );
+
+  private final File file;
+  private final long segmentId;
+  private final int pageCount;
+  private final int[] pages;
+  private final long[] offsets;
+  private final int[] lengths;
+
+  PageSegmentReportContent( final File file, final long segmentId, final int pageCount, final int[] pages,
+                            final long[] offsets, final int[] lengths ) {
+    this.file = file;
+    this.segmentId = segmentId;
+    this.pageCount = pageCount;
+    this.pages = pages;
+    this.offsets = offsets;
+    this.lengths = lengths;
+  }
+
+  @Override public int getPageCount() {
+    return pageCount;
+  }
+
+  @Override public int getStoredPageCount() {
+    return pages.length;
+  }
+
+  /**
+   * Reads only the requested page from the segment file.
+   *
+   * @param page page number
+   * @return page data or null if page is not stored or segment is not available anymore
+   */
+  @Override public byte[] getPageData( final int page ) {
+    try {
+      return readPageData( page );
+    } catch ( final IOException e ) {
+      logger.debug( "Can't read cached page: ", e );
+      return null;
+    }
+  }
+
+  /**
+   * Unlike {@link #getPageData(int)} tells a page that is not stored from a segment that is gone, so copies of the
+   * content are not silently truncated.
+   *
+   * @param page page number
+   * @return page data or null if page is not stored
+   * @throws IOException if the segment was removed, replaced or can't be read
+   */
+  byte[] readPageData( final int page ) throws IOException {
+    final int entry = Arrays.binarySearch( pages, page );
+    if ( entry < 0 ) {
+      return null;
+    }
+    final byte[] data = PageSegmentFile.readPage( file, segmentId, offsets[ entry ], lengths[ entry ] );
+    if ( data == null ) {
+      throw new IOException( "Page segment is not available anymore: " + file );
+    }
+    return data;
+  }
+
+  /**
+   * @return total size of the stored pages in bytes
+   */
+  public long getStoredSize() {
+    long size = 0;
+    for ( final int length : lengths ) {
+      size += length;
+    }
+    return size;
+  }
+
+  int[] getPages() {
+    return pages;
+  }
+
+  long[] getOffsets() {
+    return offsets;
+  }
+
+  int[] getLengths() {
+    return lengths;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  long getSegmentId() {
+    return segmentId;
+  }
+}
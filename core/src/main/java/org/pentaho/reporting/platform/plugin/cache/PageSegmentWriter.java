@@ -0,0 +1,132 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Writes pages to a page segment file one by one while a report is generated. Only the index is kept in memory, the
+ * pages written so far can be read back at any time through {@link #getContent(int, int)}, which is what lets a report
+ * be cached without holding all of its pages in heap.
+ * <p>
+ * The file is a spool: it gets the segment header and the blobs, but no index and footer, so it can't be opened with
+ * {@link PageSegmentFile#open(File)}. Content taken from it is copied into the cache, only the output handler that
+ * owns the spool reads it directly. A copy fails instead of being truncated when the spool is removed meanwhile.
+ */
+public final class PageSegmentWriter implements Closeable {
+
+  private static final Random random = new SecureRandom();
+
+  private final File file;
+  private final long segmentId;
+  private final FileChannel channel;
+  private final TreeMap<Integer, long[]> index = new TreeMap<>();
+  private long position;
+
+  /**
+   * Creates the file, an existing one is overwritten
+   *
+   * @param file spool file
+   * @throws IOException if the file can't be written
+   */
+  public PageSegmentWriter( final File file ) throws IOException {
+    this.file = file;
+    this.segmentId = random.nextLong();
+    this.channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING );
+    final ByteBuffer header = ByteBuffer.allocate( PageSegmentFile.HEADER_SIZE );
+    header.putInt( PageSegmentFile.MAGIC );
+    header.putInt( PageSegmentFile.VERSION );
+    header.putLong( segmentId );
+    header.flip();
+    write( header );
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Appends a page, a page written again replaces the previous data
+   *
+   * @param page page number
+   * @param data page bytes
+   * @throws IOException if the file can't be written
+   */
+  public synchronized void addPage( final int page, final byte[] data ) throws IOException {
+    final long offset = position;
+    write( ByteBuffer.wrap( data ) );
+    index.put( page, new long[] { offset, data.length } );
+  }
+
+  /**
+   * @param page page number
+   * @return page bytes or null if the page was not written
+   * @throws IOException if the file can't be read
+   */
+  public byte[] getPage( final int page ) throws IOException {
+    final long[] entry;
+    synchronized ( this ) {
+      entry = index.get( page );
+    }
+    if ( entry == null ) {
+      return null;
+    }
+    return PageSegmentFile.readPage( file, segmentId, entry[ 0 ], (int) entry[ 1 ] );
+  }
+
+  /**
+   * Content made of the pages written so far
+   *
+   * @param pageCount page count of the report
+   * @param firstPage first page to include, the pages before it are left out
+   * @return content reading its pages from the spool file
+   */
+  public synchronized PageSegmentReportContent getContent( final int pageCount, final int firstPage ) {
+    final SortedMap<Integer, long[]> pages = index.tailMap( firstPage );
+    final int[] numbers = new int[ pages.size() ];
+    final long[] offsets = new long[ pages.size() ];
+    final int[] lengths = new int[ pages.size() ];
+    int i = 0;
+    for ( final Map.Entry<Integer, long[]> entry : pages.entrySet() ) {
+      numbers[ i ] = entry.getKey();
+      offsets[ i ] = entry.getValue()[ 0 ];
+      lengths[ i ] = (int) entry.getValue()[ 1 ];
+      i++;
+    }
+    return new PageSegmentReportContent( file, segmentId, pageCount, numbers, offsets, lengths );
+  }
+
+  /**
+   * Closes the file, content taken from the writer stays readable until the file is deleted
+   */
+  @Override public void close() throws IOException {
+    channel.close();
+  }
+
+  private void write( final ByteBuffer buffer ) throws IOException {
+    while ( buffer.hasRemaining() ) {
+      position += channel.write( buffer, position );
+    }
+  }
+}
@@ -0,0 +1,371 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eviction strategy that keeps the stored bytes under a budget. The whole cache and every user have their own budget,
+ * least recently used entries are removed when a budget is exceeded. Sizes of the entries stored before a restart are
+ * read from the metadata on the first access.
+ */
+public class QuotaReportContentCache extends AbstractReportContentCache implements IUsageTrackingCache {
+
+  private static final Log logger = LogFactory.getLog( QuotaReportContentCache.class );
+  private static final String SEGMENT = "quota";
+  public static final String SIZE = "size";
+  public static final String TIMESTAMP = "timestamp";
+  public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+  private final Object lock = new Object();
+  private final LinkedHashMap<List<String>, Entry> entries = new LinkedHashMap<>( 256, 0.75f, true );
+  private final Map<String, UserUsage> users = new HashMap<>();
+  private long usedBytes;
+  private volatile boolean indexed;
+
+  private long maxBytes = DEFAULT_MAX_BYTES;
+  private long maxBytesPerUser;
+
+  public QuotaReportContentCache( final ICacheBackend backend ) {
+    super( backend );
+  }
+
+  public QuotaReportContentCache() {
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @param maxBytes budget of the whole cache
+   */
+  public void setMaxBytes( final long maxBytes ) {
+    this.maxBytes = maxBytes;
+  }
+
+  public long getMaxBytesPerUser() {
+    return maxBytesPerUser;
+  }
+
+  /**
+   * @param maxBytesPerUser budget of a single user, 0 means that only the global budget applies
+   */
+  public void setMaxBytesPerUser( final long maxBytesPerUser ) {
+    this.maxBytesPerUser = maxBytesPerUser;
+  }
+
+  @Override protected List<String> computeKey( final String key ) {
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    return Collections.unmodifiableList( Arrays.asList( SEGMENT, createUserKey( session.getName() ), key ) );
+  }
+
+  /**
+   * Saves value with its size and evicts old entries if the budget is exceeded
+   *
+   * @param key      key
+   * @param value    value
+   * @param metaData metaData
+   * @return success
+   */
+  @Override public boolean put( final String key, final IReportContent value, final Map<String, Serializable> metaData ) {
+    ensureIndexed();
+    final List<String> cacheKey = computeKey( key );
+    final List<String> indexKey = FileSystemCacheBackend.normalizeKey( cacheKey );
+    final long size = sizeOf( value );
+    if ( size > maxBytes || ( maxBytesPerUser > 0 && size > maxBytesPerUser ) ) {
+      logger.debug( "Report content is too big for the cache: " + cacheKey );
+      synchronized ( lock ) {
+        remove( indexKey );
+      }
+      getBackend().purge( cacheKey );
+      return false;
+    }
+
+    metaData.put( SIZE, size );
+    metaData.put( TIMESTAMP, System.currentTimeMillis() );
+    final boolean result = getBackend().write( cacheKey, value, metaData );
+    final List<List<String>> victims;
+    synchronized ( lock ) {
+      remove( indexKey );
+      if ( result ) {
+        add( indexKey, size );
+      }
+      victims = collectVictims( indexKey.get( 1 ) );
+    }
+    purge( victims );
+    return result;
+  }
+
+  /**
+   * Appends pages, the size of the entry grows by the size of the new pages
+   *
+   * @param key      key
+   * @param value    new pages
+   * @param metaData metaData
+   * @return success
+   */
+  @Override public boolean append( final String key, final IReportContent value,
+                                   final Map<String, Serializable> metaData ) {
+    ensureIndexed();
+    final List<String> cacheKey = computeKey( key );
+    final List<String> indexKey = FileSystemCacheBackend.normalizeKey( cacheKey );
+    final long size;
+    synchronized ( lock ) {
+      final Entry entry = entries.get( indexKey );
+      size = ( entry == null ? 0 : entry.bytes ) + sizeOf( value );
+    }
+    if ( size > maxBytes || ( maxBytesPerUser > 0 && size > maxBytesPerUser ) ) {
+      logger.debug( "Report content is too big for the cache: " + cacheKey );
+      synchronized ( lock ) {
+        remove( indexKey );
+      }
+      getBackend().purge( cacheKey );
+      return false;
+    }
+
+    metaData.put( SIZE, size );
+    metaData.put( TIMESTAMP, System.currentTimeMillis() );
+    final boolean result = getBackend().append( cacheKey, value, metaData );
+    final List<List<String>> victims;
+    synchronized ( lock ) {
+      remove( indexKey );
+      if ( result ) {
+        add( indexKey, size );
+      }
+      victims = collectVictims( indexKey.get( 1 ) );
+    }
+    purge( victims );
+    return result;
+  }
+
+  /**
+   * @param key key
+   * @return ReportContent
+   */
+  @Override public IReportContent get( final String key ) {
+    ensureIndexed();
+    final List<String> cacheKey = computeKey( key );
+    final List<String> indexKey = FileSystemCacheBackend.normalizeKey( cacheKey );
+    final IReportContent content = (IReportContent) getBackend().read( cacheKey );
+    List<List<String>> victims = Collections.emptyList();
+    synchronized ( lock ) {
+      if ( content == null ) {
+        remove( indexKey );
+      } else if ( !touch( indexKey ) ) {
+        add( indexKey, sizeOf( content ) );
+        victims = collectVictims( indexKey.get( 1 ) );
+      }
+    }
+    purge( victims );
+    return content;
+  }
+
+  /**
+   * Brings the cache back under the budget
+   */
+  @Override public void cleanup() {
+    ensureIndexed();
+    final List<List<String>> victims;
+    synchronized ( lock ) {
+      victims = collectVictims( null );
+    }
+    purge( victims );
+  }
+
+  @Override public void cleanupCurrentSession() {
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final List<String> key = Collections.unmodifiableList( Arrays.asList( SEGMENT, createUserKey( session.getName() ) ) );
+    getBackend().purgeSegment( key, ( k, m ) -> true );
+    final String user = FileSystemCacheBackend.normalizeKey( key ).get( 1 );
+    synchronized ( lock ) {
+      final UserUsage usage = users.get( user );
+      if ( usage != null ) {
+        for ( final List<String> entryKey : new ArrayList<>( usage.entries.keySet() ) ) {
+          remove( entryKey );
+        }
+      }
+    }
+  }
+
+  @Override public CacheUsage getUsage() {
+    ensureIndexed();
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    synchronized ( lock ) {
+      UserUsage usage = null;
+      if ( session != null ) {
+        final List<String> userKey = Arrays.asList( SEGMENT, createUserKey( session.getName() ) );
+        usage = users.get( FileSystemCacheBackend.normalizeKey( userKey ).get( 1 ) );
+      }
+      return new CacheUsage( entries.size(), usedBytes, maxBytes, usage == null ? 0 : usage.entries.size(),
+        usage == null ? 0 : usage.bytes, maxBytesPerUser );
+    }
+  }
+
+  private void add( final List<String> indexKey, final long size ) {
+    final String user = indexKey.get( 1 );
+    final Entry entry = new Entry( user, size );
+    entries.put( indexKey, entry );
+    UserUsage usage = users.get( user );
+    if ( usage == null ) {
+      usage = new UserUsage();
+      users.put( user, usage );
+    }
+    usage.entries.put( indexKey, entry );
+    usage.bytes += size;
+    usedBytes += size;
+  }
+
+  private boolean touch( final List<String> indexKey ) {
+    final Entry entry = entries.get( indexKey );
+    if ( entry == null ) {
+      return false;
+    }
+    users.get( entry.user ).entries.get( indexKey );
+    return true;
+  }
+
+  private void remove( final List<String> indexKey ) {
+    final Entry entry = entries.remove( indexKey );
+    if ( entry == null ) {
+      return;
+    }
+    usedBytes -= entry.bytes;
+    final UserUsage usage = users.get( entry.user );
+    usage.entries.remove( indexKey );
+    usage.bytes -= entry.bytes;
+    if ( usage.entries.isEmpty() ) {
+      users.remove( entry.user );
+    }
+  }
+
+  /**
+   * Removes least recently used entries from the index until the budgets are met
+   *
+   * @param user user whose budget is checked, null to check only the global one
+   * @return keys to purge from the backend
+   */
+  private List<List<String>> collectVictims( final String user ) {
+    final List<List<String>> victims = new ArrayList<>();
+    final UserUsage usage = user == null ? null : users.get( user );
+    if ( usage != null && maxBytesPerUser > 0 ) {
+      while ( usage.bytes > maxBytesPerUser && !usage.entries.isEmpty() ) {
+        final List<String> eldest = usage.entries.keySet().iterator().next();
+        remove( eldest );
+        victims.add( eldest );
+      }
+    }
+    while ( usedBytes > maxBytes && !entries.isEmpty() ) {
+      final List<String> eldest = entries.keySet().iterator().next();
+      remove( eldest );
+      victims.add( eldest );
+    }
+    return victims;
+  }
+
+  private void purge( final List<List<String>> victims ) {
+    for ( final List<String> victim : victims ) {
+      logger.debug( "Evicted cache entry: " + victim );
+      getBackend().purge( victim );
+    }
+  }
+
+  /**
+   * Restores the sizes of entries stored before a restart, older entries are considered less recently used.
+   */
+  private void ensureIndexed() {
+    if ( indexed ) {
+      return;
+    }
+    synchronized ( this ) {
+      if ( indexed ) {
+        return;
+      }
+      final Map<List<String>, long[]> stored = new HashMap<>();
+      getBackend().purgeSegment( Collections.singletonList( SEGMENT ), ( k, md ) -> {
+        if ( md == null ) {
+          return false;
+        }
+        final Object size = md.get( SIZE );
+        final Object timestamp = md.get( TIMESTAMP );
+        if ( size instanceof Long && timestamp instanceof Long && k.size() == 3 ) {
+          stored.put( FileSystemCacheBackend.normalizeKey( k ), new long[] { (Long) timestamp, (Long) size } );
+        }
+        return false;
+      } );
+      final List<Map.Entry<List<String>, long[]>> sorted = new ArrayList<>( stored.entrySet() );
+      sorted.sort( ( a, b ) -> Long.compare( a.getValue()[ 0 ], b.getValue()[ 0 ] ) );
+      final List<List<String>> victims;
+      synchronized ( lock ) {
+        for ( final Map.Entry<List<String>, long[]> entry : sorted ) {
+          if ( !entries.containsKey( entry.getKey() ) ) {
+            add( entry.getKey(), entry.getValue()[ 1 ] );
+          }
+        }
+        victims = collectVictims( null );
+      }
+      indexed = true;
+      purge( victims );
+    }
+  }
+
+  /**
+   * @param content report content
+   * @return total size of the stored pages
+   */
+  static long sizeOf( final IReportContent content ) {
+    if ( content == null ) {
+      return 0;
+    }
+    if ( content instanceof PageSegmentReportContent ) {
+      return ( (PageSegmentReportContent) content ).getStoredSize();
+    }
+    long size = 0;
+    for ( int page = 0, found = 0;
+          page < content.getPageCount() && found < content.getStoredPageCount(); page++ ) {
+      final byte[] data = content.getPageData( page );
+      if ( data != null ) {
+        size += data.length;
+        found++;
+      }
+    }
+    return size;
+  }
+
+  private static final class Entry {
+    private final String user;
+    private final long bytes;
+
+    private Entry( final String user, final long bytes ) {
+      this.user = user;
+      this.bytes = bytes;
+    }
+  }
+
+  private static final class UserUsage {
+    private final LinkedHashMap<List<String>, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+    private long bytes;
+  }
+}
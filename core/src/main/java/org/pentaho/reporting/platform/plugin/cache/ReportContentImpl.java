@@ -13,6 +13,7 @@
 
 package org.pentaho.reporting.platform.plugin.cache;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -45,4 +46,31 @@ public class ReportContentImpl implements IReportContent {
     return reportData.get( page );
   }
 
+  /**
+   * Adds new pages to stored content, for caches that can't append in place
+   *
+   * @param stored stored content or null
+   * @param added  new pages, they replace stored pages with the same number
+   * @return content with the pages of both
+   */
+  public static IReportContent merge( final IReportContent stored, final IReportContent added ) {
+    if ( stored == null ) {
+      return added;
+    }
+    final Map<Integer, byte[]> pages = new HashMap<>();
+    copyPages( stored, pages );
+    copyPages( added, pages );
+    return new ReportContentImpl( Math.max( stored.getPageCount(), added.getPageCount() ), pages );
+  }
+
+  private static void copyPages( final IReportContent content, final Map<Integer, byte[]> pages ) {
+    for ( int page = 0, found = 0; page < content.getPageCount() && found < content.getStoredPageCount(); page++ ) {
+      final byte[] data = content.getPageData( page );
+      if ( data != null ) {
+        pages.put( page, data );
+        found++;
+      }
+    }
+  }
+
 }
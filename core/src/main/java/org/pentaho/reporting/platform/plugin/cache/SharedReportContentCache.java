@@ -0,0 +1,202 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache strategy that shares the content of reports that look the same for every user. Such content is keyed only by
+ * the content key (definition, parameters and locale), everything else goes to the per-user delegate strategy.
+ * <p>
+ * Content is shared when the report is explicitly marked as shareable, or, if detection is enabled, when the report
+ * didn't ask for any user dependent environment property and was fully generated. Detection doesn't know about
+ * security applied by the data sources themselves (role mappings, metadata security, per-user connections), so it is
+ * disabled by default.
+ */
+public class SharedReportContentCache extends AbstractReportContentCache implements IUsageTrackingCache {
+
+  private static final Log logger = LogFactory.getLog( SharedReportContentCache.class );
+  private static final String SEGMENT = "shared";
+  /**
+   * Meta data flag: report is marked as shareable
+   */
+  public static final String SHAREABLE = "shareable";
+  /**
+   * Meta data flag: report didn't ask for user dependent properties
+   */
+  public static final String USER_INDEPENDENT = "userIndependent";
+  public static final String TIMESTAMP = "timestamp";
+  /**
+   * Report attribute in the Pentaho namespace that explicitly allows or forbids sharing
+   */
+  public static final String SHARED_CACHE_ATTRIBUTE = "shared-report-cache";
+  public static final long DEFAULT_MILLIS_TO_LIVE = 60 * 60 * 1000;
+
+  private IReportContentCache delegate;
+  private boolean detectShareable;
+  private long millisToLive = DEFAULT_MILLIS_TO_LIVE;
+
+  public SharedReportContentCache( final ICacheBackend backend, final IReportContentCache delegate ) {
+    super( backend );
+    this.delegate = delegate;
+  }
+
+  public SharedReportContentCache() {
+  }
+
+  public IReportContentCache getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @param delegate strategy for the content that can't be shared
+   */
+  public void setDelegate( final IReportContentCache delegate ) {
+    this.delegate = delegate;
+  }
+
+  public boolean isDetectShareable() {
+    return detectShareable;
+  }
+
+  /**
+   * @param detectShareable share reports that don't use user dependent properties even if they are not marked. Only
+   *                        enable it if no data source filters rows per user.
+   */
+  public void setDetectShareable( final boolean detectShareable ) {
+    this.detectShareable = detectShareable;
+  }
+
+  /**
+   * @param minutesToLive how long shared content is served before the report is generated again
+   */
+  public void setMinutesToLive( final long minutesToLive ) {
+    this.millisToLive = minutesToLive * 60 * 1000;
+  }
+
+  /*for testing purposes*/
+  protected void setMillisToLive( final long millisToLive ) {
+    this.millisToLive = millisToLive;
+  }
+
+  @Override protected List<String> computeKey( final String key ) {
+    return Collections.unmodifiableList( Arrays.asList( SEGMENT, key ) );
+  }
+
+  @Override public boolean put( final String key, final IReportContent value, final Map<String, Serializable> metaData ) {
+    if ( !isShareable( value, metaData ) ) {
+      //the report may have turned out to be user dependent after a part of it was shared
+      getBackend().purge( computeKey( key ) );
+      return delegate.put( key, value, metaData );
+    }
+    final Map<String, Serializable> sharedMetaData = new HashMap<>( metaData );
+    sharedMetaData.put( TIMESTAMP, System.currentTimeMillis() );
+    return getBackend().write( computeKey( key ), value, sharedMetaData );
+  }
+
+  @Override public boolean append( final String key, final IReportContent value,
+                                   final Map<String, Serializable> metaData ) {
+    if ( !isShareable( value, metaData ) ) {
+      getBackend().purge( computeKey( key ) );
+      return delegate.append( key, value, metaData );
+    }
+    final Map<String, Serializable> sharedMetaData = new HashMap<>( metaData );
+    sharedMetaData.put( TIMESTAMP, System.currentTimeMillis() );
+    return getBackend().append( computeKey( key ), value, sharedMetaData );
+  }
+
+  @Override public IReportContent get( final String key ) {
+    if ( getSharedMetaData( key ) != null ) {
+      final IReportContent content = super.get( key );
+      if ( content != null ) {
+        return content;
+      }
+    }
+    return delegate.get( key );
+  }
+
+  @Override public Map<String, Serializable> getMetaData( final String key ) {
+    final Map<String, Serializable> metaData = getSharedMetaData( key );
+    if ( metaData != null ) {
+      return metaData;
+    }
+    return delegate.getMetaData( key );
+  }
+
+  /**
+   * @return usage of the delegate, null if the delegate doesn't track it
+   */
+  @Override public CacheUsage getUsage() {
+    return delegate instanceof IUsageTrackingCache ? ( (IUsageTrackingCache) delegate ).getUsage() : null;
+  }
+
+  /**
+   * Removes expired shared content
+   */
+  @Override public void cleanup() {
+    final long currentTimeMillis = System.currentTimeMillis();
+    getBackend().purgeSegment( Collections.singletonList( SEGMENT ), ( k, md ) -> isExpired( md, currentTimeMillis ) );
+    delegate.cleanup();
+  }
+
+  /**
+   * Shared content is dropped as well, a user who asks for fresh data gets it for every report
+   */
+  @Override public void cleanupCurrentSession() {
+    getBackend().purge( Collections.singletonList( SEGMENT ) );
+    delegate.cleanupCurrentSession();
+  }
+
+  private boolean isShareable( final IReportContent value, final Map<String, Serializable> metaData ) {
+    if ( metaData == null || value == null ) {
+      return false;
+    }
+    final Object shareable = metaData.get( SHAREABLE );
+    if ( shareable != null ) {
+      return Boolean.TRUE.equals( shareable );
+    }
+    //partial content is stored before the whole report was processed, the user dependent part may be yet to come
+    return detectShareable && Boolean.TRUE.equals( metaData.get( USER_INDEPENDENT ) )
+      && value.getStoredPageCount() == value.getPageCount();
+  }
+
+  /**
+   * @param key key
+   * @return meta data of the shared content, null if there is no shared content or it is expired
+   */
+  private Map<String, Serializable> getSharedMetaData( final String key ) {
+    final Map<String, Serializable> metaData = super.getMetaData( key );
+    if ( metaData != null && isExpired( metaData, System.currentTimeMillis() ) ) {
+      logger.debug( "Purged shared cache: " + key );
+      getBackend().purge( computeKey( key ) );
+      return null;
+    }
+    return metaData;
+  }
+
+  private boolean isExpired( final Map<String, Serializable> metaData, final long currentTimeMillis ) {
+    if ( metaData == null ) {
+      return false;
+    }
+    final Object timestamp = metaData.get( TIMESTAMP );
+    return !( timestamp instanceof Long ) || currentTimeMillis - (Long) timestamp > millisToLive;
+  }
+}
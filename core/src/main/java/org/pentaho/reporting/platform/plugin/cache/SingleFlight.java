@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent work on the same key. The first caller becomes the leader and does the work, callers that
+ * arrive while it is running become followers and wait for the leader's result instead of repeating the work.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Joins the work on the key. The leader must always call {@link Flight#complete(Object)}, a finally block is the
+   * right place for it.
+   *
+   * @param key key
+   * @return flight, check {@link Flight#isLeader()} to know whether to do the work
+   */
+  public Flight join( final K key ) {
+    final CompletableFuture<V> created = new CompletableFuture<>();
+    final CompletableFuture<V> existing = flights.putIfAbsent( key, created );
+    if ( existing == null ) {
+      return new Flight( key, created, true );
+    }
+    return new Flight( key, existing, false );
+  }
+
+  /**
+   * @return number of keys being worked on
+   */
+  public int size() {
+    return flights.size();
+  }
+
+  public class Flight {
+    private final K key;
+    private final CompletableFuture<V> future;
+    private final boolean leader;
+
+    private Flight( final K key, final CompletableFuture<V> future, final boolean leader ) {
+      this.key = key;
+      this.future = future;
+      this.leader = leader;
+    }
+
+    public boolean isLeader() {
+      return leader;
+    }
+
+    /**
+     * Publishes the leader's result, null if the work failed
+     *
+     * @param value result
+     */
+    public void complete( final V value ) {
+      if ( leader ) {
+        flights.remove( key, future );
+        future.complete( value );
+      }
+    }
+
+    /**
+     * Waits for the leader
+     *
+     * @return leader's result
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public V await() throws InterruptedException {
+      try {
+        return future.get();
+      } catch ( final ExecutionException e ) {
+        return null;
+      }
+    }
+
+    /**
+     * Waits for the leader at most for the given time
+     *
+     * @param timeout maximum time to wait
+     * @param unit    time unit of the timeout
+     * @return leader's result
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws TimeoutException     if the leader did not finish in time
+     */
+    public V await( final long timeout, final TimeUnit unit ) throws InterruptedException, TimeoutException {
+      try {
+        return future.get( timeout, unit );
+      } catch ( final ExecutionException e ) {
+        return null;
+      }
+    }
+  }
+}
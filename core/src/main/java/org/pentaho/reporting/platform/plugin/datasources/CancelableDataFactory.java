@@ -0,0 +1,78 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.datasources;
+
+import org.pentaho.reporting.engine.classic.core.CompoundDataFactory;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+import org.pentaho.reporting.engine.classic.core.DataRow;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+
+import javax.swing.table.TableModel;
+
+/**
+ * Compound data factory that registers the instances the report processor derives from it with a
+ * {@link QueryCancellation}, so that their queries can be canceled while the report is running.
+ */
+public class CancelableDataFactory extends CompoundDataFactory {
+
+  private static final long serialVersionUID = 5206416734419453372L;
+
+  private transient QueryCancellation cancellation;
+
+  public CancelableDataFactory( final QueryCancellation cancellation ) {
+    this.cancellation = cancellation;
+  }
+
+  /**
+   * @param dataFactory  data factory of the report, may be null
+   * @param cancellation cancellation of the execution
+   * @return compound data factory with the same data factories
+   */
+  public static CancelableDataFactory wrap( final DataFactory dataFactory, final QueryCancellation cancellation ) {
+    final CancelableDataFactory wrapper = new CancelableDataFactory( cancellation );
+    if ( dataFactory instanceof CompoundDataFactory ) {
+      final CompoundDataFactory compound = (CompoundDataFactory) dataFactory;
+      for ( int i = 0; i < compound.size(); i++ ) {
+        wrapper.add( compound.get( i ) );
+      }
+    } else if ( dataFactory != null ) {
+      wrapper.add( dataFactory );
+    }
+    return wrapper;
+  }
+
+  @Override
+  public DataFactory derive() {
+    final DataFactory derived = super.derive();
+    if ( cancellation != null ) {
+      cancellation.register( derived );
+    }
+    return derived;
+  }
+
+  @Override
+  public TableModel queryData( final String query, final DataRow parameters ) throws ReportDataFactoryException {
+    if ( cancellation != null && cancellation.isCanceled() ) {
+      throw new ReportDataFactoryException( "Report execution was canceled" ); //$NON-NLS-1$
+    }
+    return super.queryData( query, parameters );
+  }
+
+  @Override
+  public void close() {
+    if ( cancellation != null ) {
+      cancellation.unregister( this );
+    }
+    super.close();
+  }
+}
@@ -0,0 +1,83 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.datasources;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of the data factories a report execution is querying, so that their queries can be canceled from
+ * another thread.
+ */
+public class QueryCancellation {
+
+  private static final Log logger = LogFactory.getLog( QueryCancellation.class );
+
+  private final Set<DataFactory> running = Collections.newSetFromMap( new IdentityHashMap<>() );
+  private volatile boolean canceled;
+
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  /**
+   * Cancels the running queries, queries started afterwards are refused
+   */
+  public void cancel() {
+    final List<DataFactory> dataFactories;
+    synchronized ( running ) {
+      canceled = true;
+      dataFactories = new ArrayList<>( running );
+    }
+    for ( final DataFactory dataFactory : dataFactories ) {
+      cancel( dataFactory );
+    }
+  }
+
+  void register( final DataFactory dataFactory ) {
+    synchronized ( running ) {
+      if ( !canceled ) {
+        running.add( dataFactory );
+        return;
+      }
+    }
+    cancel( dataFactory );
+  }
+
+  void unregister( final DataFactory dataFactory ) {
+    synchronized ( running ) {
+      running.remove( dataFactory );
+    }
+  }
+
+  int getRunningCount() {
+    synchronized ( running ) {
+      return running.size();
+    }
+  }
+
+  private static void cancel( final DataFactory dataFactory ) {
+    try {
+      dataFactory.cancelRunningQuery();
+    } catch ( final RuntimeException e ) {
+      logger.debug( "Can't cancel the running query: ", e );
+    }
+  }
+}
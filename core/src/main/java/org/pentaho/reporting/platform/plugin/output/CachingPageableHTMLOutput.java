@@ -16,14 +16,19 @@ import com.cronutils.utils.VisibleForTesting;
 import mondrian.util.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
 import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.PerformanceTags;
 import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
 import org.pentaho.reporting.engine.classic.core.ReportParameterValidationException;
+import org.pentaho.reporting.engine.classic.core.ReportEnvironment;
+import org.pentaho.reporting.engine.classic.core.ReportInterruptedException;
 import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
 import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
 import org.pentaho.reporting.engine.classic.core.event.ReportProgressListener;
@@ -34,7 +39,6 @@ import org.pentaho.reporting.engine.classic.core.layout.output.DisplayAllFlowSel
 import org.pentaho.reporting.engine.classic.core.modules.output.pageable.base.PageableReportProcessor;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.PageableHtmlOutputProcessor;
 import org.pentaho.reporting.engine.classic.core.parameters.ParameterDefinitionEntry;
-import org.pentaho.reporting.engine.classic.core.parameters.ReportParameterDefinition;
 import org.pentaho.reporting.engine.classic.core.states.PerformanceMonitorContext;
 import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
 import org.pentaho.reporting.engine.classic.core.util.beans.BeanException;
@@ -49,29 +53,42 @@ import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
 import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 import org.pentaho.reporting.libraries.xmlns.parser.Base64;
+import org.pentaho.reporting.platform.plugin.PentahoReportEnvironment;
 import org.pentaho.reporting.platform.plugin.cache.IPluginCacheManager;
 import org.pentaho.reporting.platform.plugin.cache.IReportContent;
 import org.pentaho.reporting.platform.plugin.cache.IReportContentCache;
+import org.pentaho.reporting.platform.plugin.cache.SharedReportContentCache;
+import org.pentaho.reporting.platform.plugin.cache.SingleFlight;
 import org.pentaho.reporting.platform.plugin.repository.PentahoNameGenerator;
 import org.pentaho.reporting.platform.plugin.repository.ReportContentRepository;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
-import java.security.MessageDigest;
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class CachingPageableHTMLOutput extends PageableHTMLOutput {
 
   private static Log logger = LogFactory.getLog( CachingPageableHTMLOutput.class );
   public static final String IS_QUERY_LIMIT_REACHED = "IsQueryLimitReached";
   public static final String REPORT_ROWS = "ReportRows";
+  //renders in progress in any instance, keyed like the cache the content goes to
+  private static final SingleFlight<String, Boolean> RENDERS = new SingleFlight<>();
+  //how long a request waits for the same render of another request to make progress before it renders on its own
+  private static final long RENDER_WAIT_TIMEOUT = TimeUnit.MINUTES.toMillis( 1 );
+  //how often a request in first page mode looks for the pages another request stored meanwhile
+  private static final long FIRST_PAGE_POLL_INTERVAL = 200;
   private PageableReportProcessor processor;
+  private MasterReport report;
+  private WeakReference<MasterReport> rawDataVersionReport;
+  private ResourceKey rawDataVersionSource;
+  private String rawDataVersion;
   private String jcrOutputPath;
 
   private class CacheListener implements ReportProgressListener {
@@ -94,6 +111,8 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     private final IAsyncReportListener asyncReportListener;
 
     private int lastAcceptedPageWritten;
+    //pages before this one are already in the cache
+    private int nextPageToStore;
 
     @Override public void reportProcessingStarted( final ReportProgressEvent reportProgressEvent ) {
       //ignore
@@ -121,7 +140,10 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
         // we finished pagination, and thus have the page numbers ready.
         // we also have pages in repository
         try {
-          persistContent( key, produceReportContent( proc, targetRepository ), reportProgressEvent.getMaximumRow() );
+          //only the pages finished since the last update are read and appended to the cache entry
+          final IReportContent newPages = produceReportContent( proc, targetRepository, nextPageToStore );
+          persistContent( key, newPages, reportProgressEvent.getMaximumRow(), nextPageToStore > 0 );
+          nextPageToStore = nextPageToStore( newPages, nextPageToStore );
           lastAcceptedPageWritten = page;
           //Update after pages are in cache
           asyncReportListener.updateGenerationStatus( page - 1 );
@@ -135,6 +157,18 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     @Override public void reportProcessingFinished( final ReportProgressEvent reportProgressEvent ) {
       //ignore
     }
+
+    private int nextPageToStore( final IReportContent pages, final int firstPage ) {
+      int next = firstPage;
+      for ( int page = firstPage, found = 0;
+            page < pages.getPageCount() && found < pages.getStoredPageCount(); page++ ) {
+        if ( pages.getPageData( page ) != null ) {
+          found++;
+          next = page + 1;
+        }
+      }
+      return next;
+    }
   }
 
   @Override
@@ -207,14 +241,7 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
       final byte[] page = cachedContent.getPageData( acceptedPage );
       if ( page != null && page.length > 0 ) {
         logger.warn( "Using cached report data for " + key );
-        if ( listener != null ) {
-          listener.updateGenerationStatus( cachedContent.getStoredPageCount() );
-          final ReportProgressEvent event =
-            new ReportProgressEvent( this, ReportProgressEvent.GENERATING_CONTENT, 0, getReportTotalRows( key ),
-              acceptedPage + 1, cachedContent.getPageCount(), 0, 0 );
-          listener.reportProcessingUpdate( event );
-          listener.reportProcessingFinished( event );
-        }
+        notifyCachedContent( listener, key, cachedContent, acceptedPage );
 
         //write all pages for scheduling case
         if ( forcePaginated || ( listener != null && listener.isScheduled() ) ) {
@@ -275,6 +302,18 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     return isJcrImagesAndCss();
   }
 
+  private void notifyCachedContent( final IAsyncReportListener listener, final String key,
+                                    final IReportContent cachedContent, final int acceptedPage ) {
+    if ( listener != null ) {
+      listener.updateGenerationStatus( cachedContent.getStoredPageCount() );
+      final ReportProgressEvent event =
+        new ReportProgressEvent( this, ReportProgressEvent.GENERATING_CONTENT, 0, getReportTotalRows( key ),
+          acceptedPage + 1, cachedContent.getPageCount(), 0, 0 );
+      listener.reportProcessingUpdate( event );
+      listener.reportProcessingFinished( event );
+    }
+  }
+
   private void setQueryLimitReachedToListener( String key, IAsyncReportListener listener ) {
     Map<String, Serializable> metaData = getCachedMetaData( key );
     if ( metaData != null && listener != null ) {
@@ -288,6 +327,31 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
   IReportContent regenerateCache( final MasterReport report, final int yieldRate, final String key,
                                   final int acceptedPage )
     throws ReportProcessingException {
+    final SingleFlight<String, Boolean>.Flight flight = RENDERS.join( createFlightKey( report, key ) );
+    if ( !flight.isLeader() ) {
+      final IReportContent cachedContent = awaitLeader( flight, key, acceptedPage );
+      if ( cachedContent != null ) {
+        notifyCachedContent( ReportListenerThreadHolder.getListener(), key, cachedContent, acceptedPage );
+        return cachedContent;
+      }
+      //the leader failed or is stuck, don't queue up behind another render
+      return render( report, yieldRate, key, acceptedPage );
+    }
+
+    boolean rendered = false;
+    try {
+      final IReportContent content = render( report, yieldRate, key, acceptedPage );
+      rendered = content != null;
+      return content;
+    } finally {
+      //the content is in the cache by now, followers read it from there
+      flight.complete( rendered );
+    }
+  }
+
+  private IReportContent render( final MasterReport report, final int yieldRate, final String key,
+                                 final int acceptedPage )
+    throws ReportProcessingException {
     logger.warn( "Regenerating report data for " + key );
     final IReportContent result = produceCacheablePages( report, yieldRate, key, acceptedPage );
     final IAsyncReportListener listener = ReportListenerThreadHolder.getListener();
@@ -296,10 +360,99 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     } else {
       persistContent( key, result, report.getQueryLimit() );
     }
-
     return result;
   }
 
+  /**
+   * Followers pick the content up from their cache, so renders are coalesced across users only for the reports marked
+   * as shareable, which go to the {@link SharedReportContentCache}. Other content is cached per session and so are
+   * the renders. Reports found to be user independent only after the render are coalesced per session.
+   */
+  private String createFlightKey( final MasterReport report, final String key ) {
+    if ( isSharedContent( report ) ) {
+      return key;
+    }
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session == null || session.getId() == null ) {
+      return key;
+    }
+    return session.getId() + "/" + key;
+  }
+
+  private boolean isSharedContent( final MasterReport report ) {
+    final IPluginCacheManager cacheManager = PentahoSystem.get( IPluginCacheManager.class );
+    if ( cacheManager == null || !( cacheManager.getCache() instanceof SharedReportContentCache ) ) {
+      return false;
+    }
+    final Object shareable =
+      report.getAttribute( AttributeNames.Pentaho.NAMESPACE, SharedReportContentCache.SHARED_CACHE_ATTRIBUTE );
+    return shareable != null && Boolean.parseBoolean( String.valueOf( shareable ) );
+  }
+
+  /**
+   * Waits for the leader rendering the same content and reads the content from the cache of the current user. In first
+   * page mode the pages the leader stores meanwhile are offered as soon as the requested one is there. The wait ends
+   * when the leader makes no progress for {@link #RENDER_WAIT_TIMEOUT}.
+   *
+   * @return content or null if the follower has to render it by itself
+   */
+  private IReportContent awaitLeader( final SingleFlight<String, Boolean>.Flight flight, final String key,
+                                      final int acceptedPage )
+    throws ReportInterruptedException {
+    logger.debug( "Waiting for the running generation of " + key );
+    final IAsyncReportListener listener = ReportListenerThreadHolder.getListener();
+    final boolean firstPageMode = listener != null && listener.isFirstPageMode();
+    long deadline = System.currentTimeMillis() + RENDER_WAIT_TIMEOUT;
+    int storedPages = 0;
+    try {
+      while ( true ) {
+        final long remaining = deadline - System.currentTimeMillis();
+        if ( remaining <= 0 ) {
+          logger.warn( "Timed out waiting for the running generation of " + key );
+          return null;
+        }
+        try {
+          final Boolean rendered = flight.await(
+            firstPageMode ? Math.min( remaining, FIRST_PAGE_POLL_INTERVAL ) : remaining, TimeUnit.MILLISECONDS );
+          //a failed leader may have left only the first pages in the cache
+          return Boolean.TRUE.equals( rendered ) ? getCachedContent( key ) : null;
+        } catch ( final TimeoutException e ) {
+          if ( firstPageMode ) {
+            final int stored = offerStoredPages( listener, key, acceptedPage, storedPages );
+            if ( stored > storedPages ) {
+              storedPages = stored;
+              deadline = System.currentTimeMillis() + RENDER_WAIT_TIMEOUT;
+            }
+          }
+        }
+      }
+    } catch ( final InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new ReportInterruptedException( "Interrupted while waiting for the report generation" );
+    }
+  }
+
+  /**
+   * Does for a follower what the {@link CacheListener} does for the leader: tells the listener that the requested page
+   * can be served from the cache.
+   *
+   * @return count of the pages stored so far
+   */
+  private int offerStoredPages( final IAsyncReportListener listener, final String key, final int acceptedPage,
+                                final int knownStoredPages ) {
+    final IReportContent partial = getCachedContent( key );
+    if ( partial == null || partial.getStoredPageCount() <= knownStoredPages ) {
+      return knownStoredPages;
+    }
+    final int page = Math.max( acceptedPage, listener.getRequestedPage() );
+    if ( partial.getPageData( page ) != null ) {
+      setQueryLimitReachedToListener( key, listener );
+      listener.updateGenerationStatus( page + 1 );
+      listener.setStatus( AsyncExecutionStatus.CONTENT_AVAILABLE );
+    }
+    return partial.getStoredPageCount();
+  }
+
   @VisibleForTesting
   protected IReportContent produceCacheablePages( final MasterReport report, final int yieldRate, final String key,
                                                 final int acceptedPage )
@@ -307,6 +460,7 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
 
     final PageableReportProcessor proc = createReportProcessor( report, yieldRate );
     processor = proc;
+    this.report = report;
 
     final PageableHtmlOutputProcessor outputProcessor = (PageableHtmlOutputProcessor) proc.getOutputProcessor();
     outputProcessor.setFlowSelector( new DisplayAllFlowSelector() );
@@ -361,7 +515,15 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     return cache.getMetaData( key );
   }
 
-  private synchronized void persistContent( final String key, final IReportContent data, final int reportTotalRows ) {
+  private void persistContent( final String key, final IReportContent data, final int reportTotalRows ) {
+    persistContent( key, data, reportTotalRows, false );
+  }
+
+  /**
+   * @param append whether the data holds only the pages produced since the previous call
+   */
+  private synchronized void persistContent( final String key, final IReportContent data, final int reportTotalRows,
+                                            final boolean append ) {
     final IPluginCacheManager cacheManager = PentahoSystem.get( IPluginCacheManager.class );
     final IReportContentCache cache = cacheManager.getCache();
     if ( cache != null ) {
@@ -374,8 +536,13 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
       if ( processor.isQueryLimitReached() ) {
         updateQueryLimitReachedFlag( metaData );
       }
+      updateShareableFlags( metaData );
 
-      cache.put( key, data, metaData );
+      if ( append ) {
+        cache.append( key, data, metaData );
+      } else {
+        cache.put( key, data, metaData );
+      }
     } else {
       logger.error( "Plugin session cache is not available." );
     }
@@ -390,52 +557,70 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     return metaData;
   }
 
-  private Serializable computeCacheKey( final MasterReport report ) throws BeanException {
+  /**
+   * Tells the cache whether the content can be shared between users, see {@link SharedReportContentCache}
+   */
+  private void updateShareableFlags( final Map<String, Serializable> metaData ) {
+    metaData.remove( SharedReportContentCache.SHAREABLE );
+    metaData.remove( SharedReportContentCache.USER_INDEPENDENT );
+    if ( report == null ) {
+      return;
+    }
+    final Object shareable =
+      report.getAttribute( AttributeNames.Pentaho.NAMESPACE, SharedReportContentCache.SHARED_CACHE_ATTRIBUTE );
+    if ( shareable != null ) {
+      metaData.put( SharedReportContentCache.SHAREABLE, Boolean.valueOf( String.valueOf( shareable ) ) );
+    }
+    final ReportEnvironment environment = report.getReportEnvironment();
+    if ( environment instanceof PentahoReportEnvironment ) {
+      metaData.put( SharedReportContentCache.USER_INDEPENDENT,
+        !( (PentahoReportEnvironment) environment ).isUserDependent() );
+    }
+  }
+
+  private void addDefinitionSource( final ContentCacheKeyBuilder builder, final MasterReport report ) {
     final ResourceKey definitionSource = report.getDefinitionSource();
 
     //We need a parent because ZipRepository always has the same values
     final ResourceKey parent = definitionSource.getParent();
-    final List<String> sourceKey;
-    if ( parent != null ) {
-      sourceKey = computeDefSourceKey( report, parent );
+    final ResourceKey source = parent != null ? parent : definitionSource;
+    if ( source.getIdentifierAsString() != null ) {
+      builder.add( String.valueOf( source.getSchema() ) );
+      builder.add( source.getIdentifierAsString() );
     } else {
-      sourceKey = computeDefSourceKey( report, definitionSource );
-    }
-    final HashMap<String, String> params = new HashMap<>();
-    params.put( "query-limit", String.valueOf( report.getQueryLimit() ) );
-    final ReportParameterDefinition parameterDefinition = report.getParameterDefinition();
-    final ReportParameterValues parameterValues = report.getParameterValues();
-    for ( final ParameterDefinitionEntry p : parameterDefinition.getParameterDefinitions() ) {
-      final String name = p.getName();
-      final Object o = parameterValues.get( name );
-      if ( o == null ) {
-        params.put( name, null );
-      } else {
-        params.put( name, ConverterRegistry.toAttributeValue( o ) );
-      }
+      builder.add( null ).add( null );
     }
-    final ArrayList<Object> key = new ArrayList<>();
-    key.add( sourceKey );
-    key.add( params );
-    key.add( report.getReportEnvironment().getLocale().toString() );
-    return key;
+    //Check if report was replaced in repository
+    builder.add( getRawDataVersion( report, source ) );
   }
 
-  private List<String> computeDefSourceKey( final MasterReport report, final ResourceKey definitionSource ) {
-    final ArrayList<String> sourceKey = new ArrayList<>();
-    if ( definitionSource.getIdentifierAsString() != null ) {
-      sourceKey.add( String.valueOf( definitionSource.getSchema() ) );
-      sourceKey.add( definitionSource.getIdentifierAsString() );
+  private void addParameters( final ContentCacheKeyBuilder builder, final MasterReport report )
+    throws BeanException {
+    builder.add( "query-limit" ).add( String.valueOf( report.getQueryLimit() ) );
+    final ParameterDefinitionEntry[] definitions = report.getParameterDefinition().getParameterDefinitions();
+    final String[] names = new String[ definitions.length ];
+    for ( int i = 0; i < definitions.length; i++ ) {
+      names[ i ] = definitions[ i ].getName();
     }
-    //Check if report was replaced in repository
-    final String rawDataVersion = getRawDataVersion( report, definitionSource );
-    if ( null != rawDataVersion ) {
-      sourceKey.add( rawDataVersion );
+    //the key must not depend on the order of the parameter definitions
+    Arrays.sort( names, Comparator.nullsFirst( Comparator.<String>naturalOrder() ) );
+    final ReportParameterValues parameterValues = report.getParameterValues();
+    builder.addInt( names.length );
+    for ( final String name : names ) {
+      final Object o = parameterValues.get( name );
+      builder.add( name ).add( o == null ? null : ConverterRegistry.toAttributeValue( o ) );
     }
-    return sourceKey;
   }
 
-  private String getRawDataVersion( final MasterReport report, final ResourceKey definitionSource ) {
+  /**
+   * The version is looked up in the repository once per report instance, so paginate and generate calls of the same
+   * request share a single repository round-trip.
+   */
+  private synchronized String getRawDataVersion( final MasterReport report, final ResourceKey definitionSource ) {
+    final MasterReport versionReport = rawDataVersionReport == null ? null : rawDataVersionReport.get();
+    if ( versionReport == report && definitionSource.equals( rawDataVersionSource ) ) {
+      return rawDataVersion;
+    }
     String result = null;
     ResourceManager resourceManager = report.getResourceManager();
     if ( resourceManager == null ) {
@@ -451,28 +636,21 @@ public class CachingPageableHTMLOutput extends PageableHTMLOutput {
     } catch ( final ResourceLoadingException e ) {
       logger.warn( "Can't load resource data for cache key computation: ", e );
     }
+    rawDataVersionReport = new WeakReference<>( report );
+    rawDataVersionSource = definitionSource;
+    rawDataVersion = result;
     return result;
   }
 
-  private byte[] keyToBytes( final Serializable s ) throws IOException {
-    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-    final ObjectOutputStream oout = new ObjectOutputStream( bout );
-    oout.writeObject( s );
-    oout.close();
-    bout.toByteArray();
-    return bout.toByteArray();
-  }
-
   // will be 43 characters long. Good enough for a directory name, even on Windows.
   public String createKey( final MasterReport report )
     throws CacheKeyException {
     try {
-      final Serializable keyRaw = computeCacheKey( report );
-      final byte[] text = keyToBytes( keyRaw );
-      final MessageDigest md = MessageDigest.getInstance( "SHA-256" );
-      md.update( text ); // Change this to "UTF-16" if needed
-      final byte[] digest = md.digest();
-      return new String( Base64.encode( digest ) );
+      final ContentCacheKeyBuilder builder = new ContentCacheKeyBuilder();
+      addDefinitionSource( builder, report );
+      addParameters( builder, report );
+      builder.add( report.getReportEnvironment().getLocale().toString() );
+      return builder.build();
     } catch ( final Exception b ) {
       throw new CacheKeyException( b );
     }
@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import org.pentaho.reporting.libraries.xmlns.parser.Base64;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Streams the parts of a content cache key into a SHA-256 digest. Every value is written with a presence marker and
+ * its length, so the encoding is unambiguous: ("ab", "c") and ("a", "bc") or null and "null" never collide. Strings
+ * are fed as UTF-16 code units through a small scratch buffer, nothing is serialized or copied on the way.
+ */
+class ContentCacheKeyBuilder {
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+
+  private final MessageDigest digest;
+  private final byte[] buffer = new byte[ 256 ];
+
+  ContentCacheKeyBuilder() throws NoSuchAlgorithmException {
+    digest = MessageDigest.getInstance( "SHA-256" );
+  }
+
+  /**
+   * Appends a value, null is a valid value distinct from any string
+   *
+   * @param value value
+   * @return this builder
+   */
+  ContentCacheKeyBuilder add( final String value ) {
+    if ( value == null ) {
+      digest.update( NULL_VALUE );
+      return this;
+    }
+    digest.update( STRING_VALUE );
+    addInt( value.length() );
+    final int length = value.length();
+    int position = 0;
+    for ( int i = 0; i < length; i++ ) {
+      if ( position == buffer.length ) {
+        digest.update( buffer, 0, position );
+        position = 0;
+      }
+      final char c = value.charAt( i );
+      buffer[ position++ ] = (byte) ( c >>> 8 );
+      buffer[ position++ ] = (byte) c;
+    }
+    digest.update( buffer, 0, position );
+    return this;
+  }
+
+  /**
+   * Appends a number, used for counts so that a variable number of values stays unambiguous
+   *
+   * @param value value
+   * @return this builder
+   */
+  ContentCacheKeyBuilder addInt( final int value ) {
+    digest.update( (byte) ( value >>> 24 ) );
+    digest.update( (byte) ( value >>> 16 ) );
+    digest.update( (byte) ( value >>> 8 ) );
+    digest.update( (byte) value );
+    return this;
+  }
+
+  /**
+   * Finishes the digest, the builder must not be used afterwards
+   *
+   * @return Base64 encoded digest
+   */
+  String build() {
+    return new String( Base64.encode( digest.digest() ) );
+  }
+}
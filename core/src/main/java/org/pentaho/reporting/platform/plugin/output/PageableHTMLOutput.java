@@ -36,11 +36,11 @@ import org.pentaho.reporting.libraries.repository.PageSequenceNameGenerator;
 import org.pentaho.reporting.libraries.repository.Repository;
 import org.pentaho.reporting.libraries.repository.file.FileRepository;
 import org.pentaho.reporting.libraries.repository.stream.StreamRepository;
-import org.pentaho.reporting.libraries.repository.zip.ZipRepository;
 import org.pentaho.reporting.platform.plugin.PentahoPlatformModule;
 import org.pentaho.reporting.platform.plugin.cache.IReportContent;
 import org.pentaho.reporting.platform.plugin.cache.ReportContentImpl;
 import org.pentaho.reporting.platform.plugin.messages.Messages;
+import org.pentaho.reporting.platform.plugin.repository.PageStoreRepository;
 import org.pentaho.reporting.platform.plugin.repository.PentahoNameGenerator;
 import org.pentaho.reporting.platform.plugin.repository.PentahoURLRewriter;
 
@@ -56,6 +56,7 @@ public class PageableHTMLOutput extends AbstractHtmlOutput {
   private ProxyOutputStream proxyOutputStream;
   private PageableReportProcessor proc;
   private AllItemsHtmlPrinter printer;
+  private PageStoreRepository pageStore;
 
   public PageableHTMLOutput() {
   }
@@ -256,14 +257,24 @@ public class PageableHTMLOutput extends AbstractHtmlOutput {
       proc.close();
       proxyOutputStream = null;
     }
+    disposePageStore();
+  }
 
+  private void disposePageStore() {
+    if ( pageStore != null ) {
+      pageStore.dispose();
+      pageStore = null;
+    }
   }
 
   protected Repository reinitOutputTargetRepo() throws ReportProcessingException, ContentIOException {
 
     final Pair<ContentLocation, PentahoNameGenerator> pair = reinitLocationAndNameGenerator();
 
-    final ZipRepository targetRepository = new ZipRepository(); //$NON-NLS-1$
+    //pages go to a spool file as they are printed instead of being kept in memory
+    disposePageStore();
+    final PageStoreRepository targetRepository = new PageStoreRepository();
+    pageStore = targetRepository;
     final ContentLocation targetRoot = targetRepository.getRoot();
 
     final HtmlPrinter printer = getPrinter();
@@ -291,7 +302,21 @@ public class PageableHTMLOutput extends AbstractHtmlOutput {
   protected IReportContent produceReportContent( final PageableReportProcessor proc,
                                                  final Repository targetRepository )
           throws ContentIOException, IOException {
+    return produceReportContent( proc, targetRepository, 0 );
+  }
+
+  /**
+   * Collects the pages written to the repository, starting with the given page. Pages before it are not read.
+   *
+   * @param firstPage first page to collect
+   */
+  protected IReportContent produceReportContent( final PageableReportProcessor proc,
+                                                 final Repository targetRepository, final int firstPage )
+          throws ContentIOException, IOException {
     final int pageCount = proc.getLogicalPageCount();
+    if ( targetRepository instanceof PageStoreRepository ) {
+      return ( (PageStoreRepository) targetRepository ).getContent( pageCount, firstPage );
+    }
     final ContentLocation root = targetRepository.getRoot();
     final Map<Integer, byte[]> pages = new HashMap<>();
 
@@ -300,7 +325,7 @@ public class PageableHTMLOutput extends AbstractHtmlOutput {
         final ContentItem ci = (ContentItem) contentEntities;
         final String name = ci.getName();
         final int pageNumber = extractPageFromName( name );
-        if ( pageNumber >= 0 ) {
+        if ( pageNumber >= firstPage ) {
           pages.put( pageNumber, read( ci.getInputStream() ) );
         }
       }
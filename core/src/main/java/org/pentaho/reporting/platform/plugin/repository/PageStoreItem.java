@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.repository;
+
+import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.repository.ContentItem;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.LibRepositoryBoot;
+import org.pentaho.reporting.libraries.repository.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Item of the {@link PageStoreLocation}. The data written to the item is buffered until the stream is closed and then
+ * handed to the location.
+ */
+public class PageStoreItem implements ContentItem {
+
+  private final String name;
+  private final PageStoreLocation parent;
+  private volatile long size;
+
+  public PageStoreItem( final String name, final PageStoreLocation parent ) {
+    this.name = name;
+    this.parent = parent;
+  }
+
+  public String getMimeType() throws ContentIOException {
+    return getRepository().getMimeRegistry().getMimeType( this );
+  }
+
+  public OutputStream getOutputStream() throws ContentIOException, IOException {
+    return new ByteArrayOutputStream() {
+      private boolean closed;
+
+      @Override public void close() throws IOException {
+        if ( closed ) {
+          return;
+        }
+        closed = true;
+        super.close();
+        size = size();
+        parent.store( name, toByteArray() );
+      }
+    };
+  }
+
+  public InputStream getInputStream() throws ContentIOException, IOException {
+    final byte[] data = parent.load( name );
+    if ( data == null ) {
+      throw new ContentIOException( "Content is not available: " + name ); //$NON-NLS-1$
+    }
+    return new ByteArrayInputStream( data );
+  }
+
+  public boolean isReadable() {
+    return true;
+  }
+
+  public boolean isWriteable() {
+    return true;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Object getContentId() {
+    return name;
+  }
+
+  public Object getAttribute( final String domain, final String key ) {
+    if ( LibRepositoryBoot.REPOSITORY_DOMAIN.equals( domain ) && LibRepositoryBoot.SIZE_ATTRIBUTE.equals( key ) ) {
+      return size;
+    }
+    return null;
+  }
+
+  public boolean setAttribute( final String domain, final String key, final Object object ) {
+    return false;
+  }
+
+  public ContentLocation getParent() {
+    return parent;
+  }
+
+  public Repository getRepository() {
+    return parent.getRepository();
+  }
+
+  public boolean delete() {
+    return parent.remove( name );
+  }
+}
@@ -0,0 +1,142 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.repository;
+
+import org.pentaho.reporting.libraries.repository.ContentCreationException;
+import org.pentaho.reporting.libraries.repository.ContentEntity;
+import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.repository.ContentItem;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.Repository;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Root and only location of the {@link PageStoreRepository}
+ */
+public class PageStoreLocation implements ContentLocation {
+  private static final String PAGE_PREFIX = "page-";
+  private static final String PAGE_SUFFIX = ".html";
+
+  private final PageStoreRepository repository;
+  private final Map<String, PageStoreItem> items = new LinkedHashMap<>();
+  private final Map<String, byte[]> otherContent = new LinkedHashMap<>();
+
+  public PageStoreLocation( final PageStoreRepository repository ) {
+    if ( repository == null ) {
+      throw new NullPointerException();
+    }
+    this.repository = repository;
+  }
+
+  public synchronized ContentEntity[] listContents() throws ContentIOException {
+    return items.values().toArray( new ContentEntity[ items.size() ] );
+  }
+
+  public synchronized ContentEntity getEntry( final String name ) throws ContentIOException {
+    final PageStoreItem item = items.get( name );
+    if ( item == null ) {
+      throw new ContentIOException( "Could not get ContentItem entry" ); //$NON-NLS-1$
+    }
+    return item;
+  }
+
+  public synchronized ContentItem createItem( final String name ) throws ContentCreationException {
+    PageStoreItem item = items.get( name );
+    if ( item == null ) {
+      item = new PageStoreItem( name, this );
+      items.put( name, item );
+    }
+    return item;
+  }
+
+  public ContentLocation createLocation( final String string ) throws ContentCreationException {
+    throw new ContentCreationException( "Cannot create a content-location: " + string ); //$NON-NLS-1$
+  }
+
+  public synchronized boolean exists( final String name ) {
+    return items.containsKey( name );
+  }
+
+  /**
+   * Called when an item's output stream is closed
+   */
+  void store( final String name, final byte[] data ) throws IOException {
+    final int page = extractPageFromName( name );
+    if ( page >= 0 ) {
+      repository.getWriter().addPage( page, data );
+    } else {
+      synchronized ( this ) {
+        otherContent.put( name, data );
+      }
+    }
+  }
+
+  byte[] load( final String name ) throws IOException {
+    final int page = extractPageFromName( name );
+    if ( page >= 0 ) {
+      return repository.getWriter().getPage( page );
+    }
+    synchronized ( this ) {
+      return otherContent.get( name );
+    }
+  }
+
+  synchronized boolean remove( final String name ) {
+    otherContent.remove( name );
+    return items.remove( name ) != null;
+  }
+
+  static int extractPageFromName( final String name ) {
+    if ( name.startsWith( PAGE_PREFIX ) && name.endsWith( PAGE_SUFFIX ) ) {
+      try {
+        return Integer.parseInt( name.substring( PAGE_PREFIX.length(), name.length() - PAGE_SUFFIX.length() ) );
+      } catch ( final NumberFormatException e ) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  public String getName() {
+    return "root";
+  }
+
+  public Object getContentId() {
+    return getName();
+  }
+
+  public Object getAttribute( final String domain, final String key ) {
+    return null;
+  }
+
+  public boolean setAttribute( final String domain, final String key, final Object object ) {
+    return false;
+  }
+
+  public ContentLocation getParent() {
+    // We have no parent ...
+    return null;
+  }
+
+  public Repository getRepository() {
+    return repository;
+  }
+
+  public boolean delete() {
+    // cannot be deleted ..
+    return false;
+  }
+}
@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.repository;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.DefaultMimeRegistry;
+import org.pentaho.reporting.libraries.repository.MimeRegistry;
+import org.pentaho.reporting.libraries.repository.Repository;
+import org.pentaho.reporting.platform.plugin.cache.IReportContent;
+import org.pentaho.reporting.platform.plugin.cache.PageSegmentWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Flat repository for paginated HTML output. Pages named like "page-0.html" are spooled to a page segment file as
+ * soon as the printer closes them, so only the page being printed is held in memory. Any other content is kept in
+ * memory.
+ */
+public class PageStoreRepository implements Repository {
+
+  private static final Log logger = LogFactory.getLog( PageStoreRepository.class );
+
+  private final DefaultMimeRegistry mimeRegistry;
+  private final PageSegmentWriter writer;
+  private final PageStoreLocation root;
+
+  /**
+   * Creates the repository with a spool file in the temporary directory
+   *
+   * @throws ContentIOException if the spool file can't be created
+   */
+  public PageStoreRepository() throws ContentIOException {
+    try {
+      this.writer = new PageSegmentWriter( File.createTempFile( "report-pages-", ".spool" ) );
+    } catch ( final IOException e ) {
+      throw new ContentIOException( "Can't create page store", e );
+    }
+    this.mimeRegistry = new DefaultMimeRegistry();
+    this.root = new PageStoreLocation( this );
+  }
+
+  public ContentLocation getRoot() throws ContentIOException {
+    return root;
+  }
+
+  public MimeRegistry getMimeRegistry() {
+    return mimeRegistry;
+  }
+
+  PageSegmentWriter getWriter() {
+    return writer;
+  }
+
+  /**
+   * @param pageCount page count of the report
+   * @param firstPage first page to include
+   * @return pages stored so far, read from the spool file on demand
+   */
+  public IReportContent getContent( final int pageCount, final int firstPage ) {
+    return writer.getContent( pageCount, firstPage );
+  }
+
+  /**
+   * Removes the spool file, content taken from the repository is not readable afterwards
+   */
+  public void dispose() {
+    try {
+      writer.close();
+    } catch ( final IOException e ) {
+      logger.debug( "Can't close page store: ", e );
+    }
+    final File file = writer.getFile();
+    if ( file.exists() && !file.delete() ) {
+      logger.warn( "Can't delete page store " + file );
+    }
+  }
+}
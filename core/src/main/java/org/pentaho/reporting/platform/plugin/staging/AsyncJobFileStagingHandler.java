@@ -32,6 +32,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -50,7 +52,7 @@ public class AsyncJobFileStagingHandler {
 
   private String sessionId;
 
-  private OutputStream fileTrackingStream;
+  private RedirectableOutputStream fileTrackingStream;
 
   // package private for testing purpose
   File tmpFile;
@@ -93,7 +95,7 @@ public class AsyncJobFileStagingHandler {
       tmpFile.deleteOnExit();
     }
 
-    fileTrackingStream = new BufferedOutputStream( new FileOutputStream( tmpFile ) );
+    fileTrackingStream = new RedirectableOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
   }
 
   private Path getStagingExecutionFolder( final String userSession ) {
@@ -114,6 +116,19 @@ public class AsyncJobFileStagingHandler {
     return new FixedSizeStagingContent( tmpFile );
   }
 
+  /**
+   * Copies the content staged so far to the target and writes all further output straight to it, so content that is
+   * stored elsewhere anyway is not spooled to disk first. Closing the staging stream afterwards flushes the target, but
+   * leaves it open for the caller.
+   *
+   * @param target stream to write the content to
+   * @throws IOException if the staged content can't be copied, the output stays staged in this case
+   */
+  public void redirect( final OutputStream target ) throws IOException {
+    ArgumentNullException.validate( "target", target );  //NON-NLS
+    fileTrackingStream.redirect( target );
+  }
+
   public static void cleanSession( final IPentahoSession session ) {
     ArgumentNullException.validate( "session", session );  //NON-NLS
     cleanSession( session.getId() );
@@ -140,6 +155,23 @@ public class AsyncJobFileStagingHandler {
     }
   }
 
+  /**
+   * @return size in bytes of all staged content, 0 if there is none
+   */
+  public static long getStagingDiskUsage() {
+    final Path stagingDir = AsyncJobFileStagingHandler.getStagingDirPath();
+    if ( stagingDir == null || !stagingDir.toFile().isDirectory() ) {
+      return 0;
+    }
+    try {
+      return FileUtils.sizeOfDirectory( stagingDir.toFile() );
+    } catch ( final IllegalArgumentException | UncheckedIOException e ) {
+      // files are removed while counting
+      logger.debug( "Unable to measure async staging content.", e );
+      return 0;
+    }
+  }
+
   public static void cleanStagingDir() {
     // delete all staging dir
     final Path stagingDir = AsyncJobFileStagingHandler.getStagingDirPath();
@@ -179,8 +211,55 @@ public class AsyncJobFileStagingHandler {
       return size;
     }
 
+    /**
+     * @return file holding the content
+     */
+    public File getFile() {
+      return tmpFile;
+    }
+
     @Override public boolean cleanContent() {
       return tmpFile.delete();
     }
   }
+
+  private final class RedirectableOutputStream extends OutputStream {
+    private OutputStream out;
+    private boolean redirected;
+
+    private RedirectableOutputStream( final OutputStream out ) {
+      this.out = out;
+    }
+
+    private synchronized void redirect( final OutputStream target ) throws IOException {
+      if ( redirected ) {
+        throw new IllegalStateException( "Staging output is already redirected" );
+      }
+      out.flush();
+      Files.copy( tmpFile.toPath(), target );
+      out.close();
+      out = target;
+      redirected = true;
+    }
+
+    @Override public synchronized void write( final int b ) throws IOException {
+      out.write( b );
+    }
+
+    @Override public synchronized void write( final byte[] b, final int off, final int len ) throws IOException {
+      out.write( b, off, len );
+    }
+
+    @Override public synchronized void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override public synchronized void close() throws IOException {
+      if ( redirected ) {
+        out.flush();
+      } else {
+        out.close();
+      }
+    }
+  }
 }
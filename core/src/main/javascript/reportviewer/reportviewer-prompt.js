@@ -31,6 +31,7 @@ define([
       mode: 'INITIAL',
       _isAsync: null,
       _pollingInterval: 1000,
+      _statusWaitTimeout: 0,
       _dialogThreshold: 1500,
       _promptForLocation: null,
       _defaultOutputPath: null,
@@ -498,6 +499,7 @@ define([
               asyncConf = JSON.parse(asyncConf);
               this._isAsync = asyncConf.supportAsync;
               this._pollingInterval = asyncConf.pollingIntervalMilliseconds;
+              this._statusWaitTimeout = asyncConf.statusWaitMilliseconds || 0;
               this._dialogThreshold = asyncConf.dialogThresholdMilliseconds;
               //No location prompting if mantle application is unavailable
               var isMantleAvailable = false;
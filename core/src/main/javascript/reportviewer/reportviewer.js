@@ -44,6 +44,8 @@ define([ 'common-ui/util/util', "common-ui/util/xss", 'common-ui/util/timeutil',
       },
       _currentReportStatus: null,
       _currentReportUuid: null,
+      _lastStatusRequest: 0,
+      _statusToken: null,
       _currentStoredPagesCount: null,
       _cachedReportCanceled: null,
       _requestedPage: 0,
@@ -1740,9 +1742,30 @@ define([ 'common-ui/util/util', "common-ui/util/xss", 'common-ui/util/timeutil',
 
       _keepPolling : function (uuid, url, callback){
         var me = this;
+        var statusUrl = url.substring(0, url.indexOf("/api/repos")) + '/plugin/reporting/api/jobs/' + uuid + '/status';
+        if (!me.reportPrompt._statusWaitTimeout) {
+          setTimeout(function () {
+            pentahoGet(statusUrl, "", callback, "application/json");
+          }, me.reportPrompt._pollingInterval);
+          return;
+        }
+        // The server holds the request until the status changes, ask at most once per polling interval
+        var delay = Math.max(0, me._lastStatusRequest + me.reportPrompt._pollingInterval - new Date().getTime());
         setTimeout(function () {
-          pentahoGet(url.substring(0, url.indexOf("/api/repos")) + '/plugin/reporting/api/jobs/' + uuid + '/status', "", callback, "application/json");
-        }, me.reportPrompt._pollingInterval);
+          me._lastStatusRequest = new Date().getTime();
+          var query = (me._statusToken && me._statusToken.uuid == uuid) ? 'since=' + encodeURIComponent(me._statusToken.token) : "";
+          pentahoGet(statusUrl + '/wait', query, function (result) {
+            try {
+              var status = JSON.parse(result);
+              if (status && status.statusToken) {
+                me._statusToken = {uuid: uuid, token: status.statusToken};
+              }
+            } catch (ignored) {
+              //handled by the callback
+            }
+            callback(result);
+          }, "application/json");
+        }, delay);
       },
 
       _getContent : function (uuid, url, mimeType, callback) {
@@ -13,22 +13,28 @@
 
 package org.pentaho.reporting.platform.plugin;
 
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.ISecurityHelper;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.reporting.engine.classic.core.cache.DataCache;
 import org.pentaho.reporting.engine.classic.core.cache.DataCacheFactory;
 import org.pentaho.reporting.engine.classic.core.cache.DataCacheManager;
+import org.pentaho.reporting.platform.plugin.cache.CacheUsage;
 import org.pentaho.reporting.platform.plugin.cache.IPluginCacheManager;
 import org.pentaho.reporting.platform.plugin.cache.IReportContentCache;
+import org.pentaho.reporting.platform.plugin.cache.IUsageTrackingCache;
 
 import javax.ws.rs.core.Response;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -37,6 +43,17 @@ import static org.mockito.Mockito.when;
 @RunWith( MockitoJUnitRunner.class )
 public class CacheManagerEndpointTest {
 
+  private void setAdministrator( final boolean administrator ) {
+    final ISecurityHelper securityHelper = mock( ISecurityHelper.class );
+    when( securityHelper.isPentahoAdministrator( any() ) ).thenReturn( administrator );
+    SecurityHelper.setMockInstance( securityHelper );
+  }
+
+  @After
+  public void tearDown() {
+    SecurityHelper.setMockInstance( null );
+  }
+
   @Test
   public void clear() throws Exception {
     try ( MockedStatic<DataCacheFactory> dataCacheFactoryMockedStatic = Mockito.mockStatic( DataCacheFactory.class ) ) {
@@ -67,4 +84,50 @@ public class CacheManagerEndpointTest {
     assertEquals( 500, clear.getStatus() );
   }
 
+  @Test
+  public void usage() throws Exception {
+    setAdministrator( true );
+    try {
+      final IPluginCacheManager cacheManager = mock( IPluginCacheManager.class );
+      final IUsageTrackingCache contentCache = mock( IUsageTrackingCache.class );
+      when( cacheManager.getCache() ).thenReturn( contentCache );
+      when( contentCache.getUsage() ).thenReturn( new CacheUsage( 2, 300, 1000, 1, 100, 500 ) );
+      PentahoSystem.registerObject( cacheManager, IPluginCacheManager.class );
+
+      final Response usage = new CacheManagerEndpoint().usage();
+
+      assertEquals( 200, usage.getStatus() );
+      assertEquals( "{\"entries\":2,\"maxBytes\":1000,\"maxBytesPerUser\":500,\"usedBytes\":300,"
+        + "\"userBytes\":100,\"userEntries\":1}", usage.getEntity() );
+    } finally {
+      PentahoSystem.shutdown();
+    }
+  }
+
+  @Test
+  public void usageNotTracked() throws Exception {
+    setAdministrator( true );
+    try {
+      final IPluginCacheManager cacheManager = mock( IPluginCacheManager.class );
+      when( cacheManager.getCache() ).thenReturn( mock( IReportContentCache.class ) );
+      PentahoSystem.registerObject( cacheManager, IPluginCacheManager.class );
+
+      assertEquals( 404, new CacheManagerEndpoint().usage().getStatus() );
+    } finally {
+      PentahoSystem.shutdown();
+    }
+  }
+
+  @Test
+  public void usageError() throws Exception {
+    setAdministrator( true );
+    assertEquals( 500, new CacheManagerEndpoint().usage().getStatus() );
+  }
+
+  @Test
+  public void usageForbidden() throws Exception {
+    setAdministrator( false );
+    assertEquals( 403, new CacheManagerEndpoint().usage().getStatus() );
+  }
+
 }
@@ -27,31 +27,51 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ISecurityHelper;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.util.web.MimeHelper;
 import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
 import org.pentaho.reporting.engine.classic.core.event.async.AsyncReportState;
 import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.platform.plugin.async.AsyncJobMetrics;
 import org.pentaho.reporting.platform.plugin.async.ISchedulingDirectoryStrategy;
 import org.pentaho.reporting.platform.plugin.async.JobIdGenerator;
 import org.pentaho.reporting.platform.plugin.async.PentahoAsyncExecutor;
+import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
@@ -152,6 +172,149 @@ public class JobManagerTest {
     assertTrue( json.contains( uuid.toString() ) );
   }
 
+  @Test public void testGetStatusQueuePosition() throws IOException {
+    when( executor.getQueuePosition( any(), any() ) ).thenReturn( 3 );
+    final JobManager jobManager = new JobManager();
+    final Response response = jobManager.getStatus( uuid.toString() );
+    assertEquals( 200, response.getStatus() );
+
+    final String json = response.readEntity( String.class );
+    assertTrue( json.contains( uuid.toString() ) );
+    assertTrue( json.contains( "\"queuePosition\":3" ) );
+  }
+
+  @Test public void testGetStatuses() throws Exception {
+    final UUID queued = UUID.randomUUID();
+    final Map<UUID, IAsyncReportState> states = new LinkedHashMap<>();
+    states.put( uuid, STATE );
+    states.put( queued, STATE );
+    when( executor.getReportStates( any(), any() ) ).thenReturn( states );
+    when( executor.getQueuePosition( any(), any() ) ).thenReturn( 0 );
+    when( executor.getQueuePosition( eq( queued ), any() ) ).thenReturn( 2 );
+
+    final JobManager jobManager = new JobManager();
+    final Response response =
+      jobManager.getStatuses( "[\"" + uuid + "\", \"" + queued + "\", \"unknown\", \"not-a-uuid\"]" );
+    assertEquals( 200, response.getStatus() );
+
+    final JsonNode json = new ObjectMapper().readTree( response.readEntity( String.class ) );
+    assertEquals( 2, json.size() );
+    assertEquals( uuid.toString(), json.get( uuid.toString() ).get( "uuid" ).asText() );
+    assertNull( json.get( uuid.toString() ).get( JobManager.QUEUE_POSITION ) );
+    assertEquals( 2, json.get( queued.toString() ).get( JobManager.QUEUE_POSITION ).asInt() );
+
+    final ArgumentCaptor<Collection> ids = ArgumentCaptor.forClass( Collection.class );
+    verify( executor ).getReportStates( ids.capture(), any() );
+    assertEquals( Arrays.asList( uuid, queued ), new ArrayList<>( ids.getValue() ) );
+  }
+
+  @Test public void testGetStatusesBadRequest() {
+    final JobManager jobManager = new JobManager();
+    assertEquals( 400, jobManager.getStatuses( "{ \"not\" : \"a list\" }" ).getStatus() );
+    assertEquals( 400, jobManager.getStatuses( null ).getStatus() );
+    final List<String> tooMany = Collections.nCopies( JobManager.MAX_BATCH_STATUS + 1, "\"" + uuid + "\"" );
+    assertEquals( 400, jobManager.getStatuses( "[" + String.join( ",", tooMany ) + "]" ).getStatus() );
+  }
+
+  @Test public void testWaitForStatus() throws Exception {
+    final JobManager jobManager = new JobManager( true, 500, 1500, false, 300, 1 );
+    final ObjectMapper mapper = new ObjectMapper();
+
+    // no token, answered at once
+    final Response first = jobManager.waitForStatus( uuid.toString(), null );
+    assertEquals( 200, first.getStatus() );
+    final String token = (String) mapper.readValue( first.readEntity( String.class ), Map.class )
+      .get( JobManager.STATUS_TOKEN );
+    assertNotNull( token );
+
+    // outdated token, answered at once
+    final Response outdated = jobManager.waitForStatus( uuid.toString(), "outdated" );
+    assertEquals( token, mapper.readValue( outdated.readEntity( String.class ), Map.class )
+      .get( JobManager.STATUS_TOKEN ) );
+    verify( executor, times( 2 ) ).awaitStatusChange( any(), any(), eq( -1L ), eq( 0L ) );
+
+    // unchanged status, answered when the wait time is over
+    when( executor.awaitStatusChange( any(), any(), anyLong(), anyLong() ) ).thenAnswer( i -> {
+      Thread.sleep( (Long) i.getArgument( 3 ) );
+      return 0L;
+    } );
+    final long start = System.currentTimeMillis();
+    final Response unchanged = jobManager.waitForStatus( uuid.toString(), token );
+    assertTrue( System.currentTimeMillis() - start >= 300 );
+    assertEquals( token, mapper.readValue( unchanged.readEntity( String.class ), Map.class )
+      .get( JobManager.STATUS_TOKEN ) );
+  }
+
+  @Test public void testWaitForStatusIgnoresRowProgress() throws Exception {
+    final JobManager jobManager = new JobManager( true, 500, 1500, false, 300, 1 );
+    final ObjectMapper mapper = new ObjectMapper();
+    when( executor.getReportState( Mockito.<UUID>any(), Mockito.<IPentahoSession>any() ) )
+      .thenReturn( runningState( 0, 10, 1 ) );
+    final String token = (String) mapper.readValue( jobManager.waitForStatus( uuid.toString(), null )
+      .readEntity( String.class ), Map.class ).get( JobManager.STATUS_TOKEN );
+
+    // only rows are processed, answered when the wait time is over
+    when( executor.getReportState( Mockito.<UUID>any(), Mockito.<IPentahoSession>any() ) )
+      .thenReturn( runningState( 0, 20, 1 ) );
+    when( executor.awaitStatusChange( any(), any(), anyLong(), anyLong() ) ).thenAnswer( i -> {
+      Thread.sleep( (Long) i.getArgument( 3 ) );
+      return 0L;
+    } );
+    final long start = System.currentTimeMillis();
+    final Response rows = jobManager.waitForStatus( uuid.toString(), token );
+    assertTrue( System.currentTimeMillis() - start >= 300 );
+    assertEquals( token, mapper.readValue( rows.readEntity( String.class ), Map.class )
+      .get( JobManager.STATUS_TOKEN ) );
+
+    // next page, answered at once
+    when( executor.getReportState( Mockito.<UUID>any(), Mockito.<IPentahoSession>any() ) )
+      .thenReturn( runningState( 0, 30, 2 ) );
+    final Response page = jobManager.waitForStatus( uuid.toString(), token );
+    assertNotEquals( token, mapper.readValue( page.readEntity( String.class ), Map.class )
+      .get( JobManager.STATUS_TOKEN ) );
+  }
+
+  @Test public void testWaitForStatusAnswersProgressOncePerInterval() throws Exception {
+    final JobManager jobManager = new JobManager( true, 200, 1500, false, 5000, 1 );
+    final ObjectMapper mapper = new ObjectMapper();
+    when( executor.getReportState( Mockito.<UUID>any(), Mockito.<IPentahoSession>any() ) )
+      .thenReturn( runningState( 10, 10, 1 ) );
+    final String token = (String) mapper.readValue( jobManager.waitForStatus( uuid.toString(), null )
+      .readEntity( String.class ), Map.class ).get( JobManager.STATUS_TOKEN );
+
+    // progress alone, answered after the polling interval instead of the wait time
+    when( executor.getReportState( Mockito.<UUID>any(), Mockito.<IPentahoSession>any() ) )
+      .thenReturn( runningState( 20, 20, 1 ) );
+    when( executor.awaitStatusChange( any(), any(), anyLong(), anyLong() ) ).thenAnswer( i -> {
+      Thread.sleep( (Long) i.getArgument( 3 ) );
+      return 0L;
+    } );
+    final long start = System.currentTimeMillis();
+    final Map progress = mapper.readValue( jobManager.waitForStatus( uuid.toString(), token )
+      .readEntity( String.class ), Map.class );
+    final long waited = System.currentTimeMillis() - start;
+    assertTrue( waited >= 200 );
+    assertTrue( waited < 5000 );
+    assertEquals( 20, progress.get( "progress" ) );
+    assertNotEquals( token, progress.get( JobManager.STATUS_TOKEN ) );
+  }
+
+  private static IAsyncReportState runningState( final int progress, final int row, final int page ) {
+    return new AsyncReportState( uuid, PATH, AsyncExecutionStatus.WORKING, progress, row, 100, page, 5, page, "",
+      MIME, "", false );
+  }
+
+  @Test public void testStatusWaitConfig() throws Exception {
+    final ObjectMapper mapper = new ObjectMapper();
+    JsonNode config = mapper.readTree( (String) new JobManager( true, 500, 1500, false, 300, 1 ).getConfig()
+      .getEntity() );
+    assertEquals( 300, config.get( "statusWaitMilliseconds" ).asLong() );
+    config = mapper.readTree( (String) new JobManager( true, 500, 1500, false, 300, 0 ).getConfig().getEntity() );
+    assertEquals( 0, config.get( "statusWaitMilliseconds" ).asLong() );
+    config = mapper.readTree( (String) new JobManager().getConfig().getEntity() );
+    assertEquals( 0, config.get( "statusWaitMilliseconds" ).asLong() );
+  }
+
   @Test
   public void calculateContentDisposition() throws Exception {
     final IAsyncReportState state1 =
@@ -271,6 +434,43 @@ public class JobManagerTest {
     STATUS = AsyncExecutionStatus.FAILED;
   }
 
+  @Test public void testGetMetrics() throws Exception {
+    final AsyncJobMetrics metrics = new AsyncJobMetrics();
+    metrics.submitted();
+    metrics.finished( "application/pdf", AsyncJobMetrics.Outcome.COMPLETED, 100, 300, 1300 );
+    when( executor.getJobMetrics() ).thenReturn( metrics );
+    when( executor.getQueueLength() ).thenReturn( 2 );
+
+    setAdministrator( true );
+    try {
+      final Response response = new JobManager().getMetrics();
+      assertEquals( 200, response.getStatus() );
+      final JsonNode json = new ObjectMapper().readTree( (String) response.getEntity() );
+      assertEquals( 2, json.get( "queueLength" ).asInt() );
+      assertEquals( 1, json.get( "submitted" ).asLong() );
+      assertEquals( 1, json.get( "completed" ).asLong() );
+      assertEquals( 200, json.get( "waitTime" ).get( "application/pdf" ).get( "mean" ).asLong() );
+      assertEquals( 1, json.get( "runTime" ).get( "application/pdf" ).get( "buckets" ).get( "1000" ).asLong() );
+    } finally {
+      SecurityHelper.setMockInstance( null );
+    }
+  }
+
+  @Test public void testGetMetricsForbidden() {
+    setAdministrator( false );
+    try {
+      assertEquals( 403, new JobManager().getMetrics().getStatus() );
+    } finally {
+      SecurityHelper.setMockInstance( null );
+    }
+  }
+
+  private static void setAdministrator( final boolean administrator ) {
+    final ISecurityHelper securityHelper = mock( ISecurityHelper.class );
+    when( securityHelper.isPentahoAdministrator( any() ) ).thenReturn( administrator );
+    SecurityHelper.setMockInstance( securityHelper );
+  }
+
   @Test
   public void testGetExec() throws Exception {
     final JobManager jobManager = new JobManager();
@@ -322,6 +522,70 @@ public class JobManagerTest {
   }
 
 
+  @Test public void testContentRange() throws Exception {
+    setSession();
+
+    final UUID uuid = UUID.randomUUID();
+    final JobManager jobManager = new JobManager();
+
+    final File file = File.createTempFile( "junit", "staging" );
+    file.deleteOnExit();
+    try ( final FileOutputStream out = new FileOutputStream( file ) ) {
+      out.write( "0123456789".getBytes( StandardCharsets.UTF_8 ) );
+    }
+    final Future future = mock( Future.class );
+    when( future.get() ).thenReturn( new AsyncJobFileStagingHandler.FixedSizeStagingContent( file ) );
+    when( executor.getFuture( uuid, session ) ).thenReturn( future );
+    STATUS = AsyncExecutionStatus.FINISHED;
+
+    Response response = jobManager.getContent( uuid.toString() );
+    assertEquals( 200, response.getStatus() );
+    assertEquals( "10", response.getHeaderString( HttpHeaders.CONTENT_LENGTH ) );
+    assertEquals( "bytes", response.getHeaderString( JobManager.ACCEPT_RANGES ) );
+    assertEquals( "0123456789", write( response ) );
+    final String entityTag = response.getHeaderString( HttpHeaders.ETAG );
+    assertNotNull( entityTag );
+
+    response = jobManager.getContent( uuid.toString(), "bytes=2-5", null );
+    assertEquals( 206, response.getStatus() );
+    assertEquals( "4", response.getHeaderString( HttpHeaders.CONTENT_LENGTH ) );
+    assertEquals( "bytes 2-5/10", response.getHeaderString( JobManager.CONTENT_RANGE ) );
+    assertEquals( "2345", write( response ) );
+
+    response = jobManager.getPDFContent( uuid.toString(), "bytes=7-", entityTag );
+    assertEquals( 206, response.getStatus() );
+    assertEquals( "789", write( response ) );
+
+    // the content has changed since the client got the entity tag
+    response = jobManager.getContent( uuid.toString(), "bytes=7-", "\"other\"" );
+    assertEquals( 200, response.getStatus() );
+
+    response = jobManager.getContent( uuid.toString(), "bytes=10-", null );
+    assertEquals( 416, response.getStatus() );
+    assertEquals( "bytes */10", response.getHeaderString( JobManager.CONTENT_RANGE ) );
+  }
+
+  private static String write( final Response response ) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ( (StreamingOutput) response.getEntity() ).write( out );
+    return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+  }
+
+  @Test public void testParseRange() {
+    assertArrayEquals( new long[] { 0, 9 }, JobManager.parseRange( "bytes=0-", 10 ) );
+    assertArrayEquals( new long[] { 2, 5 }, JobManager.parseRange( "bytes=2-5", 10 ) );
+    assertArrayEquals( new long[] { 2, 9 }, JobManager.parseRange( "bytes=2-100", 10 ) );
+    assertArrayEquals( new long[] { 7, 9 }, JobManager.parseRange( "bytes=-3", 10 ) );
+    assertArrayEquals( new long[] { 0, 9 }, JobManager.parseRange( "bytes=-30", 10 ) );
+    assertEquals( 0, JobManager.parseRange( "bytes=10-", 10 ).length );
+    assertEquals( 0, JobManager.parseRange( "bytes=-0", 10 ).length );
+    assertEquals( 0, JobManager.parseRange( "bytes=0-", 0 ).length );
+    assertNull( JobManager.parseRange( "bytes=0-1,4-5", 10 ) );
+    assertNull( JobManager.parseRange( "bytes=5-2", 10 ) );
+    assertNull( JobManager.parseRange( "bytes=a-b", 10 ) );
+    assertNull( JobManager.parseRange( "items=0-1", 10 ) );
+  }
+
   @Test public void testFlowNoPropting() throws IOException, ExecutionException, InterruptedException {
     setSession();
 
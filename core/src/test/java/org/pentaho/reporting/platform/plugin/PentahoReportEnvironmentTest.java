@@ -39,6 +39,20 @@ public class PentahoReportEnvironmentTest {
       .getEnvironmentProperty( "contentLink" ) );
   }
 
+  @Test
+  public void testUserDependent() {
+    final PentahoReportEnvironment environment = new PentahoReportEnvironment( new DefaultConfiguration(), "", "" );
+    environment.getEnvironmentProperty( "contentLink" );
+    environment.getEnvironmentProperty( "serverBaseURL" );
+    Assert.assertFalse( environment.isUserDependent() );
+    environment.getEnvironmentProperty( "session:attr" );
+    Assert.assertTrue( environment.isUserDependent() );
+
+    Assert.assertTrue( PentahoReportEnvironment.isUserDependentProperty( "username" ) );
+    Assert.assertTrue( PentahoReportEnvironment.isUserDependentProperty( "roles" ) );
+    Assert.assertFalse( PentahoReportEnvironment.isUserDependentProperty( "global:attr" ) );
+  }
+
   @Test
   public void testNotAppContext() {
     final String[] props = new String[] { "serverBaseURL",
@@ -0,0 +1,309 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionQueueTest {
+
+  private static Runnable offer( final AdmissionQueue queue, final AdmissionClass admissionClass,
+                                 final String user ) {
+    final Runnable runnable = new Named( admissionClass + ":" + user );
+    assertTrue( queue.admit( admissionClass, user, () -> queue.offer( runnable ) ) );
+    return runnable;
+  }
+
+  private static Runnable offer( final AdmissionQueue queue, final AdmissionQueue.Ticket ticket ) {
+    final Runnable runnable = new Named( ticket.toString() );
+    assertTrue( queue.admit( ticket, () -> queue.offer( runnable ) ) );
+    return runnable;
+  }
+
+  private static AdmissionQueue.Ticket ticket( final String user, final String report, final String... dataSources ) {
+    return new AdmissionQueue.Ticket( AdmissionClass.BACKGROUND, user, report, Arrays.asList( dataSources ) );
+  }
+
+  @Test
+  public void testClassOrder() {
+    final AdmissionQueue queue = new AdmissionQueue( 10, 10, 10, 0 );
+    final Runnable background = offer( queue, AdmissionClass.BACKGROUND, "a" );
+    final Runnable full = offer( queue, AdmissionClass.INTERACTIVE_FULL, "a" );
+    final Runnable firstPage = offer( queue, AdmissionClass.INTERACTIVE_FIRST_PAGE, "a" );
+
+    assertEquals( 3, queue.size() );
+    assertSame( firstPage, queue.peek() );
+    assertSame( firstPage, queue.poll() );
+    assertSame( full, queue.poll() );
+    assertSame( background, queue.poll() );
+    assertNull( queue.poll() );
+  }
+
+  @Test
+  public void testUsersTakeTurns() {
+    final AdmissionQueue queue = new AdmissionQueue();
+    final Runnable a1 = offer( queue, AdmissionClass.BACKGROUND, "a" );
+    final Runnable a2 = offer( queue, AdmissionClass.BACKGROUND, "a" );
+    final Runnable a3 = offer( queue, AdmissionClass.BACKGROUND, "a" );
+    final Runnable b1 = offer( queue, AdmissionClass.BACKGROUND, "b" );
+    final Runnable c1 = offer( queue, AdmissionClass.BACKGROUND, "c" );
+
+    assertSame( a1, queue.poll() );
+    assertSame( b1, queue.poll() );
+    assertSame( c1, queue.poll() );
+    assertSame( a2, queue.poll() );
+    assertSame( a3, queue.poll() );
+  }
+
+  @Test
+  public void testLimits() {
+    final AdmissionQueue queue = new AdmissionQueue( 1, 0, 2 );
+    offer( queue, AdmissionClass.INTERACTIVE_FIRST_PAGE, "a" );
+    assertFalse( queue.admit( AdmissionClass.INTERACTIVE_FIRST_PAGE, "b", () -> queue.offer( new Named( "x" ) ) ) );
+    assertFalse( queue.admit( AdmissionClass.INTERACTIVE_FULL, "b", () -> queue.offer( new Named( "x" ) ) ) );
+    offer( queue, AdmissionClass.BACKGROUND, "a" );
+    assertEquals( 1, queue.remainingCapacity() );
+    assertEquals( 2, queue.getLimit( AdmissionClass.BACKGROUND ) );
+
+    // internal work is never refused and does not count as background work
+    assertTrue( queue.offer( new Named( "callback" ) ) );
+    assertTrue( queue.offer( new Named( "callback" ) ) );
+    assertEquals( 1, queue.size( AdmissionClass.BACKGROUND ) );
+    assertEquals( 1, queue.remainingCapacity() );
+    assertEquals( 4, queue.size() );
+  }
+
+  @Test
+  public void testInternalWorkRunsFirst() {
+    final AdmissionQueue queue = new AdmissionQueue();
+    final Runnable firstPage = offer( queue, AdmissionClass.INTERACTIVE_FIRST_PAGE, "a" );
+    final Runnable callback = new Named( "callback" );
+    assertTrue( queue.offer( callback ) );
+    assertSame( callback, queue.peek() );
+    assertSame( callback, queue.poll() );
+    assertSame( firstPage, queue.poll() );
+    assertNull( queue.poll() );
+  }
+
+  @Test
+  public void testBackgroundIsNotStarved() {
+    final AdmissionQueue queue = new AdmissionQueue( 10, 10, 10, 2 );
+    final Runnable background = offer( queue, AdmissionClass.BACKGROUND, "a" );
+    for ( int i = 0; i < 5; i++ ) {
+      offer( queue, AdmissionClass.INTERACTIVE_FIRST_PAGE, "b" );
+    }
+    assertEquals( AdmissionClass.INTERACTIVE_FIRST_PAGE + ":b", queue.poll().toString() );
+    assertEquals( AdmissionClass.INTERACTIVE_FIRST_PAGE + ":b", queue.poll().toString() );
+    assertSame( background, queue.poll() );
+    assertEquals( AdmissionClass.INTERACTIVE_FIRST_PAGE + ":b", queue.poll().toString() );
+  }
+
+  @Test
+  public void testRemoveAndDrain() {
+    final AdmissionQueue queue = new AdmissionQueue();
+    final Runnable a1 = offer( queue, AdmissionClass.INTERACTIVE_FULL, "a" );
+    final Runnable a2 = offer( queue, AdmissionClass.BACKGROUND, "a" );
+    final Runnable b1 = offer( queue, AdmissionClass.BACKGROUND, "b" );
+
+    assertTrue( queue.remove( a2 ) );
+    assertFalse( queue.remove( a2 ) );
+    final Iterator<Runnable> it = queue.iterator();
+    assertSame( a1, it.next() );
+    it.remove();
+    assertEquals( 1, queue.size() );
+
+    final List<Runnable> drained = new ArrayList<>();
+    assertEquals( 1, queue.drainTo( drained ) );
+    assertSame( b1, drained.get( 0 ) );
+    assertTrue( queue.isEmpty() );
+  }
+
+  @Test
+  public void testTicketIsUsedOnce() {
+    final AdmissionQueue queue = new AdmissionQueue( 0, 0, 0 );
+    assertTrue( queue.admit( AdmissionClass.INTERACTIVE_FULL, "a", () -> {
+      queue.offer( new Named( "x" ) );
+      return queue.offer( new Named( "y" ) );
+    } ) );
+    assertEquals( 1, queue.size() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testThreadPool() throws Exception {
+    final AdmissionQueue queue = new AdmissionQueue( 1, 1, 1 );
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor( 1, 1, 0L, TimeUnit.MILLISECONDS, queue );
+    final LinkedBlockingQueue<String> order = new LinkedBlockingQueue<>();
+    final Object lock = new Object();
+    try {
+      synchronized ( lock ) {
+        pool.execute( () -> {
+          synchronized ( lock ) {
+            order.add( "running" );
+          }
+        } );
+        queue.admit( AdmissionClass.BACKGROUND, "a", () -> pool.submit( () -> order.add( "background" ) ) );
+        queue.admit( AdmissionClass.INTERACTIVE_FIRST_PAGE, "a", () -> pool.submit( () -> order.add( "first" ) ) );
+        try {
+          queue.admit( AdmissionClass.BACKGROUND, "b", () -> pool.submit( () -> order.add( "rejected" ) ) );
+          fail();
+        } catch ( final RejectedExecutionException e ) {
+          // expected
+        }
+      }
+      assertEquals( "running", order.poll( 5, TimeUnit.SECONDS ) );
+      assertEquals( "first", order.poll( 5, TimeUnit.SECONDS ) );
+      assertEquals( "background", order.poll( 5, TimeUnit.SECONDS ) );
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testUserBudget() {
+    final AdmissionQueue queue = new AdmissionQueue( 10, 10, 10, new ConcurrencyBudget( 1, 0, 0 ) );
+    final AdmissionQueue.Ticket a1 = ticket( "a", "r1" );
+    final Runnable ra1 = offer( queue, a1 );
+    final Runnable ra2 = offer( queue, ticket( "a", "r2" ) );
+    final Runnable rb1 = offer( queue, ticket( "b", "r1" ) );
+
+    assertSame( ra1, queue.poll() );
+    // a is at its limit
+    assertSame( rb1, queue.poll() );
+    assertNull( queue.poll() );
+    assertEquals( 1, queue.size() );
+
+    queue.finished( a1 );
+    assertSame( ra2, queue.poll() );
+  }
+
+  @Test
+  public void testReportAndDataSourceBudget() {
+    final AdmissionQueue queue = new AdmissionQueue( 10, 10, 10, new ConcurrencyBudget( 0, 1, 1 ) );
+    final AdmissionQueue.Ticket first = ticket( "a", "r1", "SQL:jdbc/a" );
+    offer( queue, first );
+    final Runnable sameReport = offer( queue, ticket( "b", "r1" ) );
+    offer( queue, ticket( "c", "r2", "SQL:jdbc/a", "SQL:jdbc/b" ) );
+    final Runnable other = offer( queue, ticket( "d", "r3", "SQL:jdbc/b" ) );
+
+    assertEquals( first.toString(), queue.poll().toString() );
+    // same report and same data source as the running one
+    assertSame( other, queue.poll() );
+    assertNull( queue.poll() );
+    queue.finished( first );
+    // c still waits for SQL:jdbc/b
+    assertSame( sameReport, queue.poll() );
+    assertNull( queue.poll() );
+    assertEquals( 1, queue.drainTo( new ArrayList<>() ) );
+    assertTrue( queue.isEmpty() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testTakeWaitsForBudget() throws Exception {
+    final AdmissionQueue queue = new AdmissionQueue( 10, 10, 10, new ConcurrencyBudget( 1, 0, 0 ) );
+    final AdmissionQueue.Ticket running = ticket( "a", "r1" );
+    offer( queue, running );
+    final Runnable waiting = offer( queue, ticket( "a", "r2" ) );
+    queue.take();
+
+    assertNull( queue.poll( 50, TimeUnit.MILLISECONDS ) );
+    final Thread thread = new Thread( () -> {
+      try {
+        Thread.sleep( 50 );
+      } catch ( final InterruptedException e ) {
+        // ignore
+      }
+      queue.finished( running );
+    } );
+    thread.start();
+    assertSame( waiting, queue.take() );
+  }
+
+  @Test
+  public void testFinishedWhileWaiting() {
+    final AdmissionQueue queue = new AdmissionQueue( 10, 10, 10, new ConcurrencyBudget( 1, 0, 0 ) );
+    final AdmissionQueue.Ticket canceled = ticket( "a", "r1" );
+    offer( queue, canceled );
+    final Runnable next = offer( queue, ticket( "a", "r2" ) );
+
+    queue.finished( canceled );
+    assertEquals( 1, queue.size() );
+    assertSame( next, queue.poll() );
+    // a ticket admits one task only
+    assertFalse( queue.admit( canceled, () -> queue.offer( new Named( "x" ) ) ) );
+  }
+
+  @Test
+  public void testPosition() {
+    final AdmissionQueue queue = new AdmissionQueue();
+    final AdmissionQueue.Ticket a1 = ticket( "a", "r" );
+    final AdmissionQueue.Ticket a2 = ticket( "a", "r" );
+    final AdmissionQueue.Ticket a3 = ticket( "a", "r" );
+    final AdmissionQueue.Ticket b1 = ticket( "b", "r" );
+    final AdmissionQueue.Ticket c1 = ticket( "c", "r" );
+    final AdmissionQueue.Ticket c2 = ticket( "c", "r" );
+    final AdmissionQueue.Ticket first = new AdmissionQueue.Ticket( AdmissionClass.INTERACTIVE_FIRST_PAGE, "a", "r",
+      Collections.<String>emptySet() );
+    for ( final AdmissionQueue.Ticket ticket : Arrays.asList( a1, a2, a3, b1, c1, c2 ) ) {
+      offer( queue, ticket );
+    }
+    assertEquals( 0, queue.getPosition( first ) );
+    offer( queue, first );
+
+    // served as first, a1, b1, c1, a2, c2, a3
+    assertEquals( 1, queue.getPosition( first ) );
+    assertEquals( 2, queue.getPosition( a1 ) );
+    assertEquals( 3, queue.getPosition( b1 ) );
+    assertEquals( 4, queue.getPosition( c1 ) );
+    assertEquals( 5, queue.getPosition( a2 ) );
+    assertEquals( 6, queue.getPosition( c2 ) );
+    assertEquals( 7, queue.getPosition( a3 ) );
+
+    queue.poll();
+    queue.poll();
+    assertEquals( 0, queue.getPosition( a1 ) );
+    // b1 is next, a went to the end of the line
+    assertEquals( 1, queue.getPosition( b1 ) );
+    assertEquals( 3, queue.getPosition( a2 ) );
+  }
+
+  private static final class Named implements Runnable {
+    private final String name;
+
+    private Named( final String name ) {
+      this.name = name;
+    }
+
+    @Override public void run() {
+    }
+
+    @Override public String toString() {
+      return name;
+    }
+  }
+}
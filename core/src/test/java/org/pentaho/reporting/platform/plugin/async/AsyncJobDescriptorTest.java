@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
+import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncJobDescriptorTest {
+
+  @Test
+  public void testCreateReportComponent() {
+    final SimpleReportingComponent component = new SimpleReportingComponent();
+    component.setReportFileId( "file-id" );
+    component.setPaginateOutput( true );
+    component.setForceDefaultOutputTarget( true );
+    component.setDefaultOutputTarget( "table/html;page-mode=page" );
+    component.setForceUnlockPreferredOutput( true );
+    final Map<String, Object> inputs = new HashMap<>();
+    inputs.put( "year", 2016 );
+    inputs.put( "stream", new Object() );
+    component.setInputs( inputs );
+
+    final AsyncJobDescriptor descriptor =
+      new AsyncJobDescriptor( UUID.randomUUID(), "joe", "audit", "/public/report.prpt", component );
+    assertEquals( 1, descriptor.getInputs().size() );
+
+    final SimpleReportingComponent created = descriptor.createReportComponent();
+    assertEquals( "file-id", created.getReportFileId() );
+    assertTrue( created.isPaginateOutput() );
+    assertTrue( created.isForceDefaultOutputTarget() );
+    assertEquals( "table/html;page-mode=page", created.getDefaultOutputTarget() );
+    assertTrue( created.isForceUnlockPreferredOutput() );
+    assertEquals( 2016, created.getInputs().get( "year" ) );
+    assertFalse( created.getInputs().containsKey( "stream" ) );
+  }
+
+  @Test
+  public void testCheckpoint() {
+    final AsyncJobDescriptor descriptor = new AsyncJobDescriptor( UUID.randomUUID(), "joe", null,
+      "/public/report.prpt", new SimpleReportingComponent() );
+    assertNull( descriptor.getStatus() );
+    assertEquals( 0, descriptor.getCheckpointTime() );
+
+    final IAsyncReportState state = mock( IAsyncReportState.class );
+    when( state.getStatus() ).thenReturn( AsyncExecutionStatus.SCHEDULED );
+    when( state.getProgress() ).thenReturn( 40 );
+    when( state.getRow() ).thenReturn( 400 );
+    when( state.getTotalRows() ).thenReturn( 1000 );
+    when( state.getPage() ).thenReturn( 4 );
+    when( state.getTotalPages() ).thenReturn( 10 );
+    when( state.getActivity() ).thenReturn( 3 );
+    descriptor.checkpoint( state );
+
+    assertEquals( "SCHEDULED", descriptor.getStatus() );
+    assertEquals( 40, descriptor.getProgress() );
+    assertEquals( 400, descriptor.getRow() );
+    assertEquals( 1000, descriptor.getTotalRows() );
+    assertEquals( 4, descriptor.getPage() );
+    assertEquals( 10, descriptor.getTotalPages() );
+    assertEquals( 3, descriptor.getActivity() );
+    assertTrue( descriptor.getCheckpointTime() > 0 );
+
+    // progress is kept if the state is not available
+    descriptor.checkpoint( null );
+    assertEquals( 400, descriptor.getRow() );
+  }
+}
@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncJobJournalTest {
+
+  private File dir;
+  private AsyncJobJournal journal;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory( "journal" ).toFile();
+    journal = new AsyncJobJournal( new File( dir, "jobs" ) );
+  }
+
+  @After
+  public void tearDown() {
+    final File[] files = journal.getDirectory().listFiles();
+    if ( files != null ) {
+      for ( final File f : files ) {
+        f.delete();
+      }
+    }
+    journal.getDirectory().delete();
+    dir.delete();
+  }
+
+  private static AsyncJobDescriptor descriptor() {
+    return new AsyncJobDescriptor( UUID.randomUUID(), "joe", "audit", "/public/report.prpt",
+      new SimpleReportingComponent() );
+  }
+
+  @Test
+  public void testWriteAndLoad() {
+    assertTrue( journal.load().isEmpty() );
+
+    final AsyncJobDescriptor first = descriptor();
+    final AsyncJobDescriptor second = descriptor();
+    assertTrue( journal.write( first ) );
+    assertTrue( journal.write( second ) );
+    first.setAttempts( 2 );
+    assertTrue( journal.write( first ) );
+
+    final List<AsyncJobDescriptor> descriptors = journal.load();
+    assertEquals( 2, descriptors.size() );
+    for ( final AsyncJobDescriptor descriptor : descriptors ) {
+      assertEquals( "joe", descriptor.getUser() );
+      assertEquals( descriptor.getId().equals( first.getId() ) ? 2 : 0, descriptor.getAttempts() );
+    }
+    assertEquals( 2, journal.getDirectory().list().length );
+
+    journal.remove( first.getId() );
+    journal.remove( UUID.randomUUID() );
+    assertEquals( 1, journal.load().size() );
+    assertEquals( second.getId(), journal.load().get( 0 ).getId() );
+  }
+
+  @Test
+  public void testUnreadableEntryIsRemoved() throws Exception {
+    assertTrue( journal.write( descriptor() ) );
+    final File broken = new File( journal.getDirectory(), UUID.randomUUID() + ".job" );
+    try ( final FileOutputStream out = new FileOutputStream( broken ) ) {
+      out.write( new byte[] { 1, 2, 3 } );
+    }
+
+    assertEquals( 1, journal.load().size() );
+    assertFalse( broken.exists() );
+  }
+
+  @Test
+  public void testForeignClassIsRejected() throws Exception {
+    assertTrue( journal.write( descriptor() ) );
+    final File foreign = new File( journal.getDirectory(), UUID.randomUUID() + ".job" );
+    try ( final ObjectOutputStream out = new ObjectOutputStream( new FileOutputStream( foreign ) ) ) {
+      out.writeObject( new File( "foreign" ) );
+    }
+
+    assertEquals( 1, journal.load().size() );
+    assertFalse( foreign.exists() );
+  }
+}
@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncJobMetricsTest {
+
+  @Test
+  public void testCounters() {
+    final AsyncJobMetrics metrics = new AsyncJobMetrics();
+    metrics.submitted();
+    metrics.submitted();
+    metrics.submitted();
+    metrics.rejected();
+    metrics.finished( "application/pdf", AsyncJobMetrics.Outcome.COMPLETED, 0, 10, 20 );
+    metrics.finished( "application/pdf", AsyncJobMetrics.Outcome.FAILED, 0, 10, 20 );
+    // canceled while waiting
+    metrics.finished( "text/html", AsyncJobMetrics.Outcome.CANCELLED, 0, 0, 20 );
+
+    assertEquals( 3, metrics.getSubmitted() );
+    assertEquals( 1, metrics.getRejected() );
+    assertEquals( 1, metrics.getCompleted() );
+    assertEquals( 1, metrics.getFailed() );
+    assertEquals( 1, metrics.getCancelled() );
+    assertEquals( 2, metrics.getRunTimes().get( "application/pdf" ).getCount() );
+    assertNull( metrics.getRunTimes().get( "text/html" ) );
+  }
+
+  @Test
+  public void testHistogram() {
+    final AsyncJobMetrics metrics = new AsyncJobMetrics();
+    metrics.finished( null, AsyncJobMetrics.Outcome.COMPLETED, 1000, 1100, 1200 );
+    metrics.finished( null, AsyncJobMetrics.Outcome.COMPLETED, 1000, 1000, 1101 );
+    metrics.finished( null, AsyncJobMetrics.Outcome.COMPLETED, 1000, 2000, 1002000 );
+
+    final AsyncJobMetrics.Histogram waitTime = metrics.getWaitTimes().get( "unknown" );
+    assertEquals( 3, waitTime.getCount() );
+    assertEquals( 1100, waitTime.getTotalTime() );
+    assertEquals( 1000, waitTime.getMaxTime() );
+    assertEquals( 366, waitTime.getMeanTime() );
+
+    final Map<String, Long> buckets = metrics.getRunTimes().get( "unknown" ).getBuckets();
+    assertEquals( AsyncJobMetrics.BUCKETS.length + 1, buckets.size() );
+    assertEquals( 1, (long) buckets.get( "100" ) );
+    assertEquals( 1, (long) buckets.get( "500" ) );
+    assertEquals( 1, (long) buckets.get( "+Inf" ) );
+    assertEquals( 0, (long) buckets.get( "1000" ) );
+  }
+
+  @Test
+  public void testEmpty() {
+    final AsyncJobMetrics metrics = new AsyncJobMetrics();
+    assertTrue( metrics.getWaitTimes().isEmpty() );
+    assertTrue( metrics.getRunTimes().isEmpty() );
+    assertEquals( 0, metrics.getSubmitted() );
+  }
+}
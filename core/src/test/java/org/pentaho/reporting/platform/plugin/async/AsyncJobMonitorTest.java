@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.reporting.engine.classic.core.event.async.IAsyncReportState;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncJobMonitorTest {
+
+  private PentahoAsyncExecutor<IAsyncReportState> executor;
+
+  @Before
+  public void setUp() {
+    executor = new PentahoAsyncExecutor<>( 2, 0 );
+  }
+
+  @After
+  public void tearDown() {
+    AsyncJobMonitor.unregister();
+    executor.shutdown();
+  }
+
+  @Test
+  public void testRegister() throws Exception {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName( AsyncJobMonitor.OBJECT_NAME );
+    assertTrue( new AsyncJobMonitor( executor ).register() );
+    // replaces the monitor of a previous executor
+    assertTrue( new AsyncJobMonitor( executor ).register() );
+    assertTrue( server.isRegistered( name ) );
+    assertEquals( 2, server.getAttribute( name, "PoolSize" ) );
+    assertEquals( 0, server.getAttribute( name, "QueueLength" ) );
+    assertEquals( 0L, server.getAttribute( name, "CompletedJobs" ) );
+    server.getAttribute( name, "RunTimeHistograms" );
+
+    AsyncJobMonitor.unregister();
+    assertFalse( server.isRegistered( name ) );
+  }
+
+  @Test
+  public void testSnapshot() {
+    executor.getJobMetrics().submitted();
+    executor.getJobMetrics().finished( "application/pdf", AsyncJobMetrics.Outcome.COMPLETED, 0, 50, 250 );
+    final AsyncJobMonitor monitor = new AsyncJobMonitor( executor );
+
+    final Map<String, Object> snapshot = monitor.getSnapshot();
+    assertEquals( 2, snapshot.get( "poolSize" ) );
+    assertEquals( 0, snapshot.get( "activeThreads" ) );
+    assertEquals( 1L, snapshot.get( "submitted" ) );
+    assertEquals( 1L, snapshot.get( "completed" ) );
+    assertTrue( snapshot.containsKey( "stagingDiskUsage" ) );
+    assertTrue( ( (Map<?, ?>) snapshot.get( "runTime" ) ).containsKey( "application/pdf" ) );
+
+    assertEquals( 200L, (long) monitor.getMeanRunTimes().get( "application/pdf" ) );
+    assertEquals( 50L, (long) monitor.getMeanWaitTimes().get( "application/pdf" ) );
+    assertEquals( 1L, (long) monitor.getWaitTimeHistograms().get( "application/pdf" ).get( "100" ) );
+    assertEquals( 1L, (long) monitor.getRunTimeHistograms().get( "application/pdf" ).get( "500" ) );
+  }
+}
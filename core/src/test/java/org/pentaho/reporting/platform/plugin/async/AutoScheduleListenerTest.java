@@ -28,14 +28,16 @@ import static org.mockito.Mockito.*;
 @RunWith( Parameterized.class )
 public class AutoScheduleListenerTest {
 
-  public AutoScheduleListenerTest( final int threshold,
+  public AutoScheduleListenerTest( final int threshold, final boolean expectedSlow,
                                    final ReportProgressEvent event, final int times ) {
     this.threshold = threshold;
+    this.expectedSlow = expectedSlow;
     this.event = event;
     this.times = times;
   }
 
   private int threshold;
+  private boolean expectedSlow;
   private ReportProgressEvent event;
   private int times;
 
@@ -46,12 +48,15 @@ public class AutoScheduleListenerTest {
     when( less.getMaximumRow() ).thenReturn( 0 );
     when( more.getMaximumRow() ).thenReturn( Integer.MAX_VALUE );
     return Arrays.asList( new Object[][] {
-      { 0, less, 0 },
-      { 0, more, 0 },
-      { 0, null, 0 },
-      { 1, less, 0 },
-      { 1, more, 1 },
-      { 1, null, 0 }
+      { 0, false, less, 0 },
+      { 0, false, more, 0 },
+      { 0, false, null, 0 },
+      { 1, false, less, 0 },
+      { 1, false, more, 1 },
+      { 1, false, null, 0 },
+      { 0, true, less, 1 },
+      { 0, true, null, 1 },
+      { 1, true, more, 1 }
     } );
 
   }
@@ -62,7 +67,7 @@ public class AutoScheduleListenerTest {
     final UUID id = UUID.randomUUID();
     final IPentahoSession session = mock( IPentahoSession.class );
     final IPentahoAsyncExecutor executor = mock( IPentahoAsyncExecutor.class );
-    final AutoScheduleListener listener = new AutoScheduleListener( id, session, threshold, executor );
+    final AutoScheduleListener listener = new AutoScheduleListener( id, session, threshold, expectedSlow, executor );
     listener.reportProcessingStarted( event );
     listener.reportProcessingUpdate( event );
     listener.reportProcessingFinished( event );
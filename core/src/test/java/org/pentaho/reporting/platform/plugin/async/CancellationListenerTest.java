@@ -0,0 +1,54 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.reporting.platform.plugin.datasources.QueryCancellation;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CancellationListenerTest {
+
+  @After
+  public void after() {
+    Thread.interrupted();
+  }
+
+  @Test
+  public void testNotCanceled() {
+    final CancellationListener listener = new CancellationListener( new QueryCancellation() );
+    listener.reportProcessingStarted( null );
+    listener.reportProcessingUpdate( null );
+    listener.reportProcessingFinished( null );
+    assertFalse( Thread.currentThread().isInterrupted() );
+  }
+
+  @Test
+  public void testCanceledInterruptsOnProgress() {
+    final QueryCancellation cancellation = new QueryCancellation();
+    final CancellationListener listener = new CancellationListener( cancellation );
+    cancellation.cancel();
+
+    listener.reportProcessingStarted( null );
+    assertTrue( Thread.interrupted() );
+
+    // the interrupt was swallowed, the next update interrupts again
+    listener.reportProcessingUpdate( null );
+    assertTrue( Thread.interrupted() );
+
+    listener.reportProcessingFinished( null );
+    assertFalse( Thread.interrupted() );
+  }
+}
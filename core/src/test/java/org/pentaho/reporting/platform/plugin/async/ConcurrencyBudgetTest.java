@@ -0,0 +1,59 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyBudgetTest {
+
+  private static final Collection<String> NONE = Collections.emptySet();
+
+  @Test
+  public void testUnlimited() {
+    final ConcurrencyBudget budget = new ConcurrencyBudget( 0, 0, 0 );
+    for ( int i = 0; i < 100; i++ ) {
+      assertTrue( budget.canStart( "a", "r", Arrays.asList( "d" ) ) );
+      budget.start( "a", "r", Arrays.asList( "d" ) );
+    }
+    assertEquals( 100, budget.getRunning( "a" ) );
+    assertFalse( budget.isDataSourceLimited() );
+  }
+
+  @Test
+  public void testLimits() {
+    final ConcurrencyBudget budget = new ConcurrencyBudget( 2, 1, 1 );
+    budget.start( "a", "r1", NONE );
+    assertFalse( budget.canStart( "b", "r1", NONE ) );
+    assertTrue( budget.canStart( "a", "r2", NONE ) );
+    budget.start( "a", "r2", Arrays.asList( "d1" ) );
+    assertFalse( budget.canStart( "a", "r3", NONE ) );
+    assertFalse( budget.canStart( "b", "r3", Arrays.asList( "d2", "d1" ) ) );
+    assertTrue( budget.canStart( "b", "r3", Arrays.asList( "d2" ) ) );
+    assertTrue( budget.canStart( "b", null, NONE ) );
+
+    budget.finish( "a", "r2", Arrays.asList( "d1" ) );
+    assertEquals( 1, budget.getRunning( "a" ) );
+    assertTrue( budget.canStart( "a", "r3", Arrays.asList( "d1" ) ) );
+    budget.finish( "a", "r1", NONE );
+    assertEquals( 0, budget.getRunning( "a" ) );
+    assertTrue( budget.isDataSourceLimited() );
+  }
+}
@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CpuPermitListenerTest {
+
+  @Test
+  public void testPermitIsHeldWhileProcessing() {
+    final Semaphore permits = new Semaphore( 1 );
+    final CpuPermitListener listener = new CpuPermitListener( permits );
+
+    listener.reportProcessingStarted( null );
+    listener.reportProcessingUpdate( null );
+    assertTrue( listener.isHeld() );
+    assertEquals( 0, permits.availablePermits() );
+
+    listener.reportProcessingFinished( null );
+    assertFalse( listener.isHeld() );
+    assertEquals( 1, permits.availablePermits() );
+
+    listener.close();
+    assertEquals( 1, permits.availablePermits() );
+  }
+
+  @Test
+  public void testCloseReleasesPermit() {
+    final Semaphore permits = new Semaphore( 1 );
+    final CpuPermitListener listener = new CpuPermitListener( permits );
+    listener.reportProcessingUpdate( null );
+    listener.close();
+    assertEquals( 1, permits.availablePermits() );
+
+    // late events of a closed task don't take the permit again
+    listener.reportProcessingStarted( null );
+    assertFalse( listener.isHeld() );
+    assertEquals( 1, permits.availablePermits() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testWaitsForPermit() throws Exception {
+    final Semaphore permits = new Semaphore( 1 );
+    final CpuPermitListener first = new CpuPermitListener( permits );
+    final CpuPermitListener second = new CpuPermitListener( permits );
+    first.reportProcessingStarted( null );
+
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final Thread thread = new Thread( () -> {
+      second.reportProcessingStarted( null );
+      started.countDown();
+    } );
+    thread.start();
+    assertFalse( started.await( 100, TimeUnit.MILLISECONDS ) );
+
+    first.reportProcessingFinished( null );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+    assertTrue( second.isHeld() );
+  }
+
+  @Test( timeout = 10000 )
+  public void testInterruptedWhileWaiting() throws Exception {
+    final Semaphore permits = new Semaphore( 0 );
+    final CpuPermitListener listener = new CpuPermitListener( permits );
+    final boolean[] interrupted = new boolean[ 1 ];
+    final Thread thread = new Thread( () -> {
+      listener.reportProcessingStarted( null );
+      interrupted[ 0 ] = Thread.currentThread().isInterrupted();
+    } );
+    thread.start();
+    thread.interrupt();
+    thread.join();
+    assertTrue( interrupted[ 0 ] );
+    assertFalse( listener.isHeld() );
+  }
+
+  @Test
+  public void testVirtualThreadFactory() throws Exception {
+    final ThreadFactory factory = PentahoAsyncExecutor.createVirtualThreadFactory();
+    if ( factory == null ) {
+      // runtime without virtual threads
+      return;
+    }
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    final Thread thread = factory.newThread( latch::countDown );
+    assertTrue( thread.getName().startsWith( "PentahoAsyncExecutor Virtual Thread" ) );
+    thread.start();
+    assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+  }
+}
@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExecutionStatisticsListenerTest {
+
+  @Test
+  public void testRecordsFinishedReport() {
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    final ExecutionStatisticsListener listener =
+      new ExecutionStatisticsListener( statistics, "/report.prpt", "text/html", "a", () -> 0L );
+    final ReportProgressEvent event = mock( ReportProgressEvent.class );
+    when( event.getMaximumRow() ).thenReturn( 100 );
+    when( event.getPage() ).thenReturn( 5 );
+
+    listener.reportProcessingStarted( event );
+    listener.reportProcessingUpdate( event );
+    assertNull( statistics.getEstimate( "/report.prpt", "text/html", "a" ) );
+    listener.reportProcessingFinished( event );
+    listener.reportProcessingFinished( event );
+
+    final ExecutionStatistics.Estimate estimate = statistics.getEstimate( "/report.prpt", "text/html", "a" );
+    assertEquals( 1, estimate.getSamples() );
+    assertEquals( 100, estimate.getRows() );
+    assertEquals( 5, estimate.getPages() );
+  }
+
+  @Test
+  public void testMeasuresFromTaskStart() {
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    final long taskStarted = System.currentTimeMillis() - 5000;
+    final ExecutionStatisticsListener listener =
+      new ExecutionStatisticsListener( statistics, "/report.prpt", "text/html", "a", () -> taskStarted );
+    final ReportProgressEvent event = mock( ReportProgressEvent.class );
+
+    listener.reportProcessingStarted( event );
+    listener.reportProcessingFinished( event );
+
+    assertTrue( statistics.getEstimate( "/report.prpt", "text/html", "a" ).getDuration() >= 5000 );
+  }
+
+  @Test
+  public void testNotStarted() {
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    final ExecutionStatisticsListener listener =
+      new ExecutionStatisticsListener( statistics, "/report.prpt", "text/html", "a", () -> 0L );
+    listener.reportProcessingFinished( mock( ReportProgressEvent.class ) );
+    assertEquals( 0, statistics.size() );
+  }
+}
@@ -0,0 +1,100 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExecutionStatisticsTest {
+
+  @Test
+  public void testEstimate() {
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    assertNull( statistics.getEstimate( "/report.prpt", "text/html", "a" ) );
+
+    statistics.record( "/report.prpt", "text/html", "a", 1000, 100, 10 );
+    ExecutionStatistics.Estimate estimate = statistics.getEstimate( "/report.prpt", "text/html", "a" );
+    assertEquals( 1000, estimate.getDuration() );
+    assertEquals( 100, estimate.getRows() );
+    assertEquals( 10, estimate.getPages() );
+    assertEquals( 1, estimate.getSamples() );
+
+    statistics.record( "/report.prpt", "text/html", "a", 2000, 200, 20 );
+    estimate = statistics.getEstimate( "/report.prpt", "text/html", "a" );
+    assertEquals( 1300, estimate.getDuration() );
+    assertEquals( 130, estimate.getRows() );
+    assertEquals( 13, estimate.getPages() );
+    assertEquals( 2, estimate.getSamples() );
+
+    assertNull( statistics.getEstimate( "/report.prpt", "application/pdf", "a" ) );
+    assertNull( statistics.getEstimate( "/other.prpt", "text/html", "a" ) );
+  }
+
+  @Test
+  public void testUnknownParameters() {
+    final ExecutionStatistics statistics = new ExecutionStatistics();
+    statistics.record( "/report.prpt", "text/html", "a", 1000, 100, 10 );
+    statistics.record( "/report.prpt", "text/html", "b", 2000, 200, 20 );
+
+    assertEquals( 2000, statistics.getEstimate( "/report.prpt", "text/html", "b" ).getDuration() );
+    final ExecutionStatistics.Estimate estimate = statistics.getEstimate( "/report.prpt", "text/html", "c" );
+    assertEquals( 1300, estimate.getDuration() );
+    assertEquals( 2, estimate.getSamples() );
+    assertEquals( 1300, statistics.getEstimate( "/report.prpt", "text/html", null ).getDuration() );
+  }
+
+  @Test
+  public void testCapacity() {
+    final ExecutionStatistics statistics = new ExecutionStatistics( 2 );
+    statistics.record( "/a.prpt", "text/html", null, 1, 1, 1 );
+    statistics.record( "/b.prpt", "text/html", null, 2, 1, 1 );
+    statistics.getEstimate( "/a.prpt", "text/html", null );
+    statistics.record( "/c.prpt", "text/html", null, 3, 1, 1 );
+
+    assertEquals( 2, statistics.size() );
+    assertEquals( 1, statistics.getEstimate( "/a.prpt", "text/html", null ).getDuration() );
+    assertNull( statistics.getEstimate( "/b.prpt", "text/html", null ) );
+
+    statistics.clear();
+    assertEquals( 0, statistics.size() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidCapacity() {
+    new ExecutionStatistics( 0 );
+  }
+
+  @Test
+  public void testFingerprint() {
+    final Map<String, Object> inputs = new HashMap<>();
+    inputs.put( "region", new String[] { "East", "West" } );
+    inputs.put( "year", 2016 );
+    final String fingerprint = ExecutionStatistics.fingerprint( inputs );
+
+    inputs.put( SimpleReportingComponent.ACCEPTED_PAGE, 3 );
+    inputs.put( "renderMode", "REPORT" );
+    assertEquals( fingerprint, ExecutionStatistics.fingerprint( inputs ) );
+
+    inputs.put( "region", new String[] { "East" } );
+    assertNotEquals( fingerprint, ExecutionStatistics.fingerprint( inputs ) );
+    assertEquals( ExecutionStatistics.fingerprint( null ), ExecutionStatistics.fingerprint( new HashMap<>() ) );
+  }
+}
@@ -0,0 +1,204 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.reporting.engine.classic.core.event.async.AsyncExecutionStatus;
+import org.pentaho.reporting.engine.classic.core.event.async.AsyncReportState;
+import org.pentaho.reporting.platform.plugin.SimpleReportingComponent;
+import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileAsyncJobStoreTest {
+
+  private File dir;
+  private FileAsyncJobStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory( "jobstore" ).toFile();
+    store = new FileAsyncJobStore( dir );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory( dir );
+  }
+
+  private static AsyncJobRecord record( final UUID id, final String node ) {
+    return new AsyncJobRecord( "joe", node, new AsyncReportState( id, "/public/report.prpt" ) );
+  }
+
+  private static AsyncJobRecord record( final UUID id, final AsyncExecutionStatus status ) {
+    return new AsyncJobRecord( "joe", "node1", new AsyncReportState( id, "/public/report.prpt", status, 0, 0, 0, 0, 0,
+      0, "", "text/html", "", false ) );
+  }
+
+  private static AsyncJobDescriptor descriptor() {
+    return new AsyncJobDescriptor( UUID.randomUUID(), "joe", "audit", "/public/report.prpt",
+      new SimpleReportingComponent() );
+  }
+
+  private static IFixedSizeStreamingContent content( final byte[] data ) {
+    return new IFixedSizeStreamingContent() {
+      @Override public InputStream getStream() {
+        return new ByteArrayInputStream( data );
+      }
+
+      @Override public long getContentSize() {
+        return data.length;
+      }
+
+      @Override public boolean cleanContent() {
+        return true;
+      }
+    };
+  }
+
+  @Test
+  public void testPublish() throws Exception {
+    final UUID id = UUID.randomUUID();
+    assertNull( store.get( id ) );
+
+    store.publish( record( id, "node1" ) );
+    store.publish( record( id, "node2" ) );
+
+    final AsyncJobRecord record = store.get( id );
+    assertEquals( id, record.getId() );
+    assertEquals( "node2", record.getNodeId() );
+    assertEquals( "/public/report.prpt", record.getState().getPath() );
+    assertTrue( record.isOwner( "joe" ) );
+    assertFalse( record.isOwner( "admin" ) );
+    assertEquals( 1, new File( dir, "jobs" ).list().length );
+
+    store.remove( id );
+    assertNull( store.get( id ) );
+  }
+
+  @Test
+  public void testContent() throws Exception {
+    final UUID id = UUID.randomUUID();
+    assertNull( store.getContent( id ) );
+
+    store.storeContent( id, content( new byte[] { 1, 2, 3 } ) );
+    final IFixedSizeStreamingContent stored = store.getContent( id );
+    assertEquals( 3, stored.getContentSize() );
+    try ( final InputStream in = stored.getStream() ) {
+      assertArrayEquals( new byte[] { 1, 2, 3 }, IOUtils.toByteArray( in ) );
+    }
+    assertEquals( 1, new File( dir, "content" ).list().length );
+
+    store.remove( id );
+    assertNull( store.getContent( id ) );
+  }
+
+  @Test
+  public void testClaim() throws Exception {
+    assertNull( store.claim( "node1" ) );
+
+    final AsyncJobDescriptor first = descriptor();
+    final AsyncJobDescriptor second = descriptor();
+    store.dispatch( first );
+    new File( new File( dir, "queue" ), first.getId() + ".job" ).setLastModified( 1000L );
+    store.dispatch( second );
+
+    // another node on the same directory
+    final FileAsyncJobStore other = new FileAsyncJobStore( dir );
+    assertEquals( first.getId(), other.claim( "node/2" ).getId() );
+    final AsyncJobDescriptor claimed = store.claim( "node1" );
+    assertEquals( second.getId(), claimed.getId() );
+    assertEquals( "joe", claimed.getUser() );
+    assertNull( store.claim( "node1" ) );
+    assertNull( other.claim( "node/2" ) );
+  }
+
+  @Test
+  public void testRemoveQueued() throws Exception {
+    final AsyncJobDescriptor descriptor = descriptor();
+    store.dispatch( descriptor );
+    store.remove( descriptor.getId() );
+    assertNull( store.claim( "node1" ) );
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    final UUID id = UUID.randomUUID();
+    store.publish( record( id, AsyncExecutionStatus.FINISHED ) );
+    store.storeContent( id, content( new byte[] { 1 } ) );
+
+    store.expire( 0 );
+    assertNotNull( store.get( id ) );
+
+    store.expire( System.currentTimeMillis() + 1 );
+    assertNull( store.get( id ) );
+    assertNull( store.getContent( id ) );
+  }
+
+  @Test
+  public void testQueuedAndRunningJobsDontExpire() throws Exception {
+    final UUID queued = UUID.randomUUID();
+    final UUID running = UUID.randomUUID();
+    final UUID failed = UUID.randomUUID();
+    store.publish( record( queued, "node1" ) );
+    store.publish( record( running, AsyncExecutionStatus.WORKING ) );
+    store.publish( record( failed, AsyncExecutionStatus.FAILED ) );
+
+    store.expire( System.currentTimeMillis() + 1 );
+    assertNotNull( store.get( queued ) );
+    assertNotNull( store.get( running ) );
+    assertNull( store.get( failed ) );
+  }
+
+  @Test
+  public void testForeignClassIsRejected() throws Exception {
+    final UUID id = UUID.randomUUID();
+    store.publish( record( id, "node1" ) );
+    final File file = new File( new File( dir, "jobs" ), id + ".state" );
+    try ( final ObjectOutputStream out = new ObjectOutputStream( new FileOutputStream( file ) ) ) {
+      out.writeObject( new File( "foreign" ) );
+    }
+    assertNull( store.get( id ) );
+    assertFalse( file.exists() );
+  }
+
+  @Test
+  public void testUnreadableEntryIsRemoved() throws Exception {
+    final UUID id = UUID.randomUUID();
+    store.publish( record( id, "node1" ) );
+    final File file = new File( new File( dir, "jobs" ), id + ".state" );
+    try ( final FileOutputStream out = new FileOutputStream( file ) ) {
+      out.write( new byte[] { 1, 2, 3 } );
+    }
+    assertNull( store.get( id ) );
+    assertFalse( file.exists() );
+  }
+}
@@ -300,6 +300,39 @@ public class PentahoAsyncExecutionTest {
     abstractAsyncReportExecution.cancel();
   }
 
+  @Test
+  public void testInterruptExecution() throws Exception {
+    final PentahoAsyncReportExecution exec = createMockCallable();
+    verify( component ).setQueryCancellation( exec.getQueryCancellation() );
+    exec.notifyTaskQueued( UUID.randomUUID(), Collections.<ReportProgressListener>emptyList() );
+
+    final AtomicBoolean executing = new AtomicBoolean();
+    final AtomicBoolean interrupted = new AtomicBoolean();
+    when( component.execute() ).thenAnswer( invocation -> {
+      executing.set( exec.isExecuting() );
+      exec.interruptExecution();
+      interrupted.set( Thread.interrupted() );
+      return false;
+    } );
+
+    assertFalse( exec.isExecuting() );
+    exec.call();
+    assertTrue( executing.get() );
+    assertTrue( interrupted.get() );
+    assertTrue( exec.getQueryCancellation().isCanceled() );
+    assertFalse( exec.isExecuting() );
+  }
+
+  @Test
+  public void testCancelStopsQueries() {
+    final PentahoAsyncReportExecution exec = createMockCallable();
+    exec.notifyTaskQueued( UUID.randomUUID(), Collections.<ReportProgressListener>emptyList() );
+    assertFalse( exec.getQueryCancellation().isCanceled() );
+    exec.cancel();
+    assertTrue( exec.getQueryCancellation().isCanceled() );
+    assertEquals( AsyncExecutionStatus.CANCELED, exec.getState().getStatus() );
+  }
+
   private PentahoAsyncReportExecution getSleepingSpy( final AtomicBoolean run, IPentahoSession session ) {
     PentahoAsyncReportExecution exec =
       new PentahoAsyncReportExecution( "junit-path", component, handler, session, "junit", AuditWrapper.NULL ) {
@@ -14,6 +14,7 @@
 package org.pentaho.reporting.platform.plugin.async;
 
 import com.google.common.io.CharStreams;
+import org.apache.commons.io.FileUtils;
 import junit.framework.Assert;
 import net.jcip.annotations.NotThreadSafe;
 import org.junit.*;
@@ -48,15 +49,20 @@ import org.pentaho.reporting.platform.plugin.repository.ReportContentRepository;
 import org.pentaho.reporting.platform.plugin.staging.AsyncJobFileStagingHandler;
 import org.pentaho.reporting.platform.plugin.staging.IFixedSizeStreamingContent;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -64,6 +70,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -193,6 +202,146 @@ public class PentahoAsyncReportExecutorTest {
     assertEquals( MAGIC, actual );
   }
 
+  @Test public void testVirtualThreadMode() throws Exception {
+    when( component.execute() ).thenReturn( true );
+
+    final PentahoAsyncExecutor exec =
+      new PentahoAsyncExecutor( 100, autoSchedulerThreshold, new AdmissionQueue(), true );
+    final UUID id = exec.addTask( createMockCallable( session1 ), session1 );
+    final IFixedSizeStreamingContent result = exec.getFuture( id, session1 ).get();
+
+    assertEquals( MAGIC, CharStreams.toString( new InputStreamReader( result.getStream() ) ) );
+    exec.shutdown();
+  }
+
+  @Test public void testJobMetrics() throws Exception {
+    when( component.execute() ).thenReturn( true );
+
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    final UUID id = exec.addTask( createMockCallable( session1 ), session1 );
+    exec.getFuture( id, session1 ).get();
+    final AsyncJobMetrics metrics = exec.getJobMetrics();
+    // listeners run after the result is set
+    for ( int i = 0; i < 500 && metrics.getCompleted() == 0; i++ ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( 1, metrics.getSubmitted() );
+    assertEquals( 1, metrics.getCompleted() );
+    assertEquals( 0, metrics.getFailed() );
+    assertEquals( 1, metrics.getRunTimes().get( "unknown" ).getCount() );
+    assertEquals( 1, metrics.getWaitTimes().get( "unknown" ).getCount() );
+    assertEquals( 0, exec.getQueueLength() );
+    exec.shutdown();
+  }
+
+  private PentahoAsyncReportExecution createFinishingCallable( final IPentahoSession session,
+                                                               final AsyncJobFileStagingHandler stagingHandler ) {
+    return new PentahoAsyncReportExecution( "junit-path", component, stagingHandler, session, "not null",
+      AuditWrapper.NULL ) {
+      @Override
+      protected AsyncReportStatusListener createListener( final UUID id,
+                                                          final List<? extends ReportProgressListener> listeners ) {
+        return new TestListener( "junit-path", id, "text/plain" );
+      }
+    };
+  }
+
+  private static AsyncJobRecord awaitFinished( final IAsyncJobStore store, final UUID id ) throws Exception {
+    // the final state is published after the result is set
+    for ( int i = 0; i < 500; i++ ) {
+      final AsyncJobRecord record = store.get( id );
+      if ( record != null && AsyncExecutionStatus.FINISHED.equals( record.getState().getStatus() ) ) {
+        return record;
+      }
+      Thread.sleep( 10 );
+    }
+    throw new AssertionError( "job did not finish" );
+  }
+
+  @Test public void testJobStore() throws Exception {
+    when( component.execute() ).thenReturn( true );
+    final File dir = Files.createTempDirectory( "jobstore" ).toFile();
+    final FileAsyncJobStore store = new FileAsyncJobStore( dir );
+
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    exec.setJobStore( store );
+    exec.setNodeId( "node1" );
+    final UUID id = exec.addTask( createFinishingCallable( session1, handler ), session1 );
+    exec.getFuture( id, session1 ).get();
+    assertEquals( "node1", awaitFinished( store, id ).getNodeId() );
+
+    // another node of the cluster
+    final PentahoAsyncExecutor other = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    other.setJobStore( store );
+    assertEquals( AsyncExecutionStatus.FINISHED, other.getReportState( id, session2 ).getStatus() );
+    assertEquals( MAGIC,
+      CharStreams.toString( new InputStreamReader( other.getFuture( id, session2 ).get().getStream() ) ) );
+
+    final IPentahoSession stranger = mock( IPentahoSession.class );
+    when( stranger.getId() ).thenReturn( UUID.randomUUID().toString() );
+    when( stranger.getName() ).thenReturn( "stranger" );
+    assertNull( other.getReportState( id, stranger ) );
+    assertNull( other.getFuture( id, stranger ) );
+
+    other.cleanFuture( id, session2 );
+    assertNull( store.get( id ) );
+    assertNull( store.getContent( id ) );
+    assertNull( other.getReportState( id, session2 ) );
+
+    exec.shutdown();
+    other.shutdown();
+    FileUtils.deleteDirectory( dir );
+  }
+
+  @Test public void testDispatchToOtherNode() throws Exception {
+    when( component.execute() ).thenReturn( true );
+    final File dir = Files.createTempDirectory( "jobstore" ).toFile();
+    final FileAsyncJobStore store = new FileAsyncJobStore( dir );
+
+    final AsyncJobFileStagingHandler rejectedHandler = mock( AsyncJobFileStagingHandler.class );
+    final IFixedSizeStreamingContent staged = mock( IFixedSizeStreamingContent.class );
+    when( rejectedHandler.getStagingContent() ).thenReturn( staged );
+
+    final PentahoAsyncExecutor full =
+      new PentahoAsyncExecutor( 1, autoSchedulerThreshold, new AdmissionQueue( 0, 0, 0 ) );
+    try {
+      full.addTask( createFinishingCallable( session1, rejectedHandler ), session1 );
+      fail( "queue is full" );
+    } catch ( final RejectedExecutionException e ) {
+      // no job store
+    }
+    full.setJobStore( store );
+    final UUID id = full.addTask( createFinishingCallable( session1, rejectedHandler ), session1 );
+    assertEquals( AsyncExecutionStatus.QUEUED, full.getReportState( id, session1 ).getStatus() );
+    assertNull( store.get( id ).getNodeId() );
+    verify( staged ).cleanContent();
+    // nothing on this node could complete or cancel a future of the queued job
+    assertNull( full.getFuture( id, session1 ) );
+
+    final PentahoAsyncExecutor worker = new PentahoAsyncExecutor( 1, autoSchedulerThreshold ) {
+      @Override
+      protected IAsyncReportExecution createRecoveredTask( final AsyncJobDescriptor descriptor,
+                                                           final SimpleReportingComponent reportComponent,
+                                                           final AsyncJobFileStagingHandler stagingHandler,
+                                                           final IPentahoSession session ) {
+        assertEquals( "test", descriptor.getUser() );
+        return createFinishingCallable( session, handler );
+      }
+    };
+    worker.setJobStore( store );
+    worker.setNodeId( "node2" );
+    worker.syncJobStore();
+
+    assertEquals( "node2", awaitFinished( store, id ).getNodeId() );
+    assertEquals( MAGIC,
+      CharStreams.toString( new InputStreamReader( full.getFuture( id, session1 ).get().getStream() ) ) );
+    assertNull( store.claim( "node2" ) );
+
+    full.shutdown();
+    worker.shutdown();
+    FileUtils.deleteDirectory( dir );
+  }
+
   @Test public void testCorrectFuturePerSessionRetrival() {
     PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
 
@@ -252,6 +401,254 @@ public class PentahoAsyncReportExecutorTest {
     assertNotNull( state );
   }
 
+  @Test public void testRejectsWhenQueueIsFull() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    when( component.execute() ).thenAnswer( invocation -> {
+      started.countDown();
+      latch.await();
+      return true;
+    } );
+
+    final PentahoAsyncExecutor exec =
+      new PentahoAsyncExecutor( 1, autoSchedulerThreshold, new AdmissionQueue( 1, 1, 1 ) );
+    // the first task occupies the thread, the second one waits
+    exec.addTask( createMockCallable( session1 ), session1 );
+    started.await();
+    final UUID waiting = exec.addTask( createMockCallable( session1 ), session1 );
+    assertEquals( 1, exec.getQueuePosition( waiting, session1 ) );
+    try {
+      exec.addTask( createMockCallable( session2 ), session2 );
+      fail();
+    } catch ( final RejectedExecutionException e ) {
+      // expected
+    }
+    assertEquals( 1, exec.getAdmissionQueue().size( AdmissionClass.BACKGROUND ) );
+
+    latch.countDown();
+    exec.shutdown();
+  }
+
+  @Test public void testClassify() {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    final PentahoAsyncReportExecution task = createMockCallable( session1 );
+
+    when( component.getMimeType() ).thenReturn( "application/pdf" );
+    assertEquals( AdmissionClass.BACKGROUND, exec.classify( task ) );
+
+    when( component.getMimeType() ).thenReturn( "text/html" );
+    assertEquals( AdmissionClass.INTERACTIVE_FULL, exec.classify( task ) );
+
+    when( component.isPaginateOutput() ).thenReturn( true );
+    assertEquals( AdmissionClass.INTERACTIVE_FIRST_PAGE, exec.classify( task ) );
+  }
+
+  @Test public void testExpectedSlowRunsInBackground() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    when( component.execute() ).thenAnswer( invocation -> {
+      started.countDown();
+      latch.await();
+      return true;
+    } );
+    when( component.getMimeType() ).thenReturn( "text/html" );
+
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    final PentahoAsyncReportExecution task = createMockCallable( session1 );
+    final String fingerprint = exec.getParameterFingerprint( task );
+    assertNotNull( fingerprint );
+    exec.getExecutionStatistics().record( "junit-path", "text/html", fingerprint, 60000, 1000, 10 );
+    // no budget, no prediction
+    assertFalse( exec.isExpectedSlow( task, fingerprint ) );
+    exec.setInteractiveTimeBudget( 10000 );
+    assertEquals( 10000, exec.getInteractiveTimeBudget() );
+    assertTrue( exec.isExpectedSlow( task, fingerprint ) );
+    assertFalse( exec.isExpectedSlow( task, null ) );
+
+    // the first task occupies the thread, the expected slow one waits as background work
+    exec.addTask( createMockCallable( session1 ), session1 );
+    started.await();
+    exec.addTask( task, session1 );
+    assertEquals( 1, exec.getAdmissionQueue().size( AdmissionClass.BACKGROUND ) );
+    assertEquals( 0, exec.getAdmissionQueue().size( AdmissionClass.INTERACTIVE_FULL ) );
+
+    latch.countDown();
+    exec.shutdown();
+  }
+
+  @Test public void testJournalScheduledJob() throws Exception {
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    final CountDownLatch written = new CountDownLatch( 1 );
+    when( component.execute() ).thenAnswer( invocation -> {
+      latch.await();
+      return true;
+    } );
+    when( component.getInputs() ).thenReturn( Collections.<String, Object>singletonMap( "year", 2016 ) );
+    final AsyncJobJournal journal = new AsyncJobJournal( Files.createTempDirectory( "journal" ).toFile() );
+
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold ) {
+      @Override protected Callable<Serializable> getWriteToJcrTask( final IFixedSizeStreamingContent result,
+                                                                    final IAsyncReportExecution<? extends
+                                                                      IAsyncReportState> runningTask ) {
+        return () -> {
+          written.countDown();
+          return "test_id";
+        };
+      }
+    };
+    exec.setJobJournal( journal );
+    final TestListener testListener = new TestListener( "1", UUID.randomUUID(), "" );
+    final UUID id = exec.addTask( new PentahoAsyncReportExecution( "junit-path",
+      component, handler, session1, "not null", AuditWrapper.NULL ) {
+      @Override
+      protected AsyncReportStatusListener createListener( final UUID id,
+                                                          final List<? extends ReportProgressListener> listeners ) {
+        return testListener;
+      }
+    }, session1 );
+    assertTrue( exec.schedule( id, session1 ) );
+
+    final List<AsyncJobDescriptor> descriptors = journal.load();
+    assertEquals( 1, descriptors.size() );
+    assertEquals( id, descriptors.get( 0 ).getId() );
+    assertEquals( "test", descriptors.get( 0 ).getUser() );
+    assertEquals( "junit-path", descriptors.get( 0 ).getReportPath() );
+    assertEquals( 2016, descriptors.get( 0 ).getInputs().get( "year" ) );
+    assertEquals( 0, descriptors.get( 0 ).getAttempts() );
+    assertEquals( AsyncExecutionStatus.SCHEDULED.name(), descriptors.get( 0 ).getStatus() );
+
+    exec.checkpointJobs();
+    assertTrue( journal.load().get( 0 ).getCheckpointTime() > 0 );
+
+    // the journal entry is removed once the content is written
+    latch.countDown();
+    written.await();
+    for ( int i = 0; i < 500 && !journal.load().isEmpty(); i++ ) {
+      Thread.sleep( 10 );
+    }
+    assertTrue( journal.load().isEmpty() );
+    exec.shutdown();
+  }
+
+  @Test public void testShutdownKeepsJournal() throws Exception {
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    when( component.execute() ).thenAnswer( invocation -> {
+      latch.await();
+      return true;
+    } );
+    final AsyncJobJournal journal = new AsyncJobJournal( Files.createTempDirectory( "journal" ).toFile() );
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    exec.setJobJournal( journal );
+    final TestListener testListener = new TestListener( "1", UUID.randomUUID(), "" );
+    final UUID id = exec.addTask( new PentahoAsyncReportExecution( "junit-path",
+      component, handler, session1, "not null", AuditWrapper.NULL ) {
+      @Override
+      protected AsyncReportStatusListener createListener( final UUID id,
+                                                          final List<? extends ReportProgressListener> listeners ) {
+        return testListener;
+      }
+    }, session1 );
+    assertTrue( exec.schedule( id, session1 ) );
+
+    exec.shutdown();
+    assertEquals( 1, journal.load().size() );
+    latch.countDown();
+  }
+
+  @Test public void testStreamScheduledOutput() throws Exception {
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    final CountDownLatch written = new CountDownLatch( 1 );
+    when( component.execute() ).thenAnswer( invocation -> {
+      latch.await();
+      return true;
+    } );
+    final ByteArrayOutputStream target = new ByteArrayOutputStream();
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold ) {
+      @Override protected Callable<Serializable> getWriteToJcrTask( final IFixedSizeStreamingContent result,
+                                                                    final IAsyncReportExecution<? extends
+                                                                      IAsyncReportState> runningTask ) {
+        throw new IllegalStateException( "content is streamed" );
+      }
+
+      @Override protected WriteToJcrTask getSchedulingTarget( final IAsyncReportExecution<? extends
+        IAsyncReportState> runningTask ) {
+        return new WriteToJcrTask( runningTask ) {
+          @Override public synchronized OutputStream openTarget() {
+            return target;
+          }
+
+          @Override public Serializable call() {
+            written.countDown();
+            return "test_id";
+          }
+        };
+      }
+    };
+    exec.setStreamScheduledOutput( true );
+    assertTrue( exec.isStreamScheduledOutput() );
+    final UUID id = exec.addTask( new PentahoAsyncReportExecution( "junit-path",
+      component, handler, session1, "not null", AuditWrapper.NULL ) {
+      @Override
+      protected AsyncReportStatusListener createListener( final UUID id,
+                                                          final List<? extends ReportProgressListener> listeners ) {
+        return new TestListener( "1", id, "" );
+      }
+    }, session1 );
+    assertTrue( exec.schedule( id, session1 ) );
+    verify( handler ).redirect( target );
+
+    latch.countDown();
+    assertTrue( written.await( 10, TimeUnit.SECONDS ) );
+    exec.shutdown();
+  }
+
+  @Test public void testRecoverJobs() throws Exception {
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    when( component.execute() ).thenAnswer( invocation -> {
+      latch.await();
+      return true;
+    } );
+    final AsyncJobJournal journal = new AsyncJobJournal( Files.createTempDirectory( "journal" ).toFile() );
+    final AsyncJobDescriptor recoverable =
+      new AsyncJobDescriptor( UUID.randomUUID(), "test", "audit", "junit-path", new SimpleReportingComponent() );
+    final AsyncJobDescriptor exhausted =
+      new AsyncJobDescriptor( UUID.randomUUID(), "test", "audit", "junit-path", new SimpleReportingComponent() );
+    exhausted.setAttempts( PentahoAsyncExecutor.DEFAULT_MAX_RECOVERY_ATTEMPTS );
+    assertTrue( journal.write( recoverable ) );
+    assertTrue( journal.write( exhausted ) );
+
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold ) {
+      @Override
+      protected IAsyncReportExecution createRecoveredTask( final AsyncJobDescriptor descriptor,
+                                                           final SimpleReportingComponent reportComponent,
+                                                           final AsyncJobFileStagingHandler stagingHandler,
+                                                           final IPentahoSession session ) {
+        assertEquals( "test", session.getName() );
+        return new PentahoAsyncReportExecution( descriptor.getReportPath(), component, handler, session,
+          descriptor.getAuditId(), AuditWrapper.NULL ) {
+          @Override
+          protected AsyncReportStatusListener createListener( final UUID id,
+                                                              final List<? extends ReportProgressListener> listeners ) {
+            return new TestListener( "1", id, "" );
+          }
+        };
+      }
+    };
+    assertEquals( 0, exec.recoverJobs() );
+    exec.setJobJournal( journal );
+    assertEquals( 1, exec.recoverJobs() );
+
+    final List<AsyncJobDescriptor> descriptors = journal.load();
+    assertEquals( 1, descriptors.size() );
+    assertEquals( recoverable.getId(), descriptors.get( 0 ).getId() );
+    assertEquals( 1, descriptors.get( 0 ).getAttempts() );
+    // already running
+    assertEquals( 0, exec.recoverJobs() );
+
+    latch.countDown();
+    exec.shutdown();
+  }
+
   @Test public void compositeKeyEqualsHashCodeTest() {
     CompositeKey one = new CompositeKey( session1, uuid1 );
     CompositeKey two = new CompositeKey( session2, uuid2 );
@@ -315,6 +712,71 @@ public class PentahoAsyncReportExecutorTest {
   }
 
 
+  @Test
+  public void testExpireFinishedJobs() throws Exception {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 2, autoSchedulerThreshold );
+    final IFixedSizeStreamingContent content = mock( IFixedSizeStreamingContent.class );
+
+    final IAsyncReportExecution finished = mock( IAsyncReportExecution.class );
+    final IAsyncReportState finishedState = mock( IAsyncReportState.class );
+    when( finishedState.getStatus() ).thenReturn( AsyncExecutionStatus.FINISHED );
+    when( finished.getState() ).thenReturn( finishedState );
+    when( finished.call() ).thenReturn( content );
+
+    final IAsyncReportExecution scheduled = mock( IAsyncReportExecution.class );
+    final IAsyncReportState scheduledState = mock( IAsyncReportState.class );
+    when( scheduledState.getStatus() ).thenReturn( AsyncExecutionStatus.SCHEDULED );
+    when( scheduled.getState() ).thenReturn( scheduledState );
+
+    final UUID finishedId = exec.addTask( finished, session1 );
+    final UUID scheduledId = exec.addTask( scheduled, session1 );
+    exec.getFuture( finishedId, session1 ).get();
+    exec.getFuture( scheduledId, session1 ).get();
+    Thread.sleep( 10 );
+
+    // disabled by default
+    exec.expireFinishedJobs();
+    assertNotNull( exec.getReportState( finishedId, session1 ) );
+
+    exec.setFinishedJobTimeToLive( 1 );
+    exec.expireFinishedJobs();
+    assertNull( exec.getFuture( finishedId, session1 ) );
+    assertNull( exec.getReportState( finishedId, session1 ) );
+    verify( content ).cleanContent();
+    // its content is still written to the repository
+    assertNotNull( exec.getFuture( scheduledId, session1 ) );
+
+    exec.setFinishedJobTimeToLive( 60000 );
+    final UUID recent = exec.addTask( finished, session1 );
+    exec.getFuture( recent, session1 ).get();
+    exec.expireFinishedJobs();
+    assertNotNull( exec.getReportState( recent, session1 ) );
+    exec.shutdown();
+  }
+
+  @Test
+  public void testLogoutOnlyTouchesSessionTasks() {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    final IAsyncReportExecution task1 = mock( IAsyncReportExecution.class );
+    final IAsyncReportExecution task2 = mock( IAsyncReportExecution.class );
+    final IAsyncReportState state = mock( IAsyncReportState.class );
+    when( task1.getState() ).thenReturn( state );
+    when( task2.getState() ).thenReturn( state );
+    final UUID id1 = exec.addTask( task1, session1 );
+    final UUID id2 = exec.addTask( task2, session2 );
+
+    exec.onLogout( session1 );
+
+    assertNull( exec.getFuture( id1, session1 ) );
+    assertNull( exec.getReportState( id1, session1 ) );
+    assertNotNull( exec.getFuture( id2, session2 ) );
+    assertSame( state, exec.getReportState( id2, session2 ) );
+
+    exec.onLogout( session2 );
+    assertNull( exec.getReportState( id2, session2 ) );
+    exec.shutdown();
+  }
+
   @Test public void testSchedule() {
 
     final CountDownLatch countDownLatch = new CountDownLatch( 1 );
@@ -1066,5 +1528,106 @@ public class PentahoAsyncReportExecutorTest {
     assertEquals( uuid, task );
   }
 
+  @Test
+  public void testGetReportStates() {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    final IAsyncReportExecution task = mock( IAsyncReportExecution.class );
+    final IAsyncReportState state = mock( IAsyncReportState.class );
+    when( task.getState() ).thenReturn( state );
+    final UUID id = exec.addTask( task, session1 );
+    final UUID unknown = UUID.randomUUID();
+
+    final Map<UUID, IAsyncReportState> states = exec.getReportStates( Arrays.asList( unknown, id ), session1 );
+    assertEquals( 1, states.size() );
+    assertSame( state, states.get( id ) );
+    // other sessions don't see the task
+    assertTrue( exec.getReportStates( Collections.singletonList( id ), session2 ).isEmpty() );
+    exec.shutdown();
+  }
+
+  @Test
+  public void testAwaitStatusChange() throws Exception {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    final UUID id = exec.addTask( mock( IAsyncReportExecution.class ), session1 );
+
+    final long version = exec.awaitStatusChange( id, session1, -1, 0 );
+    exec.requestPage( id, session1, 1 );
+    assertTrue( exec.awaitStatusChange( id, session1, version, 10000 ) > version );
+
+    // unknown task
+    assertEquals( 0, exec.awaitStatusChange( UUID.randomUUID(), session1, 5, 0 ) );
+    exec.shutdown();
+  }
+
+  @Test
+  public void testWatchCanceled() throws Exception {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 2, autoSchedulerThreshold );
+    exec.setCancelGracePeriod( 10 );
+
+    final AtomicBoolean executing = new AtomicBoolean( true );
+    final CountDownLatch interrupted = new CountDownLatch( 2 );
+    final AbstractAsyncReportExecution execution = mock( AbstractAsyncReportExecution.class );
+    when( execution.isExecuting() ).thenAnswer( invocation -> executing.get() );
+    doAnswer( invocation -> {
+      interrupted.countDown();
+      return null;
+    } ).when( execution ).interruptExecution();
+
+    exec.watchCanceled( execution );
+    assertTrue( interrupted.await( 5, TimeUnit.SECONDS ) );
+    // the stuck thread is replaced
+    assertEquals( 3, exec.getPoolSize() );
+
+    executing.set( false );
+    final long deadline = System.currentTimeMillis() + 5000;
+    while ( exec.getPoolSize() != 2 && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( 2, exec.getPoolSize() );
+    exec.shutdown();
+  }
+
+  @Test
+  public void testWatchCanceledCapped() throws Exception {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 1, autoSchedulerThreshold );
+    exec.setCancelGracePeriod( 10 );
+
+    final AtomicBoolean executing = new AtomicBoolean( true );
+    final CountDownLatch interrupted = new CountDownLatch( 4 );
+    final AbstractAsyncReportExecution first = mock( AbstractAsyncReportExecution.class );
+    final AbstractAsyncReportExecution second = mock( AbstractAsyncReportExecution.class );
+    for ( final AbstractAsyncReportExecution execution : Arrays.asList( first, second ) ) {
+      when( execution.isExecuting() ).thenAnswer( invocation -> executing.get() );
+      doAnswer( invocation -> {
+        interrupted.countDown();
+        return null;
+      } ).when( execution ).interruptExecution();
+    }
+
+    exec.watchCanceled( first );
+    exec.watchCanceled( second );
+    assertTrue( interrupted.await( 5, TimeUnit.SECONDS ) );
+    // only capacity threads are added
+    assertEquals( 2, exec.getPoolSize() );
+
+    executing.set( false );
+    final long deadline = System.currentTimeMillis() + 5000;
+    while ( exec.getPoolSize() != 1 && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( 1, exec.getPoolSize() );
+    exec.shutdown();
+  }
+
+  @Test
+  public void testWatchCanceledNotExecuting() {
+    final PentahoAsyncExecutor exec = new PentahoAsyncExecutor( 2, autoSchedulerThreshold );
+    final AbstractAsyncReportExecution execution = mock( AbstractAsyncReportExecution.class );
+    exec.watchCanceled( execution );
+    verify( execution, never() ).interruptExecution();
+    assertEquals( 2, exec.getPoolSize() );
+    exec.shutdown();
+  }
+
 }
 
@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.reporting.libraries.repository.ContentEntity;
+import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SchedulingNameReservationTest {
+
+  private SchedulingNameReservation reservation;
+  private ContentLocation location;
+
+  @Before
+  public void setUp() throws Exception {
+    reservation = new SchedulingNameReservation();
+    location = mock( ContentLocation.class );
+    final ContentEntity report = mock( ContentEntity.class );
+    when( report.getName() ).thenReturn( "report.pdf" );
+    final ContentEntity copy = mock( ContentEntity.class );
+    when( copy.getName() ).thenReturn( "report(1).pdf" );
+    when( location.listContents() ).thenReturn( new ContentEntity[] { report, copy } );
+  }
+
+  @Test
+  public void testReserve() throws Exception {
+    assertEquals( "report(2).pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+    assertEquals( "report(3).pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+    assertEquals( "report.html", reservation.reserve( location, "/test", "report", ".html" ) );
+    assertEquals( "report(1).html", reservation.reserve( location, "/test", "report", ".html" ) );
+    // listed once
+    verify( location, times( 1 ) ).listContents();
+  }
+
+  @Test
+  public void testListedAgain() throws Exception {
+    reservation.setCacheTime( 0 );
+    final String pending = reservation.reserve( location, "/test", "report", ".pdf" );
+    assertEquals( "report(2).pdf", pending );
+    final String failed = reservation.reserve( location, "/test", "report", ".pdf" );
+    assertEquals( "report(3).pdf", failed );
+    reservation.release( "/test", failed );
+    // names not created yet are kept when the folder is listed again, names never created are free again
+    assertEquals( "report(3).pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+    reservation.release( "/test", pending );
+    assertEquals( "report(2).pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+  }
+
+  @Test
+  public void testListFails() throws Exception {
+    when( location.listContents() ).thenThrow( new ContentIOException() );
+    assertEquals( "report.pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+    assertEquals( "report(1).pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    reservation.reserve( location, "/test", "report", ".pdf" );
+    reservation.clear();
+    assertEquals( "report(2).pdf", reservation.reserve( location, "/test", "report", ".pdf" ) );
+    verify( location, times( 2 ) ).listContents();
+  }
+
+  @Test
+  public void testConcurrentReserve() throws Exception {
+    final ExecutorService executorService = Executors.newFixedThreadPool( 10 );
+    final List<Future<String>> results = new ArrayList<>();
+    final Callable<String> reserve = () -> reservation.reserve( location, "/test", "report", ".pdf" );
+    for ( int i = 0; i < 100; i++ ) {
+      results.add( executorService.submit( reserve ) );
+    }
+    final Set<String> names = new HashSet<>();
+    for ( final Future<String> result : results ) {
+      assertTrue( names.add( result.get() ) );
+    }
+    executorService.shutdown();
+    assertEquals( 100, names.size() );
+  }
+}
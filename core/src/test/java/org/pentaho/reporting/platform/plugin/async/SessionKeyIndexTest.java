@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class SessionKeyIndexTest {
+
+  @Test
+  public void testKeysBySession() {
+    final IPentahoSession session1 = new StandaloneSession( "one" );
+    final IPentahoSession session2 = new StandaloneSession( "two" );
+    final PentahoAsyncExecutor.CompositeKey key1 = new PentahoAsyncExecutor.CompositeKey( session1, UUID.randomUUID() );
+    final PentahoAsyncExecutor.CompositeKey key2 = new PentahoAsyncExecutor.CompositeKey( session1, UUID.randomUUID() );
+    final PentahoAsyncExecutor.CompositeKey key3 = new PentahoAsyncExecutor.CompositeKey( session2, UUID.randomUUID() );
+
+    final SessionKeyIndex index = new SessionKeyIndex();
+    index.add( key1 );
+    index.add( key2 );
+    index.add( key3 );
+    assertEquals( 2, index.getKeys( session1.getId() ).size() );
+
+    index.remove( key2 );
+    assertEquals( 1, index.getKeys( session1.getId() ).size() );
+
+    final Set<PentahoAsyncExecutor.CompositeKey> removed = index.removeSession( session1.getId() );
+    assertEquals( 1, removed.size() );
+    assertTrue( removed.contains( key1 ) );
+    assertTrue( index.getKeys( session1.getId() ).isEmpty() );
+    assertTrue( index.removeSession( session1.getId() ).isEmpty() );
+    assertEquals( 1, index.getKeys( session2.getId() ).size() );
+
+    index.remove( key3 );
+    assertTrue( index.getKeys( session2.getId() ).isEmpty() );
+  }
+
+  @Test
+  public void testNullSessionId() {
+    final IPentahoSession session = mock( IPentahoSession.class );
+    final PentahoAsyncExecutor.CompositeKey key = new PentahoAsyncExecutor.CompositeKey( session, UUID.randomUUID() );
+
+    final SessionKeyIndex index = new SessionKeyIndex();
+    index.add( key );
+    assertEquals( 1, index.getKeys( null ).size() );
+    assertEquals( 1, index.removeSession( null ).size() );
+  }
+
+  @Test
+  public void testClear() {
+    final IPentahoSession session = new StandaloneSession( "one" );
+    final SessionKeyIndex index = new SessionKeyIndex();
+    index.add( new PentahoAsyncExecutor.CompositeKey( session, UUID.randomUUID() ) );
+    index.clear();
+    assertTrue( index.getKeys( session.getId() ).isEmpty() );
+  }
+}
@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.async;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatusChangeNotifierTest {
+
+  @Test
+  public void testProgressIsAChange() {
+    final StatusChangeNotifier notifier = new StatusChangeNotifier();
+    assertEquals( 0, notifier.getVersion() );
+    notifier.reportProcessingStarted( null );
+    notifier.reportProcessingUpdate( null );
+    notifier.reportProcessingFinished( null );
+    assertEquals( 3, notifier.getVersion() );
+  }
+
+  @Test
+  public void testOutdatedVersionReturnsAtOnce() throws Exception {
+    final StatusChangeNotifier notifier = new StatusChangeNotifier();
+    notifier.changed();
+    assertEquals( 1, notifier.await( 0, 10000 ) );
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    final StatusChangeNotifier notifier = new StatusChangeNotifier();
+    final long start = System.currentTimeMillis();
+    assertEquals( 0, notifier.await( 0, 50 ) );
+    assertTrue( System.currentTimeMillis() - start >= 50 );
+  }
+
+  @Test( timeout = 10000 )
+  public void testChangeWakesWaiter() throws Exception {
+    final StatusChangeNotifier notifier = new StatusChangeNotifier();
+    final AtomicLong version = new AtomicLong( -1 );
+    final CountDownLatch done = new CountDownLatch( 1 );
+    final Thread waiter = new Thread( () -> {
+      try {
+        version.set( notifier.await( 0, 60000 ) );
+      } catch ( final InterruptedException e ) {
+        // fails below
+      }
+      done.countDown();
+    } );
+    waiter.start();
+    Thread.sleep( 50 );
+    notifier.changed();
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 1, version.get() );
+  }
+}
@@ -31,6 +31,7 @@ import org.pentaho.test.platform.engine.core.MicroPlatform;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -47,6 +48,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -65,6 +67,7 @@ public class WriteToJcrTaskTest {
     microPlatform.defineInstance( "IUnifiedRepository", repository );
     microPlatform.defineInstance( "ISchedulingDirectoryStrategy", strategy );
     microPlatform.start();
+    new WriteToJcrTask( mock( IAsyncReportExecution.class ) ).getNameReservation().clear();
   }
 
   @After
@@ -240,6 +243,69 @@ public class WriteToJcrTaskTest {
 
   }
 
+  @Test
+  public void testOpenTarget() throws Exception {
+    final RepositoryFile file = mock( RepositoryFile.class );
+    when( file.getId() ).thenReturn( "file_id" );
+    when( PentahoSystem.get( IUnifiedRepository.class ).getFile( "/test/report.pdf" ) ).thenReturn( file );
+    final FakeLocation fakeLocation = new FakeLocation();
+    final IAsyncReportExecution reportExecution = mock( IAsyncReportExecution.class );
+    final IAsyncReportState state = mock( IAsyncReportState.class );
+    when( state.getMimeType() ).thenReturn( "application/pdf" );
+    when( state.getPath() ).thenReturn( "report.prpt" );
+    when( reportExecution.getState() ).thenReturn( state );
+    final ReportContentRepository contentRepository = mock( ReportContentRepository.class );
+    when( contentRepository.getRoot() ).thenReturn( fakeLocation );
+    final WriteToJcrTask toJcrTask = new WriteToJcrTask( reportExecution ) {
+      @Override protected ReportContentRepository getReportContentRepository( final RepositoryFile outputFolder ) {
+        return contentRepository;
+      }
+    };
+
+    final OutputStream outputStream = toJcrTask.openTarget();
+    assertNotNull( outputStream );
+    assertEquals( outputStream, toJcrTask.openTarget() );
+    assertTrue( fakeLocation.exists( "report.pdf" ) );
+    assertEquals( "file_id", toJcrTask.call() );
+
+    toJcrTask.discard();
+    verify( PentahoSystem.get( IUnifiedRepository.class ) ).deleteFile( "file_id", true, null );
+  }
+
+  @Test
+  public void testNoTarget() throws Exception {
+    final IAsyncReportExecution reportExecution = mock( IAsyncReportExecution.class );
+    final WriteToJcrTask toJcrTask = new WriteToJcrTask( reportExecution );
+    assertNull( toJcrTask.call() );
+    toJcrTask.discard();
+  }
+
+  @Test
+  public void testCreatedElsewhere() throws Exception {
+    final RepositoryFile file = mock( RepositoryFile.class );
+    when( file.getId() ).thenReturn( "file_id" );
+    when( PentahoSystem.get( IUnifiedRepository.class ).getFile( startsWith( "/test" ) ) ).thenReturn( file );
+    final FakeLocation fakeLocation = new FakeLocation();
+    final IAsyncReportExecution reportExecution = mock( IAsyncReportExecution.class );
+    final IAsyncReportState state = mock( IAsyncReportState.class );
+    when( state.getMimeType() ).thenReturn( "application/pdf" );
+    when( state.getPath() ).thenReturn( "report.prpt" );
+    when( reportExecution.getState() ).thenReturn( state );
+    final ReportContentRepository contentRepository = mock( ReportContentRepository.class );
+    when( contentRepository.getRoot() ).thenReturn( fakeLocation );
+    final WriteToJcrTask toJcrTask = new WriteToJcrTask( reportExecution, new NullInputStream( 10 ) ) {
+      @Override protected ReportContentRepository getReportContentRepository( final RepositoryFile outputFolder ) {
+        return contentRepository;
+      }
+    };
+    // cached as free, but created after the folder was listed
+    toJcrTask.getNameReservation().reserve( fakeLocation, "/test", "other", ".pdf" );
+    fakeLocation.createItem( "report.pdf" );
+
+    assertEquals( "file_id", toJcrTask.call() );
+    assertTrue( fakeLocation.exists( "report(1).pdf" ) );
+  }
+
   @Test
   public void testNullStream() throws Exception {
 
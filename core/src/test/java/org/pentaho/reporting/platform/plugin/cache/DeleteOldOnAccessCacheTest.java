@@ -21,6 +21,7 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -97,4 +98,41 @@ public class DeleteOldOnAccessCacheTest {
     cache.cleanupCurrentSession();
     assertNull( cache.get( SOME_KEY ) );
   }
+
+  @Test
+  public void testCleanupRebuildsIndex() throws Exception {
+    final DeleteOldOnAccessCache cache = new DeleteOldOnAccessCache( fileSystemCacheBackend );
+    cache.setDaysToLive( 1L );
+    cache.put( SOME_KEY, SOME_VALUE );
+    cache.shutdown();
+    final List<String> key = cache.computeKey( SOME_KEY );
+    assertNotNull( fileSystemCacheBackend.read( key ) );
+
+    //a fresh instance knows nothing about the entry until the index is rebuilt
+    final DeleteOldOnAccessCache restarted = new DeleteOldOnAccessCache( fileSystemCacheBackend );
+    restarted.shutdown();
+    restarted.setMillisToLive( 0 );
+    Thread.sleep( 10 );
+    restarted.cleanup();
+    assertNull( fileSystemCacheBackend.read( key ) );
+  }
+
+  @Test
+  public void testJanitorEvicts() throws Exception {
+    final DeleteOldOnAccessCache cache = new DeleteOldOnAccessCache( fileSystemCacheBackend );
+    cache.setMillisToLive( 50 );
+    cache.setCleanupIntervalMillis( 20 );
+    final List<String> key = cache.computeKey( SOME_KEY );
+    try {
+      cache.put( SOME_KEY, SOME_VALUE );
+      assertNotNull( fileSystemCacheBackend.read( key ) );
+      final long deadline = System.currentTimeMillis() + 10000;
+      while ( fileSystemCacheBackend.read( key ) != null && System.currentTimeMillis() < deadline ) {
+        Thread.sleep( 20 );
+      }
+      assertNull( fileSystemCacheBackend.read( key ) );
+    } finally {
+      cache.shutdown();
+    }
+  }
 }
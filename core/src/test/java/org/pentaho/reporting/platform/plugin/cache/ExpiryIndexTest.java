@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiryIndexTest {
+
+  private static final List<String> FIRST = Arrays.asList( "long_term", "user", "first" );
+  private static final List<String> SECOND = Arrays.asList( "long_term", "user", "second" );
+
+  @Test
+  public void testPollExpired() {
+    final ExpiryIndex index = new ExpiryIndex();
+    index.put( FIRST, 10 );
+    index.put( SECOND, 20 );
+    assertTrue( index.pollExpired( 10 ).isEmpty() );
+    assertEquals( Collections.singleton( FIRST ), index.pollExpired( 15 ) );
+    assertNull( index.get( FIRST ) );
+    assertEquals( 20L, (long) index.get( SECOND ) );
+  }
+
+  @Test
+  public void testRewrittenEntryIsNotExpired() {
+    final ExpiryIndex index = new ExpiryIndex();
+    index.put( FIRST, 10 );
+    index.put( FIRST, 30 );
+    index.put( FIRST, 5 );
+    assertTrue( index.pollExpired( 20 ).isEmpty() );
+    assertEquals( Collections.singleton( FIRST ), index.pollExpired( 40 ) );
+  }
+
+  @Test
+  public void testRemovePrefix() {
+    final ExpiryIndex index = new ExpiryIndex();
+    index.put( FIRST, 10 );
+    index.put( Arrays.asList( "long_term", "other", "first" ), 10 );
+    index.removePrefix( Arrays.asList( "long_term", "user" ) );
+    assertEquals( 1, index.size() );
+    assertTrue( index.pollExpired( 20 ).size() == 1 );
+  }
+
+  @Test
+  public void testCompaction() {
+    final ExpiryIndex index = new ExpiryIndex();
+    for ( int i = 0; i < 1000; i++ ) {
+      index.put( FIRST, i );
+    }
+    assertEquals( 1, index.size() );
+    assertEquals( Collections.singleton( FIRST ), index.pollExpired( 1000 ) );
+  }
+}
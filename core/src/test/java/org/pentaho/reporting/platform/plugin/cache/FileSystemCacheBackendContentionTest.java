@@ -0,0 +1,116 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Read throughput of the file system cache backend under contention. Runs only with -Dtest.performance=true.
+ */
+public class FileSystemCacheBackendContentionTest {
+
+  private static final int READERS = 64;
+  private static final int KEYS = 16;
+  private static final long DURATION_MS = 5000;
+
+  private static FileSystemCacheBackend fileSystemCacheBackend;
+
+  @BeforeClass
+  public static void setUp() {
+    Assume.assumeTrue( Boolean.getBoolean( "org.pentaho.reporting.engine.classic.test.ExecutePerformanceTest" ) );
+    fileSystemCacheBackend = new FileSystemCacheBackend();
+    fileSystemCacheBackend.setCachePath( "/test-cache-contention/" );
+    for ( int i = 0; i < KEYS; i++ ) {
+      fileSystemCacheBackend.write( key( i ), "value" + i, new HashMap<String, Serializable>() );
+    }
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if ( fileSystemCacheBackend != null ) {
+      assertTrue( fileSystemCacheBackend.purge( Collections.singletonList( "" ) ) );
+    }
+  }
+
+  private static List<String> key( final int i ) {
+    return Arrays.asList( "session", "segment" + ( i % 4 ), "key" + i );
+  }
+
+  @Test
+  public void testSameKeyReaders() throws Exception {
+    report( "64 readers, single key", run( 1 ) );
+  }
+
+  @Test
+  public void testDistinctKeyReaders() throws Exception {
+    report( "64 readers, " + KEYS + " keys", run( KEYS ) );
+  }
+
+  private static void report( final String name, final long reads ) {
+    System.out.println( String.format( "%s: %d reads/s", name, reads * 1000 / DURATION_MS ) );
+    assertTrue( reads > 0 );
+    assertEquals( 0, fileSystemCacheBackend.getLockManager().size() );
+  }
+
+  private static long run( final int keys ) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool( READERS );
+    final AtomicBoolean running = new AtomicBoolean( true );
+    final AtomicLong reads = new AtomicLong();
+    final CountDownLatch start = new CountDownLatch( 1 );
+    final List<Throwable> errors = Collections.synchronizedList( new ArrayList<Throwable>() );
+    for ( int t = 0; t < READERS; t++ ) {
+      final int offset = t;
+      executor.execute( () -> {
+        try {
+          start.await();
+          long count = 0;
+          for ( int i = offset; running.get(); i++ ) {
+            if ( fileSystemCacheBackend.read( key( i % keys ) ) == null ) {
+              throw new IllegalStateException( "cache entry is missing" );
+            }
+            count++;
+          }
+          reads.addAndGet( count );
+        } catch ( final Throwable e ) {
+          errors.add( e );
+        }
+      } );
+    }
+    start.countDown();
+    Thread.sleep( DURATION_MS );
+    running.set( false );
+    executor.shutdown();
+    assertTrue( executor.awaitTermination( 1, TimeUnit.MINUTES ) );
+    assertTrue( errors.toString(), errors.isEmpty() );
+    return reads.get();
+  }
+}
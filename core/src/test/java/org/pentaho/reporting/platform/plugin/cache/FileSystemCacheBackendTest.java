@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -36,9 +37,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -97,13 +98,84 @@ public class FileSystemCacheBackendTest {
     assertNull( fileSystemCacheBackend.read( Arrays.asList( directoryKey, key ) ) );
   }
 
+  @Test
+  public void testWriteReadReportContent() throws Exception {
+    final Map<Integer, byte[]> pages = new HashMap<>();
+    pages.put( 0, new byte[] { 1 } );
+    pages.put( 1, new byte[] { 1, 2 } );
+    final List<String> contentKey = Arrays.asList( directoryKey, "report" );
+    assertTrue( fileSystemCacheBackend.write( contentKey, new ReportContentImpl( 3, pages ),
+      new HashMap<String, Serializable>() ) );
+
+    final IReportContent content = (IReportContent) fileSystemCacheBackend.read( contentKey );
+    assertTrue( content instanceof PageSegmentReportContent );
+    assertEquals( 3, content.getPageCount() );
+    assertEquals( 2, content.getStoredPageCount() );
+    assertEquals( 2, content.getPageData( 1 ).length );
+    assertNotNull( fileSystemCacheBackend.readMetaData( contentKey ) );
+
+    assertTrue( fileSystemCacheBackend.purge( contentKey ) );
+    assertNull( fileSystemCacheBackend.read( contentKey ) );
+    assertNull( content.getPageData( 1 ) );
+  }
+
+  @Test
+  public void testAppendReportContent() throws Exception {
+    final List<String> contentKey = Arrays.asList( directoryKey, "appended" );
+    assertTrue( fileSystemCacheBackend.append( contentKey,
+      new ReportContentImpl( 1, Collections.singletonMap( 0, new byte[] { 1 } ) ),
+      new HashMap<String, Serializable>() ) );
+    final HashMap<String, Serializable> metaData = new HashMap<>();
+    metaData.put( "rows", 10 );
+    assertTrue( fileSystemCacheBackend.append( contentKey,
+      new ReportContentImpl( 3, Collections.singletonMap( 1, new byte[] { 2, 2 } ) ), metaData ) );
+
+    final IReportContent content = (IReportContent) fileSystemCacheBackend.read( contentKey );
+    assertEquals( 3, content.getPageCount() );
+    assertEquals( 2, content.getStoredPageCount() );
+    assertEquals( 1, content.getPageData( 0 ).length );
+    assertEquals( 2, content.getPageData( 1 ).length );
+    assertEquals( 10, fileSystemCacheBackend.readMetaData( contentKey ).get( "rows" ) );
+    assertTrue( fileSystemCacheBackend.purge( contentKey ) );
+  }
+
+  @Test
+  public void testPurgeSegmentReportContent() throws Exception {
+    final List<String> contentKey = Arrays.asList( directoryKey, "segment", "report" );
+    assertTrue( fileSystemCacheBackend.write( contentKey,
+      new ReportContentImpl( 1, Collections.singletonMap( 0, new byte[] { 1 } ) ),
+      new HashMap<String, Serializable>() ) );
+    fileSystemCacheBackend.purgeSegment( Arrays.asList( directoryKey, "segment" ), ( k, m ) -> m != null );
+    assertNull( fileSystemCacheBackend.read( contentKey ) );
+  }
+
   @Test
   public void testPurgeSyncMapCleaning() {
     List<String> randomKey = Arrays.asList( UUID.randomUUID().toString() );
-    Map<List<String>, ReentrantReadWriteLock> syncMap = new HashMap<List<String>, ReentrantReadWriteLock>();
-    fileSystemCacheBackend.setSyncMap( syncMap );
     fileSystemCacheBackend.purge( randomKey );
-    assertFalse( fileSystemCacheBackend.getSyncMap().containsKey( randomKey ) );
+    assertFalse( fileSystemCacheBackend.getLockManager().isLocked( randomKey ) );
+  }
+
+  @Test
+  public void testLocksReleased() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    final List<Future<Boolean>> results = new ArrayList<>();
+    for ( int i = 0; i < 200; i++ ) {
+      final List<String> entryKey = Arrays.asList( directoryKey, UUID.randomUUID().toString() );
+      results.add( executor.submit( new Callable<Boolean>() {
+        @Override public Boolean call() throws Exception {
+          fileSystemCacheBackend.write( entryKey, value, new HashMap<String, Serializable>() );
+          fileSystemCacheBackend.read( entryKey );
+          fileSystemCacheBackend.readMetaData( entryKey );
+          return fileSystemCacheBackend.purge( entryKey );
+        }
+      } ) );
+    }
+    for ( final Future<Boolean> result : results ) {
+      assertTrue( result.get() );
+    }
+    executor.shutdown();
+    assertEquals( 0, fileSystemCacheBackend.getLockManager().size() );
   }
 
   @Test
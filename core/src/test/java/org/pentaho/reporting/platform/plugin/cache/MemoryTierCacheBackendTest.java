@@ -0,0 +1,170 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class MemoryTierCacheBackendTest {
+
+  private static final List<String> KEY = Arrays.asList( "session", "a/b", "report" );
+  private static FileSystemCacheBackend fileSystemCacheBackend;
+  private ICacheBackend delegate;
+
+  @BeforeClass
+  public static void setUpClass() {
+    fileSystemCacheBackend = new FileSystemCacheBackend();
+    fileSystemCacheBackend.setCachePath( "/test-cache/" );
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    assertTrue( fileSystemCacheBackend.purge( Collections.singletonList( "" ) ) );
+  }
+
+  @Before
+  public void setUp() {
+    fileSystemCacheBackend.purge( Collections.singletonList( "session" ) );
+    delegate = spy( fileSystemCacheBackend );
+  }
+
+  private static IReportContent content( final int pages, final int pageSize ) {
+    final Map<Integer, byte[]> data = new HashMap<>();
+    for ( int i = 0; i < pages; i++ ) {
+      final byte[] page = new byte[ pageSize ];
+      Arrays.fill( page, (byte) i );
+      data.put( i, page );
+    }
+    return new ReportContentImpl( pages, data );
+  }
+
+  @Test
+  public void testWriteThroughServesFromMemory() throws Exception {
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, 1024 * 1024 );
+    assertTrue( tier.write( KEY, content( 3, 100 ), new HashMap<String, Serializable>() ) );
+
+    final IReportContent read = (IReportContent) tier.read( KEY );
+    assertEquals( 3, read.getPageCount() );
+    assertEquals( 3, read.getStoredPageCount() );
+    assertArrayEquals( content( 3, 100 ).getPageData( 2 ), read.getPageData( 2 ) );
+    assertNotNull( tier.readMetaData( KEY ) );
+
+    verify( delegate, times( 0 ) ).read( any() );
+    verify( delegate, times( 0 ) ).readMetaData( any() );
+    assertEquals( 0, tier.getMissCount() );
+    // content and metadata, the page is part of the content lookup
+    assertEquals( 2, tier.getHitCount() );
+  }
+
+  @Test
+  public void testFallThroughOnMiss() throws Exception {
+    fileSystemCacheBackend.write( KEY, content( 3, 100 ), new HashMap<String, Serializable>() );
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, 1024 * 1024 );
+
+    IReportContent read = (IReportContent) tier.read( KEY );
+    assertEquals( 100, read.getPageData( 1 ).length );
+    read = (IReportContent) tier.read( KEY );
+    assertEquals( 100, read.getPageData( 1 ).length );
+
+    verify( delegate, times( 1 ) ).read( KEY );
+    assertEquals( 1, tier.getMissCount() );
+    assertEquals( 1, tier.getHitCount() );
+  }
+
+  @Test
+  public void testSerializedWithPages() throws Exception {
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, 1024 * 1024 );
+    tier.write( KEY, content( 3, 100 ), new HashMap<String, Serializable>() );
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( final ObjectOutputStream out = new ObjectOutputStream( bytes ) ) {
+      out.writeObject( tier.read( KEY ) );
+    }
+    final IReportContent copy;
+    try ( final ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) ) {
+      copy = (IReportContent) in.readObject();
+    }
+    assertEquals( 3, copy.getPageCount() );
+    assertEquals( 3, copy.getStoredPageCount() );
+    assertArrayEquals( content( 3, 100 ).getPageData( 1 ), copy.getPageData( 1 ) );
+  }
+
+  @Test
+  public void testEvictionBoundedByBytes() throws Exception {
+    final long maxBytes = 4 * ( 1000 + MemoryTierCacheBackend.SLOT_OVERHEAD );
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, maxBytes );
+    fileSystemCacheBackend.write( KEY, content( 10, 1000 ), new HashMap<String, Serializable>() );
+
+    final IReportContent read = (IReportContent) tier.read( KEY );
+    for ( int i = 0; i < 10; i++ ) {
+      assertEquals( (byte) i, read.getPageData( i )[ 0 ] );
+      assertTrue( tier.getUsedBytes() <= maxBytes );
+    }
+    assertTrue( tier.getEvictionCount() > 0 );
+  }
+
+  @Test
+  public void testWriteInvalidatesOldPages() throws Exception {
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, 1024 * 1024 );
+    tier.write( KEY, content( 2, 10 ), new HashMap<String, Serializable>() );
+    assertEquals( 10, ( (IReportContent) tier.read( KEY ) ).getPageData( 0 ).length );
+
+    tier.write( KEY, content( 2, 20 ), new HashMap<String, Serializable>() );
+    assertEquals( 20, ( (IReportContent) tier.read( KEY ) ).getPageData( 0 ).length );
+  }
+
+  @Test
+  public void testPurge() throws Exception {
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, 1024 * 1024 );
+    tier.write( KEY, content( 2, 10 ), new HashMap<String, Serializable>() );
+    assertTrue( tier.purge( Arrays.asList( "session", "a/b" ) ) );
+    assertNull( tier.read( KEY ) );
+    assertEquals( 0, tier.getUsedBytes() );
+  }
+
+  @Test
+  public void testPurgeSegment() throws Exception {
+    final MemoryTierCacheBackend tier = new MemoryTierCacheBackend( delegate, 1024 * 1024 );
+    tier.write( KEY, content( 2, 10 ), new HashMap<String, Serializable>() );
+    final List<String> other = Arrays.asList( "session", "c", "report" );
+    tier.write( other, content( 2, 10 ), new HashMap<String, Serializable>() );
+
+    tier.purgeSegment( Collections.singletonList( "session" ), ( k, m ) -> k.contains( "a_b" ) );
+
+    assertNull( tier.read( KEY ) );
+    assertNotNull( tier.read( other ) );
+  }
+}
@@ -0,0 +1,178 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class PageSegmentFileTest {
+
+  private File dir;
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory( "page-segment" ).toFile();
+    file = new File( dir, "entry.pages" );
+  }
+
+  @After
+  public void tearDown() {
+    for ( final File f : dir.listFiles() ) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  private static IReportContent content() {
+    final Map<Integer, byte[]> pages = new HashMap<>();
+    pages.put( 0, new byte[] { 1 } );
+    pages.put( 2, new byte[] { 2, 3, 4 } );
+    pages.put( 3, new byte[ 0 ] );
+    return new ReportContentImpl( 5, pages );
+  }
+
+  @Test
+  public void testWriteOpen() throws Exception {
+    PageSegmentFile.write( file, content() );
+
+    final PageSegmentReportContent read = PageSegmentFile.open( file );
+    assertEquals( 5, read.getPageCount() );
+    assertEquals( 3, read.getStoredPageCount() );
+    assertEquals( 4, read.getStoredSize() );
+    assertArrayEquals( new byte[] { 1 }, read.getPageData( 0 ) );
+    assertNull( read.getPageData( 1 ) );
+    assertArrayEquals( new byte[] { 2, 3, 4 }, read.getPageData( 2 ) );
+    assertArrayEquals( new byte[ 0 ], read.getPageData( 3 ) );
+    assertNull( read.getPageData( 4 ) );
+    assertNull( read.getPageData( 100 ) );
+  }
+
+  @Test
+  public void testEmptyContent() throws Exception {
+    PageSegmentFile.write( file, new ReportContentImpl( 0, null ) );
+
+    final PageSegmentReportContent read = PageSegmentFile.open( file );
+    assertEquals( 0, read.getPageCount() );
+    assertEquals( 0, read.getStoredPageCount() );
+    assertNull( read.getPageData( 0 ) );
+  }
+
+  @Test
+  public void testRewriteInvalidatesOldContent() throws Exception {
+    final PageSegmentReportContent old = PageSegmentFile.write( file, content() );
+    PageSegmentFile.write( file, content() );
+    assertNull( old.getPageData( 0 ) );
+    assertArrayEquals( new byte[] { 1 }, PageSegmentFile.open( file ).getPageData( 0 ) );
+  }
+
+  @Test
+  public void testAppend() throws Exception {
+    PageSegmentFile.write( file, content() );
+    final long size = file.length();
+    final Map<Integer, byte[]> pages = new HashMap<>();
+    pages.put( 2, new byte[] { 9 } );
+    pages.put( 4, new byte[] { 5, 6 } );
+    pages.put( 5, new byte[] { 7 } );
+    final PageSegmentReportContent appended = PageSegmentFile.append( file, new ReportContentImpl( 6, pages ) );
+
+    assertEquals( 6, appended.getPageCount() );
+    assertEquals( 5, appended.getStoredPageCount() );
+    final PageSegmentReportContent read = PageSegmentFile.open( file );
+    assertEquals( 6, read.getPageCount() );
+    assertEquals( 7, read.getStoredSize() );
+    //stored pages are kept
+    assertArrayEquals( new byte[] { 2, 3, 4 }, read.getPageData( 2 ) );
+    assertArrayEquals( new byte[] { 5, 6 }, read.getPageData( 4 ) );
+    assertArrayEquals( new byte[] { 7 }, read.getPageData( 5 ) );
+    //only the new blobs and the index entries are added
+    assertEquals( size + 3 + 2 * 16, file.length() );
+  }
+
+  @Test
+  public void testAppendKeepsOpenedContent() throws Exception {
+    final PageSegmentReportContent old = PageSegmentFile.write( file, content() );
+    PageSegmentFile.append( file, new ReportContentImpl( 6, Collections.singletonMap( 5, new byte[] { 7 } ) ) );
+    assertArrayEquals( new byte[] { 1 }, old.getPageData( 0 ) );
+    assertArrayEquals( new byte[] { 2, 3, 4 }, old.getPageData( 2 ) );
+  }
+
+  @Test
+  public void testAppendMovesFileInPlace() throws Exception {
+    PageSegmentFile.write( file, content() );
+    PageSegmentFile.append( file, new ReportContentImpl( 6, Collections.singletonMap( 5, new byte[] { 7 } ) ) );
+    final File[] files = dir.listFiles();
+    assertEquals( 1, files.length );
+    assertEquals( file, files[ 0 ] );
+  }
+
+  @Test
+  public void testAppendFillsGap() throws Exception {
+    PageSegmentFile.write( file, content() );
+    PageSegmentFile.append( file, new ReportContentImpl( 5, Collections.singletonMap( 1, new byte[] { 8 } ) ) );
+    final PageSegmentReportContent read = PageSegmentFile.open( file );
+    assertEquals( 4, read.getStoredPageCount() );
+    assertArrayEquals( new byte[] { 1 }, read.getPageData( 0 ) );
+    assertArrayEquals( new byte[] { 8 }, read.getPageData( 1 ) );
+    assertArrayEquals( new byte[] { 2, 3, 4 }, read.getPageData( 2 ) );
+  }
+
+  @Test
+  public void testAppendCreatesSegment() throws Exception {
+    PageSegmentFile.append( file, content() );
+    assertArrayEquals( new byte[] { 2, 3, 4 }, PageSegmentFile.open( file ).getPageData( 2 ) );
+  }
+
+  @Test
+  public void testRemovedSegment() throws Exception {
+    final PageSegmentReportContent written = PageSegmentFile.write( file, content() );
+    file.delete();
+    assertNull( written.getPageData( 0 ) );
+  }
+
+  @Test
+  public void testCopyOfRemovedSegmentFails() throws Exception {
+    final PageSegmentReportContent spooled = PageSegmentFile.write( new File( dir, "spool.pages" ), content() );
+    new File( dir, "spool.pages" ).delete();
+    try {
+      PageSegmentFile.write( file, spooled );
+      fail();
+    } catch ( final IOException e ) {
+      //expected
+    }
+    assertEquals( 0, dir.listFiles().length );
+  }
+
+  @Test( expected = IOException.class )
+  public void testCorruptedFile() throws Exception {
+    try ( final FileOutputStream out = new FileOutputStream( file ) ) {
+      out.write( new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24,
+        25, 26, 27, 28 } );
+    }
+    PageSegmentFile.open( file );
+  }
+}
@@ -0,0 +1,96 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PageSegmentWriterTest {
+
+  private File dir;
+  private PageSegmentWriter writer;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory( "page-segment" ).toFile();
+    writer = new PageSegmentWriter( new File( dir, "spool" ) );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    writer.close();
+    for ( final File f : dir.listFiles() ) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testContentWhileWriting() throws Exception {
+    writer.addPage( 0, new byte[] { 1 } );
+    final PageSegmentReportContent first = writer.getContent( 5, 0 );
+    writer.addPage( 1, new byte[] { 2, 3 } );
+    writer.addPage( 3, new byte[ 0 ] );
+
+    assertEquals( 1, first.getStoredPageCount() );
+    assertArrayEquals( new byte[] { 1 }, first.getPageData( 0 ) );
+
+    final PageSegmentReportContent all = writer.getContent( 5, 0 );
+    assertEquals( 5, all.getPageCount() );
+    assertEquals( 3, all.getStoredPageCount() );
+    assertEquals( 3, all.getStoredSize() );
+    assertArrayEquals( new byte[] { 2, 3 }, all.getPageData( 1 ) );
+    assertArrayEquals( new byte[ 0 ], all.getPageData( 3 ) );
+    assertNull( all.getPageData( 2 ) );
+  }
+
+  @Test
+  public void testFirstPage() throws Exception {
+    writer.addPage( 0, new byte[] { 1 } );
+    writer.addPage( 1, new byte[] { 2 } );
+    final PageSegmentReportContent tail = writer.getContent( 2, 1 );
+    assertEquals( 1, tail.getStoredPageCount() );
+    assertNull( tail.getPageData( 0 ) );
+    assertArrayEquals( new byte[] { 2 }, tail.getPageData( 1 ) );
+  }
+
+  @Test
+  public void testRewrittenPage() throws Exception {
+    writer.addPage( 0, new byte[] { 1 } );
+    writer.addPage( 0, new byte[] { 2, 2 } );
+    assertArrayEquals( new byte[] { 2, 2 }, writer.getPage( 0 ) );
+    assertNull( writer.getPage( 1 ) );
+    assertEquals( 1, writer.getContent( 1, 0 ).getStoredPageCount() );
+  }
+
+  @Test
+  public void testCopyToSegment() throws Exception {
+    writer.addPage( 0, new byte[] { 1 } );
+    writer.addPage( 2, new byte[] { 2, 3 } );
+    final File target = new File( dir, "entry.pages" );
+    PageSegmentFile.write( target, writer.getContent( 3, 0 ) );
+
+    final PageSegmentReportContent read = PageSegmentFile.open( target );
+    assertEquals( 3, read.getPageCount() );
+    assertEquals( 2, read.getStoredPageCount() );
+    assertArrayEquals( new byte[] { 2, 3 }, read.getPageData( 2 ) );
+  }
+}
@@ -0,0 +1,160 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QuotaReportContentCacheTest {
+
+  private static FileSystemCacheBackend fileSystemCacheBackend;
+
+  @BeforeClass
+  public static void setUpClass() {
+    fileSystemCacheBackend = new FileSystemCacheBackend();
+    fileSystemCacheBackend.setCachePath( "/test-cache/" );
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    assertTrue( fileSystemCacheBackend.purge( Collections.singletonList( "" ) ) );
+  }
+
+  @Before
+  public void setUp() {
+    fileSystemCacheBackend.purge( Collections.singletonList( "quota" ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "bill" ) );
+  }
+
+  private static IReportContent content( final int size ) {
+    return new ReportContentImpl( 2, Collections.singletonMap( 0, new byte[ size ] ) );
+  }
+
+  @Test
+  public void testPutGet() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    assertTrue( cache.put( "key", content( 100 ) ) );
+    assertNotNull( cache.get( "key" ) );
+    assertEquals( 100L, cache.getMetaData( "key" ).get( QuotaReportContentCache.SIZE ) );
+
+    final CacheUsage usage = cache.getUsage();
+    assertEquals( 1, usage.getEntries() );
+    assertEquals( 100, usage.getUsedBytes() );
+    assertEquals( 1, usage.getUserEntries() );
+    assertEquals( 100, usage.getUserBytes() );
+  }
+
+  @Test
+  public void testGlobalBudgetEvictsLeastRecentlyUsed() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    cache.setMaxBytes( 250 );
+    cache.put( "first", content( 100 ) );
+    cache.put( "second", content( 100 ) );
+    //touch the first one, so the second one is the eldest
+    assertNotNull( cache.get( "first" ) );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    cache.put( "third", content( 100 ) );
+    assertNotNull( cache.get( "third" ) );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "bill" ) );
+    assertNotNull( cache.get( "first" ) );
+    assertNull( cache.get( "second" ) );
+    assertEquals( 200, cache.getUsage().getUsedBytes() );
+  }
+
+  @Test
+  public void testUserBudget() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    cache.setMaxBytesPerUser( 150 );
+    cache.put( "first", content( 100 ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    cache.put( "other", content( 100 ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "bill" ) );
+    cache.put( "second", content( 100 ) );
+
+    assertNull( cache.get( "first" ) );
+    assertNotNull( cache.get( "second" ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    assertNotNull( cache.get( "other" ) );
+    assertEquals( 200, cache.getUsage().getUsedBytes() );
+  }
+
+  @Test
+  public void testAppendGrowsEntry() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    assertTrue( cache.append( "key", content( 100 ), new HashMap<String, Serializable>() ) );
+    assertTrue( cache.append( "key", new ReportContentImpl( 2, Collections.singletonMap( 1, new byte[ 50 ] ) ),
+      new HashMap<String, Serializable>() ) );
+
+    assertEquals( 2, cache.get( "key" ).getStoredPageCount() );
+    assertEquals( 150L, cache.getMetaData( "key" ).get( QuotaReportContentCache.SIZE ) );
+    assertEquals( 150, cache.getUsage().getUsedBytes() );
+  }
+
+  @Test
+  public void testTooBig() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    cache.setMaxBytes( 50 );
+    assertFalse( cache.put( "key", content( 100 ) ) );
+    assertNull( cache.get( "key" ) );
+    assertEquals( 0, cache.getUsage().getUsedBytes() );
+  }
+
+  @Test
+  public void testRestoredAfterRestart() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    cache.put( "first", content( 100 ) );
+    Thread.sleep( 5 );
+    cache.put( "second", content( 100 ) );
+
+    final QuotaReportContentCache restarted = new QuotaReportContentCache( fileSystemCacheBackend );
+    restarted.setMaxBytes( 150 );
+    assertEquals( 100, restarted.getUsage().getUsedBytes() );
+    assertNull( restarted.get( "first" ) );
+    assertNotNull( restarted.get( "second" ) );
+  }
+
+  @Test
+  public void testCleanupCurrentSession() throws Exception {
+    final QuotaReportContentCache cache = new QuotaReportContentCache( fileSystemCacheBackend );
+    cache.put( "first", content( 100 ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    cache.put( "other", content( 100 ) );
+    cache.cleanupCurrentSession();
+
+    assertNull( cache.get( "other" ) );
+    assertEquals( 0, cache.getUsage().getUserBytes() );
+    assertEquals( 100, cache.getUsage().getUsedBytes() );
+  }
+
+  @Test
+  public void testSizeOf() {
+    assertEquals( 0, QuotaReportContentCache.sizeOf( null ) );
+    assertEquals( 7, QuotaReportContentCache.sizeOf( content( 7 ) ) );
+  }
+}
@@ -0,0 +1,51 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ReportContentImplTest {
+
+  @Test
+  public void testMerge() {
+    final Map<Integer, byte[]> pages = new HashMap<>();
+    pages.put( 0, new byte[] { 1 } );
+    pages.put( 1, new byte[] { 2 } );
+    final IReportContent stored = new ReportContentImpl( 3, pages );
+    final Map<Integer, byte[]> newPages = new HashMap<>();
+    newPages.put( 1, new byte[] { 3 } );
+    newPages.put( 3, new byte[] { 4 } );
+
+    final IReportContent merged = ReportContentImpl.merge( stored, new ReportContentImpl( 4, newPages ) );
+
+    assertEquals( 4, merged.getPageCount() );
+    assertEquals( 3, merged.getStoredPageCount() );
+    assertArrayEquals( new byte[] { 1 }, merged.getPageData( 0 ) );
+    assertArrayEquals( new byte[] { 3 }, merged.getPageData( 1 ) );
+    assertArrayEquals( new byte[] { 4 }, merged.getPageData( 3 ) );
+  }
+
+  @Test
+  public void testMergeWithoutStored() {
+    final IReportContent added = new ReportContentImpl( 1, Collections.singletonMap( 0, new byte[] { 1 } ) );
+    assertSame( added, ReportContentImpl.merge( null, added ) );
+  }
+}
@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SharedReportContentCacheTest {
+
+  private static final String KEY = "content_key";
+  private static FileSystemCacheBackend fileSystemCacheBackend;
+  private DeleteOldOnAccessCache userCache;
+  private SharedReportContentCache cache;
+
+  @BeforeClass
+  public static void setUpClass() {
+    fileSystemCacheBackend = new FileSystemCacheBackend();
+    fileSystemCacheBackend.setCachePath( "/test-cache/" );
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    assertTrue( fileSystemCacheBackend.purge( Collections.singletonList( "" ) ) );
+  }
+
+  @Before
+  public void setUp() {
+    fileSystemCacheBackend.purge( Collections.singletonList( "" ) );
+    userCache = new DeleteOldOnAccessCache( fileSystemCacheBackend );
+    userCache.setDaysToLive( 1 );
+    cache = new SharedReportContentCache( fileSystemCacheBackend, userCache );
+    PentahoSessionHolder.setSession( new StandaloneSession( "bill" ) );
+  }
+
+  @After
+  public void shutdown() {
+    userCache.shutdown();
+  }
+
+  private static IReportContent content( final int pageCount ) {
+    return new ReportContentImpl( pageCount, Collections.singletonMap( 0, new byte[] { 1 } ) );
+  }
+
+  private static Map<String, Serializable> metaData( final String flag, final boolean value ) {
+    final Map<String, Serializable> metaData = new HashMap<>();
+    metaData.put( flag, value );
+    return metaData;
+  }
+
+  @Test
+  public void testUserIndependentIsShared() throws Exception {
+    cache.setDetectShareable( true );
+    cache.put( KEY, content( 1 ), metaData( SharedReportContentCache.USER_INDEPENDENT, true ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    assertNotNull( cache.get( KEY ) );
+    assertEquals( Boolean.TRUE, cache.getMetaData( KEY ).get( SharedReportContentCache.USER_INDEPENDENT ) );
+  }
+
+  @Test
+  public void testUserDependentIsNotShared() throws Exception {
+    cache.put( KEY, content( 1 ), metaData( SharedReportContentCache.USER_INDEPENDENT, false ) );
+    assertNotNull( cache.get( KEY ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    assertNull( cache.get( KEY ) );
+  }
+
+  @Test
+  public void testPartialContentIsNotShared() throws Exception {
+    cache.setDetectShareable( true );
+    cache.put( KEY, content( 3 ), metaData( SharedReportContentCache.USER_INDEPENDENT, true ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    assertNull( cache.get( KEY ) );
+  }
+
+  @Test
+  public void testExplicitFlagWins() throws Exception {
+    final Map<String, Serializable> shareable = metaData( SharedReportContentCache.SHAREABLE, true );
+    cache.put( KEY, content( 3 ), shareable );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    assertNotNull( cache.get( KEY ) );
+
+    final Map<String, Serializable> forbidden = metaData( SharedReportContentCache.SHAREABLE, false );
+    forbidden.put( SharedReportContentCache.USER_INDEPENDENT, true );
+    cache.put( KEY, content( 1 ), forbidden );
+    PentahoSessionHolder.setSession( new StandaloneSession( "bill" ) );
+    assertNull( cache.get( KEY ) );
+  }
+
+  @Test
+  public void testDetectionDisabledByDefault() throws Exception {
+    assertFalse( cache.isDetectShareable() );
+    cache.put( KEY, content( 1 ), metaData( SharedReportContentCache.USER_INDEPENDENT, true ) );
+    PentahoSessionHolder.setSession( new StandaloneSession( "steve" ) );
+    assertNull( cache.get( KEY ) );
+  }
+
+  @Test
+  public void testExpired() throws Exception {
+    cache.put( KEY, content( 1 ), metaData( SharedReportContentCache.SHAREABLE, true ) );
+    cache.setMillisToLive( 0 );
+    Thread.sleep( 10 );
+    assertNull( cache.get( KEY ) );
+    assertNull( cache.getMetaData( KEY ) );
+  }
+
+  @Test
+  public void testCleanupCurrentSession() throws Exception {
+    cache.put( KEY, content( 1 ), metaData( SharedReportContentCache.SHAREABLE, true ) );
+    cache.cleanupCurrentSession();
+    assertNull( cache.get( KEY ) );
+  }
+
+  @Test
+  public void testUsageOfDelegate() throws Exception {
+    assertNull( cache.getUsage() );
+    final IUsageTrackingCache tracking = mock( IUsageTrackingCache.class );
+    final CacheUsage usage = new CacheUsage( 2, 300, 1000, 1, 100, 500 );
+    when( tracking.getUsage() ).thenReturn( usage );
+    cache.setDelegate( tracking );
+    assertSame( usage, cache.getUsage() );
+  }
+}
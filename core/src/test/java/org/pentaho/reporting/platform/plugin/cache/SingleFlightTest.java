@@ -0,0 +1,123 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+  @Test
+  public void testLeaderAndFollower() throws Exception {
+    final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    final SingleFlight<String, String>.Flight leader = singleFlight.join( "key" );
+    final SingleFlight<String, String>.Flight follower = singleFlight.join( "key" );
+    final SingleFlight<String, String>.Flight other = singleFlight.join( "other" );
+
+    assertTrue( leader.isLeader() );
+    assertFalse( follower.isLeader() );
+    assertTrue( other.isLeader() );
+    assertEquals( 2, singleFlight.size() );
+
+    leader.complete( "value" );
+    assertEquals( "value", follower.await() );
+    assertEquals( 1, singleFlight.size() );
+    other.complete( null );
+    assertEquals( 0, singleFlight.size() );
+  }
+
+  @Test
+  public void testNewFlightAfterComplete() throws Exception {
+    final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    singleFlight.join( "key" ).complete( "first" );
+    final SingleFlight<String, String>.Flight next = singleFlight.join( "key" );
+    assertTrue( next.isLeader() );
+    next.complete( "second" );
+    assertEquals( 0, singleFlight.size() );
+  }
+
+  @Test
+  public void testFollowerCannotComplete() throws Exception {
+    final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    final SingleFlight<String, String>.Flight leader = singleFlight.join( "key" );
+    final SingleFlight<String, String>.Flight follower = singleFlight.join( "key" );
+    follower.complete( "follower" );
+    assertEquals( 1, singleFlight.size() );
+    leader.complete( null );
+    assertNull( follower.await() );
+  }
+
+  @Test
+  public void testAwaitTimeout() throws Exception {
+    final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    final SingleFlight<String, String>.Flight leader = singleFlight.join( "key" );
+    final SingleFlight<String, String>.Flight follower = singleFlight.join( "key" );
+    try {
+      follower.await( 10, TimeUnit.MILLISECONDS );
+      fail();
+    } catch ( final TimeoutException e ) {
+      //expected
+    }
+    leader.complete( "value" );
+    assertEquals( "value", follower.await( 10, TimeUnit.MILLISECONDS ) );
+  }
+
+  @Test
+  public void testConcurrentCallersShareWork() throws Exception {
+    final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    final AtomicInteger work = new AtomicInteger();
+    final CountDownLatch joined = new CountDownLatch( 8 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      final Future<?>[] futures = new Future<?>[ 8 ];
+      for ( int i = 0; i < 8; i++ ) {
+        futures[ i ] = executor.submit( () -> {
+          final SingleFlight<String, Integer>.Flight flight = singleFlight.join( "key" );
+          joined.countDown();
+          if ( !flight.isLeader() ) {
+            return flight.await();
+          }
+          try {
+            release.await();
+            return work.incrementAndGet();
+          } finally {
+            flight.complete( work.get() );
+          }
+        } );
+      }
+      assertTrue( joined.await( 10, TimeUnit.SECONDS ) );
+      release.countDown();
+      for ( final Future<?> future : futures ) {
+        assertEquals( 1, future.get( 10, TimeUnit.SECONDS ) );
+      }
+      assertEquals( 1, work.get() );
+      assertEquals( 0, singleFlight.size() );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.datasources;
+
+import org.junit.Test;
+import org.pentaho.reporting.engine.classic.core.CompoundDataFactory;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
+import org.pentaho.reporting.engine.classic.core.StaticDataRow;
+import org.pentaho.reporting.engine.classic.core.TableDataFactory;
+
+import static org.junit.Assert.assertEquals;
+
+public class CancelableDataFactoryTest {
+
+  @Test
+  public void testWrap() {
+    final QueryCancellation cancellation = new QueryCancellation();
+    final CompoundDataFactory compound = new CompoundDataFactory();
+    compound.add( new TableDataFactory() );
+    compound.add( new TableDataFactory() );
+
+    assertEquals( 2, CancelableDataFactory.wrap( compound, cancellation ).size() );
+    assertEquals( 1, CancelableDataFactory.wrap( new TableDataFactory(), cancellation ).size() );
+    assertEquals( 0, CancelableDataFactory.wrap( null, cancellation ).size() );
+  }
+
+  @Test
+  public void testDerivedFactoriesAreRegistered() {
+    final QueryCancellation cancellation = new QueryCancellation();
+    final CancelableDataFactory dataFactory =
+      CancelableDataFactory.wrap( new TableDataFactory(), cancellation );
+
+    final DataFactory derived = dataFactory.derive();
+    assertEquals( 1, cancellation.getRunningCount() );
+    derived.close();
+    assertEquals( 0, cancellation.getRunningCount() );
+  }
+
+  @Test( expected = ReportDataFactoryException.class )
+  public void testQueryAfterCancel() throws Exception {
+    final QueryCancellation cancellation = new QueryCancellation();
+    final CancelableDataFactory dataFactory =
+      CancelableDataFactory.wrap( new TableDataFactory( "query", null ), cancellation );
+    cancellation.cancel();
+    dataFactory.queryData( "query", new StaticDataRow() );
+  }
+}
@@ -0,0 +1,60 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.datasources;
+
+import org.junit.Test;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class QueryCancellationTest {
+
+  @Test
+  public void testCancelRunningQueries() {
+    final QueryCancellation cancellation = new QueryCancellation();
+    final DataFactory first = mock( DataFactory.class );
+    final DataFactory second = mock( DataFactory.class );
+    final DataFactory closed = mock( DataFactory.class );
+    cancellation.register( first );
+    cancellation.register( second );
+    cancellation.register( closed );
+    cancellation.unregister( closed );
+    assertEquals( 2, cancellation.getRunningCount() );
+
+    doThrow( new IllegalStateException() ).when( first ).cancelRunningQuery();
+    assertFalse( cancellation.isCanceled() );
+    cancellation.cancel();
+
+    assertTrue( cancellation.isCanceled() );
+    verify( first ).cancelRunningQuery();
+    verify( second ).cancelRunningQuery();
+    verify( closed, never() ).cancelRunningQuery();
+  }
+
+  @Test
+  public void testRegisterAfterCancel() {
+    final QueryCancellation cancellation = new QueryCancellation();
+    cancellation.cancel();
+
+    final DataFactory dataFactory = mock( DataFactory.class );
+    cancellation.register( dataFactory );
+    verify( dataFactory ).cancelRunningQuery();
+    assertEquals( 0, cancellation.getRunningCount() );
+  }
+}
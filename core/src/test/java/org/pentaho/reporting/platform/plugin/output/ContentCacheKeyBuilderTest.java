@@ -0,0 +1,133 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.output;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.pentaho.reporting.libraries.xmlns.parser.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentCacheKeyBuilderTest {
+
+  private static final int PARAMETERS = 60;
+
+  @Test
+  public void testDeterministic() throws Exception {
+    final String key = new ContentCacheKeyBuilder().add( "a" ).add( null ).addInt( 2 ).build();
+    assertEquals( key, new ContentCacheKeyBuilder().add( "a" ).add( null ).addInt( 2 ).build() );
+    assertEquals( 44, key.length() );
+  }
+
+  @Test
+  public void testUnambiguous() throws Exception {
+    assertNotEquals( new ContentCacheKeyBuilder().add( "ab" ).add( "c" ).build(),
+      new ContentCacheKeyBuilder().add( "a" ).add( "bc" ).build() );
+    assertNotEquals( new ContentCacheKeyBuilder().add( null ).build(),
+      new ContentCacheKeyBuilder().add( "null" ).build() );
+    assertNotEquals( new ContentCacheKeyBuilder().add( null ).build(),
+      new ContentCacheKeyBuilder().add( "" ).build() );
+    assertNotEquals( new ContentCacheKeyBuilder().add( "\u0100" ).build(),
+      new ContentCacheKeyBuilder().add( "\u0001\u0000" ).build() );
+  }
+
+  @Test
+  public void testLongValues() throws Exception {
+    final char[] chars = new char[ 1000 ];
+    Arrays.fill( chars, 'x' );
+    final String value = new String( chars );
+    assertEquals( new ContentCacheKeyBuilder().add( value ).build(),
+      new ContentCacheKeyBuilder().add( value ).build() );
+    assertNotEquals( new ContentCacheKeyBuilder().add( value ).build(),
+      new ContentCacheKeyBuilder().add( value + "x" ).build() );
+  }
+
+  /**
+   * Compares the streamed key with the former serialization based key. Runs only with -Dtest.performance=true.
+   */
+  @Test
+  public void testBenchmark() throws Exception {
+    Assume.assumeTrue( Boolean.getBoolean( "org.pentaho.reporting.engine.classic.test.ExecutePerformanceTest" ) );
+    final String[] names = new String[ PARAMETERS ];
+    final String[] values = new String[ PARAMETERS ];
+    for ( int i = 0; i < PARAMETERS; i++ ) {
+      names[ i ] = "parameter" + i;
+      values[ i ] = "value-" + i + "-" + ( i * 31 );
+    }
+
+    for ( int warmup = 0; warmup < 3; warmup++ ) {
+      serializedKeys( names, values, 20000 );
+      streamedKeys( names, values, 20000 );
+    }
+    final int iterations = 100000;
+    final long serialized = serializedKeys( names, values, iterations );
+    final long streamed = streamedKeys( names, values, iterations );
+    System.out.println( String.format( "%d parameters: serialized %d ns/key, streamed %d ns/key", PARAMETERS,
+      serialized / iterations, streamed / iterations ) );
+    assertTrue( streamed > 0 && serialized > 0 );
+  }
+
+  private static long serializedKeys( final String[] names, final String[] values, final int iterations )
+    throws Exception {
+    final long start = System.nanoTime();
+    for ( int n = 0; n < iterations; n++ ) {
+      final ArrayList<String> sourceKey = new ArrayList<>();
+      sourceKey.add( "solution" );
+      sourceKey.add( "/public/report.prpt" );
+      sourceKey.add( "1234567890" );
+      final HashMap<String, String> params = new HashMap<>();
+      params.put( "query-limit", "0" );
+      for ( int i = 0; i < names.length; i++ ) {
+        params.put( names[ i ], values[ i ] );
+      }
+      final ArrayList<Object> key = new ArrayList<>();
+      key.add( sourceKey );
+      key.add( params );
+      key.add( "en_US" );
+      final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      final ObjectOutputStream oout = new ObjectOutputStream( bout );
+      oout.writeObject( (Serializable) key );
+      oout.close();
+      final MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+      md.update( bout.toByteArray() );
+      new String( Base64.encode( md.digest() ) );
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long streamedKeys( final String[] names, final String[] values, final int iterations )
+    throws Exception {
+    final long start = System.nanoTime();
+    for ( int n = 0; n < iterations; n++ ) {
+      final ContentCacheKeyBuilder builder = new ContentCacheKeyBuilder();
+      builder.add( "solution" ).add( "/public/report.prpt" ).add( "1234567890" );
+      builder.add( "query-limit" ).add( "0" );
+      builder.addInt( names.length );
+      for ( int i = 0; i < names.length; i++ ) {
+        builder.add( names[ i ] ).add( values[ i ] );
+      }
+      builder.add( "en_US" ).build();
+    }
+    return System.nanoTime() - start;
+  }
+}
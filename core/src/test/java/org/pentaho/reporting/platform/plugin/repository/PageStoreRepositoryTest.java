@@ -0,0 +1,121 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.reporting.platform.plugin.repository;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.repository.ContentItem;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.DefaultMimeRegistry;
+import org.pentaho.reporting.platform.plugin.cache.IReportContent;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PageStoreRepositoryTest {
+
+  private PageStoreRepository repository;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = new PageStoreRepository();
+  }
+
+  @After
+  public void tearDown() {
+    repository.dispose();
+  }
+
+  private static void write( final ContentLocation root, final String name, final byte[] data ) throws Exception {
+    final ContentItem item = root.createItem( name );
+    try ( final OutputStream out = item.getOutputStream() ) {
+      out.write( data );
+    }
+  }
+
+  @Test
+  public void testPagesAreSpooled() throws Exception {
+    final ContentLocation root = repository.getRoot();
+    write( root, "page-0.html", new byte[] { 1 } );
+    write( root, "page-1.html", new byte[] { 2, 3 } );
+    write( root, "style.css", new byte[] { 4 } );
+
+    assertTrue( root.exists( "page-1.html" ) );
+    assertEquals( 3, root.listContents().length );
+
+    final IReportContent content = repository.getContent( 3, 0 );
+    assertEquals( 3, content.getPageCount() );
+    assertEquals( 2, content.getStoredPageCount() );
+    assertArrayEquals( new byte[] { 1 }, content.getPageData( 0 ) );
+    assertArrayEquals( new byte[] { 2, 3 }, content.getPageData( 1 ) );
+
+    final IReportContent tail = repository.getContent( 3, 1 );
+    assertEquals( 1, tail.getStoredPageCount() );
+    assertNull( tail.getPageData( 0 ) );
+
+    try ( final InputStream in = ( (ContentItem) root.getEntry( "style.css" ) ).getInputStream() ) {
+      assertArrayEquals( new byte[] { 4 }, IOUtils.toByteArray( in ) );
+    }
+    try ( final InputStream in = ( (ContentItem) root.getEntry( "page-1.html" ) ).getInputStream() ) {
+      assertArrayEquals( new byte[] { 2, 3 }, IOUtils.toByteArray( in ) );
+    }
+  }
+
+  @Test
+  public void testPageIsStoredOnClose() throws Exception {
+    final ContentItem item = repository.getRoot().createItem( "page-0.html" );
+    final OutputStream out = item.getOutputStream();
+    out.write( new byte[] { 1 } );
+    assertEquals( 0, repository.getContent( 1, 0 ).getStoredPageCount() );
+    out.close();
+    out.close();
+    assertEquals( 1, repository.getContent( 1, 0 ).getStoredPageCount() );
+  }
+
+  @Test
+  public void testDispose() throws Exception {
+    write( repository.getRoot(), "page-0.html", new byte[] { 1 } );
+    final IReportContent content = repository.getContent( 1, 0 );
+    repository.dispose();
+    assertNull( content.getPageData( 0 ) );
+  }
+
+  @Test( expected = ContentIOException.class )
+  public void testMissingEntry() throws Exception {
+    repository.getRoot().getEntry( "page-0.html" );
+  }
+
+  @Test
+  public void testLocation() throws Exception {
+    final ContentLocation root = repository.getRoot();
+    assertTrue( repository.getMimeRegistry() instanceof DefaultMimeRegistry );
+    assertNull( root.getParent() );
+    assertFalse( root.delete() );
+    assertEquals( -1, PageStoreLocation.extractPageFromName( "page-x.html" ) );
+    assertEquals( -1, PageStoreLocation.extractPageFromName( "index.html" ) );
+    assertEquals( 12, PageStoreLocation.extractPageFromName( "page-12.html" ) );
+
+    write( root, "data.bin", new byte[] { 1 } );
+    assertTrue( root.getEntry( "data.bin" ).delete() );
+    assertFalse( root.exists( "data.bin" ) );
+  }
+}
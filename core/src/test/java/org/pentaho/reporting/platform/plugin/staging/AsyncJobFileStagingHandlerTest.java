@@ -24,6 +24,7 @@ import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -128,6 +129,27 @@ public class AsyncJobFileStagingHandlerTest {
     assertFalse( "File got deleted explicitly", tempFile.exists() );
   }
 
+  @Test public void testRedirect() throws IOException {
+    final AsyncJobFileStagingHandler handler = new AsyncJobFileStagingHandler( session );
+    final OutputStream out = handler.getStagingOutputStream();
+    out.write( data, 0, 100 );
+
+    final boolean[] closed = new boolean[ 1 ];
+    final ByteArrayOutputStream target = new ByteArrayOutputStream() {
+      @Override public void close() throws IOException {
+        closed[ 0 ] = true;
+      }
+    };
+    handler.redirect( target );
+    out.write( data, 100, data.length - 100 );
+    out.close();
+
+    assertArrayEquals( "staged and later output reach the target", data, target.toByteArray() );
+    assertFalse( "target is closed by the caller", closed[ 0 ] );
+    assertEquals( "later output is not staged", 100, handler.tmpFile.length() );
+    assertTrue( handler.getStagingContent().cleanContent() );
+  }
+
   @Test public void testStagingDirNotGetDeletedBetweenExecutions() throws Exception {
     CountDownLatch startSignal = new CountDownLatch( 0 );
 
@@ -467,5 +467,48 @@ define(["reportviewer/reportviewer", "reportviewer/reportviewer-logging", "repor
           expect(reportViewer._isFinished).toBe(false);
         });
       });
+
+      describe("_keepPolling", function() {
+        var url = "http://localhost:8080/pentaho/api/repos/:public:report.prpt/report?a=b";
+        var statusUrl = "http://localhost:8080/pentaho/plugin/reporting/api/jobs/uuid/status";
+
+        beforeEach(function() {
+          jasmine.clock().install();
+          pentahoGet = jasmine.createSpy("pentahoGet").and.callFake(function(url, query, func) {
+            func("{ \"status\" : \"WORKING\", \"statusToken\" : \"abc\" }");
+          });
+        });
+
+        afterEach(function() {
+          jasmine.clock().uninstall();
+        });
+
+        it("should poll the status after the polling interval", function() {
+          reportViewer.reportPrompt._statusWaitTimeout = 0;
+          var callback = jasmine.createSpy("callback");
+
+          reportViewer._keepPolling("uuid", url, callback);
+          expect(pentahoGet).not.toHaveBeenCalled();
+
+          jasmine.clock().tick(reportViewer.reportPrompt._pollingInterval + 1);
+          expect(pentahoGet).toHaveBeenCalledWith(statusUrl, "", callback, "application/json");
+        });
+
+        it("should wait for a status change with the last status token", function() {
+          reportViewer.reportPrompt._statusWaitTimeout = 20000;
+          var callback = jasmine.createSpy("callback");
+
+          reportViewer._keepPolling("uuid", url, callback);
+          jasmine.clock().tick(1);
+          expect(pentahoGet.calls.mostRecent().args[0]).toBe(statusUrl + "/wait");
+          expect(pentahoGet.calls.mostRecent().args[1]).toBe("");
+          expect(callback).toHaveBeenCalled();
+
+          reportViewer._keepPolling("uuid", url, callback);
+          jasmine.clock().tick(reportViewer.reportPrompt._pollingInterval + 1);
+          expect(pentahoGet.calls.count()).toBe(2);
+          expect(pentahoGet.calls.mostRecent().args[1]).toBe("since=abc");
+        });
+      });
     });
   });